@@ -0,0 +1,114 @@
+package org.openpixi.pixi.distributed;
+
+import junit.framework.TestCase;
+import org.openpixi.pixi.physics.GeneralBoundaryType;
+import org.openpixi.pixi.physics.InitialConditions;
+import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.Settings;
+import org.openpixi.pixi.physics.TransportType;
+
+import java.util.List;
+
+/**
+ * Runs the same distributed simulation with the classic and with the aggregated exchange
+ * of particles over the in-process transport and compares the final particles.
+ * The results differ only by the order in which the ghost particles are deposited.
+ */
+public class AggregatedExchangeTest extends TestCase {
+
+	private static final int NUM_OF_PARTICLES = 300;
+	private static final double TOLERANCE = 1e-9;
+
+	private List<Particle> initialParticles = InitialConditions.createRandomParticles(
+			160, 160, 3, NUM_OF_PARTICLES, 1);
+
+
+	public void testFourWorkers() throws Exception {
+		compare(4, 0);
+	}
+
+
+	/**
+	 * Repartitioning creates new neighbors with different sizes.
+	 */
+	public void testSixWorkersWithLoadBalancing() throws Exception {
+		compare(6, 5);
+	}
+
+
+	private void compare(int numOfNodes, int loadBalancingInterval) throws Exception {
+		List<Particle> classic = run(createSettings(
+				numOfNodes, loadBalancingInterval, false, "classic-exchange-" + numOfNodes));
+		List<Particle> aggregated = run(createSettings(
+				numOfNodes, loadBalancingInterval, true, "aggregated-exchange-" + numOfNodes));
+		assertEquals(NUM_OF_PARTICLES, classic.size());
+		assertEquals(NUM_OF_PARTICLES, aggregated.size());
+
+		// The order of the final particles depends on the partitioning
+		for (Particle p: classic) {
+			double closest = Double.MAX_VALUE;
+			for (Particle q: aggregated) {
+				closest = Math.min(closest, periodicDistance(p, q));
+			}
+			assertEquals(0, closest, TOLERANCE);
+		}
+	}
+
+
+	private double periodicDistance(Particle p, Particle q) {
+		double dx = Math.abs(p.getX() - q.getX());
+		double dy = Math.abs(p.getY() - q.getY());
+		dx = Math.min(dx, 160 - dx);
+		dy = Math.min(dy, 160 - dy);
+		return dx + dy;
+	}
+
+
+	private Settings createSettings(
+			int numOfNodes, int loadBalancingInterval, boolean aggregated, String pool) {
+		Settings settings = new Settings();
+		settings.setNumOfNodes(numOfNodes);
+		settings.setGridCellsX(16);
+		settings.setGridCellsY(16);
+		settings.setSimulationWidth(160);
+		settings.setSimulationHeight(160);
+		settings.setBoundary(GeneralBoundaryType.Periodic);
+		for (Particle p: initialParticles) {
+			settings.addParticle(new Particle(p));
+		}
+		settings.setIterations(20);
+		settings.setTransportType(TransportType.InProcess);
+		settings.setIplPool(pool);
+		settings.setLoadBalancingInterval(loadBalancingInterval);
+		settings.setLoadImbalanceThreshold(0.5);
+		settings.useAggregatedExchange(aggregated);
+		return settings;
+	}
+
+
+	/**
+	 * Runs the nodes in separate threads.
+	 * @return final particles of the simulation
+	 */
+	private List<Particle> run(Settings settings) throws InterruptedException {
+		Node[] nodes = new Node[settings.getNumOfNodes()];
+		Thread[] threads = new Thread[nodes.length];
+		for (int i = 0; i < nodes.length; ++i) {
+			nodes[i] = new Node(settings);
+			threads[i] = new Thread(nodes[i]);
+			threads[i].start();
+		}
+		for (Thread thread: threads) {
+			thread.join();
+		}
+		settings.terminateThreads();
+
+		for (Node node: nodes) {
+			if (node.isMaster()) {
+				return node.getMaster().getFinalParticles();
+			}
+		}
+		fail("No master node!");
+		return null;
+	}
+}
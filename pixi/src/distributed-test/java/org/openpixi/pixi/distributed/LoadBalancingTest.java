@@ -0,0 +1,102 @@
+package org.openpixi.pixi.distributed;
+
+import junit.framework.TestCase;
+import org.openpixi.pixi.physics.InitialConditions;
+import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.Settings;
+import org.openpixi.pixi.physics.TransportType;
+import org.openpixi.pixi.physics.util.IntBox;
+
+/**
+ * Runs distributed simulations with the particles clumped in one corner
+ * over the in-process transport; lets them repartition during the run.
+ */
+public class LoadBalancingTest extends TestCase {
+
+	private static final int NUM_OF_PARTICLES = 200;
+
+	public void testRepartitioning() throws Exception {
+		Settings settings = createSettings(4, 16, 16);
+		settings.setIplPool("load-balancing-test");
+
+		// The imbalance is at least one => repartition after every interval
+		settings.setLoadBalancingInterval(5);
+		settings.setLoadImbalanceThreshold(0.5);
+
+		Master master = run(settings);
+		assertEquals(NUM_OF_PARTICLES, master.getFinalParticles().size());
+
+		// The partition holding the clump shrinks
+		IntBox[] partitions = master.getPartitions();
+		int cellsOfClumpPartition = 0;
+		for (IntBox partition: partitions) {
+			if (partition.contains(0, 0)) {
+				cellsOfClumpPartition = partition.xsize() * partition.ysize();
+			}
+		}
+		assertTrue(cellsOfClumpPartition < 8 * 8);
+		settings.terminateThreads();
+	}
+
+
+	/**
+	 * The number of workers and cells does not have to be a power of 2.
+	 */
+	public void testSixWorkers() throws Exception {
+		Settings settings = createSettings(6, 18, 12);
+		settings.setIplPool("load-balancing-test-six");
+
+		Master master = run(settings);
+		assertEquals(NUM_OF_PARTICLES, master.getFinalParticles().size());
+		assertEquals(6, master.getPartitions().length);
+		settings.terminateThreads();
+	}
+
+
+	/**
+	 * The particles are clumped in the corner of the simulation area.
+	 */
+	private Settings createSettings(int numOfNodes, int numCellsX, int numCellsY) {
+		Settings settings = new Settings();
+		settings.setNumOfNodes(numOfNodes);
+		settings.setGridCellsX(numCellsX);
+		settings.setGridCellsY(numCellsY);
+		settings.setSimulationWidth(10 * settings.getGridCellsX());
+		settings.setSimulationHeight(10 * settings.getGridCellsY());
+		for (Particle p: InitialConditions.createRandomParticles(
+				settings.getSimulationWidth() / 4, settings.getSimulationHeight() / 4,
+				1, NUM_OF_PARTICLES, 1)) {
+			settings.addParticle(p);
+		}
+		settings.setIterations(12);
+		settings.setTransportType(TransportType.InProcess);
+		return settings;
+	}
+
+
+	/**
+	 * Runs the nodes in separate threads.
+	 * @return master of the simulation
+	 */
+	private Master run(Settings settings) throws InterruptedException {
+		Node[] nodes = new Node[settings.getNumOfNodes()];
+		Thread[] threads = new Thread[nodes.length];
+		for (int i = 0; i < nodes.length; ++i) {
+			nodes[i] = new Node(settings);
+			threads[i] = new Thread(nodes[i]);
+			threads[i].start();
+		}
+		for (Thread thread: threads) {
+			thread.join();
+		}
+
+		Master master = null;
+		for (Node node: nodes) {
+			if (node.isMaster()) {
+				master = node.getMaster();
+			}
+		}
+		assertNotNull(master);
+		return master;
+	}
+}
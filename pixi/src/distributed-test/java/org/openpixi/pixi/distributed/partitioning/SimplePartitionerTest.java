@@ -26,7 +26,52 @@ public class SimplePartitionerTest extends TestCase {
 	public void testPartition() throws Exception {
 		SimplePartitioner partitioner = new SimplePartitioner();
 		IntBox[] partitions = partitioner.partition(NUM_CELLS_X, NUM_CELLS_Y, NUM_PARTITIONS);
+		checkPartitions(partitions);
+	}
+
+
+	/**
+	 * Most of the weight lies in a clump in the corner;
+	 * the weighted partitions have to be valid and better balanced than the uniform ones.
+	 */
+	public void testWeightedPartition() throws Exception {
+		double[][] weights = new double[NUM_CELLS_X][NUM_CELLS_Y];
+		for (int x = 0; x < NUM_CELLS_X; ++x) {
+			for (int y = 0; y < NUM_CELLS_Y; ++y) {
+				weights[x][y] = (x < NUM_CELLS_X / 4 && y < NUM_CELLS_Y / 4) ? 20 : 1;
+			}
+		}
+
+		SimplePartitioner partitioner = new SimplePartitioner();
+		IntBox[] uniform = partitioner.partition(NUM_CELLS_X, NUM_CELLS_Y, NUM_PARTITIONS);
+		IntBox[] weighted = partitioner.partition(NUM_CELLS_X, NUM_CELLS_Y, NUM_PARTITIONS, weights);
+		checkPartitions(weighted);
+
+		// The layout of the partitions (the neighbors) stays the same.
+		for (int i = 0; i < NUM_PARTITIONS; ++i) {
+			Assert.assertEquals(uniform[i].xmin() == 0, weighted[i].xmin() == 0);
+			Assert.assertEquals(uniform[i].ymin() == 0, weighted[i].ymin() == 0);
+		}
+		Assert.assertTrue(maxWeight(weighted, weights) < 0.5 * maxWeight(uniform, weights));
+	}
+
+
+	private double maxWeight(IntBox[] partitions, double[][] weights) {
+		double max = 0;
+		for (IntBox b: partitions) {
+			double sum = 0;
+			for (int x = b.xmin(); x <= b.xmax(); ++x) {
+				for (int y = b.ymin(); y <= b.ymax(); ++y) {
+					sum += weights[x][y];
+				}
+			}
+			max = Math.max(max, sum);
+		}
+		return max;
+	}
+
 
+	private void checkPartitions(IntBox[] partitions) {
 		Assert.assertEquals(NUM_PARTITIONS, partitions.length);
 
 		int largestXmax = Integer.MIN_VALUE;
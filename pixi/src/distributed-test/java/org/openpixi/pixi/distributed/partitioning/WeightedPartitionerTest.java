@@ -0,0 +1,115 @@
+package org.openpixi.pixi.distributed.partitioning;
+
+import junit.framework.TestCase;
+import org.junit.Assert;
+import org.openpixi.pixi.physics.util.IntBox;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Checks that the weighted partitions cover each cell exactly once,
+ * form columns and rows and balance the weight for numbers of partitions
+ * and cells which are not powers of 2.
+ */
+public class WeightedPartitionerTest extends TestCase {
+
+	private static final int NUM_CELLS_X = 40;
+	private static final int NUM_CELLS_Y = 24;
+
+
+	public void testUniformWeights() throws Exception {
+		for (int numPartitions: new int[] {1, 3, 6, 7, 12}) {
+			WeightedPartitioner partitioner = new WeightedPartitioner();
+			IntBox[] partitions = partitioner.partition(NUM_CELLS_X, NUM_CELLS_Y, numPartitions);
+			checkPartitions(partitions, numPartitions);
+			Assert.assertTrue(partitioner.getImbalance() < 1.2);
+		}
+	}
+
+
+	/**
+	 * Most of the weight lies in a clump in the corner.
+	 */
+	public void testClumpedWeights() throws Exception {
+		double[][] weights = new double[NUM_CELLS_X][NUM_CELLS_Y];
+		for (int x = 0; x < NUM_CELLS_X; ++x) {
+			for (int y = 0; y < NUM_CELLS_Y; ++y) {
+				weights[x][y] = (x < NUM_CELLS_X / 4 && y < NUM_CELLS_Y / 4) ? 20 : 1;
+			}
+		}
+
+		for (int numPartitions: new int[] {6, 12}) {
+			WeightedPartitioner partitioner = new WeightedPartitioner();
+			IntBox[] partitions = partitioner.partition(
+					NUM_CELLS_X, NUM_CELLS_Y, numPartitions, weights);
+			checkPartitions(partitions, numPartitions);
+
+			double total = 0;
+			for (int i = 0; i < numPartitions; ++i) {
+				total += partitioner.getWeight(i);
+				IntBox b = partitions[i];
+				Assert.assertEquals(2 * (b.xsize() + b.ysize()) + 4, partitioner.getHaloSurface(i));
+			}
+			Assert.assertEquals(NUM_CELLS_X * NUM_CELLS_Y * (1 + 19.0 / 16), total, 1e-9);
+
+			// The partitions created without the weights are much worse balanced
+			IntBox[] uniform = new WeightedPartitioner().partition(
+					NUM_CELLS_X, NUM_CELLS_Y, numPartitions);
+			Assert.assertTrue(
+					partitioner.getImbalance() < 0.6 * imbalance(uniform, weights, total));
+		}
+	}
+
+
+	private double imbalance(IntBox[] partitions, double[][] weights, double total) {
+		double max = 0;
+		for (IntBox b: partitions) {
+			double sum = 0;
+			for (int x = b.xmin(); x <= b.xmax(); ++x) {
+				for (int y = b.ymin(); y <= b.ymax(); ++y) {
+					sum += weights[x][y];
+				}
+			}
+			max = Math.max(max, sum);
+		}
+		return max * partitions.length / total;
+	}
+
+
+	public void testTooManyPartitions() throws Exception {
+		try {
+			new WeightedPartitioner().partition(4, 4, 5);
+			Assert.fail("Five partitions of 4 x 4 cells can not be at least 2 x 2 cells.");
+		} catch (RuntimeException e) {
+			// Expected
+		}
+	}
+
+
+	private void checkPartitions(IntBox[] partitions, int numPartitions) {
+		Assert.assertEquals(numPartitions, partitions.length);
+
+		int[][] coverage = new int[NUM_CELLS_X][NUM_CELLS_Y];
+		Set<Integer> columnStarts = new HashSet<Integer>();
+		Set<Integer> rowStarts = new HashSet<Integer>();
+		for (IntBox b: partitions) {
+			Assert.assertTrue("Malformed partition! " + b, b.xsize() >= 2 && b.ysize() >= 2);
+			for (int x = b.xmin(); x <= b.xmax(); ++x) {
+				for (int y = b.ymin(); y <= b.ymax(); ++y) {
+					coverage[x][y]++;
+				}
+			}
+			columnStarts.add(b.xmin());
+			rowStarts.add(b.ymin());
+		}
+
+		for (int x = 0; x < NUM_CELLS_X; ++x) {
+			for (int y = 0; y < NUM_CELLS_Y; ++y) {
+				Assert.assertEquals(1, coverage[x][y]);
+			}
+		}
+		// Columns and rows => one neighbor at each side
+		Assert.assertEquals(numPartitions, columnStarts.size() * rowStarts.size());
+	}
+}
@@ -0,0 +1,197 @@
+package org.openpixi.pixi.distributed.transport;
+
+import junit.framework.TestCase;
+import org.openpixi.pixi.distributed.Node;
+import org.openpixi.pixi.physics.Settings;
+import org.openpixi.pixi.physics.TransportType;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends messages between two nodes of the NIO and the in-process transport
+ * and runs a distributed simulation over the in-process transport.
+ */
+public class TransportTest extends TestCase {
+
+	private static final int NUM_OF_MESSAGES = 50;
+
+	public void testInProcess() throws Exception {
+		exchangeMessages(new TransportCreator() {
+			public Transport create() {
+				return new InProcessTransport("transport-test", 2);
+			}
+		});
+	}
+
+
+	public void testNio() throws Exception {
+		final List<String> addresses = Arrays.asList("localhost:47321", "localhost:47322");
+		exchangeMessages(new TransportCreator() {
+			public Transport create() throws IOException {
+				return new NioTransport(addresses);
+			}
+		});
+	}
+
+
+	/**
+	 * Distributes the problem, runs a few steps and collects the results over the in-process transport.
+	 */
+	public void testDistributedSimulationInProcess() throws Exception {
+		Settings settings = new Settings();
+		settings.setNumOfNodes(4);
+		settings.setGridCellsX(8);
+		settings.setGridCellsY(8);
+		settings.setSimulationWidth(10 * settings.getGridCellsX());
+		settings.setSimulationHeight(10 * settings.getGridCellsY());
+		settings.setNumOfParticles(100);
+		settings.setIterations(10);
+		settings.setTransportType(TransportType.InProcess);
+		settings.setIplPool("transport-test-simulation");
+
+		final Node[] nodes = new Node[settings.getNumOfNodes()];
+		Thread[] threads = new Thread[nodes.length];
+		for (int i = 0; i < nodes.length; ++i) {
+			nodes[i] = new Node(settings);
+			threads[i] = new Thread(nodes[i]);
+			threads[i].start();
+		}
+		for (Thread thread: threads) {
+			thread.join();
+		}
+
+		int numOfMasters = 0;
+		for (Node node: nodes) {
+			if (node.isMaster()) {
+				++numOfMasters;
+				assertEquals(100, node.getMaster().getFinalParticles().size());
+			}
+		}
+		assertEquals(1, numOfMasters);
+		settings.terminateThreads();
+	}
+
+
+	/**
+	 * Worker 1 sends a series of messages to worker 0 which opens its receiver
+	 * only after the first messages were sent; worker 0 answers each message.
+	 */
+	private void exchangeMessages(TransportCreator creator) throws Exception {
+		Transport[] transports = createInThreads(creator);
+		Transport first = transports[0].getWorkerID() == 0 ? transports[0] : transports[1];
+		Transport second = transports[0].getWorkerID() == 1 ? transports[0] : transports[1];
+		assertEquals(2, first.getNumOfWorkers());
+		assertTrue(first.isMaster());
+		assertFalse(second.isMaster());
+
+		Collector answers = new Collector();
+		second.openReceiver(Transport.GATHER_CHANNEL, 0, answers);
+		second.enableDelivery(Transport.GATHER_CHANNEL, 0);
+
+		for (int i = 0; i < NUM_OF_MESSAGES; ++i) {
+			send(second, Transport.EXCHANGE_CHANNEL, 0, i);
+		}
+		final Transport echoTransport = first;
+		first.openReceiver(Transport.EXCHANGE_CHANNEL, 1, new MessageHandler() {
+			public void handle(IncomingMessage message) throws IOException, ClassNotFoundException {
+				int value = message.readInt();
+				double[] array = new double[value];
+				message.readArray(array, 0, value);
+				List<Integer> list = (List<Integer>)message.readObject();
+				assertEquals(value, list.size());
+				send(echoTransport, Transport.GATHER_CHANNEL, 1, value + (int)sum(array));
+			}
+		});
+		first.enableDelivery(Transport.EXCHANGE_CHANNEL, 1);
+
+		for (int i = 0; i < NUM_OF_MESSAGES; ++i) {
+			// Answers come in order: i + (0 + 1 + ... + (i - 1))
+			assertEquals(i + i * (i - 1) / 2, answers.next());
+		}
+
+		first.close();
+		second.close();
+	}
+
+
+	private static void send(Transport transport, int channel, int destination, int value)
+			throws IOException {
+		double[] array = new double[value];
+		List<Integer> list = new ArrayList<Integer>();
+		for (int i = 0; i < value; ++i) {
+			array[i] = i;
+			list.add(i);
+		}
+		OutgoingMessage message = transport.newMessage(channel, destination);
+		message.writeInt(value);
+		message.writeArray(array, 0, value);
+		message.writeObject(list);
+		message.finish();
+	}
+
+
+	private static double sum(double[] array) {
+		double sum = 0;
+		for (double value: array) {
+			sum += value;
+		}
+		return sum;
+	}
+
+
+	/**
+	 * The transports wait for each other (in-process) or take the addresses in order (NIO).
+	 */
+	private static Transport[] createInThreads(final TransportCreator creator) throws Exception {
+		final Transport[] transports = new Transport[2];
+		Thread[] threads = new Thread[2];
+		for (int i = 0; i < 2; ++i) {
+			final int index = i;
+			threads[i] = new Thread(new Runnable() {
+				public void run() {
+					try {
+						transports[index] = creator.create();
+					} catch (IOException e) {
+						throw new RuntimeException(e);
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread: threads) {
+			thread.join();
+		}
+		return transports;
+	}
+
+
+	private interface TransportCreator {
+		Transport create() throws IOException;
+	}
+
+
+	private static class Collector implements MessageHandler {
+
+		private BlockingQueue<Integer> values = new LinkedBlockingQueue<Integer>();
+
+		public void handle(IncomingMessage message) throws IOException, ClassNotFoundException {
+			int value = message.readInt();
+			double[] array = new double[value];
+			message.readArray(array, 0, value);
+			message.readObject();
+			values.add(value);
+		}
+
+		private int next() throws InterruptedException {
+			Integer value = values.poll(10, TimeUnit.SECONDS);
+			assertNotNull("Message not received", value);
+			return value;
+		}
+	}
+}
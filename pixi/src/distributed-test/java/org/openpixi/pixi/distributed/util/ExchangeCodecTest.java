@@ -0,0 +1,115 @@
+package org.openpixi.pixi.distributed.util;
+
+import junit.framework.TestCase;
+import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.grid.Cell;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes and decodes particles and cells and checks the transferred attributes.
+ */
+public class ExchangeCodecTest extends TestCase {
+
+	public void testLeavingParticles() {
+		List<Particle> particles = createParticles(5);
+		ExchangeCodec codec = new ExchangeCodec();
+		List<Particle> decoded = codec.decodeLeavingParticles(
+				codec.encodeLeavingParticles(particles), particles.size());
+
+		assertEquals(particles.size(), decoded.size());
+		for (int i = 0; i < particles.size(); ++i) {
+			Particle expected = particles.get(i);
+			Particle actual = decoded.get(i);
+			assertEquals(expected.getX(), actual.getX());
+			assertEquals(expected.getVy(), actual.getVy());
+			assertEquals(expected.getMass(), actual.getMass());
+			assertEquals(expected.getPrevY(), actual.getPrevY());
+			assertEquals(expected.getPrevBz(), actual.getPrevBz());
+			assertEquals(expected.getPrevLinearDragCoefficient(), actual.getPrevLinearDragCoefficient());
+		}
+	}
+
+
+	public void testGhostParticlesArePooled() {
+		ExchangeCodec codec = new ExchangeCodec();
+		List<Particle> particles = createParticles(4);
+		List<Particle> first = codec.decodeGhostParticles(codec.encodeGhostParticles(particles), 4);
+		List<Particle> second = codec.decodeGhostParticles(codec.encodeGhostParticles(particles), 3);
+		List<Particle> third = codec.decodeGhostParticles(codec.encodeGhostParticles(particles), 4);
+
+		assertNotSame(first, second);
+		assertSame(first, third);
+		assertEquals(3, second.size());
+		assertEquals(particles.get(2).getPrevX(), third.get(2).getPrevX());
+		assertEquals(particles.get(3).getCharge(), third.get(3).getCharge());
+	}
+
+
+	/**
+	 * The aggregated exchange packs the leaving particles followed by the ghost particles.
+	 */
+	public void testStepParticles() {
+		List<Particle> leaving = createParticles(3);
+		List<Particle> ghosts = createParticles(5);
+		ExchangeCodec codec = new ExchangeCodec();
+		double[] data = codec.encodeParticles(leaving, ghosts);
+
+		List<Particle> decodedLeaving = codec.decodeLeavingParticles(data, 0, leaving.size());
+		List<Particle> decodedGhosts = codec.decodeGhostParticles(
+				data, leaving.size() * ExchangeCodec.LEAVING_PARTICLE_SIZE, ghosts.size());
+
+		assertEquals(3, decodedLeaving.size());
+		assertEquals(5, decodedGhosts.size());
+		assertEquals(leaving.get(2).getPrevBz(), decodedLeaving.get(2).getPrevBz());
+		assertEquals(ghosts.get(0).getX(), decodedGhosts.get(0).getX());
+		assertEquals(ghosts.get(4).getCharge(), decodedGhosts.get(4).getCharge());
+	}
+
+
+	public void testCells() {
+		List<Cell> cells = new ArrayList<Cell>();
+		for (int i = 0; i < 3; ++i) {
+			Cell cell = new Cell();
+			cell.setEx(i + 0.1);
+			cell.setEy(i + 0.2);
+			cell.setBz(i + 0.3);
+			cell.setBzo(i + 0.4);
+			cells.add(cell);
+		}
+
+		ExchangeCodec codec = new ExchangeCodec();
+		List<Cell> decoded = codec.decodeCells(codec.encodeCells(cells), cells.size());
+		Cell ghost = new Cell();
+		ghost.addJx(5);
+		ExchangeCodec.copyFields(decoded.get(2), ghost);
+
+		assertEquals(2.1, ghost.getEx());
+		assertEquals(2.2, ghost.getEy());
+		assertEquals(2.3, ghost.getBz());
+		assertEquals(2.4, ghost.getBzo());
+		// The current of the ghost cell is not transferred
+		assertEquals(5.0, ghost.getJx());
+	}
+
+
+	private List<Particle> createParticles(int count) {
+		List<Particle> particles = new ArrayList<Particle>();
+		for (int i = 0; i < count; ++i) {
+			Particle p = new Particle();
+			p.setX(i + 0.5);
+			p.setY(i + 1.5);
+			p.setVx(0.1 * i);
+			p.setVy(-0.1 * i);
+			p.setMass(1 + i);
+			p.setCharge(-i);
+			p.setPrevX(i + 0.4);
+			p.setPrevY(i + 1.4);
+			p.setPrevBz(0.3 * i);
+			p.setPrevLinearDragCoefficient(0.01 * i);
+			particles.add(p);
+		}
+		return particles;
+	}
+}
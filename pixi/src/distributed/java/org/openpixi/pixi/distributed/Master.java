@@ -1,10 +1,11 @@
 package org.openpixi.pixi.distributed;
 
-import org.openpixi.pixi.distributed.ibis.IbisRegistry;
-import org.openpixi.pixi.distributed.ibis.MasterToWorkers;
+import org.openpixi.pixi.distributed.communication.MasterToWorkers;
 import org.openpixi.pixi.distributed.partitioning.Partitioner;
-import org.openpixi.pixi.distributed.partitioning.SimplePartitioner;
+import org.openpixi.pixi.distributed.partitioning.WeightedPartitioner;
+import org.openpixi.pixi.distributed.transport.Transport;
 import org.openpixi.pixi.distributed.util.CountLock;
+import org.openpixi.pixi.distributed.util.IncomingLoadReportHandler;
 import org.openpixi.pixi.distributed.util.IncomingResultHandler;
 import org.openpixi.pixi.physics.Particle;
 import org.openpixi.pixi.physics.ParticleGridInitializer;
@@ -19,6 +20,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -48,6 +50,11 @@ public class Master {
 
 	private CountLock resultsLock;
 
+	/* Load reports received from workers */
+	private int[] particleCounts;
+	private double[] computeTimes;
+	private CountLock loadReportsLock;
+
 
 	public Grid getFinalGrid() {
 		return finalGrid;
@@ -57,15 +64,14 @@ public class Master {
 		return finalParticles;
 	}
 
+	public IntBox[] getPartitions() {
+		return partitions;
+	}
+
 
-	public Master(IbisRegistry registry, Settings settings) {
+	public Master(Transport transport, Settings settings) {
 		this.settings = settings;
-		try {
-			communicator = new MasterToWorkers(registry, new ResultHandler());
-		} catch (Exception e) {
-			e.printStackTrace();
-			throw new RuntimeException(e);
-		}
+		communicator = new MasterToWorkers(transport, new ResultHandler(), new LoadReportHandler());
 
 		// Initialize the grid
 
@@ -87,24 +93,109 @@ public class Master {
 		}
 
 		resultsLock = new CountLock(settings.getNumOfNodes());
+
+		particleCounts = new int[settings.getNumOfNodes()];
+		computeTimes = new double[settings.getNumOfNodes()];
+		loadReportsLock = new CountLock(settings.getNumOfNodes());
 	}
 
 
 	public void distributeProblem() {
 		// Partition the problem
-		Partitioner partitioner = new SimplePartitioner();
+		Partitioner partitioner = new WeightedPartitioner();
 		partitions = partitioner.partition(
-				settings.getGridCellsX(), settings.getGridCellsY(), settings.getNumOfNodes());
+				settings.getGridCellsX(), settings.getGridCellsY(), settings.getNumOfNodes(),
+				getCellWeights(initialParticles));
 
 		// Log the partitioning scheme
 		Logger logger = LoggerFactory.getLogger(this.getClass());
 		logger.debug("Problem partitioning:\n{}", partitioner);
 
-		// Partition the data
-		List<Particle> initialParticlesCopy = copyInitialParticles();
-		List<List<Particle>> particlePartitions = partitionParticles(
-				partitions, initialParticlesCopy);
-		Cell[][][] gridPartitions = partitionGrid(partitions, initialGrid);
+		distribute(copyInitialParticles(), initialGrid);
+	}
+
+
+	/**
+	 * Waits for the load reports of all the workers and tells them
+	 * whether the simulation is going to be repartitioned.
+	 * The imbalance is the computation time of the slowest worker divided by the mean one.
+	 */
+	public boolean decideRepartitioning() {
+		loadReportsLock.waitForCount();
+		loadReportsLock.reset();
+
+		double maxTime = 0;
+		double totalTime = 0;
+		for (double time: computeTimes) {
+			maxTime = Math.max(maxTime, time);
+			totalTime += time;
+		}
+		double imbalance = (totalTime > 0) ? maxTime * computeTimes.length / totalTime : 1;
+		boolean repartition = imbalance > settings.getLoadImbalanceThreshold();
+
+		Logger logger = LoggerFactory.getLogger(this.getClass());
+		logger.debug("Load imbalance {} (particles {}, compute times {}), repartition: {}",
+				new Object[] {imbalance, Arrays.toString(particleCounts),
+						Arrays.toString(computeTimes), repartition});
+
+		for (int workerID = 0; workerID < partitions.length; workerID++) {
+			try {
+				communicator.sendLoadDecision(workerID, repartition);
+			} catch (IOException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e);
+			}
+		}
+		return repartition;
+	}
+
+
+	/**
+	 * Collects the current state from the workers, partitions the simulation area again
+	 * so that the partitions hold similar numbers of particles and distributes the new problem.
+	 * The workers rebuild their simulations upon receiving the new problem.
+	 */
+	public void repartition() {
+		collectResults();
+
+		Partitioner partitioner = new WeightedPartitioner();
+		partitions = partitioner.partition(
+				settings.getGridCellsX(), settings.getGridCellsY(), settings.getNumOfNodes(),
+				getCellWeights(finalParticles));
+
+		Logger logger = LoggerFactory.getLogger(this.getClass());
+		logger.debug("Problem repartitioning:\n{}", partitioner);
+
+		distribute(finalParticles, finalGrid);
+	}
+
+
+	/**
+	 * Each cell costs the field solving plus the work on its particles.
+	 * The particles have global coordinates.
+	 */
+	private double[][] getCellWeights(List<Particle> particles) {
+		double[][] cellWeights = new double[settings.getGridCellsX()][settings.getGridCellsY()];
+		for (double[] column: cellWeights) {
+			Arrays.fill(column, 1);
+		}
+		for (Particle p: particles) {
+			int cellX = (int)Math.floor(p.getX() / settings.getCellWidth());
+			int cellY = (int)Math.floor(p.getY() / settings.getCellHeight());
+			cellX = Math.min(Math.max(cellX, 0), settings.getGridCellsX() - 1);
+			cellY = Math.min(Math.max(cellY, 0), settings.getGridCellsY() - 1);
+			cellWeights[cellX][cellY] += 1;
+		}
+		return cellWeights;
+	}
+
+
+	/**
+	 * Sends each worker its part of the particles and of the grid according to the partitions.
+	 */
+	private void distribute(List<Particle> particles, Grid grid) {
+		List<List<Particle>> particlePartitions = partitionParticles(partitions, particles);
+		Cell[][][] gridPartitions = partitionGrid(partitions, grid);
 
 		// Send to each worker
 		for (int workerID = 0; workerID < partitions.length; workerID++) {
@@ -287,11 +378,6 @@ public class Master {
 	}
 
 
-	public void close() {
-		communicator.close();
-	}
-
-
 	private class ResultHandler implements IncomingResultHandler {
 		public void handle(int workerID, List<Particle> particles, Cell[][] cells) {
 			gridPartitions[workerID] = cells;
@@ -299,4 +385,13 @@ public class Master {
 			resultsLock.increase();
 		}
 	}
+
+
+	private class LoadReportHandler implements IncomingLoadReportHandler {
+		public void handle(int workerID, int numOfParticles, double computeTime) {
+			particleCounts[workerID] = numOfParticles;
+			computeTimes[workerID] = computeTime;
+			loadReportsLock.increase();
+		}
+	}
 }
@@ -1,15 +1,20 @@
 package org.openpixi.pixi.distributed;
 
-import org.openpixi.pixi.distributed.ibis.IbisRegistry;
+import org.openpixi.pixi.distributed.ibis.IbisTransport;
+import org.openpixi.pixi.distributed.transport.InProcessTransport;
+import org.openpixi.pixi.distributed.transport.NioTransport;
+import org.openpixi.pixi.distributed.transport.Transport;
 import org.openpixi.pixi.physics.Settings;
 
+import java.io.IOException;
+
 /**
  * Wraps up the difference between master and ordinary worker and just runs a node.
  */
 public class Node implements Runnable {
 
 	private Settings settings;
-	private IbisRegistry registry;
+	private Transport transport;
 	private Master master;
 	private Worker worker;
 
@@ -40,26 +45,68 @@ public class Node implements Runnable {
 
 
 	/**
-	 * There is waiting for other nodes in IbisRegistry creation
+	 * There is waiting for other nodes in the transport creation (Ibis and in-process transport)
 	 * => If more nodes exists in a single jvm, they have to call distribute in separate threads!
 	 */
 	public void distribute() {
-		registry = new IbisRegistry(
-				settings.getNumOfNodes(), settings.getIplServer(), settings.getIplPool());
-		worker = new Worker(registry, settings);
-		if (registry.isMaster()) {
-			master = new Master(registry, settings);
+		transport = createTransport();
+		worker = new Worker(transport, settings);
+		if (transport.isMaster()) {
+			master = new Master(transport, settings);
 			master.distributeProblem();
 		}
 		worker.receiveProblem();
 	}
 
 
+	private Transport createTransport() {
+		try {
+			switch (settings.getTransportType()) {
+				case Ibis:
+					return new IbisTransport(
+							settings.getNumOfNodes(), settings.getIplServer(), settings.getIplPool());
+				case Nio:
+					return new NioTransport(settings.getNodeAddresses());
+				case InProcess:
+					return new InProcessTransport(settings.getIplPool(), settings.getNumOfNodes());
+				default:
+					throw new RuntimeException("Unknown transport: " + settings.getTransportType());
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new RuntimeException(e);
+		}
+	}
+
+
 	/**
 	 * Executes one step of the simulation.
 	 */
 	public void step() {
 		worker.step();
+		if (worker.isLoadBalancingStep()) {
+			balanceLoad();
+		}
+	}
+
+
+	/**
+	 * The workers report their load to the master which decides whether to repartition.
+	 * Upon repartitioning all the workers send their state to the master
+	 * and receive the new problem (all the nodes have to take part).
+	 */
+	private void balanceLoad() {
+		worker.sendLoadReport();
+		if (master != null) {
+			master.decideRepartitioning();
+		}
+		if (worker.waitForLoadDecision()) {
+			worker.sendState();
+			if (master != null) {
+				master.repartition();
+			}
+			worker.receiveProblem();
+		}
 	}
 
 
@@ -73,13 +120,9 @@ public class Node implements Runnable {
 
 	public void close() {
 		try {
-			// Wait for everybody to receive the last message before closing ibis.
+			// Wait for everybody to receive the last message before closing the transport.
 			Thread.sleep(100);
-			worker.close();
-			if (master != null) {
-				master.close();
-			}
-			registry.close();
+			transport.close();
 		} catch (Exception e) {
 			e.printStackTrace();
 			throw new RuntimeException(e);
@@ -88,6 +131,6 @@ public class Node implements Runnable {
 
 
 	public boolean isMaster() {
-		return registry.isMaster();
+		return transport.isMaster();
 	}
 }
@@ -1,10 +1,12 @@
 package org.openpixi.pixi.distributed;
 
-import org.openpixi.pixi.distributed.ibis.WorkerToWorker;
+import org.openpixi.pixi.distributed.communication.WorkerToWorker;
 import org.openpixi.pixi.distributed.util.BooleanLock;
+import org.openpixi.pixi.distributed.util.ExchangeCodec;
 import org.openpixi.pixi.distributed.util.IncomingCellsHandler;
 import org.openpixi.pixi.distributed.util.IncomingParticlesHandler;
 import org.openpixi.pixi.distributed.util.IncomingPointsHandler;
+import org.openpixi.pixi.distributed.util.IncomingStepParticlesHandler;
 import org.openpixi.pixi.physics.Particle;
 import org.openpixi.pixi.physics.grid.Cell;
 import org.openpixi.pixi.physics.grid.Grid;
@@ -23,11 +25,19 @@ public class SharedData {
 	/** Handles the network communication with neighbor. */
 	private WorkerToWorker communicator;
 
+	/**
+	 * In the aggregated exchange the leaving and ghost particles arrive in one message
+	 * (see SharedDataManager.startExchangeOfParticles()).
+	 */
+	private boolean aggregatedExchange;
+
 	/* Locks to wait for the data to be received. */
 	private BooleanLock arrivingParticlesLock = new BooleanLock();
 	private BooleanLock ghostParticlesLock = new BooleanLock();
 	private BooleanLock ghostCellsLock = new BooleanLock();
 	private BooleanLock ghostCellsIndexesLock = new BooleanLock();
+	/** Single completion signal of the particles of the aggregated exchange. */
+	private BooleanLock stepParticlesLock = new BooleanLock();
 
 	/** Maps the list of outgoing border cells to remote cells (needs to be sent out at the beginning). */
 	private List<Point> borderCellsMap = new ArrayList<Point>();
@@ -72,13 +82,15 @@ public class SharedData {
 	}
 
 
-	public SharedData(WorkerToWorker communicator) {
+	public SharedData(WorkerToWorker communicator, boolean aggregatedExchange) {
 		this.communicator = communicator;
+		this.aggregatedExchange = aggregatedExchange;
 
 		communicator.setGhostCellsHandler(new GhostCellsHandler());
 		communicator.setGhostParticlesHandler(new GhostParticlesHandler());
 		communicator.setArrivingParticlesHandler(new ArrivingParticlesHandler());
 		communicator.setGhostCellsIndexesHandler(new GhostCellsIndexesHandler());
+		communicator.setStepParticlesHandler(new StepParticlesHandler());
 	}
 
 
@@ -119,13 +131,26 @@ public class SharedData {
 	}
 
 
+	/**
+	 * Sends the leaving and border particles in one message (aggregated exchange).
+	 */
+	public void sendStepParticles() {
+		communicator.sendStepParticles(leavingParticles, borderParticles);
+	}
+
+
 	public void sendBorderCells() {
 		communicator.sendBorderCells(borderCells);
 	}
 
 
 	public void waitForArrivingParticles() {
-		arrivingParticlesLock.waitForTrue();
+		if (aggregatedExchange) {
+			stepParticlesLock.waitForTrue();
+		}
+		else {
+			arrivingParticlesLock.waitForTrue();
+		}
 	}
 
 
@@ -137,7 +162,7 @@ public class SharedData {
 	public void waitForGhostCells() {
 		ghostCellsLock.waitForTrue();
 		for (int i = 0; i < localGhostCells.size(); ++i) {
-			globalGhostCells.get(i).copyFrom(localGhostCells.get(i));
+			ExchangeCodec.copyFields(localGhostCells.get(i), globalGhostCells.get(i));
 		}
 	}
 
@@ -155,7 +180,12 @@ public class SharedData {
 	 * Blocks until the ghost particles are received.
 	 */
 	public List<Particle> getGhostParticles() {
-		ghostParticlesLock.waitForTrue();
+		if (aggregatedExchange) {
+			stepParticlesLock.waitForTrue();
+		}
+		else {
+			ghostParticlesLock.waitForTrue();
+		}
 		return ghostParticles;
 	}
 
@@ -173,6 +203,7 @@ public class SharedData {
 	public void cleanUpParticleCommunication() {
 		ghostParticlesLock.reset();
 		arrivingParticlesLock.reset();
+		stepParticlesLock.reset();
 		leavingParticles.clear();
 		borderParticles.clear();
 	}
@@ -187,15 +218,6 @@ public class SharedData {
 	}
 
 
-	public void closeSendPorts() {
-		communicator.closeSendPorts();
-	}
-
-
-	public void closeReceivePorts() {
-		communicator.closeReceivePorts();
-	}
-
 
 	private class GhostCellsIndexesHandler implements IncomingPointsHandler {
 
@@ -249,4 +271,18 @@ public class SharedData {
 			arrivingParticlesLock.setToTrue();
 		}
 	}
+
+
+	private class StepParticlesHandler implements IncomingStepParticlesHandler {
+
+		/**
+		 * The sender has already registered the ghost particles derived from the arriving
+		 * particles (see RemoteBorders); thus, the border gates are not applied here.
+		 */
+		public void handle(List<Particle> arriving, List<Particle> ghosts) {
+			arrivingParticles = arriving;
+			ghostParticles = ghosts;
+			stepParticlesLock.setToTrue();
+		}
+	}
 }
@@ -1,7 +1,7 @@
 package org.openpixi.pixi.distributed;
 
-import org.openpixi.pixi.distributed.ibis.IbisRegistry;
-import org.openpixi.pixi.distributed.ibis.WorkerToWorker;
+import org.openpixi.pixi.distributed.communication.WorkerToWorker;
+import org.openpixi.pixi.distributed.transport.Transport;
 import org.openpixi.pixi.physics.GeneralBoundaryType;
 import org.openpixi.pixi.physics.Particle;
 import org.openpixi.pixi.physics.grid.Grid;
@@ -9,6 +9,7 @@ import org.openpixi.pixi.physics.movement.boundary.ParticleBoundaries;
 import org.openpixi.pixi.physics.util.IntBox;
 import org.openpixi.pixi.physics.util.Point;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -19,28 +20,59 @@ import java.util.Map;
  * Provides access to the shared data and operations upon the shared data.
  *
  * The shared data for a specific neighbor is created according to demand on the fly.
+ *
+ * The particles are exchanged either in two rounds (the leaving particles and then
+ * the ghost particles, which include the arriving particles) or, in the aggregated exchange,
+ * in one message per neighbor (see startExchangeOfParticles()).
  */
 public class SharedDataManager {
 
 	/** Maps region to neighbor. */
 	private NeighborMap neighborMap;
 
+	private int thisWorkerID;
+	private GeneralBoundaryType boundaryType;
+	private IntBox[] partitions;
+	private IntBox myPartition;
+	private IntBox globalSimArea;
+
 	/** Maps neighbor to SharedData. */
 	private Map<Integer, SharedData> sharedData = new HashMap<Integer, SharedData>();
 
-	private IbisRegistry registry;
+	private Transport transport;
+	/** Exchange channel of the partitioning this manager belongs to. */
+	private int channel;
 
 	private Thread particleExchangeThread;
 
+	private boolean aggregatedExchange;
+	/**
+	 * Ghost particles which would come back from the neighbors in the aggregated exchange
+	 * (particles leaving to a neighbor which end up in its border next to this node).
+	 */
+	private List<Particle> localGhostParticles = new ArrayList<Particle>();
+
+	/** Time spent waiting for the neighbors (in nanoseconds). */
+	private long waitingTime = 0;
+
 
 	public SharedDataManager(
 			int thisWorkerID,
 			IntBox[] partitions,
 	        IntBox globalSimArea,
 	        GeneralBoundaryType boundaryType,
-	        IbisRegistry registry) {
-
-		this.registry = registry;
+	        Transport transport,
+	        int channel,
+	        boolean aggregatedExchange) {
+
+		this.transport = transport;
+		this.channel = channel;
+		this.aggregatedExchange = aggregatedExchange;
+		this.thisWorkerID = thisWorkerID;
+		this.boundaryType = boundaryType;
+		this.partitions = partitions;
+		this.myPartition = partitions[thisWorkerID];
+		this.globalSimArea = globalSimArea;
 		this.neighborMap = new NeighborMap(thisWorkerID, partitions, globalSimArea, boundaryType);
 	}
 
@@ -50,6 +82,26 @@ public class SharedDataManager {
 	//----------------------------------------------------------------------------------------------
 
 
+	public boolean isAggregatedExchange() {
+		return aggregatedExchange;
+	}
+
+
+	public int getThisWorkerID() {
+		return thisWorkerID;
+	}
+
+
+	public IntBox getPartition(int worker) {
+		return partitions[worker];
+	}
+
+
+	public int getBoundaryNeighbor(int boundaryRegion) {
+		return neighborMap.getBoundaryNeighbor(boundaryRegion);
+	}
+
+
 	public SharedData getBoundarySharedData(int boundaryRegion) {
 		int neighbor = neighborMap.getBoundaryNeighbor(boundaryRegion);
 		if (neighbor != NeighborMap.NO_NEIGHBOR) {
@@ -68,17 +120,109 @@ public class SharedDataManager {
 
 	public List<SharedData> getBorderSharedData(int borderRegion) {
 		List<SharedData> retval = new ArrayList<SharedData>();
+		for (int neighbor: getBorderNeighbors(neighborMap, borderRegion)) {
+			retval.add(getSharedData(neighbor));
+		}
+		return retval;
+	}
+
+
+	/**
+	 * Border neighbors of another worker in the given border region of the other worker.
+	 * The order matches getBorderDirections(worker, borderRegion).
+	 */
+	public List<Integer> getBorderNeighbors(int worker, int borderRegion) {
+		return getBorderNeighbors(
+				new NeighborMap(worker, partitions, globalSimArea, boundaryType), borderRegion);
+	}
+
+
+	private static List<Integer> getBorderNeighbors(NeighborMap neighborMap, int borderRegion) {
+		List<Integer> retval = new ArrayList<Integer>();
 		int[] neighbors = neighborMap.getBorderNeighbors(borderRegion);
 		for (int neighbor: neighbors) {
 			if (neighbor != NeighborMap.NO_NEIGHBOR) {
-				retval.add(getSharedData(neighbor));
+				retval.add(neighbor);
 			}
 		}
 		return retval;
 	}
 
 
+	/**
+	 * Unlike getBorderSharedData() does not create the shared data.
+	 * @return null if the given worker is not a neighbor of this worker
+	 */
+	public SharedData getExistingSharedData(int neighbor) {
+		return sharedData.get(neighbor);
+	}
+
+
+	/**
+	 * Position (in cells) of the origin of the neighbor in the given direction
+	 * relative to the origin of this partition.
+	 * The partitions form columns and rows, however, the columns (rows) do not need to have
+	 * the same width (height); thus, the neighbors before this partition
+	 * are shifted by their own size.
+	 */
+	public Point getNeighborOffset(Point direction) {
+		return getNeighborOffset(myPartition, direction);
+	}
+
+
+	/**
+	 * Same as getNeighborOffset(direction) but relative to the origin of another worker.
+	 */
+	public Point getNeighborOffset(int worker, Point direction) {
+		return getNeighborOffset(partitions[worker], direction);
+	}
+
+
+	private Point getNeighborOffset(IntBox myPartition, Point direction) {
+		int xoffset = 0;
+		if (direction.x > 0) {
+			xoffset = myPartition.xsize();
+		}
+		else if (direction.x < 0) {
+			int previousColumn = (myPartition.xmin() - 1 + globalSimArea.xsize()) % globalSimArea.xsize();
+			for (IntBox partition: partitions) {
+				if (partition.xmax() == previousColumn) {
+					xoffset = -partition.xsize();
+				}
+			}
+		}
+
+		int yoffset = 0;
+		if (direction.y > 0) {
+			yoffset = myPartition.ysize();
+		}
+		else if (direction.y < 0) {
+			int previousRow = (myPartition.ymin() - 1 + globalSimArea.ysize()) % globalSimArea.ysize();
+			for (IntBox partition: partitions) {
+				if (partition.ymax() == previousRow) {
+					yoffset = -partition.ysize();
+				}
+			}
+		}
+		return new Point(xoffset, yoffset);
+	}
+
+
 	public List<Point> getBorderDirections(int borderRegion) {
+		return getBorderDirections(neighborMap, borderRegion);
+	}
+
+
+	/**
+	 * Border directions of another worker in the given border region of the other worker.
+	 */
+	public List<Point> getBorderDirections(int worker, int borderRegion) {
+		return getBorderDirections(
+				new NeighborMap(worker, partitions, globalSimArea, boundaryType), borderRegion);
+	}
+
+
+	private static List<Point> getBorderDirections(NeighborMap neighborMap, int borderRegion) {
 		List<Point> retval = new ArrayList<Point>();
 		Point[] directions = neighborMap.getBorderNeighborsDirections(borderRegion);
 		if (directions != null) {
@@ -99,7 +243,8 @@ public class SharedDataManager {
 		if (!sharedData.containsKey(neighbor)) {
 			sharedData.put(
 					neighbor,
-					new SharedData(new WorkerToWorker(registry, neighbor)));
+					new SharedData(
+							new WorkerToWorker(transport, neighbor, channel), aggregatedExchange));
 		}
 		return sharedData.get(neighbor);
 	}
@@ -126,18 +271,62 @@ public class SharedDataManager {
 	}
 
 
+	/**
+	 * Stops the communication with the neighbors (the partitioning is abandoned).
+	 * Should be called when no more messages from the neighbors are expected.
+	 */
+	public void close() {
+		try {
+			transport.closeChannel(channel);
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new RuntimeException(e);
+		}
+	}
+
+
+	/**
+	 * Total time spent by waiting for the data of the neighbors (in nanoseconds).
+	 * Used to tell the computation time from the communication time in load balancing.
+	 */
+	public long getWaitingTime() {
+		return waitingTime;
+	}
+
+
 	//----------------------------------------------------------------------------------------------
 	// Methods required during distributed simulation
 	//----------------------------------------------------------------------------------------------
 
 
+	/**
+	 * Ghost particle of this node registered by a neighbor's border gate in the aggregated exchange.
+	 */
+	public void registerLocalGhostParticle(Particle particle) {
+		localGhostParticles.add(particle);
+	}
+
+
 	/**
 	 * The exchange of particles can last some time as we have to wait for the arriving particles
 	 * before we send the border particles.
 	 * As we do not want to stall the calling thread,
 	 * we start the exchange of particles in a new thread.
+	 *
+	 * In the aggregated exchange the ghost particles which the neighbors would derive from
+	 * the arriving particles are already registered by this node (see RemoteBorders);
+	 * hence, there is nothing to wait for and all the particles of the step are sent
+	 * to each neighbor in one message right away.
+	 * This relies on the particles moving less than one cell per step.
 	 */
 	public void startExchangeOfParticles() {
+		if (aggregatedExchange) {
+			for (SharedData sd: sharedData.values()) {
+				sd.sendStepParticles();
+			}
+			return;
+		}
+
 		particleExchangeThread = new Thread(new Runnable() {
 			public void run() {
 				for (SharedData sd: sharedData.values()) {
@@ -157,19 +346,24 @@ public class SharedDataManager {
 
 
 	public List<Particle> getArrivingParticles() {
+		long start = System.nanoTime();
 		List<Particle> arrivingParticles = new ArrayList<Particle>();
 		for (SharedData sd: sharedData.values()) {
 			arrivingParticles.addAll(sd.getArrivingParticles());
 		}
+		waitingTime += System.nanoTime() - start;
 		return arrivingParticles;
 	}
 
 
 	public List<Particle> getGhostParticles() {
+		long start = System.nanoTime();
 		List<Particle> ghostParticles = new ArrayList<Particle>();
 		for (SharedData sd: sharedData.values()) {
 			ghostParticles.addAll(sd.getGhostParticles());
 		}
+		ghostParticles.addAll(localGhostParticles);
+		waitingTime += System.nanoTime() - start;
 		return ghostParticles;
 	}
 
@@ -191,9 +385,11 @@ public class SharedDataManager {
 
 
 	public void waitForGhostCells() {
+		long start = System.nanoTime();
 		for (SharedData sd: sharedData.values()) {
 			sd.waitForGhostCells();
 		}
+		waitingTime += System.nanoTime() - start;
 	}
 
 
@@ -216,25 +412,20 @@ public class SharedDataManager {
 		// (particularly wait for finishing the sending of border particles).
 		// Otherwise, we can end up concurrently modifying the border particles
 		// (this thread cleans up the list of border particles).
-		try {
-			particleExchangeThread.join();
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-			throw new RuntimeException(e);
+		if (!aggregatedExchange) {
+			long start = System.nanoTime();
+			try {
+				particleExchangeThread.join();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e);
+			}
+			waitingTime += System.nanoTime() - start;
 		}
+		localGhostParticles.clear();
 
 		for (SharedData sd: sharedData.values()) {
 			sd.cleanUpParticleCommunication();
 		}
 	}
-
-
-	public void close() {
-		for (SharedData sd: sharedData.values()) {
-			sd.closeSendPorts();
-		}
-		for (SharedData sd: sharedData.values()) {
-			sd.closeReceivePorts();
-		}
-	}
 }
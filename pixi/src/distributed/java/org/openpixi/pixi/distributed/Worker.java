@@ -2,10 +2,11 @@ package org.openpixi.pixi.distributed;
 
 import org.openpixi.pixi.distributed.grid.DistributedGridFactory;
 import org.openpixi.pixi.distributed.grid.DistributedInterpolation;
-import org.openpixi.pixi.distributed.ibis.IbisRegistry;
-import org.openpixi.pixi.distributed.ibis.WorkerToMaster;
+import org.openpixi.pixi.distributed.communication.WorkerToMaster;
 import org.openpixi.pixi.distributed.movement.boundary.DistributedParticleBoundaries;
+import org.openpixi.pixi.distributed.transport.Transport;
 import org.openpixi.pixi.distributed.util.BooleanLock;
+import org.openpixi.pixi.distributed.util.IncomingLoadDecisionHandler;
 import org.openpixi.pixi.distributed.util.IncomingProblemHandler;
 import org.openpixi.pixi.physics.Particle;
 import org.openpixi.pixi.physics.Settings;
@@ -46,21 +47,31 @@ public class Worker {
 
 	private BooleanLock recvProblemLock = new BooleanLock();
 
+	/* Load balancing */
+	private int numOfSteps = 0;
+	/** Each partitioning communicates over its own exchange channel. */
+	private int numOfPartitionings = 0;
+	/** Time spent computing (without waiting for the neighbors) since the last load report. */
+	private long computeTime = 0;
+	private boolean repartition;
+	private BooleanLock recvLoadDecisionLock = new BooleanLock();
 
-	public Worker(IbisRegistry registry, Settings settings) {
+
+	public Worker(Transport transport, Settings settings) {
 		this.globalSettings = settings;
-		try {
-			communicator = new WorkerToMaster(registry, new ProblemHandler());
-		} catch (Exception e) {
-			e.printStackTrace();
-			throw new RuntimeException(e);
-		}
-		workerID = registry.convertIbisIDToWorkerID(registry.getIbis().identifier());
+		communicator = new WorkerToMaster(transport, new ProblemHandler(), new LoadDecisionHandler());
+		workerID = transport.getWorkerID();
 	}
 
 
 	public void step() {
+		long waitingTime = sharedDataManager.getWaitingTime();
+		long start = System.nanoTime();
+
 		simulation.step();
+
+		computeTime += System.nanoTime() - start - (sharedDataManager.getWaitingTime() - waitingTime);
+		++numOfSteps;
 	}
 
 
@@ -71,6 +82,48 @@ public class Worker {
 	}
 
 
+	/**
+	 * After each load balancing interval the load is reported to the master.
+	 */
+	public boolean isLoadBalancingStep() {
+		int interval = globalSettings.getLoadBalancingInterval();
+		return interval > 0 && numOfSteps % interval == 0;
+	}
+
+
+	public void sendLoadReport() {
+		try {
+			communicator.sendLoadReport(
+					workerID, simulation.particles.size(), computeTime * 1e-9);
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new RuntimeException(e);
+		}
+		computeTime = 0;
+	}
+
+
+	/**
+	 * Blocks until the master decides whether to repartition the simulation.
+	 */
+	public boolean waitForLoadDecision() {
+		recvLoadDecisionLock.waitForTrue();
+		recvLoadDecisionLock.reset();
+		return repartition;
+	}
+
+
+	/**
+	 * Sends the current state to the master and abandons the current partitioning.
+	 * The simulation continues after receiving the new problem (see receiveProblem()).
+	 */
+	public void sendState() {
+		simulation.completeAllParticles();
+		sendResults();
+		sharedDataManager.close();
+	}
+
+
 	public void sendResults() {
 		Cell[][] finalCells = getFinalCells(simulation.grid);
 
@@ -184,7 +237,9 @@ public class Worker {
 				partitions,
 				simulationAreaInCellDimensions,
 				localSettings.getBoundaryType(),
-				communicator.getRegistry());
+				communicator.getTransport(),
+				Transport.EXCHANGE_CHANNEL + numOfPartitionings++,
+				globalSettings.useAggregatedExchange());
 	}
 
 
@@ -204,16 +259,11 @@ public class Worker {
 				0, localSettings.getSimulationHeight() - localSettings.getCellHeight());
 		return new DistributedParticleBoundaries(
 				simulationAreaInParticleDimensions, innerSimulationArea,
+				localSettings.getCellWidth(), localSettings.getCellHeight(),
 				localSettings.getParticleBoundary(), sharedDataManager);
 	}
 
 
-	public void close() {
-		communicator.close();
-		sharedDataManager.close();
-	}
-
-
 	private class ProblemHandler implements IncomingProblemHandler {
 		public void handle(IntBox[] partitions, List<Particle> particles, Cell[][] cells) {
 			Worker.this.partitions = partitions;
@@ -222,4 +272,12 @@ public class Worker {
 			recvProblemLock.setToTrue();
 		}
 	}
+
+
+	private class LoadDecisionHandler implements IncomingLoadDecisionHandler {
+		public void handle(boolean repartition) {
+			Worker.this.repartition = repartition;
+			recvLoadDecisionLock.setToTrue();
+		}
+	}
 }
@@ -0,0 +1,97 @@
+package org.openpixi.pixi.distributed.communication;
+
+import org.openpixi.pixi.distributed.transport.IncomingMessage;
+import org.openpixi.pixi.distributed.transport.MessageHandler;
+import org.openpixi.pixi.distributed.transport.OutgoingMessage;
+import org.openpixi.pixi.distributed.transport.Transport;
+import org.openpixi.pixi.distributed.util.IncomingLoadReportHandler;
+import org.openpixi.pixi.distributed.util.IncomingResultHandler;
+import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.grid.Cell;
+import org.openpixi.pixi.physics.util.IntBox;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Handles the communication connected with problem distribution and results collection
+ * on the side of the Master.
+ */
+public class MasterToWorkers {
+
+	/* The following constants identify the messages from the master to the workers. */
+	static final int PROBLEM_MSG = 0;
+	static final int LOAD_DECISION_MSG = 1;
+
+	/* The following constants identify the messages from the workers to the master. */
+	static final int RESULTS_MSG = 0;
+	static final int LOAD_REPORT_MSG = 1;
+
+	private Transport transport;
+	private IncomingResultHandler resultHandler;
+	private IncomingLoadReportHandler loadReportHandler;
+
+
+	public MasterToWorkers(Transport transport,
+	                       IncomingResultHandler resultHandler,
+	                       IncomingLoadReportHandler loadReportHandler) {
+		this.transport = transport;
+		this.resultHandler = resultHandler;
+		this.loadReportHandler = loadReportHandler;
+
+		IncomingResults incomingResults = new IncomingResults();
+		for (int workerID = 0; workerID < transport.getNumOfWorkers(); ++workerID) {
+			transport.openReceiver(Transport.GATHER_CHANNEL, workerID, incomingResults);
+			transport.enableDelivery(Transport.GATHER_CHANNEL, workerID);
+		}
+	}
+
+
+	public void sendProblem(int workerID, IntBox[] partitions,
+	                        List<Particle> particles,
+	                        Cell[][] cells) throws IOException {
+		OutgoingMessage message = transport.newMessage(Transport.DISTRIBUTE_CHANNEL, workerID);
+		message.writeInt(PROBLEM_MSG);
+		message.writeObject(partitions);
+		message.writeObject(particles);
+		message.writeObject(cells);
+		message.finish();
+	}
+
+
+	/**
+	 * Tells the worker whether the simulation is going to be repartitioned
+	 * (then the worker sends its results and waits for a new problem).
+	 */
+	public void sendLoadDecision(int workerID, boolean repartition) throws IOException {
+		OutgoingMessage message = transport.newMessage(Transport.DISTRIBUTE_CHANNEL, workerID);
+		message.writeInt(LOAD_DECISION_MSG);
+		message.writeInt(repartition ? 1 : 0);
+		message.finish();
+	}
+
+
+	private class IncomingResults implements MessageHandler {
+		public void handle(IncomingMessage message) throws IOException, ClassNotFoundException {
+			int msgType = message.readInt();
+			int workerID = message.readInt();
+			switch (msgType) {
+
+				case RESULTS_MSG:
+					List<Particle> particles = (List<Particle>)message.readObject();
+					Cell[][] cells = (Cell[][])message.readObject();
+					resultHandler.handle(workerID, particles, cells);
+					return;
+
+				case LOAD_REPORT_MSG:
+					int numOfParticles = message.readInt();
+					double computeTime = message.readDouble();
+					loadReportHandler.handle(workerID, numOfParticles, computeTime);
+					return;
+
+				default:
+					assert false: "Unreachable code detected!";
+			}
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package org.openpixi.pixi.distributed.communication;
+
+import org.openpixi.pixi.distributed.transport.IncomingMessage;
+import org.openpixi.pixi.distributed.transport.MessageHandler;
+import org.openpixi.pixi.distributed.transport.OutgoingMessage;
+import org.openpixi.pixi.distributed.transport.Transport;
+import org.openpixi.pixi.distributed.util.IncomingLoadDecisionHandler;
+import org.openpixi.pixi.distributed.util.IncomingProblemHandler;
+import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.grid.Cell;
+import org.openpixi.pixi.physics.util.IntBox;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Handles the communication connected with problem distribution and results collection
+ * on the side of the worker.
+ */
+public class WorkerToMaster {
+
+	private Transport transport;
+
+	private IncomingProblemHandler problemHandler;
+	private IncomingLoadDecisionHandler loadDecisionHandler;
+
+
+	public Transport getTransport() {
+		return transport;
+	}
+
+
+	public WorkerToMaster(Transport transport,
+	                      IncomingProblemHandler problemHandler,
+	                      IncomingLoadDecisionHandler loadDecisionHandler) {
+		this.transport = transport;
+		this.problemHandler = problemHandler;
+		this.loadDecisionHandler = loadDecisionHandler;
+
+		int masterID = transport.getMasterID();
+		transport.openReceiver(Transport.DISTRIBUTE_CHANNEL, masterID, new IncomingProblem());
+		transport.enableDelivery(Transport.DISTRIBUTE_CHANNEL, masterID);
+	}
+
+
+	public void sendResults(int workerID,
+	                        List<Particle> particles,
+	                        Cell[][] cells) throws IOException {
+		OutgoingMessage message = transport.newMessage(
+				Transport.GATHER_CHANNEL, transport.getMasterID());
+		message.writeInt(MasterToWorkers.RESULTS_MSG);
+		message.writeInt(workerID);
+		message.writeObject(particles);
+		message.writeObject(cells);
+		message.finish();
+	}
+
+
+	/**
+	 * @param computeTime time spent by the steps since the last report
+	 *                    without the waiting for the neighbors (in seconds)
+	 */
+	public void sendLoadReport(int workerID, int numOfParticles, double computeTime) throws IOException {
+		OutgoingMessage message = transport.newMessage(
+				Transport.GATHER_CHANNEL, transport.getMasterID());
+		message.writeInt(MasterToWorkers.LOAD_REPORT_MSG);
+		message.writeInt(workerID);
+		message.writeInt(numOfParticles);
+		message.writeDouble(computeTime);
+		message.finish();
+	}
+
+
+	private class IncomingProblem implements MessageHandler {
+		public void handle(IncomingMessage message) throws IOException, ClassNotFoundException {
+			int msgType = message.readInt();
+			switch (msgType) {
+
+				case MasterToWorkers.PROBLEM_MSG:
+					IntBox[] partitions = (IntBox[])message.readObject();
+					List<Particle> particles = (List<Particle>)message.readObject();
+					Cell[][] cells = (Cell[][])message.readObject();
+					problemHandler.handle(partitions, particles, cells);
+					return;
+
+				case MasterToWorkers.LOAD_DECISION_MSG:
+					loadDecisionHandler.handle(message.readInt() != 0);
+					return;
+
+				default:
+					assert false: "Unreachable code detected!";
+			}
+		}
+	}
+}
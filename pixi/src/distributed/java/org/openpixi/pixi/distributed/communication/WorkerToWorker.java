@@ -0,0 +1,212 @@
+package org.openpixi.pixi.distributed.communication;
+
+import org.openpixi.pixi.distributed.transport.IncomingMessage;
+import org.openpixi.pixi.distributed.transport.MessageHandler;
+import org.openpixi.pixi.distributed.transport.OutgoingMessage;
+import org.openpixi.pixi.distributed.transport.Transport;
+import org.openpixi.pixi.distributed.util.ExchangeCodec;
+import org.openpixi.pixi.distributed.util.IncomingCellsHandler;
+import org.openpixi.pixi.distributed.util.IncomingParticlesHandler;
+import org.openpixi.pixi.distributed.util.IncomingPointsHandler;
+import org.openpixi.pixi.distributed.util.IncomingStepParticlesHandler;
+import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.grid.Cell;
+import org.openpixi.pixi.physics.util.Point;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Handles the exchange of shared data during the simulation.
+ * The particles and cells exchanged in each step are sent in the binary format
+ * of ExchangeCodec; the one-time map of the ghost cells is serialized.
+ */
+public class WorkerToWorker {
+
+	/* The following constants identify the incoming message. */
+	private static final int ARRIVING_PARTICLES_MSG = 0;
+	private static final int GHOST_PARTICLES_MSG = 1;
+	private static final int GHOST_CELLS_MSG = 2;
+	private static final int GHOST_CELLS_INDEXES_MSG = 3;
+	private static final int STEP_PARTICLES_MSG = 4;
+
+	private Transport transport;
+
+	/** ID of the neighbor with whom this communicator communicates. */
+	private int neighborID;
+	private int channel;
+
+	/** Binary format of the particles and cells exchanged in each step. */
+	private ExchangeCodec codec = new ExchangeCodec();
+
+	/* Handlers of upcalls for higher level classes. */
+	private IncomingPointsHandler ghostCellsIndexesHandler;
+	private IncomingCellsHandler ghostCellsHandler;
+	private IncomingParticlesHandler ghostParticlesHandler;
+	private IncomingParticlesHandler arrivingParticlesHandler;
+	private IncomingStepParticlesHandler stepParticlesHandler;
+
+
+	public void setGhostCellsHandler(IncomingCellsHandler ghostCellsHandler) {
+		this.ghostCellsHandler = ghostCellsHandler;
+	}
+
+	public void setGhostParticlesHandler(IncomingParticlesHandler ghostParticlesHandler) {
+		this.ghostParticlesHandler = ghostParticlesHandler;
+	}
+
+	public void setArrivingParticlesHandler(IncomingParticlesHandler arrivingParticlesHandler) {
+		this.arrivingParticlesHandler = arrivingParticlesHandler;
+	}
+
+	public void setStepParticlesHandler(IncomingStepParticlesHandler stepParticlesHandler) {
+		this.stepParticlesHandler = stepParticlesHandler;
+	}
+
+	public void setGhostCellsIndexesHandler(IncomingPointsHandler ghostCellsIndexesHandler) {
+		this.ghostCellsIndexesHandler = ghostCellsIndexesHandler;
+	}
+
+
+	/**
+	 * @param channel exchange channel of the current partitioning (see Transport.EXCHANGE_CHANNEL)
+	 */
+	public WorkerToWorker(Transport transport, int neighborID, int channel) {
+		this.transport = transport;
+		this.neighborID = neighborID;
+		this.channel = channel;
+		transport.openReceiver(channel, neighborID, new IncomingMessageHandler());
+	}
+
+
+	/**
+	 * We enable the delivery of the messages here to avoid the handlers being called too early.
+	 */
+	public void initializeConnection() {
+		transport.enableDelivery(channel, neighborID);
+	}
+
+
+	public void sendLeavingParticles(List<Particle> leavingParticles) {
+		double[] data = codec.encodeLeavingParticles(leavingParticles);
+		sendRecords(ARRIVING_PARTICLES_MSG, data, leavingParticles.size(), ExchangeCodec.LEAVING_PARTICLE_SIZE);
+	}
+
+
+	public void sendBorderParticles(List<Particle> borderParticles) {
+		double[] data = codec.encodeGhostParticles(borderParticles);
+		sendRecords(GHOST_PARTICLES_MSG, data, borderParticles.size(), ExchangeCodec.GHOST_PARTICLE_SIZE);
+	}
+
+
+	/**
+	 * Sends all the particles of the step in one message (aggregated exchange):
+	 * the numbers of the leaving and ghost particles followed by the packed records.
+	 */
+	public void sendStepParticles(List<Particle> leavingParticles, List<Particle> borderParticles) {
+		double[] data = codec.encodeParticles(leavingParticles, borderParticles);
+		int length = leavingParticles.size() * ExchangeCodec.LEAVING_PARTICLE_SIZE +
+				borderParticles.size() * ExchangeCodec.GHOST_PARTICLE_SIZE;
+		try {
+			OutgoingMessage message = transport.newMessage(channel, neighborID);
+			message.writeInt(STEP_PARTICLES_MSG);
+			message.writeInt(leavingParticles.size());
+			message.writeInt(borderParticles.size());
+			message.writeArray(data, 0, length);
+			message.finish();
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new RuntimeException(e);
+		}
+	}
+
+
+	public void sendBorderCells(List<Cell> borderCells) {
+		double[] data = codec.encodeCells(borderCells);
+		sendRecords(GHOST_CELLS_MSG, data, borderCells.size(), ExchangeCodec.CELL_SIZE);
+	}
+
+
+	/**
+	 * Sends the number of records followed by the packed records (see ExchangeCodec).
+	 */
+	private void sendRecords(int msgType, double[] data, int numOfRecords, int recordSize) {
+		try {
+			OutgoingMessage message = transport.newMessage(channel, neighborID);
+			message.writeInt(msgType);
+			message.writeInt(numOfRecords);
+			message.writeArray(data, 0, numOfRecords * recordSize);
+			message.finish();
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new RuntimeException(e);
+		}
+	}
+
+
+	public void sendBorderCellsMap(List<Point> borderCellsMap) {
+		try {
+			OutgoingMessage message = transport.newMessage(channel, neighborID);
+			message.writeInt(GHOST_CELLS_INDEXES_MSG);
+			message.writeObject(borderCellsMap);
+			message.finish();
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new RuntimeException(e);
+		}
+	}
+
+
+	private class IncomingMessageHandler implements MessageHandler {
+		public void handle(IncomingMessage message) throws IOException, ClassNotFoundException {
+			int msgType = message.readInt();
+			switch (msgType) {
+
+				case GHOST_CELLS_INDEXES_MSG:
+					List<Point> indexes = (List<Point>)message.readObject();
+					ghostCellsIndexesHandler.handle(indexes);
+					return;
+
+				case ARRIVING_PARTICLES_MSG:
+					int count = message.readInt();
+					double[] data = readRecords(message, count, ExchangeCodec.LEAVING_PARTICLE_SIZE);
+					arrivingParticlesHandler.handle(codec.decodeLeavingParticles(data, count));
+					return;
+
+				case GHOST_PARTICLES_MSG:
+					count = message.readInt();
+					data = readRecords(message, count, ExchangeCodec.GHOST_PARTICLE_SIZE);
+					ghostParticlesHandler.handle(codec.decodeGhostParticles(data, count));
+					return;
+
+				case STEP_PARTICLES_MSG:
+					int numOfLeaving = message.readInt();
+					int numOfGhosts = message.readInt();
+					int leavingLength = numOfLeaving * ExchangeCodec.LEAVING_PARTICLE_SIZE;
+					int length = leavingLength + numOfGhosts * ExchangeCodec.GHOST_PARTICLE_SIZE;
+					data = codec.getReceiveBuffer(length);
+					message.readArray(data, 0, length);
+					stepParticlesHandler.handle(
+							codec.decodeLeavingParticles(data, numOfLeaving),
+							codec.decodeGhostParticles(data, leavingLength, numOfGhosts));
+					return;
+
+				case GHOST_CELLS_MSG:
+					count = message.readInt();
+					data = readRecords(message, count, ExchangeCodec.CELL_SIZE);
+					ghostCellsHandler.handle(codec.decodeCells(data, count));
+					return;
+
+				default:
+					assert false: "Unreachable code detected!";
+			}
+		}
+
+		private double[] readRecords(IncomingMessage message, int numOfRecords, int recordSize)
+				throws IOException {
+			double[] data = codec.getReceiveBuffer(numOfRecords * recordSize);
+			message.readArray(data, 0, numOfRecords * recordSize);
+			return data;
+		}
+	}
+}
@@ -96,9 +96,8 @@ public class DistributedGridFactory {
 	 * Translates the local border cell index to remote ghost cell index.
 	 */
 	private Point getRemoteGhostCellIndex(int x, int y, Point direction) {
-		int xoffset = direction.x * settings.getGridCellsX();
-		int yoffset = direction.y * settings.getGridCellsY();
-		return new Point(x - xoffset, y - yoffset);
+		Point offset = sharedDataManager.getNeighborOffset(direction);
+		return new Point(x - offset.x, y - offset.y);
 	}
 
 
@@ -0,0 +1,224 @@
+package org.openpixi.pixi.distributed.ibis;
+
+import ibis.ipl.*;
+import org.openpixi.pixi.distributed.transport.IncomingMessage;
+import org.openpixi.pixi.distributed.transport.MessageHandler;
+import org.openpixi.pixi.distributed.transport.OutgoingMessage;
+import org.openpixi.pixi.distributed.transport.Transport;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Transport over ibis ports.
+ * Each receiver is a receive port named after its channel and the worker it receives from;
+ * the send ports are connected on the first message and reused.
+ */
+public class IbisTransport implements Transport {
+
+
+	private IbisRegistry registry;
+	private int workerID;
+
+	/* Ports by channel and worker (see key()). */
+	private Map<Long, ReceivePort> receivePorts = new HashMap<Long, ReceivePort>();
+	private Map<Long, SendPort> sendPorts = new HashMap<Long, SendPort>();
+
+
+	/**
+	 * Waits for all the nodes to connect (see IbisRegistry).
+	 */
+	public IbisTransport(int numOfWorkers, String iplServer, String iplPool) {
+		registry = new IbisRegistry(numOfWorkers, iplServer, iplPool);
+		workerID = registry.convertIbisIDToWorkerID(registry.getIbis().identifier());
+	}
+
+
+	private static String portID(int channel, int worker) {
+		switch (channel) {
+			case DISTRIBUTE_CHANNEL:
+				return PixiPorts.DISTRIBUTE_PORT_ID + worker;
+			case GATHER_CHANNEL:
+				return PixiPorts.GATHER_PORT_ID + worker;
+			default:
+				return PixiPorts.EXCHANGE_PORT_ID + (channel - EXCHANGE_CHANNEL) + "-" + worker;
+		}
+	}
+
+
+	private static long key(int channel, int worker) {
+		return ((long)channel << 32) | worker;
+	}
+
+
+	public int getWorkerID() {
+		return workerID;
+	}
+
+	public int getNumOfWorkers() {
+		return registry.getWorkers().size();
+	}
+
+	public int getMasterID() {
+		return registry.convertIbisIDToWorkerID(registry.getMaster());
+	}
+
+	public boolean isMaster() {
+		return registry.isMaster();
+	}
+
+
+	public synchronized void openReceiver(int channel, int source, MessageHandler handler) {
+		try {
+			ReceivePort port = registry.getIbis().createReceivePort(
+					PixiPorts.ONE_TO_ONE_PORT, portID(channel, source), new Upcall(handler));
+			port.enableConnections();
+			receivePorts.put(key(channel, source), port);
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new RuntimeException(e);
+		}
+	}
+
+
+	public synchronized void enableDelivery(int channel, int source) {
+		receivePorts.get(key(channel, source)).enableMessageUpcalls();
+	}
+
+
+	/**
+	 * Ibis lets only one message of a send port to be written at a time;
+	 * newMessage() waits for the previous message to be finished.
+	 */
+	public OutgoingMessage newMessage(int channel, int destination) throws IOException {
+		return new Message(getSendPort(channel, destination).newMessage());
+	}
+
+
+	private synchronized SendPort getSendPort(int channel, int destination) throws IOException {
+		SendPort port = sendPorts.get(key(channel, destination));
+		if (port == null) {
+			port = registry.getIbis().createSendPort(PixiPorts.ONE_TO_ONE_PORT);
+			port.connect(registry.convertWorkerIDToIbisID(destination), portID(channel, workerID));
+			sendPorts.put(key(channel, destination), port);
+		}
+		return port;
+	}
+
+
+	/**
+	 * A receive port is closed when all the senders disconnected;
+	 * thus, all the nodes first close their send ports (by calling this method).
+	 */
+	public void closeChannel(int channel) throws IOException {
+		List<SendPort> sends = new ArrayList<SendPort>();
+		List<ReceivePort> receives = new ArrayList<ReceivePort>();
+		synchronized (this) {
+			removeChannel(sendPorts, channel, sends);
+			removeChannel(receivePorts, channel, receives);
+		}
+		for (SendPort port: sends) {
+			port.close();
+		}
+		for (ReceivePort port: receives) {
+			port.close();
+		}
+	}
+
+
+	private static <T> void removeChannel(Map<Long, T> ports, int channel, List<T> removed) {
+		Iterator<Map.Entry<Long, T>> entries = ports.entrySet().iterator();
+		while (entries.hasNext()) {
+			Map.Entry<Long, T> entry = entries.next();
+			if ((entry.getKey() >> 32) == channel) {
+				removed.add(entry.getValue());
+				entries.remove();
+			}
+		}
+	}
+
+
+	public void close() throws IOException {
+		List<SendPort> sends;
+		List<ReceivePort> receives;
+		synchronized (this) {
+			sends = new ArrayList<SendPort>(sendPorts.values());
+			receives = new ArrayList<ReceivePort>(receivePorts.values());
+		}
+		for (SendPort port: sends) {
+			port.close();
+		}
+		for (ReceivePort port: receives) {
+			port.close();
+		}
+		registry.close();
+	}
+
+
+	private static class Message implements OutgoingMessage {
+
+		private WriteMessage message;
+
+		private Message(WriteMessage message) {
+			this.message = message;
+		}
+
+		public void writeInt(int value) throws IOException {
+			message.writeInt(value);
+		}
+
+		public void writeDouble(double value) throws IOException {
+			message.writeDouble(value);
+		}
+
+		public void writeArray(double[] array, int offset, int length) throws IOException {
+			message.writeArray(array, offset, length);
+		}
+
+		public void writeObject(Object object) throws IOException {
+			message.writeObject(object);
+		}
+
+		public void finish() throws IOException {
+			message.finish();
+		}
+	}
+
+
+	private static class Upcall implements MessageUpcall, IncomingMessage {
+
+		private MessageHandler handler;
+		private ReadMessage message;
+
+		private Upcall(MessageHandler handler) {
+			this.handler = handler;
+		}
+
+		/* Ibis calls the upcalls of one port one after another. */
+		public void upcall(ReadMessage readMessage) throws IOException, ClassNotFoundException {
+			message = readMessage;
+			handler.handle(this);
+			message = null;
+		}
+
+		public int readInt() throws IOException {
+			return message.readInt();
+		}
+
+		public double readDouble() throws IOException {
+			return message.readDouble();
+		}
+
+		public void readArray(double[] array, int offset, int length) throws IOException {
+			message.readArray(array, offset, length);
+		}
+
+		public Object readObject() throws IOException, ClassNotFoundException {
+			return message.readObject();
+		}
+	}
+}
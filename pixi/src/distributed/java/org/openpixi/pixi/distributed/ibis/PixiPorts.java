@@ -7,16 +7,10 @@ import ibis.ipl.PortType;
  */
 public class PixiPorts {
 
-	/** For communication from slaves to master. */
-	public static final PortType GATHER_PORT = new PortType(
-			PortType.COMMUNICATION_RELIABLE,
-			PortType.SERIALIZATION_OBJECT,
-			PortType.RECEIVE_AUTO_UPCALLS,
-			PortType.CONNECTION_MANY_TO_ONE);
-
-	public static final String GATHER_PORT_ID = "gather";
-
-	/** For communication from master to slave or between slaves. */
+	/**
+	 * For all the communication; each receive port receives from one node
+	 * (see IbisTransport).
+	 */
 	public static final PortType ONE_TO_ONE_PORT = new PortType(
 			PortType.COMMUNICATION_RELIABLE,
 			PortType.SERIALIZATION_OBJECT,
@@ -24,7 +18,8 @@ public class PixiPorts {
 			PortType.CONNECTION_ONE_TO_ONE);
 
 	public static final String DISTRIBUTE_PORT_ID = "distribute";
+	public static final String GATHER_PORT_ID = "gather";
 	public static final String EXCHANGE_PORT_ID = "exchange";
 
-	public static final PortType[] ALL_PORTS = {GATHER_PORT, ONE_TO_ONE_PORT};
+	public static final PortType[] ALL_PORTS = {ONE_TO_ONE_PORT};
 }
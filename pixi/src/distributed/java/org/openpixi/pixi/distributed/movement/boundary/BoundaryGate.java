@@ -8,10 +8,14 @@ import org.openpixi.pixi.physics.solver.Solver;
 
 /**
  *  Registers the leaving particles (particles which are crossing to neighbors).
+ *  In the aggregated exchange registers also the ghost particles which the leaving particle
+ *  creates at the neighbor (see RemoteBorders).
  */
 public class BoundaryGate extends ParticleBoundary {
 
 	private SharedData sharedData;
+	/** Border gates of the neighbor; null unless the exchange is aggregated. */
+	private RemoteBorders remoteBorders;
 
 
 	public BoundaryGate(double xoffset, double yoffset, SharedData sharedData) {
@@ -20,6 +24,11 @@ public class BoundaryGate extends ParticleBoundary {
 	}
 
 
+	public void setRemoteBorders(RemoteBorders remoteBorders) {
+		this.remoteBorders = remoteBorders;
+	}
+
+
 	@Override
 	public void apply(Solver solver, Force force, Particle particle, double timeStep) {
 		// Translate the position of the particle to match the position at the remote node.
@@ -28,5 +37,8 @@ public class BoundaryGate extends ParticleBoundary {
 		particle.addY(-yoffset);
 		particle.addPrevY(-yoffset);
 		sharedData.registerLeavingParticle(particle);
+		if (remoteBorders != null) {
+			remoteBorders.apply(particle);
+		}
 	}
 }
@@ -1,16 +1,21 @@
 package org.openpixi.pixi.distributed.movement.boundary;
 
+import org.openpixi.pixi.distributed.NeighborMap;
 import org.openpixi.pixi.distributed.SharedData;
 import org.openpixi.pixi.distributed.SharedDataManager;
 import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.ParticleStore;
 import org.openpixi.pixi.physics.force.Force;
 import org.openpixi.pixi.physics.movement.boundary.*;
 import org.openpixi.pixi.physics.solver.Solver;
 import org.openpixi.pixi.physics.util.DoubleBox;
+import org.openpixi.pixi.physics.util.IntBox;
 import org.openpixi.pixi.physics.util.Point;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Maps the border and boundary regions to boundaries which should be applied.
@@ -27,6 +32,9 @@ public class DistributedParticleBoundaries implements ParticleBoundaries {
 
 	private ParticleBoundaryType boundaryType;
 	private DoubleBox simulationArea;
+	private DoubleBox innerArea;
+	private double cellWidth;
+	private double cellHeight;
 
 
 	public ParticleBoundaryType getType() {
@@ -37,11 +45,16 @@ public class DistributedParticleBoundaries implements ParticleBoundaries {
 	public DistributedParticleBoundaries(
 			DoubleBox simulationArea,
 			DoubleBox innerArea,
+			double cellWidth,
+			double cellHeight,
 			ParticleBoundaryType boundaryType,
 			SharedDataManager sharedDataManager) {
 
 		this.boundaryType = boundaryType;
 		this.simulationArea = simulationArea;
+		this.innerArea = innerArea;
+		this.cellWidth = cellWidth;
+		this.cellHeight = cellHeight;
 
 		boundaryRegions = new BoundaryRegions(simulationArea);
 		borderRegions = new BorderRegions(simulationArea, innerArea);
@@ -52,6 +65,9 @@ public class DistributedParticleBoundaries implements ParticleBoundaries {
 
 		createBoundaryMap(boundaryType, sharedDataManager);
 		createBorderMap(sharedDataManager);
+		if (sharedDataManager.isAggregatedExchange()) {
+			addRemoteBorders(sharedDataManager);
+		}
 	}
 
 
@@ -62,8 +78,10 @@ public class DistributedParticleBoundaries implements ParticleBoundaries {
 			SharedData sd = sharedDataManager.getBoundarySharedData(region);
 
 			if (sd != null) {
-				double xoffset = getXOffset(sharedDataManager.getBoundaryDirections(region));
-				double yoffset = getYOffset(sharedDataManager.getBoundaryDirections(region));
+				Point offset = sharedDataManager.getNeighborOffset(
+						sharedDataManager.getBoundaryDirections(region));
+				double xoffset = offset.x * cellWidth;
+				double yoffset = offset.y * cellHeight;
 				boundaryMap[region] = new BoundaryGate(xoffset, yoffset, sd);
 			}
 			else if (region == BoundaryRegions.X_CENTER + BoundaryRegions.Y_CENTER) {
@@ -86,8 +104,9 @@ public class DistributedParticleBoundaries implements ParticleBoundaries {
 			assert sharedDatas.size() == directions.size();
 
 			for (int i = 0; i < sharedDatas.size(); ++i) {
-				double xoffset = getXOffset(directions.get(i));
-				double yoffset = getYOffset(directions.get(i));
+				Point offset = sharedDataManager.getNeighborOffset(directions.get(i));
+				double xoffset = offset.x * cellWidth;
+				double yoffset = offset.y * cellHeight;
 
 				borderMap.get(region).add(new BorderGate(xoffset, yoffset, sharedDatas.get(i)));
 			}
@@ -95,23 +114,82 @@ public class DistributedParticleBoundaries implements ParticleBoundaries {
 	}
 
 
+	/**
+	 * In the aggregated exchange the boundary gates pass the leaving particles
+	 * through the border gates of the neighbor.
+	 * Called once all the shared data of this node exist.
+	 */
+	private void addRemoteBorders(SharedDataManager sharedDataManager) {
+		Map<Integer, RemoteBorders> remoteBorders = new HashMap<Integer, RemoteBorders>();
+		for (int region = 0; region < BoundaryRegions.NUM_OF_REGIONS; ++region) {
+			int neighbor = sharedDataManager.getBoundaryNeighbor(region);
+			if (neighbor == NeighborMap.NO_NEIGHBOR) {
+				continue;
+			}
+			if (!remoteBorders.containsKey(neighbor)) {
+				remoteBorders.put(neighbor, createRemoteBorders(neighbor, sharedDataManager));
+			}
+			((BoundaryGate)boundaryMap[region]).setRemoteBorders(remoteBorders.get(neighbor));
+		}
+	}
+
+
+	/**
+	 * Creates the border regions and the border gates of the neighbor the same way
+	 * as the neighbor creates them (see createBorderMap()).
+	 * The gates leading to this node register local ghost particles;
+	 * the gates leading to the neighbors of this node register border particles;
+	 * the gates leading elsewhere are null.
+	 */
+	private RemoteBorders createRemoteBorders(int neighbor, SharedDataManager sharedDataManager) {
+		IntBox partition = sharedDataManager.getPartition(neighbor);
+		double width = partition.xsize() * cellWidth;
+		double height = partition.ysize() * cellHeight;
+		DoubleBox neighborArea = new DoubleBox(0, width, 0, height);
+		DoubleBox neighborInnerArea = new DoubleBox(
+				innerArea.xmin(), width - (simulationArea.xmax() - innerArea.xmax()),
+				innerArea.ymin(), height - (simulationArea.ymax() - innerArea.ymax()));
+
+		List<List<ParticleBoundary>> neighborBorderMap =
+				new ArrayList<List<ParticleBoundary>>(BorderRegions.NUM_OF_REGIONS);
+		for (int region = 0; region < BorderRegions.NUM_OF_REGIONS; ++region) {
+			List<Integer> workers = sharedDataManager.getBorderNeighbors(neighbor, region);
+			List<Point> directions = sharedDataManager.getBorderDirections(neighbor, region);
+			assert workers.size() == directions.size();
+
+			List<ParticleBoundary> gates = new ArrayList<ParticleBoundary>();
+			for (int i = 0; i < workers.size(); ++i) {
+				Point offset = sharedDataManager.getNeighborOffset(neighbor, directions.get(i));
+				double xoffset = offset.x * cellWidth;
+				double yoffset = offset.y * cellHeight;
+
+				int worker = workers.get(i);
+				SharedData sd = sharedDataManager.getExistingSharedData(worker);
+				if (worker == sharedDataManager.getThisWorkerID()) {
+					gates.add(new LocalGhostGate(xoffset, yoffset, sharedDataManager));
+				}
+				else if (sd != null) {
+					gates.add(new BorderGate(xoffset, yoffset, sd));
+				}
+				else {
+					gates.add(null);
+				}
+			}
+			neighborBorderMap.add(gates);
+		}
+		return new RemoteBorders(
+				new BorderRegions(neighborArea, neighborInnerArea), neighborBorderMap);
+	}
+
+
 	/*
 	 * The x and y offsets are necessary for
 	 * correct particle position translation (in case of distributed boundary)
 	 * or for correct particle reflection (in case of non-distributed boundary)
-	 * The offsets depend on the direction of the neighbor (in case of distributed boundary)
+	 * The offsets depend on the position of the neighbor (in case of distributed boundary)
 	 * or on the region (in case of non-distributed boundary).
 	 */
 
-	private double getYOffset(Point direction) {
-		return direction.y * simulationArea.ysize();
-	}
-
-
-	private double getXOffset(Point direction) {
-		return direction.x * simulationArea.xsize();
-	}
-
 	private double getYOffsetFromRegion(int region) {
 		return BoundaryRegions.getSign(region).y * simulationArea.ysize();
 	}
@@ -148,4 +226,21 @@ public class DistributedParticleBoundaries implements ParticleBoundaries {
 		int boundaryRegion = boundaryRegions.getRegion(particle.getX(), particle.getY());
 		boundaryMap[boundaryRegion].apply(solver, force, particle, timeStep);
 	}
+
+
+	/**
+	 * The gates keep references to the particles; thus, only the particles which reach
+	 * a gate are accessed through their views.
+	 */
+	public void applyOnParticleCenter(
+			Solver solver, Force force, ParticleStore store, int from, int to, double timeStep) {
+		for (int i = from; i < to; ++i) {
+			int borderRegion = borderRegions.getRegion(store.x[i], store.y[i]);
+			int boundaryRegion = boundaryRegions.getRegion(store.x[i], store.y[i]);
+			if (!borderMap.get(borderRegion).isEmpty() ||
+					boundaryRegion != BoundaryRegions.X_CENTER + BoundaryRegions.Y_CENTER) {
+				applyOnParticleCenter(solver, force, store.get(i), timeStep);
+			}
+		}
+	}
 }
@@ -0,0 +1,33 @@
+package org.openpixi.pixi.distributed.movement.boundary;
+
+import org.openpixi.pixi.distributed.SharedDataManager;
+import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.force.Force;
+import org.openpixi.pixi.physics.movement.boundary.ParticleBoundary;
+import org.openpixi.pixi.physics.solver.Solver;
+
+/**
+ *  Border gate of a neighbor which leads back to this node (see RemoteBorders).
+ *  Registers the copy of the particle as a ghost particle of this node.
+ */
+public class LocalGhostGate extends ParticleBoundary {
+
+	private SharedDataManager sharedDataManager;
+
+
+	public LocalGhostGate(double xoffset, double yoffset, SharedDataManager sharedDataManager) {
+		super(xoffset, yoffset);
+		this.sharedDataManager = sharedDataManager;
+	}
+
+
+	@Override
+	public void apply(Solver solver, Force force, Particle particle, double timeStep) {
+		Particle copy = new Particle(particle);
+		copy.addX(-xoffset);
+		copy.addPrevX(-xoffset);
+		copy.addY(-yoffset);
+		copy.addPrevY(-yoffset);
+		sharedDataManager.registerLocalGhostParticle(copy);
+	}
+}
@@ -0,0 +1,49 @@
+package org.openpixi.pixi.distributed.movement.boundary;
+
+import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.movement.boundary.ParticleBoundary;
+
+import java.util.List;
+
+/**
+ * Border regions and border gates of a neighbor as seen from this node.
+ *
+ * In the aggregated exchange the particles leaving to the neighbor are passed through
+ * the border gates of the neighbor already at this node. Thus, the ghost particles
+ * which the neighbor would send out after receiving the arriving particles are sent
+ * by this node together with the leaving particles (the gates lead to the neighbors
+ * of this node or back to this node).
+ *
+ * A border gate of the neighbor leading to a node which is not a neighbor of this node
+ * is null; it can only be reached by a particle moving more than one cell per step.
+ */
+public class RemoteBorders {
+
+	private BorderRegions borderRegions;
+	private List<List<ParticleBoundary>> borderMap;
+
+
+	/**
+	 * @param borderRegions border regions in the coordinates of the neighbor
+	 * @param borderMap gates of each border region of the neighbor
+	 */
+	public RemoteBorders(BorderRegions borderRegions, List<List<ParticleBoundary>> borderMap) {
+		this.borderRegions = borderRegions;
+		this.borderMap = borderMap;
+	}
+
+
+	/**
+	 * @param particle leaving particle already translated to the coordinates of the neighbor
+	 */
+	public void apply(Particle particle) {
+		int borderRegion = borderRegions.getRegion(particle.getX(), particle.getY());
+		for (ParticleBoundary gate: borderMap.get(borderRegion)) {
+			if (gate == null) {
+				throw new RuntimeException("Particle " + particle + " moved too far to be " +
+						"exchanged with the aggregated exchange (at most one cell per step)!");
+			}
+			gate.apply(null, null, particle, 0);
+		}
+	}
+}
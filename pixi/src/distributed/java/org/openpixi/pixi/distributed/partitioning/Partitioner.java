@@ -9,4 +9,10 @@ import org.openpixi.pixi.physics.util.IntBox;
 public interface Partitioner {
 
 	public IntBox[] partition(int numCellsX, int numCellsY, int numPartitions);
+
+	/**
+	 * Partitions the simulation area so that the partitions have similar total weights.
+	 * @param cellWeights cost of each cell, indexed by [x][y]
+	 */
+	public IntBox[] partition(int numCellsX, int numCellsY, int numPartitions, double[][] cellWeights);
 }
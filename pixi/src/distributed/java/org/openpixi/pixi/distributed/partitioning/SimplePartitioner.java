@@ -15,9 +15,18 @@ import java.util.List;
  *  We have list of areas (boxes) which we need to split (initially 1 area/box).
  *  - In each iteration we take all the boxes and split them into half at the larger side.
  *  - We repeat the previous step until we have the specified number of boxes.
+ *
+ *  The boxes form a regular layout of columns and rows, so each side of a box touches
+ *  exactly one neighbor. The weighted partitioning keeps the layout and moves the borders
+ *  of the columns and rows so that each column (row) gets the same share of the total weight
+ *  (the weights are summed along the other axis). This balances the drift or clumping
+ *  of the plasma along each axis, not the clumps within one column.
  */
 public class SimplePartitioner implements Partitioner {
 
+	/** Minimal width and height of a weighted partition (unless the uniform ones are smaller). */
+	private static final int MIN_PARTITION_SIZE = 2;
+
 	private IntBox[] partitions;
 	private int numCellsX;
 	private int numCellsY;
@@ -51,6 +60,66 @@ public class SimplePartitioner implements Partitioner {
 	}
 
 
+	public IntBox[] partition(int numCellsX, int numCellsY, int numPartitions, double[][] cellWeights) {
+		IntBox[] uniform = partition(numCellsX, numCellsY, numPartitions);
+
+		double[] columnWeights = new double[numCellsX];
+		double[] rowWeights = new double[numCellsY];
+		for (int x = 0; x < numCellsX; ++x) {
+			for (int y = 0; y < numCellsY; ++y) {
+				columnWeights[x] += cellWeights[x][y];
+				rowWeights[y] += cellWeights[x][y];
+			}
+		}
+
+		int numColumns = numCellsX / uniform[0].xsize();
+		int numRows = numCellsY / uniform[0].ysize();
+		int[] columnCuts = weightedCuts(columnWeights, numColumns,
+				Math.min(MIN_PARTITION_SIZE, uniform[0].xsize()));
+		int[] rowCuts = weightedCuts(rowWeights, numRows,
+				Math.min(MIN_PARTITION_SIZE, uniform[0].ysize()));
+
+		// The uniform borders lie on multiples of the uniform size; we move them to the cuts.
+		for (int i = 0; i < uniform.length; ++i) {
+			IntBox b = uniform[i];
+			int column = b.xmin() / b.xsize();
+			int row = b.ymin() / b.ysize();
+			partitions[i] = new IntBox(
+					columnCuts[column], columnCuts[column + 1] - 1,
+					rowCuts[row], rowCuts[row + 1] - 1);
+		}
+		return partitions;
+	}
+
+
+	/**
+	 * Divides cells 0 ... weights.length - 1 into the given number of consecutive parts
+	 * with similar total weights; each part has at least minSize cells.
+	 * Each part aims at an equal share of the weight left by the previous parts,
+	 * so a part which has to be larger (minSize) does not starve the following ones.
+	 * @return first cell of each part followed by weights.length
+	 */
+	static int[] weightedCuts(double[] weights, int numParts, int minSize) {
+		double[] prefix = new double[weights.length + 1];
+		for (int i = 0; i < weights.length; ++i) {
+			prefix[i + 1] = prefix[i] + weights[i];
+		}
+
+		int[] cuts = new int[numParts + 1];
+		cuts[numParts] = weights.length;
+		for (int part = 1; part < numParts; ++part) {
+			double start = prefix[cuts[part - 1]];
+			double target = start + (prefix[weights.length] - start) / (numParts - part + 1);
+			int cut = cuts[part - 1] + minSize;
+			while (cut < weights.length && prefix[cut + 1] - target < target - prefix[cut]) {
+				++cut;
+			}
+			cuts[part] = Math.min(cut, weights.length - (numParts - part) * minSize);
+		}
+		return cuts;
+	}
+
+
 	private List<IntBox> splitBoxes(List<IntBox> partitions) {
 		List<IntBox> newPartitions = new ArrayList<IntBox>();
 		for (IntBox b: partitions) {
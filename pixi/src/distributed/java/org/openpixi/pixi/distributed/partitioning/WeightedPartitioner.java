@@ -0,0 +1,176 @@
+package org.openpixi.pixi.distributed.partitioning;
+
+import org.openpixi.pixi.physics.util.IntBox;
+
+/**
+ * Partitions the simulation area for any number of partitions and any size of the grid
+ * so that the partitions have similar loads.
+ *
+ * The load of a partition is the total weight of its cells (e.g. the number of particles
+ * plus a constant for the field solving) plus its halo surface, the number of ghost cells
+ * around it which are exchanged in each step.
+ *
+ * The partitions form numColumns x numRows columns and rows, so each side of a partition
+ * touches exactly one neighbor (as required by the NeighborMap). All the factorizations
+ * numPartitions = numColumns * numRows are tried: for each one the area is bisected
+ * along x at the weighted quantiles of the column sums and along y at the weighted
+ * quantiles of the row sums; the one with the smallest maximal load is taken.
+ * The partitions are numbered row by row.
+ *
+ * After partitioning the predicted imbalance and the halo surfaces can be queried.
+ */
+public class WeightedPartitioner implements Partitioner {
+
+	/** Minimal width and height of a partition (the border regions must not overlap). */
+	private static final int MIN_PARTITION_SIZE = 2;
+
+	private IntBox[] partitions;
+	private double[] weights;
+	private int numColumns;
+
+
+	/**
+	 * Predicted imbalance: the largest weight of a partition divided by the mean weight
+	 * (without the halo surfaces).
+	 */
+	public double getImbalance() {
+		double max = 0;
+		double total = 0;
+		for (double weight: weights) {
+			max = Math.max(max, weight);
+			total += weight;
+		}
+		return (total > 0) ? max * weights.length / total : 1;
+	}
+
+
+	/**
+	 * Number of ghost cells around the partition
+	 * (one cell wide halo including the corners).
+	 */
+	public int getHaloSurface(int partition) {
+		return haloSurface(partitions[partition]);
+	}
+
+
+	/**
+	 * Total weight of the cells of the partition.
+	 */
+	public double getWeight(int partition) {
+		return weights[partition];
+	}
+
+
+	public IntBox[] partition(int numCellsX, int numCellsY, int numPartitions) {
+		double[][] cellWeights = new double[numCellsX][numCellsY];
+		for (int x = 0; x < numCellsX; ++x) {
+			for (int y = 0; y < numCellsY; ++y) {
+				cellWeights[x][y] = 1;
+			}
+		}
+		return partition(numCellsX, numCellsY, numPartitions, cellWeights);
+	}
+
+
+	public IntBox[] partition(int numCellsX, int numCellsY, int numPartitions, double[][] cellWeights) {
+		double[] columnWeights = new double[numCellsX];
+		double[] rowWeights = new double[numCellsY];
+		for (int x = 0; x < numCellsX; ++x) {
+			for (int y = 0; y < numCellsY; ++y) {
+				columnWeights[x] += cellWeights[x][y];
+				rowWeights[y] += cellWeights[x][y];
+			}
+		}
+
+		double bestLoad = Double.MAX_VALUE;
+		for (int columns = 1; columns <= numPartitions; ++columns) {
+			if (numPartitions % columns != 0) {
+				continue;
+			}
+			int rows = numPartitions / columns;
+			if (columns * MIN_PARTITION_SIZE > numCellsX || rows * MIN_PARTITION_SIZE > numCellsY) {
+				continue;
+			}
+
+			IntBox[] candidate = createPartitions(
+					SimplePartitioner.weightedCuts(columnWeights, columns, MIN_PARTITION_SIZE),
+					SimplePartitioner.weightedCuts(rowWeights, rows, MIN_PARTITION_SIZE));
+			double[] candidateWeights = sumWeights(candidate, cellWeights);
+
+			double maxLoad = 0;
+			for (int i = 0; i < candidate.length; ++i) {
+				maxLoad = Math.max(maxLoad, candidateWeights[i] + haloSurface(candidate[i]));
+			}
+			if (maxLoad < bestLoad) {
+				bestLoad = maxLoad;
+				partitions = candidate;
+				weights = candidateWeights;
+				numColumns = columns;
+			}
+		}
+
+		if (bestLoad == Double.MAX_VALUE) {
+			throw new RuntimeException("Can not divide " + numCellsX + " x " + numCellsY +
+					" cells to " + numPartitions + " partitions of at least " +
+					MIN_PARTITION_SIZE + " x " + MIN_PARTITION_SIZE + " cells!");
+		}
+		return partitions;
+	}
+
+
+	/**
+	 * @param columnCuts first cell of each column followed by the number of cells in x
+	 * @param rowCuts first cell of each row followed by the number of cells in y
+	 */
+	private IntBox[] createPartitions(int[] columnCuts, int[] rowCuts) {
+		int columns = columnCuts.length - 1;
+		int rows = rowCuts.length - 1;
+		IntBox[] boxes = new IntBox[columns * rows];
+		for (int row = 0; row < rows; ++row) {
+			for (int column = 0; column < columns; ++column) {
+				boxes[row * columns + column] = new IntBox(
+						columnCuts[column], columnCuts[column + 1] - 1,
+						rowCuts[row], rowCuts[row + 1] - 1);
+			}
+		}
+		return boxes;
+	}
+
+
+	private double[] sumWeights(IntBox[] boxes, double[][] cellWeights) {
+		double[] sums = new double[boxes.length];
+		for (int i = 0; i < boxes.length; ++i) {
+			IntBox b = boxes[i];
+			for (int x = b.xmin(); x <= b.xmax(); ++x) {
+				for (int y = b.ymin(); y <= b.ymax(); ++y) {
+					sums[i] += cellWeights[x][y];
+				}
+			}
+		}
+		return sums;
+	}
+
+
+	private static int haloSurface(IntBox b) {
+		return 2 * (b.xsize() + b.ysize()) + 4;
+	}
+
+
+	@Override
+	public String toString() {
+		StringBuilder retval = new StringBuilder();
+		for (int i = 0; i < partitions.length; ++i) {
+			retval.append(i + " ");
+			if ((i + 1) % numColumns == 0) {
+				retval.append("\n");
+			}
+		}
+		retval.append(String.format("predicted imbalance: %.3f", getImbalance()));
+		for (int i = 0; i < partitions.length; ++i) {
+			retval.append(String.format("\n%d: %d x %d cells, weight %.1f, halo %d",
+					i, partitions[i].xsize(), partitions[i].ysize(),
+					weights[i], getHaloSurface(i)));
+		}
+		return retval.toString();
+	}
+}
@@ -0,0 +1,51 @@
+package org.openpixi.pixi.distributed.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the payload of a frame written by FrameOutgoingMessage.
+ */
+class FrameIncomingMessage implements IncomingMessage {
+
+	private ByteBuffer payload;
+
+
+	/**
+	 * @param payload buffer positioned at the beginning of the payload
+	 */
+	FrameIncomingMessage(ByteBuffer payload) {
+		this.payload = payload;
+	}
+
+
+	public int readInt() {
+		return payload.getInt();
+	}
+
+
+	public double readDouble() {
+		return payload.getDouble();
+	}
+
+
+	public void readArray(double[] array, int offset, int length) {
+		payload.asDoubleBuffer().get(array, offset, length);
+		payload.position(payload.position() + 8 * length);
+	}
+
+
+	public Object readObject() throws IOException, ClassNotFoundException {
+		byte[] bytes = new byte[payload.getInt()];
+		payload.get(bytes);
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+		try {
+			return in.readObject();
+		}
+		finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package org.openpixi.pixi.distributed.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Writes a message into one frame of a byte buffer:
+ * payload length (int), channel (int) and the payload.
+ * The integers and the arrays are written in little endian byte order
+ * (native on the usual hardware, so the double arrays are copied in bulk);
+ * the objects are serialized and prefixed with their length.
+ */
+abstract class FrameOutgoingMessage implements OutgoingMessage {
+
+	static final int HEADER_SIZE = 8;
+
+	private ByteBuffer buffer;
+
+
+	/**
+	 * @param buffer buffer to write to, may be replaced by a larger one (see allocate())
+	 */
+	FrameOutgoingMessage(ByteBuffer buffer, int channel) {
+		this.buffer = buffer;
+		buffer.clear();
+		buffer.putInt(0);
+		buffer.putInt(channel);
+	}
+
+
+	static ByteBuffer allocate(int capacity, boolean direct) {
+		ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+		return buffer.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+
+	/** Buffer with at least the given capacity replacing the current one. */
+	protected abstract ByteBuffer allocate(int capacity);
+
+	/** Sends the complete frame (from the position to the limit of the buffer). */
+	protected abstract void send(ByteBuffer frame) throws IOException;
+
+
+	public void writeInt(int value) {
+		ensureRemaining(4);
+		buffer.putInt(value);
+	}
+
+
+	public void writeDouble(double value) {
+		ensureRemaining(8);
+		buffer.putDouble(value);
+	}
+
+
+	public void writeArray(double[] array, int offset, int length) {
+		ensureRemaining(8 * length);
+		buffer.asDoubleBuffer().put(array, offset, length);
+		buffer.position(buffer.position() + 8 * length);
+	}
+
+
+	public void writeObject(Object object) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(object);
+		out.close();
+
+		ensureRemaining(4 + bytes.size());
+		buffer.putInt(bytes.size());
+		buffer.put(bytes.toByteArray());
+	}
+
+
+	public void finish() throws IOException {
+		buffer.putInt(0, buffer.position() - HEADER_SIZE);
+		buffer.flip();
+		send(buffer);
+	}
+
+
+	private void ensureRemaining(int length) {
+		if (buffer.remaining() >= length) {
+			return;
+		}
+		ByteBuffer larger = allocate(Math.max(2 * buffer.capacity(), buffer.position() + length));
+		buffer.flip();
+		larger.put(buffer);
+		buffer = larger;
+	}
+}
@@ -0,0 +1,163 @@
+package org.openpixi.pixi.distributed.transport;
+
+import org.openpixi.pixi.distributed.util.CountLock;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Transport between nodes running in the same JVM.
+ *
+ * The nodes created with the same network name form one network (until the network
+ * has all its workers); the worker IDs are given by the order in which the nodes join
+ * and the worker 0 is the master.
+ * The constructor waits for all the nodes to join (as the IbisRegistry does);
+ * thus, the nodes of one JVM have to be created in separate threads.
+ * A message is written to its own heap buffer which is handed over to the receiving node
+ * without copying; each node handles its incoming messages on its own thread.
+ */
+public class InProcessTransport implements Transport {
+
+	private static final int INITIAL_BUFFER_SIZE = 1 << 12;
+
+	private static final Map<String, Network> networks = new HashMap<String, Network>();
+
+	private Network network;
+	private String networkName;
+	private int workerID;
+
+	private Receivers receivers = new Receivers();
+	private ExecutorService deliveryThread;
+
+
+	public InProcessTransport(final String networkName, int numOfWorkers) {
+		this.networkName = networkName;
+		deliveryThread = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "InProcessTransport-" + networkName);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		synchronized (networks) {
+			network = networks.get(networkName);
+			if (network == null || network.isComplete()) {
+				// A complete network belongs to an earlier simulation.
+				network = new Network(numOfWorkers);
+				networks.put(networkName, network);
+			}
+			if (network.nodes.length != numOfWorkers) {
+				throw new RuntimeException("The nodes of network " + networkName +
+						" disagree on the number of workers!");
+			}
+			workerID = network.join(this);
+		}
+		network.joinedLock.waitForCount();
+	}
+
+
+	public int getWorkerID() {
+		return workerID;
+	}
+
+	public int getNumOfWorkers() {
+		return network.nodes.length;
+	}
+
+	public int getMasterID() {
+		return 0;
+	}
+
+	public boolean isMaster() {
+		return workerID == getMasterID();
+	}
+
+
+	public void openReceiver(int channel, int source, MessageHandler handler) {
+		receivers.open(channel, source, handler);
+	}
+
+
+	public void enableDelivery(int channel, int source) {
+		receivers.enable(channel, source);
+	}
+
+
+	public void closeChannel(int channel) {
+		receivers.close(channel);
+	}
+
+
+	public OutgoingMessage newMessage(final int channel, int destination) {
+		final InProcessTransport receiver = network.nodes[destination];
+		return new FrameOutgoingMessage(FrameOutgoingMessage.allocate(INITIAL_BUFFER_SIZE, false), channel) {
+			@Override
+			protected ByteBuffer allocate(int capacity) {
+				return FrameOutgoingMessage.allocate(capacity, false);
+			}
+
+			@Override
+			protected void send(ByteBuffer frame) {
+				frame.position(HEADER_SIZE);
+				receiver.deliver(channel, workerID, frame);
+			}
+		};
+	}
+
+
+	private void deliver(final int channel, final int source, final ByteBuffer payload) {
+		deliveryThread.execute(new Runnable() {
+			public void run() {
+				receivers.deliver(channel, source, payload, false);
+			}
+		});
+	}
+
+
+	/**
+	 * The messages already sent to this node are still handled.
+	 */
+	public void close() {
+		deliveryThread.shutdown();
+		synchronized (networks) {
+			if (network.leave() && networks.get(networkName) == network) {
+				networks.remove(networkName);
+			}
+		}
+	}
+
+
+	private static class Network {
+
+		private InProcessTransport[] nodes;
+		private int numOfJoined = 0;
+		private int numOfLeft = 0;
+		private CountLock joinedLock;
+
+		private Network(int numOfWorkers) {
+			nodes = new InProcessTransport[numOfWorkers];
+			joinedLock = new CountLock(numOfWorkers);
+		}
+
+		private boolean isComplete() {
+			return numOfJoined == nodes.length;
+		}
+
+		/** Called under the lock of the networks. */
+		private int join(InProcessTransport node) {
+			nodes[numOfJoined] = node;
+			joinedLock.increase();
+			return numOfJoined++;
+		}
+
+		/** Called under the lock of the networks; returns true when the last node left. */
+		private boolean leave() {
+			return ++numOfLeft == nodes.length;
+		}
+	}
+}
@@ -0,0 +1,17 @@
+package org.openpixi.pixi.distributed.transport;
+
+import java.io.IOException;
+
+/**
+ * Message being read; see OutgoingMessage.
+ */
+public interface IncomingMessage {
+
+	int readInt() throws IOException;
+
+	double readDouble() throws IOException;
+
+	void readArray(double[] array, int offset, int length) throws IOException;
+
+	Object readObject() throws IOException, ClassNotFoundException;
+}
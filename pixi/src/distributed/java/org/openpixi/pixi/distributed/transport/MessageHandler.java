@@ -0,0 +1,11 @@
+package org.openpixi.pixi.distributed.transport;
+
+import java.io.IOException;
+
+/**
+ * Handles the incoming messages of one channel from one sender.
+ * The message is only valid during the call.
+ */
+public interface MessageHandler {
+	void handle(IncomingMessage message) throws IOException, ClassNotFoundException;
+}
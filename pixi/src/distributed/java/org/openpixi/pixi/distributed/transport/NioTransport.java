@@ -0,0 +1,279 @@
+package org.openpixi.pixi.distributed.transport;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Transport over plain TCP connections (blocking java.nio channels with direct buffers).
+ *
+ * The nodes are given by a list of addresses (host:port), the n-th address belongs
+ * to the worker n and the worker 0 is the master. A node takes the first address of the list
+ * it can bind locally; thus, several nodes can share a host (even a JVM) if they have different ports.
+ * Each node opens one connection to each node it sends to (when it sends the first message);
+ * a reader thread per incoming connection hands the frames to the receivers.
+ */
+public class NioTransport implements Transport {
+
+	/** How long we try to connect to a node which does not listen yet. */
+	private static final long CONNECT_TIMEOUT = 60000;
+	private static final long CONNECT_RETRY_INTERVAL = 50;
+	private static final int INITIAL_BUFFER_SIZE = 1 << 16;
+
+	private List<InetSocketAddress> addresses;
+	private int workerID;
+
+	private ServerSocketChannel serverChannel;
+	private SocketChannel[] connections;
+	private List<SocketChannel> incomingConnections =
+			Collections.synchronizedList(new ArrayList<SocketChannel>());
+	private volatile boolean closed = false;
+
+	private Receivers receivers = new Receivers();
+
+	/** Send buffer of each thread (a thread has at most one unfinished message). */
+	private ThreadLocal<ByteBuffer> sendBuffers = new ThreadLocal<ByteBuffer>() {
+		@Override
+		protected ByteBuffer initialValue() {
+			return FrameOutgoingMessage.allocate(INITIAL_BUFFER_SIZE, true);
+		}
+	};
+
+
+	public NioTransport(List<String> nodeAddresses) throws IOException {
+		if (nodeAddresses.isEmpty()) {
+			throw new RuntimeException("The NIO transport needs the addresses of the nodes!");
+		}
+		addresses = new ArrayList<InetSocketAddress>();
+		for (String address: nodeAddresses) {
+			addresses.add(parseAddress(address));
+		}
+		connections = new SocketChannel[addresses.size()];
+
+		workerID = bindFirstFreeAddress();
+		Thread acceptThread = new Thread(new Acceptor(), "NioTransport-accept-" + workerID);
+		acceptThread.setDaemon(true);
+		acceptThread.start();
+	}
+
+
+	private static InetSocketAddress parseAddress(String address) {
+		int colon = address.lastIndexOf(':');
+		if (colon < 0) {
+			throw new RuntimeException("Node address without port: " + address);
+		}
+		return new InetSocketAddress(
+				address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+	}
+
+
+	private int bindFirstFreeAddress() throws IOException {
+		for (int i = 0; i < addresses.size(); i++) {
+			ServerSocketChannel channel = ServerSocketChannel.open();
+			try {
+				channel.socket().bind(addresses.get(i));
+				serverChannel = channel;
+				return i;
+			} catch (IOException e) {
+				// Not a local address or already taken by another node.
+				channel.close();
+			}
+		}
+		throw new RuntimeException("None of the node addresses can be bound on this host!");
+	}
+
+
+	public int getWorkerID() {
+		return workerID;
+	}
+
+	public int getNumOfWorkers() {
+		return addresses.size();
+	}
+
+	public int getMasterID() {
+		return 0;
+	}
+
+	public boolean isMaster() {
+		return workerID == getMasterID();
+	}
+
+
+	public void openReceiver(int channel, int source, MessageHandler handler) {
+		receivers.open(channel, source, handler);
+	}
+
+
+	public void enableDelivery(int channel, int source) {
+		receivers.enable(channel, source);
+	}
+
+
+	public void closeChannel(int channel) {
+		receivers.close(channel);
+	}
+
+
+	public OutgoingMessage newMessage(int channel, int destination) throws IOException {
+		final SocketChannel connection = getConnection(destination);
+		return new FrameOutgoingMessage(sendBuffers.get(), channel) {
+			@Override
+			protected ByteBuffer allocate(int capacity) {
+				ByteBuffer buffer = FrameOutgoingMessage.allocate(capacity, true);
+				sendBuffers.set(buffer);
+				return buffer;
+			}
+
+			@Override
+			protected void send(ByteBuffer frame) throws IOException {
+				synchronized (connection) {
+					while (frame.hasRemaining()) {
+						connection.write(frame);
+					}
+				}
+			}
+		};
+	}
+
+
+	/**
+	 * Connects to the node on the first use; the node tells the receiver its worker ID.
+	 */
+	private synchronized SocketChannel getConnection(int destination) throws IOException {
+		if (connections[destination] != null) {
+			return connections[destination];
+		}
+
+		long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
+		SocketChannel connection = null;
+		while (connection == null) {
+			try {
+				connection = SocketChannel.open(addresses.get(destination));
+			} catch (IOException e) {
+				if (System.currentTimeMillis() > deadline) {
+					throw e;
+				}
+				try {
+					Thread.sleep(CONNECT_RETRY_INTERVAL);
+				} catch (InterruptedException ie) {
+					throw new RuntimeException(ie);
+				}
+			}
+		}
+		connection.socket().setTcpNoDelay(true);
+
+		ByteBuffer handshake = FrameOutgoingMessage.allocate(4, false);
+		handshake.putInt(workerID);
+		handshake.flip();
+		while (handshake.hasRemaining()) {
+			connection.write(handshake);
+		}
+
+		connections[destination] = connection;
+		return connection;
+	}
+
+
+	public void close() throws IOException {
+		closed = true;
+		serverChannel.close();
+		synchronized (this) {
+			for (SocketChannel connection: connections) {
+				if (connection != null) {
+					connection.close();
+				}
+			}
+		}
+		synchronized (incomingConnections) {
+			for (SocketChannel connection: incomingConnections) {
+				connection.close();
+			}
+		}
+	}
+
+
+	private class Acceptor implements Runnable {
+		public void run() {
+			try {
+				while (!closed) {
+					SocketChannel connection = serverChannel.accept();
+					incomingConnections.add(connection);
+					Thread reader = new Thread(new Reader(connection), "NioTransport-read-" + workerID);
+					reader.setDaemon(true);
+					reader.start();
+				}
+			} catch (IOException e) {
+				if (!closed) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Reads the frames of one incoming connection.
+	 */
+	private class Reader implements Runnable {
+
+		private SocketChannel connection;
+		private ByteBuffer header = FrameOutgoingMessage.allocate(FrameOutgoingMessage.HEADER_SIZE, true);
+		private ByteBuffer payload = FrameOutgoingMessage.allocate(INITIAL_BUFFER_SIZE, true);
+
+		private Reader(SocketChannel connection) {
+			this.connection = connection;
+		}
+
+		public void run() {
+			try {
+				header.limit(4);
+				readFully(header);
+				int source = header.getInt(0);
+
+				while (true) {
+					header.clear();
+					readFully(header);
+					int length = header.getInt(0);
+					int channel = header.getInt(4);
+
+					if (payload.capacity() < length) {
+						payload = FrameOutgoingMessage.allocate(length + (length >> 1), true);
+					}
+					payload.clear();
+					payload.limit(length);
+					readFully(payload);
+					receivers.deliver(channel, source, payload, true);
+				}
+			} catch (EOFException e) {
+				// The sender closed the connection.
+			} catch (ClosedChannelException e) {
+				// This node was closed.
+			} catch (IOException e) {
+				if (!closed) {
+					e.printStackTrace();
+				}
+			}
+		}
+
+		/**
+		 * Fills the buffer up to its limit and flips it.
+		 */
+		private void readFully(ByteBuffer buffer) throws IOException {
+			buffer.position(0);
+			while (buffer.hasRemaining()) {
+				if (connection.read(buffer) < 0) {
+					throw new EOFException();
+				}
+			}
+			buffer.flip();
+		}
+	}
+}
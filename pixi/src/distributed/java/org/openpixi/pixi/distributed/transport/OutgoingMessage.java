@@ -0,0 +1,22 @@
+package org.openpixi.pixi.distributed.transport;
+
+import java.io.IOException;
+
+/**
+ * Message being written. The receiver has to read the items in the same order.
+ * The objects are serialized; the particles and cells exchanged in each step
+ * should rather be sent as double arrays (see ExchangeCodec).
+ */
+public interface OutgoingMessage {
+
+	void writeInt(int value) throws IOException;
+
+	void writeDouble(double value) throws IOException;
+
+	void writeArray(double[] array, int offset, int length) throws IOException;
+
+	void writeObject(Object object) throws IOException;
+
+	/** Sends the message. */
+	void finish() throws IOException;
+}
@@ -0,0 +1,105 @@
+package org.openpixi.pixi.distributed.transport;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Receivers of a node for the transports which deliver frames (see FrameOutgoingMessage).
+ * A message arriving before its receiver is opened or enabled is kept until the delivery
+ * is enabled. The messages of one receiver are handled one at a time in the order of arrival.
+ */
+class Receivers {
+
+	private Map<Long, Receiver> receivers = new HashMap<Long, Receiver>();
+
+
+	void open(int channel, int source, MessageHandler handler) {
+		get(channel, source).setHandler(handler);
+	}
+
+
+	void enable(int channel, int source) {
+		get(channel, source).enable();
+	}
+
+
+	/**
+	 * @param payload buffer positioned at the beginning of the payload of the frame
+	 * @param reused whether the buffer is overwritten after the call (then it is copied
+	 *               if the message has to wait)
+	 */
+	void deliver(int channel, int source, ByteBuffer payload, boolean reused) {
+		get(channel, source).deliver(payload, reused);
+	}
+
+
+	synchronized void close(int channel) {
+		Iterator<Long> keys = receivers.keySet().iterator();
+		while (keys.hasNext()) {
+			if ((keys.next() >> 32) == channel) {
+				keys.remove();
+			}
+		}
+	}
+
+
+	private synchronized Receiver get(int channel, int source) {
+		Long key = ((long)channel << 32) | (source & 0xffffffffL);
+		Receiver receiver = receivers.get(key);
+		if (receiver == null) {
+			receiver = new Receiver();
+			receivers.put(key, receiver);
+		}
+		return receiver;
+	}
+
+
+	private static class Receiver {
+
+		private MessageHandler handler;
+		private boolean enabled = false;
+		private Queue<ByteBuffer> waiting = new ArrayDeque<ByteBuffer>();
+
+		synchronized void setHandler(MessageHandler handler) {
+			this.handler = handler;
+		}
+
+		synchronized void enable() {
+			if (handler == null) {
+				throw new RuntimeException("The receiver has to be opened before it is enabled!");
+			}
+			enabled = true;
+			while (!waiting.isEmpty()) {
+				handle(waiting.poll());
+			}
+		}
+
+		synchronized void deliver(ByteBuffer payload, boolean reused) {
+			if (enabled) {
+				handle(payload);
+			}
+			else if (reused) {
+				ByteBuffer copy = FrameOutgoingMessage.allocate(payload.remaining(), false);
+				copy.put(payload);
+				copy.flip();
+				waiting.add(copy);
+			}
+			else {
+				waiting.add(payload);
+			}
+		}
+
+		private void handle(ByteBuffer payload) {
+			try {
+				handler.handle(new FrameIncomingMessage(payload));
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package org.openpixi.pixi.distributed.transport;
+
+import java.io.IOException;
+
+/**
+ * Connects one node to the other nodes of the distributed simulation.
+ *
+ * The nodes are identified by worker IDs from 0 to getNumOfWorkers() - 1.
+ * Messages travel over channels; a node receives the messages of one channel
+ * from one sender by the handler it registered with openReceiver().
+ * The messages of one channel from one sender are handled in the order they were sent.
+ * Different channels and senders can be handled concurrently by different threads.
+ *
+ * A sender can send before the receiver opened its receiver;
+ * the messages wait until the receiver enables their delivery.
+ */
+public interface Transport {
+
+	/* Channels used by the communicators. */
+	int DISTRIBUTE_CHANNEL = 0;
+	int GATHER_CHANNEL = 1;
+	/**
+	 * The exchange between the workers uses the channel EXCHANGE_CHANNEL + n
+	 * for the n-th partitioning of the simulation (see Worker).
+	 */
+	int EXCHANGE_CHANNEL = 2;
+
+	int getWorkerID();
+
+	int getNumOfWorkers();
+
+	/** Worker ID of the node which distributes the problem and collects the results. */
+	int getMasterID();
+
+	boolean isMaster();
+
+	/**
+	 * Creates the receiving end for the messages of the given channel from the given worker.
+	 * The messages are not handed to the handler before enableDelivery() is called.
+	 */
+	void openReceiver(int channel, int source, MessageHandler handler);
+
+	void enableDelivery(int channel, int source);
+
+	/**
+	 * Starts a message to the given worker; it is sent by OutgoingMessage.finish().
+	 * One thread may have only one unfinished message at a time.
+	 */
+	OutgoingMessage newMessage(int channel, int destination) throws IOException;
+
+	/**
+	 * Closes the receivers and the send ends of the channel on this node.
+	 * No messages may be under way on the channel.
+	 */
+	void closeChannel(int channel) throws IOException;
+
+	void close() throws IOException;
+}
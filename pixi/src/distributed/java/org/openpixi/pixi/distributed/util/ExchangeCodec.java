@@ -0,0 +1,287 @@
+package org.openpixi.pixi.distributed.util;
+
+import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.grid.Cell;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary format of the particles and cells exchanged between the nodes in each step.
+ *
+ * Only the attributes needed by the receiver are written, packed into one double array
+ * (COUNT consecutive records of a fixed size). The message carries the number of records
+ * followed by the array; there are no object graphs and no class descriptors.
+ * - Leaving particles are taken over by the neighbor, thus, all their state is sent.
+ * - Ghost particles are only deposited to the grid of the neighbor,
+ *   thus, only the attributes used by the interpolation are sent.
+ * - Ghost cells are only used for the field solver and the interpolation to the particles,
+ *   thus, only the fields are sent.
+ *
+ * The send buffer is reused. The decoded ghost particles and cells come from pools
+ * which alternate between two sets of objects, so the objects of the previous message
+ * stay valid while the next one is received.
+ * One codec serves one neighbor; encoding and decoding may run on different threads
+ * (the decoding is called from the message upcalls).
+ */
+public class ExchangeCodec {
+
+	public static final int LEAVING_PARTICLE_SIZE = 22;
+	public static final int GHOST_PARTICLE_SIZE = 7;
+	public static final int CELL_SIZE = 4;
+
+	private double[] sendBuffer = new double[0];
+	private double[] receiveBuffer = new double[0];
+
+	private List<Particle>[] ghostParticlePools = createPools();
+	private List<Cell>[] ghostCellPools = createPools();
+	private int ghostParticlePool = 0;
+	private int ghostCellPool = 0;
+
+
+	@SuppressWarnings("unchecked")
+	private static <T> List<T>[] createPools() {
+		return new List[] {new ArrayList<T>(), new ArrayList<T>()};
+	}
+
+
+	//----------------------------------------------------------------------------------------------
+	// ENCODING
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * @return buffer with particles.size() * LEAVING_PARTICLE_SIZE valid entries
+	 */
+	public double[] encodeLeavingParticles(List<Particle> particles) {
+		double[] data = ensureSendBuffer(particles.size() * LEAVING_PARTICLE_SIZE);
+		writeLeavingParticles(particles, data, 0);
+		return data;
+	}
+
+
+	/**
+	 * @return buffer with particles.size() * GHOST_PARTICLE_SIZE valid entries
+	 */
+	public double[] encodeGhostParticles(List<Particle> particles) {
+		double[] data = ensureSendBuffer(particles.size() * GHOST_PARTICLE_SIZE);
+		writeGhostParticles(particles, data, 0);
+		return data;
+	}
+
+
+	/**
+	 * Packs all the particles of a step (aggregated exchange): the leaving particles
+	 * followed by the ghost particles.
+	 * @return buffer with leaving.size() * LEAVING_PARTICLE_SIZE +
+	 *         ghosts.size() * GHOST_PARTICLE_SIZE valid entries
+	 */
+	public double[] encodeParticles(List<Particle> leaving, List<Particle> ghosts) {
+		double[] data = ensureSendBuffer(
+				leaving.size() * LEAVING_PARTICLE_SIZE + ghosts.size() * GHOST_PARTICLE_SIZE);
+		int k = writeLeavingParticles(leaving, data, 0);
+		writeGhostParticles(ghosts, data, k);
+		return data;
+	}
+
+
+	/**
+	 * @return index behind the last written entry
+	 */
+	private int writeLeavingParticles(List<Particle> particles, double[] data, int k) {
+		for (Particle p: particles) {
+			data[k++] = p.getX();
+			data[k++] = p.getY();
+			data[k++] = p.getRadius();
+			data[k++] = p.getVx();
+			data[k++] = p.getVy();
+			data[k++] = p.getAx();
+			data[k++] = p.getAy();
+			data[k++] = p.getMass();
+			data[k++] = p.getCharge();
+			data[k++] = p.getPrevX();
+			data[k++] = p.getPrevY();
+			data[k++] = p.getEx();
+			data[k++] = p.getEy();
+			data[k++] = p.getBz();
+			data[k++] = p.getPrevPositionComponentForceX();
+			data[k++] = p.getPrevPositionComponentForceY();
+			data[k++] = p.getPrevTangentVelocityComponentOfForceX();
+			data[k++] = p.getPrevTangentVelocityComponentOfForceY();
+			data[k++] = p.getPrevNormalVelocityComponentOfForceX();
+			data[k++] = p.getPrevNormalVelocityComponentOfForceY();
+			data[k++] = p.getPrevBz();
+			data[k++] = p.getPrevLinearDragCoefficient();
+		}
+		return k;
+	}
+
+
+	/**
+	 * @return index behind the last written entry
+	 */
+	private int writeGhostParticles(List<Particle> particles, double[] data, int k) {
+		for (Particle p: particles) {
+			data[k++] = p.getX();
+			data[k++] = p.getY();
+			data[k++] = p.getPrevX();
+			data[k++] = p.getPrevY();
+			data[k++] = p.getVx();
+			data[k++] = p.getVy();
+			data[k++] = p.getCharge();
+		}
+		return k;
+	}
+
+
+	/**
+	 * @return buffer with cells.size() * CELL_SIZE valid entries
+	 */
+	public double[] encodeCells(List<Cell> cells) {
+		double[] data = ensureSendBuffer(cells.size() * CELL_SIZE);
+		int k = 0;
+		for (Cell cell: cells) {
+			data[k++] = cell.getEx();
+			data[k++] = cell.getEy();
+			data[k++] = cell.getBz();
+			data[k++] = cell.getBzo();
+		}
+		return data;
+	}
+
+
+	//----------------------------------------------------------------------------------------------
+	// DECODING
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * Buffer for the incoming array (valid until the next call).
+	 */
+	public double[] getReceiveBuffer(int length) {
+		if (receiveBuffer.length < length) {
+			receiveBuffer = new double[length + (length >> 1)];
+		}
+		return receiveBuffer;
+	}
+
+
+	/**
+	 * The arriving particles become local particles of this node; thus, they are new objects.
+	 */
+	public List<Particle> decodeLeavingParticles(double[] data, int count) {
+		return decodeLeavingParticles(data, 0, count);
+	}
+
+
+	/**
+	 * @param offset index of the first entry of the first record
+	 */
+	public List<Particle> decodeLeavingParticles(double[] data, int offset, int count) {
+		List<Particle> particles = new ArrayList<Particle>(count);
+		int k = offset;
+		for (int i = 0; i < count; ++i) {
+			Particle p = new Particle();
+			p.setX(data[k++]);
+			p.setY(data[k++]);
+			p.setRadius(data[k++]);
+			p.setVx(data[k++]);
+			p.setVy(data[k++]);
+			p.setAx(data[k++]);
+			p.setAy(data[k++]);
+			p.setMass(data[k++]);
+			p.setCharge(data[k++]);
+			p.setPrevX(data[k++]);
+			p.setPrevY(data[k++]);
+			p.setEx(data[k++]);
+			p.setEy(data[k++]);
+			p.setBz(data[k++]);
+			p.setPrevPositionComponentForceX(data[k++]);
+			p.setPrevPositionComponentForceY(data[k++]);
+			p.setPrevTangentVelocityComponentOfForceX(data[k++]);
+			p.setPrevTangentVelocityComponentOfForceY(data[k++]);
+			p.setPrevNormalVelocityComponentOfForceX(data[k++]);
+			p.setPrevNormalVelocityComponentOfForceY(data[k++]);
+			p.setPrevBz(data[k++]);
+			p.setPrevLinearDragCoefficient(data[k++]);
+			particles.add(p);
+		}
+		return particles;
+	}
+
+
+	/**
+	 * Returns pooled particles; valid until the next but one call.
+	 */
+	public List<Particle> decodeGhostParticles(double[] data, int count) {
+		return decodeGhostParticles(data, 0, count);
+	}
+
+
+	/**
+	 * @param offset index of the first entry of the first record
+	 */
+	public List<Particle> decodeGhostParticles(double[] data, int offset, int count) {
+		ghostParticlePool = 1 - ghostParticlePool;
+		List<Particle> particles = ghostParticlePools[ghostParticlePool];
+		while (particles.size() < count) {
+			particles.add(new Particle());
+		}
+		while (particles.size() > count) {
+			particles.remove(particles.size() - 1);
+		}
+
+		int k = offset;
+		for (Particle p: particles) {
+			p.setX(data[k++]);
+			p.setY(data[k++]);
+			p.setPrevX(data[k++]);
+			p.setPrevY(data[k++]);
+			p.setVx(data[k++]);
+			p.setVy(data[k++]);
+			p.setCharge(data[k++]);
+		}
+		return particles;
+	}
+
+
+	/**
+	 * Returns pooled cells with the fields set (see copyFields()); valid until the next but one call.
+	 */
+	public List<Cell> decodeCells(double[] data, int count) {
+		ghostCellPool = 1 - ghostCellPool;
+		List<Cell> cells = ghostCellPools[ghostCellPool];
+		while (cells.size() < count) {
+			cells.add(new Cell());
+		}
+		while (cells.size() > count) {
+			cells.remove(cells.size() - 1);
+		}
+
+		int k = 0;
+		for (Cell cell: cells) {
+			cell.setEx(data[k++]);
+			cell.setEy(data[k++]);
+			cell.setBz(data[k++]);
+			cell.setBzo(data[k++]);
+		}
+		return cells;
+	}
+
+
+	/**
+	 * Copies the fields which are transferred for the ghost cells.
+	 */
+	public static void copyFields(Cell source, Cell destination) {
+		destination.setEx(source.getEx());
+		destination.setEy(source.getEy());
+		destination.setBz(source.getBz());
+		destination.setBzo(source.getBzo());
+	}
+
+
+	private double[] ensureSendBuffer(int length) {
+		if (sendBuffer.length < length) {
+			sendBuffer = new double[length + (length >> 1)];
+		}
+		return sendBuffer;
+	}
+}
@@ -0,0 +1,5 @@
+package org.openpixi.pixi.distributed.util;
+
+public interface IncomingLoadDecisionHandler {
+	void handle(boolean repartition);
+}
@@ -0,0 +1,5 @@
+package org.openpixi.pixi.distributed.util;
+
+public interface IncomingLoadReportHandler {
+	void handle(int workerID, int numOfParticles, double computeTime);
+}
@@ -0,0 +1,9 @@
+package org.openpixi.pixi.distributed.util;
+
+import org.openpixi.pixi.physics.Particle;
+
+import java.util.List;
+
+public interface IncomingStepParticlesHandler {
+	void handle(List<Particle> arrivingParticles, List<Particle> ghostParticles);
+}
@@ -0,0 +1,178 @@
+package org.openpixi.pixi.parallel;
+
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs the phases of a simulation step (push, current reset, deposition, field solver passes,
+ * interpolation to particles, ...) on a fixed set of long-lived threads.
+ *
+ * Unlike with the ExecutorService no tasks or futures are handed over for each phase.
+ * The worker threads execute the whole sequence of phases of the step themselves
+ * and meet at a cyclic barrier once per phase boundary:
+ * the barrier is not released before the next phase is known,
+ * so the end of one phase and the start of the next one cost a single barrier crossing.
+ * The phases are handed over by the thread which calls run() (usually the thread
+ * running Simulation.step()); it executes the sequential parts of the step
+ * (e.g. collision detection) while the workers are held at the barrier.
+ *
+ * The phases are dispatched through BarrierParticleIterator and BarrierCellIterator,
+ * so the simulation step itself does not need to know about the engine.
+ */
+public class BarrierStepEngine {
+
+	private final int numOfThreads;
+
+	/** The worker threads meet here between the phases. */
+	private final CyclicBarrier barrier;
+
+	/** Released by run() when the next phase is set. */
+	private final Semaphore phaseGiven = new Semaphore(0);
+	/** Released by the barrier when the current phase is finished. */
+	private final Semaphore phaseDone = new Semaphore(0);
+
+	/** Set while a phase is dispatched; guards against re-entrant and concurrent calls. */
+	private final AtomicBoolean running = new AtomicBoolean(false);
+
+	/* Written by the calling thread before phaseGiven is released;
+	   the barrier makes them visible to the workers. */
+	private Phase nextPhase;
+	private boolean terminated = false;
+
+	/** Phase which is being executed by the workers; only changed by the barrier action. */
+	private Phase phase;
+
+	/** Failure of a worker thread in the current phase. */
+	private volatile Throwable failure;
+
+
+	/**
+	 * Part of the simulation step which is split among the threads of the engine.
+	 */
+	public interface Phase {
+		/**
+		 * Executes the share of the phase belonging to the given thread.
+		 */
+		void execute(int threadIdx, int numOfThreads);
+	}
+
+
+	public int getNumOfThreads() {
+		return numOfThreads;
+	}
+
+
+	/**
+	 * Starts numOfThreads worker threads.
+	 */
+	public BarrierStepEngine(int numOfThreads) {
+		this.numOfThreads = numOfThreads;
+		this.barrier = new CyclicBarrier(numOfThreads, new NextPhase());
+
+		for (int i = 0; i < numOfThreads; ++i) {
+			Thread worker = new Thread(new Worker(i), "BarrierStepEngine-" + i);
+			worker.setDaemon(true);
+			worker.start();
+		}
+	}
+
+
+	/**
+	 * Executes the phase on all the worker threads and waits for all of them to finish.
+	 * Can be called only by one thread at a time;
+	 * calling it from inside of a phase or while another thread is in run()
+	 * throws IllegalStateException.
+	 */
+	public void run(Phase phase) {
+		if (!running.compareAndSet(false, true)) {
+			throw new IllegalStateException(
+					"The step engine is already running a phase (re-entrant or concurrent call)!");
+		}
+		try {
+			if (terminated) {
+				throw new IllegalStateException("The step engine was already terminated!");
+			}
+			nextPhase = phase;
+			phaseGiven.release();
+			phaseDone.acquireUninterruptibly();
+		}
+		finally {
+			running.set(false);
+		}
+
+		if (failure != null) {
+			Throwable t = failure;
+			failure = null;
+			throw new RuntimeException("Phase failed in a worker thread!", t);
+		}
+	}
+
+
+	/**
+	 * Releases the worker threads.
+	 * Is idempotent (can be called multiple times without side-effects).
+	 */
+	public void terminate() {
+		if (!running.compareAndSet(false, true)) {
+			throw new IllegalStateException("The step engine is running a phase!");
+		}
+		try {
+			if (!terminated) {
+				terminated = true;
+				nextPhase = null;
+				phaseGiven.release();
+			}
+		}
+		finally {
+			running.set(false);
+		}
+	}
+
+
+	/**
+	 * Barrier action (executed by the last worker reaching the barrier):
+	 * reports the end of the finished phase and holds the workers until the next one is given.
+	 */
+	private class NextPhase implements Runnable {
+		public void run() {
+			if (phase != null) {
+				phase = null;
+				phaseDone.release();
+			}
+			phaseGiven.acquireUninterruptibly();
+			phase = nextPhase;
+		}
+	}
+
+
+	private class Worker implements Runnable {
+
+		private int threadIdx;
+
+		private Worker(int threadIdx) {
+			this.threadIdx = threadIdx;
+		}
+
+		public void run() {
+			while (true) {
+				try {
+					barrier.await();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				} catch (BrokenBarrierException e) {
+					throw new RuntimeException(e);
+				}
+				if (terminated) {
+					return;
+				}
+				try {
+					phase.execute(threadIdx, numOfThreads);
+				} catch (Throwable t) {
+					failure = t;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package org.openpixi.pixi.parallel.cellaccess;
+
+import org.openpixi.pixi.parallel.BarrierStepEngine;
+import org.openpixi.pixi.physics.grid.Grid;
+
+/**
+ * Executes action upon cells in parallel using the threads of BarrierStepEngine.
+ * Each thread works on one contiguous block of cells.
+ */
+public class BarrierCellIterator extends CellIterator {
+
+	/* These are exposed here for the phase
+	   since they can not be passed to it as method arguments. */
+	private Grid grid;
+	private CellAction action;
+	private CellRangeAction rangeAction;
+
+	private BarrierStepEngine engine;
+	private Phase phase = new Phase();
+	private RangePhase rangePhase = new RangePhase();
+
+
+	public BarrierCellIterator(BarrierStepEngine engine) {
+		this.engine = engine;
+	}
+
+
+	public void execute(Grid grid, CellAction action) {
+		this.grid = grid;
+		this.action = action;
+		engine.run(phase);
+	}
+
+
+	public void execute(Grid grid, CellRangeAction action) {
+		this.grid = grid;
+		this.rangeAction = action;
+		engine.run(rangePhase);
+	}
+
+
+	private class Phase implements BarrierStepEngine.Phase {
+		public void execute(int threadIdx, int numOfThreads) {
+			int ysize = dimensions.ysize();
+			int numOfCells = dimensions.xsize() * ysize;
+			int from = (int)((long)numOfCells * threadIdx / numOfThreads);
+			int to = (int)((long)numOfCells * (threadIdx + 1) / numOfThreads);
+			for (int cellIdx = from; cellIdx < to; ++cellIdx) {
+				int x = (cellIdx / ysize) + dimensions.xmin();
+				int y = (cellIdx % ysize) + dimensions.ymin();
+				action.execute(grid, x, y);
+			}
+		}
+	}
+
+
+	/**
+	 * Each thread works on one contiguous block of rows.
+	 */
+	private class RangePhase implements BarrierStepEngine.Phase {
+		public void execute(int threadIdx, int numOfThreads) {
+			int numOfRows = dimensions.xsize();
+			int from = (int)((long)numOfRows * threadIdx / numOfThreads);
+			int to = (int)((long)numOfRows * (threadIdx + 1) / numOfThreads);
+			if (from < to) {
+				rangeAction.execute(grid,
+						from + dimensions.xmin(), to - 1 + dimensions.xmin(),
+						dimensions.ymin(), dimensions.ymax());
+			}
+		}
+	}
+}
@@ -13,6 +13,12 @@ public abstract class CellIterator {
 
 	public abstract void execute(Grid grid, CellAction action);
 
+	/**
+	 * Splits the cells into contiguous blocks of whole rows (cells with the same x)
+	 * and calls CellRangeAction.execute() on each of them.
+	 */
+	public abstract void execute(Grid grid, CellRangeAction action);
+
 	/**
 	 * In this mode the iterator does not calculate the extra cells.
 	 */
@@ -0,0 +1,14 @@
+package org.openpixi.pixi.parallel.cellaccess;
+
+import org.openpixi.pixi.physics.grid.Grid;
+
+/**
+ * Variant of CellAction which receives a contiguous block of grid rows at once.
+ * Lets the action hoist the per cell virtual call out of the inner loop.
+ */
+public interface CellRangeAction {
+	/**
+	 * Executes the action on the cells [xmin..xmax] x [ymin..ymax] (bounds are inclusive).
+	 */
+	void execute(Grid grid, int xmin, int xmax, int ymin, int ymax);
+}
@@ -6,11 +6,16 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Executes action upon cells in parallel using threads.
  * Can iterate also through extra cells based on the boolean parameter
  * includeExtraCells in constructor.
+ *
+ * As in ParallelParticleIterator the cells are either distributed with a stride
+ * (grain size 0, the default for CellAction) or handed out in contiguous blocks of grid rows
+ * (grain size > 0 rows per block, always used for CellRangeAction).
  */
 public class ParallelCellIterator extends CellIterator {
 
@@ -18,16 +23,37 @@ public class ParallelCellIterator extends CellIterator {
 	   since they can not be passed to them as method arguments. */
 	private Grid grid;
 	private CellAction action;
+	private CellRangeAction rangeAction;
 	int numOfCells;
 
-	private List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+	/** Number of rows claimed by a thread at once; 0 means stride distribution. */
+	private int grainSize;
+	/** Number of rows in the blocks of the current execution. */
+	private int chunkSize;
+	/** Offset (from xmin) of the first row of the next unclaimed block. */
+	private AtomicInteger nextRow = new AtomicInteger();
+
+	private List<Callable<Object>> strideTasks = new ArrayList<Callable<Object>>();
+	private List<Callable<Object>> chunkTasks = new ArrayList<Callable<Object>>();
+	private int numOfThreads;
 	private ExecutorService threadExecutor;
 
 
 	public ParallelCellIterator(int numOfThreads, ExecutorService threadExecutor) {
+		this(numOfThreads, 0, threadExecutor);
+	}
+
+
+	public ParallelCellIterator(int numOfThreads, int grainSize, ExecutorService threadExecutor) {
+		if (grainSize < 0) {
+			throw new RuntimeException("Invalid grain size: " + grainSize);
+		}
+		this.numOfThreads = numOfThreads;
+		this.grainSize = grainSize;
 		this.threadExecutor = threadExecutor;
 		for (int i = 0; i < numOfThreads; ++i) {
-			tasks.add(new Task(i, numOfThreads));
+			strideTasks.add(new StrideTask(i, numOfThreads));
+			chunkTasks.add(new ChunkTask());
 		}
 	}
 
@@ -35,6 +61,32 @@ public class ParallelCellIterator extends CellIterator {
 	public void execute(Grid grid, CellAction action) {
 		this.grid = grid;
 		this.action = action;
+		this.rangeAction = null;
+		if (grainSize > 0) {
+			run(chunkTasks, grainSize);
+		}
+		else {
+			run(strideTasks, 0);
+		}
+	}
+
+
+	public void execute(Grid grid, CellRangeAction action) {
+		this.grid = grid;
+		this.action = null;
+		this.rangeAction = action;
+		if (grainSize > 0) {
+			run(chunkTasks, grainSize);
+		}
+		else {
+			run(chunkTasks, Math.max(1, (dimensions.xsize() + numOfThreads - 1) / numOfThreads));
+		}
+	}
+
+
+	private void run(List<Callable<Object>> tasks, int chunkSize) {
+		this.chunkSize = chunkSize;
+		nextRow.set(0);
 		try {
 			threadExecutor.invokeAll(tasks);
 		} catch (InterruptedException e) {
@@ -57,12 +109,12 @@ public class ParallelCellIterator extends CellIterator {
 	}
 
 
-	private class Task implements Callable<Object> {
+	private class StrideTask implements Callable<Object> {
 
 		private int threadIdx;
 		private int numOfThreads;
 
-		private Task(int threadIdx, int numOfThreads) {
+		private StrideTask(int threadIdx, int numOfThreads) {
 			this.threadIdx = threadIdx;
 			this.numOfThreads = numOfThreads;
 		}
@@ -76,4 +128,30 @@ public class ParallelCellIterator extends CellIterator {
 			return null;
 		}
 	}
+
+
+	private class ChunkTask implements Callable<Object> {
+
+		public Object call() throws Exception {
+			int numOfRows = dimensions.xsize();
+			int ymin = dimensions.ymin();
+			int ymax = dimensions.ymax();
+			int from;
+			while ((from = nextRow.getAndAdd(chunkSize)) < numOfRows) {
+				int xmin = from + dimensions.xmin();
+				int xmax = Math.min(from + chunkSize, numOfRows) - 1 + dimensions.xmin();
+				if (rangeAction != null) {
+					rangeAction.execute(grid, xmin, xmax, ymin, ymax);
+				}
+				else {
+					for (int x = xmin; x <= xmax; ++x) {
+						for (int y = ymin; y <= ymax; ++y) {
+							action.execute(grid, x, y);
+						}
+					}
+				}
+			}
+			return null;
+		}
+	}
 }
@@ -14,4 +14,10 @@ public class SequentialCellIterator extends CellIterator {
 			}
 		}
 	}
+
+	public void execute(Grid grid, CellRangeAction action) {
+		action.execute(grid,
+				dimensions.xmin(), dimensions.xmax(),
+				dimensions.ymin(), dimensions.ymax());
+	}
 }
@@ -0,0 +1,66 @@
+package org.openpixi.pixi.parallel.particleaccess;
+
+import org.openpixi.pixi.parallel.BarrierStepEngine;
+import org.openpixi.pixi.physics.Particle;
+
+import java.util.List;
+
+/**
+ * Executes action upon particles in parallel using the threads of BarrierStepEngine.
+ * Each thread works on one contiguous block of particles.
+ */
+public class BarrierParticleIterator implements ParticleIterator {
+
+	/* These are exposed here for the phase
+	   since they can not be passed to it as method arguments. */
+	private ParticleAction action;
+	private ParticleRangeAction rangeAction;
+	private List<Particle> particles;
+
+	private BarrierStepEngine engine;
+	private Phase phase = new Phase();
+	private RangePhase rangePhase = new RangePhase();
+
+
+	public BarrierParticleIterator(BarrierStepEngine engine) {
+		this.engine = engine;
+	}
+
+
+	public void execute(List<Particle> particles, ParticleAction action) {
+		this.action = action;
+		this.particles = particles;
+		engine.run(phase);
+	}
+
+
+	public void execute(List<Particle> particles, ParticleRangeAction action) {
+		this.rangeAction = action;
+		this.particles = particles;
+		engine.run(rangePhase);
+	}
+
+
+	private class Phase implements BarrierStepEngine.Phase {
+		public void execute(int threadIdx, int numOfThreads) {
+			int numOfParticles = particles.size();
+			int from = (int)((long)numOfParticles * threadIdx / numOfThreads);
+			int to = (int)((long)numOfParticles * (threadIdx + 1) / numOfThreads);
+			for (int particleIdx = from; particleIdx < to; ++particleIdx) {
+				action.execute(particles.get(particleIdx));
+			}
+		}
+	}
+
+
+	private class RangePhase implements BarrierStepEngine.Phase {
+		public void execute(int threadIdx, int numOfThreads) {
+			int numOfParticles = particles.size();
+			int from = (int)((long)numOfParticles * threadIdx / numOfThreads);
+			int to = (int)((long)numOfParticles * (threadIdx + 1) / numOfThreads);
+			if (from < to) {
+				rangeAction.execute(particles, from, to);
+			}
+		}
+	}
+}
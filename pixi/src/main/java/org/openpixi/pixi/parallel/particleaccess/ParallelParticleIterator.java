@@ -6,6 +6,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Executes action upon particles in parallel using threads.
@@ -14,28 +15,82 @@ import java.util.concurrent.ExecutorService;
  * - Because we want to use the invokeAll() method of ExecutorService.
  * Why do we want to use the invokeAll() method and not the execute() or submit() method?
  * - Because execute() and submit() do not wait for the tasks to finish.
+ *
+ * There are two ways of distributing the particles among the threads.
+ * - Stride (grain size 0, the default for ParticleAction):
+ *   thread i works on particles i, i + numOfThreads, i + 2 * numOfThreads, ...
+ * - Chunks (grain size > 0, always used for ParticleRangeAction):
+ *   the threads repeatedly claim the next contiguous block of grainSize particles
+ *   until all the particles are processed.
+ *   Neighboring particles (which are close in memory and, if sorted, also in space)
+ *   are processed by the same thread and a thread which finishes its block early
+ *   takes over the remaining work.
+ *   For ParticleRangeAction with grain size 0 each thread gets one block of equal size.
  */
 public class ParallelParticleIterator implements ParticleIterator {
 
 	/* These are exposed here for inner classes
 	   since they can to be passed to them as method arguments */
 	private ParticleAction action;
+	private ParticleRangeAction rangeAction;
 	private List<Particle> particles;
 
-	private List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+	/** Number of particles claimed by a thread at once; 0 means stride distribution. */
+	private int grainSize;
+	/** Size of the blocks in the current execution. */
+	private int chunkSize;
+	/** Index of the first particle of the next unclaimed block. */
+	private AtomicInteger nextParticle = new AtomicInteger();
+
+	private List<Callable<Object>> strideTasks = new ArrayList<Callable<Object>>();
+	private List<Callable<Object>> chunkTasks = new ArrayList<Callable<Object>>();
+	private int numOfThreads;
 	private ExecutorService threadExecutor;
 
 	public ParallelParticleIterator(int numOfThreads, ExecutorService threadExecutor) {
+		this(numOfThreads, 0, threadExecutor);
+	}
+
+	public ParallelParticleIterator(int numOfThreads, int grainSize, ExecutorService threadExecutor) {
+		if (grainSize < 0) {
+			throw new RuntimeException("Invalid grain size: " + grainSize);
+		}
+		this.numOfThreads = numOfThreads;
+		this.grainSize = grainSize;
 		this.threadExecutor = threadExecutor;
 		for (int i = 0; i < numOfThreads; ++i) {
-			tasks.add(new Task(i, numOfThreads));
+			strideTasks.add(new StrideTask(i, numOfThreads));
+			chunkTasks.add(new ChunkTask());
 		}
 	}
 
 	public void execute(List<Particle> particles, ParticleAction action) {
 		this.action = action;
+		this.rangeAction = null;
+		this.particles = particles;
+		if (grainSize > 0) {
+			run(chunkTasks, grainSize);
+		}
+		else {
+			run(strideTasks, 0);
+		}
+	}
+
+	public void execute(List<Particle> particles, ParticleRangeAction action) {
+		this.action = null;
+		this.rangeAction = action;
 		this.particles = particles;
+		if (grainSize > 0) {
+			run(chunkTasks, grainSize);
+		}
+		else {
+			run(chunkTasks, Math.max(1, (particles.size() + numOfThreads - 1) / numOfThreads));
+		}
+	}
 
+	private void run(List<Callable<Object>> tasks, int chunkSize) {
+		this.chunkSize = chunkSize;
+		nextParticle.set(0);
 		try {
 			threadExecutor.invokeAll(tasks);
 		} catch (InterruptedException e) {
@@ -43,12 +98,12 @@ public class ParallelParticleIterator implements ParticleIterator {
 		}
 	}
 
-	private class Task implements Callable<Object> {
+	private class StrideTask implements Callable<Object> {
 
 		private int threadIdx;
 		private int numOfThreads;
 
-		private Task(int threadIdx, int numOfThreads) {
+		private StrideTask(int threadIdx, int numOfThreads) {
 			this.threadIdx = threadIdx;
 			this.numOfThreads = numOfThreads;
 		}
@@ -60,4 +115,24 @@ public class ParallelParticleIterator implements ParticleIterator {
 			return null;
 		}
 	}
+
+	private class ChunkTask implements Callable<Object> {
+
+		public Object call() throws Exception {
+			int numOfParticles = particles.size();
+			int from;
+			while ((from = nextParticle.getAndAdd(chunkSize)) < numOfParticles) {
+				int to = Math.min(from + chunkSize, numOfParticles);
+				if (rangeAction != null) {
+					rangeAction.execute(particles, from, to);
+				}
+				else {
+					for (int particleIdx = from; particleIdx < to; ++particleIdx) {
+						action.execute(particles.get(particleIdx));
+					}
+				}
+			}
+			return null;
+		}
+	}
 }
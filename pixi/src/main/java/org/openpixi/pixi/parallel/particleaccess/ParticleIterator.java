@@ -14,4 +14,10 @@ import java.util.List;
  */
 public interface ParticleIterator {
 	void execute(List<Particle> particles, ParticleAction action);
+
+	/**
+	 * Splits the particles into contiguous blocks and calls ParticleRangeAction.execute()
+	 * on each of them.
+	 */
+	void execute(List<Particle> particles, ParticleRangeAction action);
 }
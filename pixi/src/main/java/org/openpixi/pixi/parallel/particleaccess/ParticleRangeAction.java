@@ -0,0 +1,17 @@
+package org.openpixi.pixi.parallel.particleaccess;
+
+import org.openpixi.pixi.physics.Particle;
+
+import java.util.List;
+
+/**
+ * Variant of ParticleAction which receives a contiguous block of particles at once.
+ * Lets the action hoist the per particle virtual call and any per block setup
+ * (e.g. lookup of thread local data) out of the inner loop.
+ */
+public interface ParticleRangeAction {
+	/**
+	 * Executes the action on the particles with indices from (inclusive) to to (exclusive).
+	 */
+	void execute(List<Particle> particles, int from, int to);
+}
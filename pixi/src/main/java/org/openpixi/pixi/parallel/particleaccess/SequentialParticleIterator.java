@@ -14,4 +14,8 @@ public class SequentialParticleIterator implements ParticleIterator {
 			action.execute(particle);
 		}
 	}
+
+	public void execute(List<Particle> particles, ParticleRangeAction action) {
+		action.execute(particles, 0, particles.size());
+	}
 }
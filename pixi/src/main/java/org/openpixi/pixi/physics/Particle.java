@@ -283,26 +283,36 @@ public class Particle implements Serializable {
 
 	/** Copy constructor */
 	public Particle(Particle p) {
-		x = p.x;
-		y = p.y;
-		radius = p.radius;
-		vx = p.vx;
-		vy = p.vy;
-		ax = p.ax;
-		ay = p.ay;
-		mass = p.mass;
-		charge = p.charge;
-		prevX = p.prevX;
-		prevY = p.prevY;
-		Ex = p.Ex;
-		Ey = p.Ey;
-		Bz = p.Bz;
-		prevpositionComponentForceX = p.prevpositionComponentForceX;
-		prevpositionComponentForceY = p.prevpositionComponentForceY;
-		prevtangentVelocityComponentOfForceX = p.prevtangentVelocityComponentOfForceX;
-		prevtangentVelocityComponentOfForceY = p.prevtangentVelocityComponentOfForceY;
-		prevBz = p.prevBz;
-		prevLinearDragCoefficient = p.prevLinearDragCoefficient;
+		copyValues(p);
+	}
+
+	/**
+	 * Copies all the values of the given particle into the fields of this one.
+	 * Uses the getters of p, so p may also be a ParticleView.
+	 */
+	void copyValues(Particle p) {
+		x = p.getX();
+		y = p.getY();
+		radius = p.getRadius();
+		vx = p.getVx();
+		vy = p.getVy();
+		ax = p.getAx();
+		ay = p.getAy();
+		mass = p.getMass();
+		charge = p.getCharge();
+		prevX = p.getPrevX();
+		prevY = p.getPrevY();
+		Ex = p.getEx();
+		Ey = p.getEy();
+		Bz = p.getBz();
+		prevpositionComponentForceX = p.getPrevPositionComponentForceX();
+		prevpositionComponentForceY = p.getPrevPositionComponentForceY();
+		prevtangentVelocityComponentOfForceX = p.getPrevTangentVelocityComponentOfForceX();
+		prevtangentVelocityComponentOfForceY = p.getPrevTangentVelocityComponentOfForceY();
+		prevnormalVelocityComponentOfForceX = p.getPrevNormalVelocityComponentOfForceX();
+		prevnormalVelocityComponentOfForceY = p.getPrevNormalVelocityComponentOfForceY();
+		prevBz = p.getPrevBz();
+		prevLinearDragCoefficient = p.getPrevLinearDragCoefficient();
 	}
 
 
@@ -15,5 +15,6 @@ public class ParticleGridInitializer {
 	                       List<Particle> particles, Grid grid) {
 		interpolation.interpolateChargedensity(particles, grid);
 		poissonSolver.solve(grid);
+		grid.fillGhostFields();
 	}
 }
@@ -0,0 +1,179 @@
+package org.openpixi.pixi.physics;
+
+import org.openpixi.pixi.parallel.particleaccess.ParticleIterator;
+import org.openpixi.pixi.parallel.particleaccess.ParticleRangeAction;
+import org.openpixi.pixi.physics.grid.Grid;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reorders the particles of a ParticleStore by the index of the grid cell they are in.
+ * Particles which are close to each other in space are then close to each other in memory
+ * and the interpolation touches the grid in (nearly) sequential order.
+ *
+ * The sort is a stable counting sort.
+ * The cell indices of the particles and the permutation of the attribute arrays are computed
+ * in parallel by the particle iterator; only the counting itself is sequential.
+ *
+ * After each sort the particles of cell [x,y] occupy the positions
+ * getCellOffsets()[c] (inclusive) to getCellOffsets()[c + 1] (exclusive) of the store,
+ * where c = getCellIndex(x, y).
+ * The offsets are valid until the particles move again (or are added / removed).
+ */
+public class ParticleSorter {
+
+	private ParticleIterator particleIterator;
+
+	private int numCellsX;
+	private int numCellsY;
+	private double cellWidth;
+	private double cellHeight;
+
+	/** Cell index of each particle. */
+	private int[] particleCells = new int[0];
+	/** Old position of the particle which moves to position k is order[k]. */
+	private int[] order = new int[0];
+	/** First particle of each cell; the last entry is the number of particles. */
+	private int[] cellOffsets = new int[1];
+	/** Next free position of each cell during the counting sort. */
+	private int[] nextPosition = new int[0];
+
+	/* These are set in each sort to enable the inner classes to read them. */
+	private ParticleStore store;
+	private double[][] source;
+	/** Arrays which receive the permuted attributes (swapped with the arrays of the store). */
+	private double[][] sorted;
+
+	private ComputeCells computeCells = new ComputeCells();
+	private Permute permute = new Permute();
+
+
+	public ParticleSorter(ParticleIterator particleIterator) {
+		this.particleIterator = particleIterator;
+	}
+
+
+	public int[] getCellOffsets() {
+		return cellOffsets;
+	}
+
+	public int getCellIndex(int cellX, int cellY) {
+		return cellX * numCellsY + cellY;
+	}
+
+	public int getNumCellsX() {
+		return numCellsX;
+	}
+
+	public int getNumCellsY() {
+		return numCellsY;
+	}
+
+
+	/**
+	 * Sorts the particles of the store by the cells of the given grid.
+	 */
+	public void sort(ParticleStore store, Grid grid) {
+		this.store = store;
+		prepare(store, grid);
+
+		List<Particle> particles = store.asList();
+		particleIterator.execute(particles, computeCells);
+
+		if (countingSort(store.size())) {
+			source = store.arrays();
+			prepareSortedArrays();
+			particleIterator.execute(particles, permute);
+			sorted = store.reorder(order, sorted);
+			source = null;
+		}
+		this.store = null;
+	}
+
+
+	private void prepare(ParticleStore store, Grid grid) {
+		numCellsX = grid.getNumCellsX();
+		numCellsY = grid.getNumCellsY();
+		cellWidth = grid.getCellWidth();
+		cellHeight = grid.getCellHeight();
+
+		int numOfCells = numCellsX * numCellsY;
+		if (cellOffsets.length != numOfCells + 1) {
+			cellOffsets = new int[numOfCells + 1];
+			nextPosition = new int[numOfCells];
+		}
+		if (particleCells.length < store.size()) {
+			particleCells = new int[store.capacity()];
+			order = new int[store.capacity()];
+		}
+	}
+
+
+	/**
+	 * Computes the offsets of the cells and the new order of the particles.
+	 * @return false if the particles are already sorted
+	 */
+	private boolean countingSort(int numOfParticles) {
+		Arrays.fill(cellOffsets, 0);
+		for (int i = 0; i < numOfParticles; ++i) {
+			cellOffsets[particleCells[i] + 1]++;
+		}
+		for (int c = 0; c < nextPosition.length; ++c) {
+			cellOffsets[c + 1] += cellOffsets[c];
+			nextPosition[c] = cellOffsets[c];
+		}
+
+		boolean isSorted = true;
+		for (int i = 0; i < numOfParticles; ++i) {
+			int k = nextPosition[particleCells[i]]++;
+			order[k] = i;
+			isSorted &= (k == i);
+		}
+		return !isSorted;
+	}
+
+
+	/**
+	 * The sorted arrays have to have the same length as the arrays of the store.
+	 */
+	private void prepareSortedArrays() {
+		int capacity = store.capacity();
+		if (sorted == null || sorted.length != source.length) {
+			sorted = new double[source.length][];
+		}
+		for (int a = 0; a < sorted.length; ++a) {
+			if (sorted[a] == null || sorted[a].length != capacity) {
+				sorted[a] = new double[capacity];
+			}
+		}
+	}
+
+
+	private class ComputeCells implements ParticleRangeAction {
+		public void execute(List<Particle> particles, int from, int to) {
+			double[] x = store.x;
+			double[] y = store.y;
+			for (int i = from; i < to; ++i) {
+				int cellX = (int) Math.floor(x[i] / cellWidth);
+				int cellY = (int) Math.floor(y[i] / cellHeight);
+				cellX = Math.min(Math.max(cellX, 0), numCellsX - 1);
+				cellY = Math.min(Math.max(cellY, 0), numCellsY - 1);
+				particleCells[i] = getCellIndex(cellX, cellY);
+			}
+		}
+	}
+
+
+	private class Permute implements ParticleRangeAction {
+		public void execute(List<Particle> particles, int from, int to) {
+			for (int a = 0; a < source.length; ++a) {
+				double[] src = source[a];
+				double[] dest = sorted[a];
+				for (int k = from; k < to; ++k) {
+					dest[k] = src[order[k]];
+				}
+			}
+		}
+	}
+}
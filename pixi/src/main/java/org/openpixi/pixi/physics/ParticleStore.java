@@ -0,0 +1,503 @@
+package org.openpixi.pixi.physics;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Stores the particles as a structure of arrays.
+ * Each attribute of the particle is kept in its own primitive array so that the hot loops
+ * (push, interpolation) can stream through contiguous memory instead of chasing references
+ * to individual Particle objects.
+ *
+ * The i-th particle is made up of the i-th entries of all the arrays.
+ * Only the first size() entries of the arrays are valid.
+ *
+ * !!! IMPORTANT !!!
+ * The arrays are reallocated when the store grows.
+ * Never cache the array references across calls which add particles.
+ *
+ * For code which works with Particle objects (UI, collisions, tests) the store provides
+ * a view of each particle (see get()) and a list adapter (see asList()).
+ * A contiguous range of particles is accessible via asList().subList(from, to).
+ *
+ * The mass, the charge and the radius are not stored per particle; each particle
+ * carries the id of its species and the properties are kept in the species table of the store
+ * (see getMass(), getCharge() and getRadius()).
+ */
+public class ParticleStore {
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	public double[] x;
+	public double[] y;
+	public double[] vx;
+	public double[] vy;
+	public double[] ax;
+	public double[] ay;
+	public double[] prevX;
+	public double[] prevY;
+	public double[] Ex;
+	public double[] Ey;
+	public double[] Bz;
+	public double[] prevPositionComponentForceX;
+	public double[] prevPositionComponentForceY;
+	public double[] prevTangentVelocityComponentOfForceX;
+	public double[] prevTangentVelocityComponentOfForceY;
+	public double[] prevNormalVelocityComponentOfForceX;
+	public double[] prevNormalVelocityComponentOfForceY;
+	public double[] prevBz;
+	public double[] prevLinearDragCoefficient;
+	/** Species id (index in the species table) of each particle. */
+	public int[] species;
+
+	private SpeciesTable speciesTable = new SpeciesTable();
+	/** Spare array for the species used when the particles are reordered. */
+	private int[] spareSpecies;
+
+	/**
+	 * Views of the stored particles; created on demand by get() (null until then).
+	 * The views follow the particles when they are moved within the store
+	 * so that the identity of a particle is preserved.
+	 */
+	private ParticleView[] views;
+	/** Spare array for the views used when the particles are reordered. */
+	private ParticleView[] spareViews;
+
+	private int size;
+
+	private ParticleList list = new ParticleList();
+
+
+	public int size() {
+		return size;
+	}
+
+	public int capacity() {
+		return x.length;
+	}
+
+	public SpeciesTable getSpeciesTable() {
+		return speciesTable;
+	}
+
+
+	public double getMass(int i) {
+		return speciesTable.getMasses()[species[i]];
+	}
+
+	public double getCharge(int i) {
+		return speciesTable.getCharges()[species[i]];
+	}
+
+	public double getRadius(int i) {
+		return speciesTable.getRadii()[species[i]];
+	}
+
+	/**
+	 * Changing the mass, the charge or the radius moves the particle to another species.
+	 */
+	public void setMass(int i, double mass) {
+		species[i] = speciesTable.idOf(mass, getCharge(i), getRadius(i));
+	}
+
+	public void setCharge(int i, double charge) {
+		species[i] = speciesTable.idOf(getMass(i), charge, getRadius(i));
+	}
+
+	public void setRadius(int i, double radius) {
+		species[i] = speciesTable.idOf(getMass(i), getCharge(i), radius);
+	}
+
+
+	public ParticleStore() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public ParticleStore(int capacity) {
+		allocate(Math.max(capacity, 1));
+	}
+
+	public ParticleStore(List<Particle> particles) {
+		this(particles.size());
+		for (Particle p: particles) {
+			add(p);
+		}
+	}
+
+
+	/**
+	 * Returns the view of the i-th particle.
+	 * The same view object is returned for the same particle until it is removed.
+	 */
+	public ParticleView get(int i) {
+		checkIndex(i);
+		ParticleView view = views[i];
+		if (view == null) {
+			view = new ParticleView(this, i);
+			views[i] = view;
+		}
+		return view;
+	}
+
+
+	/**
+	 * Number of particles whose view has been created (used by the tests).
+	 */
+	int numOfViews() {
+		int count = 0;
+		for (int i = 0; i < size; ++i) {
+			if (views[i] != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+
+	/**
+	 * Adds a copy of the given particle to the end of the store.
+	 * @return index of the new particle
+	 */
+	public int add(Particle p) {
+		ensureCapacity(size + 1);
+		int i = size;
+		size++;
+		copyFrom(i, p);
+		return i;
+	}
+
+
+	/**
+	 * Inserts a copy of the given particle at the given position
+	 * shifting the subsequent particles.
+	 */
+	public void add(int i, Particle p) {
+		if (i == size) {
+			add(p);
+			return;
+		}
+		checkIndex(i);
+		ensureCapacity(size + 1);
+		shift(i, i + 1, size - i);
+		size++;
+		views[i] = null;
+		copyFrom(i, p);
+	}
+
+
+	/**
+	 * Overwrites the i-th particle with the values of the given particle.
+	 */
+	public void set(int i, Particle p) {
+		checkIndex(i);
+		copyFrom(i, p);
+	}
+
+
+	/**
+	 * Removes the i-th particle preserving the order of the remaining particles.
+	 * The view of the removed particle (if it was ever handed out) keeps its values
+	 * but is no longer backed by this store.
+	 * @return the view of the removed particle or a copy of the particle if it has no view
+	 */
+	public Particle remove(int i) {
+		checkIndex(i);
+		Particle removed;
+		if (views[i] == null) {
+			removed = new Particle(new ParticleView(this, i));
+		} else {
+			views[i].detach();
+			removed = views[i];
+		}
+		shift(i + 1, i, size - i - 1);
+		size--;
+		views[size] = null;
+		return removed;
+	}
+
+
+	public void clear() {
+		for (int i = 0; i < size; ++i) {
+			if (views[i] != null) {
+				views[i].detach();
+				views[i] = null;
+			}
+		}
+		size = 0;
+	}
+
+
+	/**
+	 * Overwrites the i-th particle with the values of the given particle.
+	 * Works through the getters so that the source can be a view as well.
+	 */
+	private void copyFrom(int i, Particle p) {
+		x[i] = p.getX();
+		y[i] = p.getY();
+		vx[i] = p.getVx();
+		vy[i] = p.getVy();
+		ax[i] = p.getAx();
+		ay[i] = p.getAy();
+		prevX[i] = p.getPrevX();
+		prevY[i] = p.getPrevY();
+		Ex[i] = p.getEx();
+		Ey[i] = p.getEy();
+		Bz[i] = p.getBz();
+		prevPositionComponentForceX[i] = p.getPrevPositionComponentForceX();
+		prevPositionComponentForceY[i] = p.getPrevPositionComponentForceY();
+		prevTangentVelocityComponentOfForceX[i] = p.getPrevTangentVelocityComponentOfForceX();
+		prevTangentVelocityComponentOfForceY[i] = p.getPrevTangentVelocityComponentOfForceY();
+		prevNormalVelocityComponentOfForceX[i] = p.getPrevNormalVelocityComponentOfForceX();
+		prevNormalVelocityComponentOfForceY[i] = p.getPrevNormalVelocityComponentOfForceY();
+		prevBz[i] = p.getPrevBz();
+		prevLinearDragCoefficient[i] = p.getPrevLinearDragCoefficient();
+		species[i] = speciesTable.idOf(p.getMass(), p.getCharge(), p.getRadius());
+	}
+
+
+	/**
+	 * Moves the given number of particles from position src to position dest.
+	 * The views are moved along with the data.
+	 */
+	private void shift(int src, int dest, int length) {
+		for (double[] a: arrays()) {
+			System.arraycopy(a, src, a, dest, length);
+		}
+		System.arraycopy(species, src, species, dest, length);
+		System.arraycopy(views, src, views, dest, length);
+		for (int i = dest; i < dest + length; ++i) {
+			if (views[i] != null) {
+				views[i].index = i;
+			}
+		}
+	}
+
+
+	/**
+	 * Puts the particles into a new order; the particle at position order[k] moves to position k.
+	 * The given arrays (in the same order as in arrays()) have to hold the already permuted
+	 * values and replace the attribute arrays of the store.
+	 * The views and the species are moved along with the data.
+	 * @return the replaced attribute arrays (can be reused by the caller)
+	 */
+	double[][] reorder(int[] order, double[][] sorted) {
+		double[][] replaced = arrays();
+
+		x = sorted[0];
+		y = sorted[1];
+		vx = sorted[2];
+		vy = sorted[3];
+		ax = sorted[4];
+		ay = sorted[5];
+		prevX = sorted[6];
+		prevY = sorted[7];
+		Ex = sorted[8];
+		Ey = sorted[9];
+		Bz = sorted[10];
+		prevPositionComponentForceX = sorted[11];
+		prevPositionComponentForceY = sorted[12];
+		prevTangentVelocityComponentOfForceX = sorted[13];
+		prevTangentVelocityComponentOfForceY = sorted[14];
+		prevNormalVelocityComponentOfForceX = sorted[15];
+		prevNormalVelocityComponentOfForceY = sorted[16];
+		prevBz = sorted[17];
+		prevLinearDragCoefficient = sorted[18];
+
+		if (spareSpecies == null || spareSpecies.length != species.length) {
+			spareSpecies = new int[species.length];
+		}
+		for (int k = 0; k < size; ++k) {
+			spareSpecies[k] = species[order[k]];
+		}
+		int[] tmpSpecies = species;
+		species = spareSpecies;
+		spareSpecies = tmpSpecies;
+
+		if (spareViews == null || spareViews.length != views.length) {
+			spareViews = new ParticleView[views.length];
+		}
+		for (int k = 0; k < size; ++k) {
+			ParticleView view = views[order[k]];
+			if (view != null) {
+				view.index = k;
+			}
+			spareViews[k] = view;
+		}
+		ParticleView[] tmp = views;
+		views = spareViews;
+		spareViews = tmp;
+		Arrays.fill(spareViews, null);
+
+		return replaced;
+	}
+
+
+	public void ensureCapacity(int capacity) {
+		if (capacity <= x.length) {
+			return;
+		}
+		int newCapacity = Math.max(capacity, x.length + (x.length >> 1) + 1);
+
+		x = Arrays.copyOf(x, newCapacity);
+		y = Arrays.copyOf(y, newCapacity);
+		vx = Arrays.copyOf(vx, newCapacity);
+		vy = Arrays.copyOf(vy, newCapacity);
+		ax = Arrays.copyOf(ax, newCapacity);
+		ay = Arrays.copyOf(ay, newCapacity);
+		prevX = Arrays.copyOf(prevX, newCapacity);
+		prevY = Arrays.copyOf(prevY, newCapacity);
+		Ex = Arrays.copyOf(Ex, newCapacity);
+		Ey = Arrays.copyOf(Ey, newCapacity);
+		Bz = Arrays.copyOf(Bz, newCapacity);
+		prevPositionComponentForceX = Arrays.copyOf(prevPositionComponentForceX, newCapacity);
+		prevPositionComponentForceY = Arrays.copyOf(prevPositionComponentForceY, newCapacity);
+		prevTangentVelocityComponentOfForceX =
+				Arrays.copyOf(prevTangentVelocityComponentOfForceX, newCapacity);
+		prevTangentVelocityComponentOfForceY =
+				Arrays.copyOf(prevTangentVelocityComponentOfForceY, newCapacity);
+		prevNormalVelocityComponentOfForceX =
+				Arrays.copyOf(prevNormalVelocityComponentOfForceX, newCapacity);
+		prevNormalVelocityComponentOfForceY =
+				Arrays.copyOf(prevNormalVelocityComponentOfForceY, newCapacity);
+		prevBz = Arrays.copyOf(prevBz, newCapacity);
+		prevLinearDragCoefficient = Arrays.copyOf(prevLinearDragCoefficient, newCapacity);
+		species = Arrays.copyOf(species, newCapacity);
+		views = Arrays.copyOf(views, newCapacity);
+	}
+
+
+	private void allocate(int capacity) {
+		x = new double[capacity];
+		y = new double[capacity];
+		vx = new double[capacity];
+		vy = new double[capacity];
+		ax = new double[capacity];
+		ay = new double[capacity];
+		prevX = new double[capacity];
+		prevY = new double[capacity];
+		Ex = new double[capacity];
+		Ey = new double[capacity];
+		Bz = new double[capacity];
+		prevPositionComponentForceX = new double[capacity];
+		prevPositionComponentForceY = new double[capacity];
+		prevTangentVelocityComponentOfForceX = new double[capacity];
+		prevTangentVelocityComponentOfForceY = new double[capacity];
+		prevNormalVelocityComponentOfForceX = new double[capacity];
+		prevNormalVelocityComponentOfForceY = new double[capacity];
+		prevBz = new double[capacity];
+		prevLinearDragCoefficient = new double[capacity];
+		species = new int[capacity];
+		views = new ParticleView[capacity];
+	}
+
+
+	/**
+	 * Returns all the attribute arrays of type double (all but the species).
+	 * Handy for operations which treat all the attributes the same way (copying, permuting).
+	 */
+	public double[][] arrays() {
+		return new double[][] {
+				x, y, vx, vy, ax, ay, prevX, prevY, Ex, Ey, Bz,
+				prevPositionComponentForceX, prevPositionComponentForceY,
+				prevTangentVelocityComponentOfForceX, prevTangentVelocityComponentOfForceY,
+				prevNormalVelocityComponentOfForceX, prevNormalVelocityComponentOfForceY,
+				prevBz, prevLinearDragCoefficient};
+	}
+
+
+	private void checkIndex(int i) {
+		if (i < 0 || i >= size) {
+			throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+		}
+	}
+
+
+	/**
+	 * Returns list of the stored particles.
+	 * The list is backed by the store; the changes in the list are reflected in the store
+	 * and vice versa.
+	 * Particles added to the list are copied into the store.
+	 */
+	public List<Particle> asList() {
+		return list;
+	}
+
+
+	/**
+	 * Returns the store behind the given list
+	 * or null if the list was not obtained by asList().
+	 */
+	public static ParticleStore storeOf(List<Particle> particles) {
+		if (particles instanceof ParticleList) {
+			return ((ParticleList) particles).getStore();
+		}
+		return null;
+	}
+
+
+	/**
+	 * Returns the given particle as a view if it lives in a store
+	 * or null if it is an ordinary particle (or a view of a removed particle).
+	 */
+	public static ParticleView viewOf(Particle p) {
+		if (p instanceof ParticleView && ((ParticleView) p).getStore() != null) {
+			return (ParticleView) p;
+		}
+		return null;
+	}
+
+
+	private class ParticleList extends AbstractList<Particle>
+			implements RandomAccess, Serializable {
+
+		private ParticleStore getStore() {
+			return ParticleStore.this;
+		}
+
+		@Override
+		public Particle get(int index) {
+			return ParticleStore.this.get(index);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public Particle set(int index, Particle element) {
+			Particle previous = new Particle(ParticleStore.this.get(index));
+			ParticleStore.this.set(index, element);
+			return previous;
+		}
+
+		@Override
+		public void add(int index, Particle element) {
+			ParticleStore.this.add(index, element);
+			modCount++;
+		}
+
+		@Override
+		public Particle remove(int index) {
+			modCount++;
+			return ParticleStore.this.remove(index);
+		}
+
+		@Override
+		public void clear() {
+			modCount++;
+			ParticleStore.this.clear();
+		}
+
+		/**
+		 * The store itself is not sent over the wire; the receiver gets an ordinary list.
+		 */
+		private Object writeReplace() {
+			return new ArrayList<Particle>(this);
+		}
+	}
+}
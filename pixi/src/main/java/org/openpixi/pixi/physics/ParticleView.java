@@ -0,0 +1,462 @@
+package org.openpixi.pixi.physics;
+
+/**
+ * Particle which lives in a ParticleStore.
+ * All the getters and setters work directly with the arrays of the store.
+ * The view always refers to the same particle even if the particle is moved within the store.
+ * The views are created on demand by ParticleStore.get(); the fields inherited from Particle
+ * are used only after the particle was removed from the store, then the view keeps
+ * its last values there.
+ */
+public class ParticleView extends Particle {
+
+	/** Store holding the values of this particle; null once the particle was removed. */
+	ParticleStore store;
+
+	/** Position of this particle within the store. */
+	int index;
+
+
+	ParticleView(ParticleStore store, int index) {
+		this.store = store;
+		this.index = index;
+	}
+
+
+	/**
+	 * Copies the values out of the store and stops referring to it.
+	 * Called by the store when the particle is removed.
+	 */
+	void detach() {
+		copyValues(this);
+		store = null;
+		index = -1;
+	}
+
+
+	/**
+	 * @return store holding this particle or null if the particle was removed from the store
+	 */
+	public ParticleStore getStore() {
+		return store;
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+
+	@Override
+	public double getX() {
+		if (store == null) {
+			return super.getX();
+		}
+		return store.x[index];
+	}
+
+	@Override
+	public void setX(double x) {
+		if (store == null) {
+			super.setX(x);
+			return;
+		}
+		store.x[index] = x;
+	}
+
+	@Override
+	public double getY() {
+		if (store == null) {
+			return super.getY();
+		}
+		return store.y[index];
+	}
+
+	@Override
+	public void setY(double y) {
+		if (store == null) {
+			super.setY(y);
+			return;
+		}
+		store.y[index] = y;
+	}
+
+	@Override
+	public double getRadius() {
+		if (store == null) {
+			return super.getRadius();
+		}
+		return store.getRadius(index);
+	}
+
+	@Override
+	public void setRadius(double radius) {
+		if (store == null) {
+			super.setRadius(radius);
+			return;
+		}
+		store.setRadius(index, radius);
+	}
+
+	@Override
+	public double getVx() {
+		if (store == null) {
+			return super.getVx();
+		}
+		return store.vx[index];
+	}
+
+	@Override
+	public void setVx(double vx) {
+		if (store == null) {
+			super.setVx(vx);
+			return;
+		}
+		store.vx[index] = vx;
+	}
+
+	@Override
+	public double getVy() {
+		if (store == null) {
+			return super.getVy();
+		}
+		return store.vy[index];
+	}
+
+	@Override
+	public void setVy(double vy) {
+		if (store == null) {
+			super.setVy(vy);
+			return;
+		}
+		store.vy[index] = vy;
+	}
+
+	@Override
+	public double getAx() {
+		if (store == null) {
+			return super.getAx();
+		}
+		return store.ax[index];
+	}
+
+	@Override
+	public void setAx(double ax) {
+		if (store == null) {
+			super.setAx(ax);
+			return;
+		}
+		store.ax[index] = ax;
+	}
+
+	@Override
+	public double getAy() {
+		if (store == null) {
+			return super.getAy();
+		}
+		return store.ay[index];
+	}
+
+	@Override
+	public void setAy(double ay) {
+		if (store == null) {
+			super.setAy(ay);
+			return;
+		}
+		store.ay[index] = ay;
+	}
+
+	@Override
+	public double getMass() {
+		if (store == null) {
+			return super.getMass();
+		}
+		return store.getMass(index);
+	}
+
+	@Override
+	public void setMass(double mass) {
+		if (store == null) {
+			super.setMass(mass);
+			return;
+		}
+		store.setMass(index, mass);
+	}
+
+	@Override
+	public double getCharge() {
+		if (store == null) {
+			return super.getCharge();
+		}
+		return store.getCharge(index);
+	}
+
+	@Override
+	public void setCharge(double charge) {
+		if (store == null) {
+			super.setCharge(charge);
+			return;
+		}
+		store.setCharge(index, charge);
+	}
+
+	@Override
+	public double getPrevX() {
+		if (store == null) {
+			return super.getPrevX();
+		}
+		return store.prevX[index];
+	}
+
+	@Override
+	public void setPrevX(double prevX) {
+		if (store == null) {
+			super.setPrevX(prevX);
+			return;
+		}
+		store.prevX[index] = prevX;
+	}
+
+	@Override
+	public double getPrevY() {
+		if (store == null) {
+			return super.getPrevY();
+		}
+		return store.prevY[index];
+	}
+
+	@Override
+	public void setPrevY(double prevY) {
+		if (store == null) {
+			super.setPrevY(prevY);
+			return;
+		}
+		store.prevY[index] = prevY;
+	}
+
+	@Override
+	public double getEx() {
+		if (store == null) {
+			return super.getEx();
+		}
+		return store.Ex[index];
+	}
+
+	@Override
+	public void setEx(double Ex) {
+		if (store == null) {
+			super.setEx(Ex);
+			return;
+		}
+		store.Ex[index] = Ex;
+	}
+
+	@Override
+	public double getEy() {
+		if (store == null) {
+			return super.getEy();
+		}
+		return store.Ey[index];
+	}
+
+	@Override
+	public void setEy(double Ey) {
+		if (store == null) {
+			super.setEy(Ey);
+			return;
+		}
+		store.Ey[index] = Ey;
+	}
+
+	@Override
+	public double getBz() {
+		if (store == null) {
+			return super.getBz();
+		}
+		return store.Bz[index];
+	}
+
+	@Override
+	public void setBz(double Bz) {
+		if (store == null) {
+			super.setBz(Bz);
+			return;
+		}
+		store.Bz[index] = Bz;
+	}
+
+	@Override
+	public double getPrevPositionComponentForceX() {
+		if (store == null) {
+			return super.getPrevPositionComponentForceX();
+		}
+		return store.prevPositionComponentForceX[index];
+	}
+
+	@Override
+	public void setPrevPositionComponentForceX(double prevpositionComponentForceX) {
+		if (store == null) {
+			super.setPrevPositionComponentForceX(prevpositionComponentForceX);
+			return;
+		}
+		store.prevPositionComponentForceX[index] = prevpositionComponentForceX;
+	}
+
+	@Override
+	public double getPrevPositionComponentForceY() {
+		if (store == null) {
+			return super.getPrevPositionComponentForceY();
+		}
+		return store.prevPositionComponentForceY[index];
+	}
+
+	@Override
+	public void setPrevPositionComponentForceY(double prevpositionComponentForceY) {
+		if (store == null) {
+			super.setPrevPositionComponentForceY(prevpositionComponentForceY);
+			return;
+		}
+		store.prevPositionComponentForceY[index] = prevpositionComponentForceY;
+	}
+
+	@Override
+	public double getPrevTangentVelocityComponentOfForceX() {
+		if (store == null) {
+			return super.getPrevTangentVelocityComponentOfForceX();
+		}
+		return store.prevTangentVelocityComponentOfForceX[index];
+	}
+
+	@Override
+	public void setPrevTangentVelocityComponentOfForceX(double prevtangentVelocityComponentOfForceX) {
+		if (store == null) {
+			super.setPrevTangentVelocityComponentOfForceX(prevtangentVelocityComponentOfForceX);
+			return;
+		}
+		store.prevTangentVelocityComponentOfForceX[index] = prevtangentVelocityComponentOfForceX;
+	}
+
+	@Override
+	public double getPrevTangentVelocityComponentOfForceY() {
+		if (store == null) {
+			return super.getPrevTangentVelocityComponentOfForceY();
+		}
+		return store.prevTangentVelocityComponentOfForceY[index];
+	}
+
+	@Override
+	public void setPrevTangentVelocityComponentOfForceY(double prevtangentVelocityComponentOfForceY) {
+		if (store == null) {
+			super.setPrevTangentVelocityComponentOfForceY(prevtangentVelocityComponentOfForceY);
+			return;
+		}
+		store.prevTangentVelocityComponentOfForceY[index] = prevtangentVelocityComponentOfForceY;
+	}
+
+	@Override
+	public double getPrevNormalVelocityComponentOfForceX() {
+		if (store == null) {
+			return super.getPrevNormalVelocityComponentOfForceX();
+		}
+		return store.prevNormalVelocityComponentOfForceX[index];
+	}
+
+	@Override
+	public void setPrevNormalVelocityComponentOfForceX(double prevnormalVelocityComponentOfForceX) {
+		if (store == null) {
+			super.setPrevNormalVelocityComponentOfForceX(prevnormalVelocityComponentOfForceX);
+			return;
+		}
+		store.prevNormalVelocityComponentOfForceX[index] = prevnormalVelocityComponentOfForceX;
+	}
+
+	@Override
+	public double getPrevNormalVelocityComponentOfForceY() {
+		if (store == null) {
+			return super.getPrevNormalVelocityComponentOfForceY();
+		}
+		return store.prevNormalVelocityComponentOfForceY[index];
+	}
+
+	@Override
+	public void setPrevNormalVelocityComponentOfForceY(double prevnormalVelocityComponentOfForceY) {
+		if (store == null) {
+			super.setPrevNormalVelocityComponentOfForceY(prevnormalVelocityComponentOfForceY);
+			return;
+		}
+		store.prevNormalVelocityComponentOfForceY[index] = prevnormalVelocityComponentOfForceY;
+	}
+
+	@Override
+	public double getPrevBz() {
+		if (store == null) {
+			return super.getPrevBz();
+		}
+		return store.prevBz[index];
+	}
+
+	@Override
+	public void setPrevBz(double prevBz) {
+		if (store == null) {
+			super.setPrevBz(prevBz);
+			return;
+		}
+		store.prevBz[index] = prevBz;
+	}
+
+	@Override
+	public double getPrevLinearDragCoefficient() {
+		if (store == null) {
+			return super.getPrevLinearDragCoefficient();
+		}
+		return store.prevLinearDragCoefficient[index];
+	}
+
+	@Override
+	public void setPrevLinearDragCoefficient(double prevLinearDragCoefficient) {
+		if (store == null) {
+			super.setPrevLinearDragCoefficient(prevLinearDragCoefficient);
+			return;
+		}
+		store.prevLinearDragCoefficient[index] = prevLinearDragCoefficient;
+	}
+
+
+	@Override
+	public void addX(double x) {
+		setX(getX() + x);
+	}
+
+	@Override
+	public void addY(double y) {
+		setY(getY() + y);
+	}
+
+	@Override
+	public void addPrevX(double x) {
+		setPrevX(getPrevX() + x);
+	}
+
+	@Override
+	public void addPrevY(double y) {
+		setPrevY(getPrevY() + y);
+	}
+
+	@Override
+	public void storePosition() {
+		setPrevX(getX());
+		setPrevY(getY());
+	}
+
+	@Override
+	public String toString() {
+		return String.format("[%.3f,%.3f]", getX(), getY());
+	}
+
+
+	/**
+	 * The store is not sent over the wire; the receiver gets an ordinary particle.
+	 */
+	private Object writeReplace() {
+		return new Particle(this);
+	}
+}
@@ -1,29 +1,44 @@
 package org.openpixi.pixi.physics;
 
+import org.openpixi.pixi.parallel.BarrierStepEngine;
+import org.openpixi.pixi.parallel.cellaccess.BarrierCellIterator;
 import org.openpixi.pixi.parallel.cellaccess.CellIterator;
 import org.openpixi.pixi.parallel.cellaccess.ParallelCellIterator;
 import org.openpixi.pixi.parallel.cellaccess.SequentialCellIterator;
+import org.openpixi.pixi.parallel.particleaccess.BarrierParticleIterator;
 import org.openpixi.pixi.parallel.particleaccess.ParallelParticleIterator;
 import org.openpixi.pixi.parallel.particleaccess.ParticleIterator;
 import org.openpixi.pixi.parallel.particleaccess.SequentialParticleIterator;
 import org.openpixi.pixi.physics.collision.algorithms.CollisionAlgorithm;
+import org.openpixi.pixi.physics.collision.algorithms.CoulombCollisions;
+import org.openpixi.pixi.physics.collision.algorithms.ParallelCollision;
 import org.openpixi.pixi.physics.collision.detectors.Detector;
 import org.openpixi.pixi.physics.fields.FieldSolver;
 import org.openpixi.pixi.physics.fields.PoissonSolver;
 import org.openpixi.pixi.physics.fields.PoissonSolverFFTPeriodic;
 import org.openpixi.pixi.physics.fields.SimpleSolver;
 import org.openpixi.pixi.physics.force.CombinedForce;
+import org.openpixi.pixi.physics.force.ConstantForce;
 import org.openpixi.pixi.physics.force.Force;
+import org.openpixi.pixi.physics.grid.BufferedInterpolation;
 import org.openpixi.pixi.physics.grid.CloudInCell;
+import org.openpixi.pixi.physics.grid.FlatGrid;
+import org.openpixi.pixi.physics.grid.Grid;
 import org.openpixi.pixi.physics.grid.GridBoundaryType;
+import org.openpixi.pixi.physics.grid.Interpolation;
 import org.openpixi.pixi.physics.grid.InterpolatorAlgorithm;
+import org.openpixi.pixi.physics.grid.LocalInterpolation;
+import org.openpixi.pixi.physics.movement.FusedParticleKernel;
+import org.openpixi.pixi.physics.movement.SubCycling;
 import org.openpixi.pixi.physics.movement.boundary.ParticleBoundaryType;
 import org.openpixi.pixi.physics.solver.Euler;
 import org.openpixi.pixi.physics.solver.Solver;
 import org.openpixi.pixi.physics.util.ClassCopier;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -55,6 +70,15 @@ public class Settings {
 	private double speedOfLight = 1;
 	private double timeStep = 1;
 
+	/** The time step is adapted by the TimeStepController within [minTimeStep, maxTimeStep]. */
+	private boolean useAdaptiveTimeStep = false;
+	private double minTimeStep = 0;
+	private double maxTimeStep = Double.MAX_VALUE;
+	/** Largest particle move per step in cells (adaptive time step). */
+	private double maxParticleDisplacement = 0.5;
+	/** Largest Courant number of the field solver (adaptive time step). */
+	private double maxCourantNumber = 0.5;
+
 	private GeneralBoundaryType boundaryType = GeneralBoundaryType.Periodic;
 
 	private InterpolatorAlgorithm interpolator = new CloudInCell();
@@ -69,6 +93,9 @@ public class Settings {
 
 	private boolean useGrid = true;
 
+	/** Store the fields in flat arrays (FlatGrid) instead of an array of cells (Grid). */
+	private boolean useFlatGrid = false;
+
 	// Particle related settings
 
 	private int numOfParticles = 100;
@@ -79,9 +106,22 @@ public class Settings {
 
 	private Detector collisionDetector = new Detector();
 	private CollisionAlgorithm collisionResolver = new CollisionAlgorithm();
+	/** Monte Carlo Coulomb collisions within the grid cells (see CoulombCollisions). */
+	private boolean useCoulombCollisions = false;
+	private double coulombLogarithm = 10;
+	private long coulombCollisionSeed = 0;
 	private Solver particleSolver = new Euler();
 	private List<Force> forces = new ArrayList<Force>();
 
+	/** How the simulation step processes the particles. */
+	private StepMode stepMode = StepMode.MultiPass;
+
+	/** The particles are sorted by their cells every particleSortInterval steps (0 = never). */
+	private int particleSortInterval = 0;
+
+	/** Push intervals of the sub-cycled species (see SubCycling). */
+	private Map<Species, Integer> pushIntervals = new HashMap<Species, Integer>();
+
 	// Batch version settings
 
 	private int iterations = 100;
@@ -93,12 +133,41 @@ public class Settings {
 	 * simulation we use ExecutorService which is maintaining a fixed number of threads running
 	 * all the time and assigns work to the threads on the fly according to demand. */
 	private ExecutorService threadsExecutor;
+	/* Instead of the ExecutorService the iterators can use a fixed set of threads which meet at
+	 * a barrier between the phases of the simulation step (see BarrierStepEngine).
+	 * Cheaper dispatch of the phases pays off mainly for small and medium simulations. */
+	private boolean useBarrierEngine = false;
+	private BarrierStepEngine barrierEngine;
+	/* In the parallel simulation each thread deposits the current to its own buffer and the
+	 * buffers are summed up afterwards (instead of synchronizing each update of a cell). */
+	private boolean useDepositionBuffers = false;
+	/* In the parallel simulation the collision pairs without a common particle are resolved
+	 * concurrently (see ParallelCollision). */
+	private boolean useParallelCollisions = false;
+	/* With a grain size > 0 the executor service iterators hand out contiguous blocks of
+	 * particles (grid rows) to the threads on demand instead of distributing them with a stride.
+	 * See ParallelParticleIterator and ParallelCellIterator. */
+	private int particleGrainSize = 0;
+	private int cellGrainSize = 0;
 
 	// Distributed version settings
 
 	private int numOfNodes = 1;
 	private String iplServer = "localhost";
 	private String iplPool = "openpixi";
+	private TransportType transportType = TransportType.Ibis;
+	/* Addresses (host:port) of the nodes for the NIO transport; the n-th node is the n-th worker. */
+	private List<String> nodeAddresses = new ArrayList<String>();
+	/* Every loadBalancingInterval steps the workers report their load and, if the slowest worker
+	 * needs more than loadImbalanceThreshold times the mean computation time,
+	 * the simulation is repartitioned. Zero interval turns the load balancing off. */
+	private int loadBalancingInterval = 0;
+	private double loadImbalanceThreshold = 1.25;
+	/* With the aggregated exchange each node sends to each neighbor one message with all the particle
+	 * data of the step (leaving and ghost particles); the ghost particles which the neighbor would
+	 * derive from the arriving particles are computed by the sender.
+	 * See SharedDataManager.startExchangeOfParticles(). */
+	private boolean useAggregatedExchange = false;
 
 	//----------------------------------------------------------------------------------------------
 	// SIMPLE GETTERS
@@ -128,12 +197,28 @@ public class Settings {
 		return timeStep;
 	}
 
-	public Detector getCollisionDetector() {
-		return collisionDetector;
+	public boolean useAdaptiveTimeStep() {
+		return useAdaptiveTimeStep;
 	}
 
-	public CollisionAlgorithm getCollisionAlgorithm() {
-		return collisionResolver;
+	public double getMinTimeStep() {
+		return minTimeStep;
+	}
+
+	public double getMaxTimeStep() {
+		return maxTimeStep;
+	}
+
+	public double getMaxParticleDisplacement() {
+		return maxParticleDisplacement;
+	}
+
+	public double getMaxCourantNumber() {
+		return maxCourantNumber;
+	}
+
+	public Detector getCollisionDetector() {
+		return collisionDetector;
 	}
 
 	public FieldSolver getGridSolver() {
@@ -145,7 +230,11 @@ public class Settings {
 	}
 
 	public PoissonSolver getPoissonSolver() {
-		return poissonSolver;
+		/*
+		 * The solvers cache their work arrays for the grid they solve;
+		 * each simulation needs its own solver (same as with the grid solver).
+		 */
+		return ClassCopier.copy(poissonSolver);
 	}
 
 	public Solver getParticleSolver() {
@@ -176,10 +265,66 @@ public class Settings {
 		return useGrid;
 	}
 
+	public boolean useFlatGrid() {
+		return useFlatGrid;
+	}
+
 	public String getIplPool() {
 		return iplPool;
 	}
 
+	public TransportType getTransportType() {
+		return transportType;
+	}
+
+	public List<String> getNodeAddresses() {
+		return nodeAddresses;
+	}
+
+	public int getLoadBalancingInterval() {
+		return loadBalancingInterval;
+	}
+
+	public double getLoadImbalanceThreshold() {
+		return loadImbalanceThreshold;
+	}
+
+	public boolean useAggregatedExchange() {
+		return useAggregatedExchange;
+	}
+
+	public boolean useDepositionBuffers() {
+		return useDepositionBuffers;
+	}
+
+	public boolean useBarrierEngine() {
+		return useBarrierEngine;
+	}
+
+	public boolean useParallelCollisions() {
+		return useParallelCollisions;
+	}
+
+	public StepMode getStepMode() {
+		return stepMode;
+	}
+
+	public int getParticleSortInterval() {
+		return particleSortInterval;
+	}
+
+	public boolean useCoulombCollisions() {
+		return useCoulombCollisions;
+	}
+
+	public double getCoulombLogarithm() {
+		return coulombLogarithm;
+	}
+
+	public long getCoulombCollisionSeed() {
+		return coulombCollisionSeed;
+	}
+
 	//----------------------------------------------------------------------------------------------
 	// MORE COMPLEX GETTERS / BUILDERS
 	//----------------------------------------------------------------------------------------------
@@ -192,13 +337,125 @@ public class Settings {
 		return simulationHeight / gridCellsY;
 	}
 
+	/**
+	 * Build the grid for simulation.
+	 */
+	public Grid getGrid() {
+		if (useFlatGrid) {
+			return new FlatGrid(this);
+		}
+		else {
+			return new Grid(this);
+		}
+	}
+
+	/**
+	 * Build the interpolation for non distributed simulation.
+	 */
+	public Interpolation getInterpolation() {
+		if (useDepositionBuffers && numOfThreads > 1) {
+			return new BufferedInterpolation(
+					getInterpolator(), getParticleIterator(), getCellIterator());
+		}
+		else {
+			return new LocalInterpolation(getInterpolator(), getParticleIterator());
+		}
+	}
+
+	/**
+	 * With parallel collisions the collision resolver is wrapped in a ParallelCollision.
+	 */
+	public CollisionAlgorithm getCollisionAlgorithm() {
+		if (useParallelCollisions && numOfThreads > 1 &&
+				collisionResolver.getClass() != CollisionAlgorithm.class) {
+			return new ParallelCollision(collisionResolver, getParticleIterator());
+		}
+		return collisionResolver;
+	}
+
+	/**
+	 * Build the Monte Carlo Coulomb collisions.
+	 * Returns null if they are turned off.
+	 */
+	public CoulombCollisions getCoulombCollisions() {
+		if (!useCoulombCollisions) {
+			return null;
+		}
+		return new CoulombCollisions(coulombLogarithm, coulombCollisionSeed, getCellIterator());
+	}
+
+	/**
+	 * Build the controller of the adaptive time step.
+	 * Returns null if the time step is fixed.
+	 */
+	public TimeStepController getTimeStepController() {
+		if (!useAdaptiveTimeStep) {
+			return null;
+		}
+		return new TimeStepController(getParticleIterator(),
+				minTimeStep, maxTimeStep, maxParticleDisplacement, maxCourantNumber);
+	}
+
+	/**
+	 * Build the sub-cycling of the particle push.
+	 * Returns null if all the species are pushed in each step.
+	 */
+	public SubCycling getSubCycling() {
+		if (pushIntervals.isEmpty()) {
+			return null;
+		}
+		return new SubCycling(pushIntervals);
+	}
+
+	/**
+	 * Build the sorter of particles.
+	 * Returns null if the particles should not be sorted.
+	 */
+	public ParticleSorter getParticleSorter() {
+		if (particleSortInterval > 0) {
+			return new ParticleSorter(getParticleIterator());
+		}
+		else {
+			return null;
+		}
+	}
+
+	/**
+	 * Build the fused particle kernel (used only in the fused step mode).
+	 */
+	public FusedParticleKernel getFusedParticleKernel() {
+		return new FusedParticleKernel(getParticleIterator());
+	}
+
 	/**
 	 * Build the combined force for simulation.
+	 *
+	 * Several ConstantForces are folded into a single one
+	 * (at the position of the first one) whose coefficients are the sums of their coefficients;
+	 * the per particle work then does not grow with the number of constant forces.
+	 * A single ConstantForce is used as it is, so that it can still be modified
+	 * by the user interface during the simulation.
 	 */
 	public CombinedForce getForce() {
+		int numOfConstantForces = 0;
+		for (Force f: forces) {
+			if (f.getClass() == ConstantForce.class) {
+				++numOfConstantForces;
+			}
+		}
+
 		CombinedForce combinedForce = new CombinedForce();
+		ConstantForce folded = null;
 		for (Force f: forces) {
-			combinedForce.add(f);
+			if (numOfConstantForces > 1 && f.getClass() == ConstantForce.class) {
+				if (folded == null) {
+					folded = new ConstantForce();
+					combinedForce.add(folded);
+				}
+				folded.fold((ConstantForce) f);
+			} else {
+				combinedForce.add(f);
+			}
 		}
 		return combinedForce;
 	}
@@ -256,7 +513,11 @@ public class Settings {
 			return new SequentialParticleIterator();
 		}
 		else if (numOfThreads > 1) {
-			return  new ParallelParticleIterator(numOfThreads, getThreadsExecutor());
+			if (useBarrierEngine) {
+				return new BarrierParticleIterator(getBarrierEngine());
+			}
+			return  new ParallelParticleIterator(
+					numOfThreads, particleGrainSize, getThreadsExecutor());
 		}
 		else {
 			throw new RuntimeException("Invalid number of threads: " + numOfThreads);
@@ -268,7 +529,11 @@ public class Settings {
 			return new SequentialCellIterator();
 		}
 		else if (numOfThreads > 1) {
-			return  new ParallelCellIterator(numOfThreads, getThreadsExecutor());
+			if (useBarrierEngine) {
+				return new BarrierCellIterator(getBarrierEngine());
+			}
+			return  new ParallelCellIterator(
+					numOfThreads, cellGrainSize, getThreadsExecutor());
 		}
 		else {
 			throw new RuntimeException("Invalid number of threads: " + numOfThreads);
@@ -285,6 +550,16 @@ public class Settings {
 		return threadsExecutor;
 	}
 
+	/**
+	 * Create barrier step engine on the fly according to demand.
+	 */
+	private BarrierStepEngine getBarrierEngine() {
+		if (barrierEngine == null) {
+			barrierEngine = new BarrierStepEngine(numOfThreads);
+		}
+		return barrierEngine;
+	}
+
 	//----------------------------------------------------------------------------------------------
 	// SETTERS (Overwrite default values programatically)
 	//----------------------------------------------------------------------------------------------
@@ -313,6 +588,26 @@ public class Settings {
 		this.timeStep = timeStep;
 	}
 
+	public void useAdaptiveTimeStep(boolean useAdaptiveTimeStep) {
+		this.useAdaptiveTimeStep = useAdaptiveTimeStep;
+	}
+
+	public void setMinTimeStep(double minTimeStep) {
+		this.minTimeStep = minTimeStep;
+	}
+
+	public void setMaxTimeStep(double maxTimeStep) {
+		this.maxTimeStep = maxTimeStep;
+	}
+
+	public void setMaxParticleDisplacement(double maxParticleDisplacement) {
+		this.maxParticleDisplacement = maxParticleDisplacement;
+	}
+
+	public void setMaxCourantNumber(double maxCourantNumber) {
+		this.maxCourantNumber = maxCourantNumber;
+	}
+
 	public void setCollisionDetector(Detector collisionDetector) {
 		this.collisionDetector = collisionDetector;
 	}
@@ -381,14 +676,92 @@ public class Settings {
 		this.useGrid = useGrid;
 	}
 
+	public void useFlatGrid(boolean useFlatGrid) {
+		this.useFlatGrid = useFlatGrid;
+	}
+
 	public void setIplPool(String iplPool) {
 		this.iplPool = iplPool;
 	}
 
+	public void setTransportType(TransportType transportType) {
+		this.transportType = transportType;
+	}
+
+	public void setNodeAddresses(List<String> nodeAddresses) {
+		this.nodeAddresses = nodeAddresses;
+	}
+
+	public void setLoadBalancingInterval(int loadBalancingInterval) {
+		this.loadBalancingInterval = loadBalancingInterval;
+	}
+
+	public void setLoadImbalanceThreshold(double loadImbalanceThreshold) {
+		this.loadImbalanceThreshold = loadImbalanceThreshold;
+	}
+
+	public void useAggregatedExchange(boolean useAggregatedExchange) {
+		this.useAggregatedExchange = useAggregatedExchange;
+	}
+
+	public void setStepMode(StepMode stepMode) {
+		this.stepMode = stepMode;
+	}
+
+	public void useCoulombCollisions(boolean useCoulombCollisions) {
+		this.useCoulombCollisions = useCoulombCollisions;
+	}
+
+	public void setCoulombLogarithm(double coulombLogarithm) {
+		this.coulombLogarithm = coulombLogarithm;
+	}
+
+	public void setCoulombCollisionSeed(long coulombCollisionSeed) {
+		this.coulombCollisionSeed = coulombCollisionSeed;
+	}
+
+	public void setParticleSortInterval(int particleSortInterval) {
+		this.particleSortInterval = particleSortInterval;
+	}
+
+	/**
+	 * The particles of the given species are pushed only every interval steps
+	 * with interval times the time step.
+	 */
+	public void setPushInterval(Species species, int interval) {
+		pushIntervals.put(species, interval);
+	}
+
 	public void setNumOfThreads(int numOfThreads) {
 		this.numOfThreads = numOfThreads;
 	}
 
+	public void useDepositionBuffers(boolean useDepositionBuffers) {
+		this.useDepositionBuffers = useDepositionBuffers;
+	}
+
+	public void useBarrierEngine(boolean useBarrierEngine) {
+		this.useBarrierEngine = useBarrierEngine;
+	}
+
+	public void useParallelCollisions(boolean useParallelCollisions) {
+		this.useParallelCollisions = useParallelCollisions;
+	}
+
+	/**
+	 * Number of particles handed out to a thread at once (0 means stride distribution).
+	 */
+	public void setParticleGrainSize(int particleGrainSize) {
+		this.particleGrainSize = particleGrainSize;
+	}
+
+	/**
+	 * Number of grid rows handed out to a thread at once (0 means stride distribution).
+	 */
+	public void setCellGrainSize(int cellGrainSize) {
+		this.cellGrainSize = cellGrainSize;
+	}
+
 	//----------------------------------------------------------------------------------------------
 	// VARIOUS
 	//----------------------------------------------------------------------------------------------
@@ -415,7 +788,7 @@ public class Settings {
 
 	/**
 	 * Has to be called every time numOfThreads is set to a value higher than 1!
-	 * Terminates the threads used by executor service.
+	 * Terminates the threads used by executor service (or barrier step engine).
 	 * Is idempotent (can be called multiple times without side-effects).
 	 */
 	public void terminateThreads() {
@@ -423,5 +796,9 @@ public class Settings {
 			threadsExecutor.shutdown();
 			threadsExecutor = null;
 		}
+		if (barrierEngine != null) {
+			barrierEngine.terminate();
+			barrierEngine = null;
+		}
 	}
 }
@@ -20,19 +20,22 @@
 package org.openpixi.pixi.physics;
 
 import org.openpixi.pixi.physics.collision.algorithms.CollisionAlgorithm;
+import org.openpixi.pixi.physics.collision.algorithms.CoulombCollisions;
 import org.openpixi.pixi.physics.collision.detectors.Detector;
 import org.openpixi.pixi.physics.fields.PoissonSolver;
 import org.openpixi.pixi.physics.force.CombinedForce;
 import org.openpixi.pixi.physics.force.SimpleGridForce;
+import org.openpixi.pixi.physics.grid.ChargeConservingCIC;
+import org.openpixi.pixi.physics.grid.FlatGrid;
 import org.openpixi.pixi.physics.grid.Grid;
 import org.openpixi.pixi.physics.grid.Interpolation;
 import org.openpixi.pixi.physics.grid.LocalInterpolation;
+import org.openpixi.pixi.physics.movement.FusedParticleKernel;
 import org.openpixi.pixi.physics.movement.ParticleMover;
 import org.openpixi.pixi.physics.movement.boundary.ParticleBoundaries;
 import org.openpixi.pixi.physics.movement.boundary.SimpleParticleBoundaries;
 import org.openpixi.pixi.physics.util.DoubleBox;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class Simulation {
@@ -49,13 +52,38 @@ public class Simulation {
 	private int iterations;
 
 	/**Contains all Particle2D objects*/
-	public ArrayList<Particle> particles;
+	public List<Particle> particles;
+	/**
+	 * Primitive arrays behind the list of particles.
+	 * Null if the particles are not kept in a store (distributed simulation).
+	 */
+	private ParticleStore particleStore;
+	/** Sorts the particles by their cells (null if the particles are not sorted). */
+	private ParticleSorter particleSorter;
+	private int particleSortInterval;
+	/** Number of steps done so far. */
+	private int stepCount = 0;
+	private StepMode stepMode;
+	/**
+	 * Adapts the time step (null if the time step is fixed).
+	 * Always null in the distributed simulation as the nodes would choose different steps.
+	 */
+	private TimeStepController timeStepController;
+	/** Single pass push and deposit (null if not available). */
+	private FusedParticleKernel fusedKernel;
+	/**
+	 * Whether the fields stored at the particles belong to their current positions.
+	 * Not the case after the fused step as it gathers the fields before the push.
+	 */
+	private boolean particleFieldsCurrent = true;
 	public CombinedForce f;
 	private ParticleMover mover;
 	/**Grid for dynamic field calculation*/
 	public Grid grid;
 	public Detector detector;
 	public CollisionAlgorithm collisionalgorithm;
+	/** Monte Carlo Coulomb collisions (null if turned off). */
+	private CoulombCollisions coulombCollisions;
 
 	/**
 	 * We can turn on or off the effect of the grid on particles by
@@ -92,6 +120,43 @@ public class Simulation {
 		return mover;
 	}
 
+	public ParticleStore getParticleStore() {
+		return particleStore;
+	}
+
+	public ParticleSorter getParticleSorter() {
+		return particleSorter;
+	}
+
+	public StepMode getStepMode() {
+		return stepMode;
+	}
+
+	public TimeStepController getTimeStepController() {
+		return timeStepController;
+	}
+
+	public CoulombCollisions getCoulombCollisions() {
+		return coulombCollisions;
+	}
+
+	/**
+	 * The electrostatic mode needs the Poisson solver
+	 * which is not available in the distributed simulation.
+	 * Leaving it brings back the current and the magnetic field of a FlatGrid
+	 * created for the electrostatic mode.
+	 */
+	public void setStepMode(StepMode stepMode) {
+		if (stepMode == StepMode.Electrostatic && poisolver == null) {
+			throw new RuntimeException(
+					"The electrostatic step mode is not supported in the distributed simulation!");
+		}
+		if (stepMode != StepMode.Electrostatic && grid instanceof FlatGrid) {
+			((FlatGrid) grid).allocateCurrentAndMagneticField();
+		}
+		this.stepMode = stepMode;
+	}
+
 
 	/**
 	 * Constructor for non distributed simulation.
@@ -103,8 +168,13 @@ public class Simulation {
 		speedOfLight = settings.getSpeedOfLight();
 		iterations = settings.getIterations();
 
-		// TODO make particles a generic list
-		particles = (ArrayList<Particle>)settings.getParticles();
+		particleStore = new ParticleStore(settings.getParticles());
+		particles = particleStore.asList();
+		particleSorter = settings.getParticleSorter();
+		particleSortInterval = settings.getParticleSortInterval();
+		stepMode = settings.getStepMode();
+		timeStepController = settings.getTimeStepController();
+		fusedKernel = settings.getFusedParticleKernel();
 		f = settings.getForce();
 
 		ParticleBoundaries particleBoundaries = new SimpleParticleBoundaries(
@@ -114,8 +184,9 @@ public class Simulation {
 				settings.getParticleSolver(),
 				particleBoundaries,
 				settings.getParticleIterator());
+		mover.setSubCycling(settings.getSubCycling());
 
-		grid = new Grid(settings);
+		grid = settings.getGrid();
 		if (settings.useGrid()) {
 			turnGridForceOn();
 		}
@@ -124,12 +195,12 @@ public class Simulation {
 		}
 
 		poisolver = settings.getPoissonSolver();
-		interpolation = new LocalInterpolation(
-				settings.getInterpolator(), settings.getParticleIterator());
+		interpolation = settings.getInterpolation();
 		particleGridInitializer.initialize(interpolation, poisolver, particles, grid);
 
 		detector = settings.getCollisionDetector();
 		collisionalgorithm = settings.getCollisionAlgorithm();
+		coulombCollisions = settings.getCoulombCollisions();
 
 		prepareAllParticles();
 	}
@@ -156,13 +227,15 @@ public class Simulation {
 		this.speedOfLight = settings.getSpeedOfLight();
 		this.iterations = settings.getIterations();
 
-		this.particles = (ArrayList<Particle>)particles;
+		this.particles = particles;
+		setStepMode(settings.getStepMode());
 		f = settings.getForce();
 
 		mover = new ParticleMover(
 				settings.getParticleSolver(),
 				particleBoundaries,
 				settings.getParticleIterator());
+		mover.setSubCycling(settings.getSubCycling());
 
 		this.grid = grid;
 		if (settings.useGrid()) {
@@ -176,6 +249,7 @@ public class Simulation {
 
 		detector = settings.getCollisionDetector();
 		collisionalgorithm = settings.getCollisionAlgorithm();
+		coulombCollisions = settings.getCoulombCollisions();
 
 		prepareAllParticles();
 	}
@@ -202,14 +276,118 @@ public class Simulation {
 	 * (for interactive simulations)
 	 */
 	public void step() {
+		if (timeStepController != null) {
+			adaptTimeStep();
+		}
+		if (stepMode == StepMode.Electrostatic) {
+			electrostaticStep();
+		}
+		else if (stepMode == StepMode.Fused && canUseFusedStep()) {
+			fusedStep();
+		}
+		else {
+			multiPassStep();
+		}
+		stepCount++;
+	}
+
+
+	private void multiPassStep() {
+		if (!particleFieldsCurrent) {
+			interpolation.interpolateToParticle(particles, grid);
+		}
+
 		particlePush();
+		sortParticles();
 
 		detector.run();
 		collisionalgorithm.collide(detector.getOverlappedPairs(), f, mover.getSolver(), tstep);
+		coulombCollide();
 
 		interpolation.interpolateToGrid(particles, grid, tstep);
 		grid.updateGrid(tstep);
 		interpolation.interpolateToParticle(particles, grid);
+		particleFieldsCurrent = true;
+	}
+
+
+	/**
+	 * Gathers the fields, pushes the particles and deposits the current in one pass.
+	 * The fields at the particles are thus the ones used in the last push
+	 * (not the ones at their new positions).
+	 */
+	private void fusedStep() {
+		grid.resetCurrent();
+		fusedKernel.run(particleStore, grid, mover, f,
+				(ChargeConservingCIC) interpolation.getInterpolator(), tstep, !particleFieldsCurrent);
+		grid.collectGhostCurrent();
+		sortParticles();
+
+		grid.updateGrid(tstep);
+		particleFieldsCurrent = false;
+	}
+
+
+	/**
+	 * Same as the multi-pass step but the fields are obtained from the Poisson equation
+	 * for the deposited charge density instead of from the field solver.
+	 * Thus, the time step is not limited by the Courant condition of the field solver.
+	 */
+	private void electrostaticStep() {
+		if (!particleFieldsCurrent) {
+			interpolation.interpolateToParticle(particles, grid);
+		}
+
+		particlePush();
+		sortParticles();
+
+		detector.run();
+		collisionalgorithm.collide(detector.getOverlappedPairs(), f, mover.getSolver(), tstep);
+		coulombCollide();
+
+		interpolation.interpolateChargedensity(particles, grid);
+		poisolver.solve(grid);
+		grid.fillGhostFields();
+		interpolation.interpolateToParticle(particles, grid);
+		particleFieldsCurrent = true;
+	}
+
+
+	/**
+	 * Asks the controller for the next time step. When the time step changes,
+	 * the velocities of the particles are brought to the full step with the old time step
+	 * and back to the half step with the new one (the solvers keep the velocities
+	 * half a step behind the positions).
+	 */
+	private void adaptTimeStep() {
+		double newTimeStep = timeStepController.computeTimeStep(particles, grid, tstep,
+				stepMode != StepMode.Electrostatic);
+		if (newTimeStep != tstep) {
+			if (!particleFieldsCurrent) {
+				// After a fused step the particles hold the fields of their old positions
+				interpolation.interpolateToParticle(particles, grid);
+				particleFieldsCurrent = true;
+			}
+			completeAllParticles();
+			tstep = newTimeStep;
+			prepareAllParticles();
+		}
+	}
+
+
+	/**
+	 * The fused step is possible only with a particle store, without collisions
+	 * and sub-cycling and for the solvers, forces and interpolation algorithms
+	 * supported by FusedParticleKernel.
+	 */
+	public boolean canUseFusedStep() {
+		return fusedKernel != null &&
+				mover.getSubCycling() == null &&
+				coulombCollisions == null &&
+				detector.getClass() == Detector.class &&
+				collisionalgorithm.getClass() == CollisionAlgorithm.class &&
+				interpolation instanceof LocalInterpolation &&
+				FusedParticleKernel.supports(mover.getSolver(), f, interpolation.getInterpolator());
 	}
 
 
@@ -228,6 +406,24 @@ public class Simulation {
 		mover.push(particles, f, tstep);
 	}
 
+	/**
+	 * Sorts the particles by their cells every particleSortInterval steps.
+	 * Is done right after the push so that the cell offsets of the sorter match
+	 * the positions used by the collision detection and the interpolation.
+	 */
+	private void sortParticles() {
+		if (particleSorter != null && stepCount % particleSortInterval == 0) {
+			particleSorter.sort(particleStore, grid);
+			detector.particlesSorted(particleSorter, grid);
+		}
+	}
+
+	private void coulombCollide() {
+		if (coulombCollisions != null) {
+			coulombCollisions.collide(particles, grid, tstep);
+		}
+	}
+
 	public void prepareAllParticles() {
 		mover.prepare(particles, f, tstep);
 	}
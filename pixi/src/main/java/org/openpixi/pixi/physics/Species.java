@@ -0,0 +1,56 @@
+package org.openpixi.pixi.physics;
+
+/**
+ * Kind of particle: the properties which are the same for all the particles of the species.
+ */
+public class Species {
+
+	private final double mass;
+	private final double charge;
+	private final double radius;
+
+
+	public Species(double mass, double charge, double radius) {
+		this.mass = mass;
+		this.charge = charge;
+		this.radius = radius;
+	}
+
+
+	public double getMass() {
+		return mass;
+	}
+
+	public double getCharge() {
+		return charge;
+	}
+
+	public double getRadius() {
+		return radius;
+	}
+
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof Species)) {
+			return false;
+		}
+		Species other = (Species) o;
+		return Double.compare(mass, other.mass) == 0 &&
+				Double.compare(charge, other.charge) == 0 &&
+				Double.compare(radius, other.radius) == 0;
+	}
+
+	@Override
+	public int hashCode() {
+		long bits = Double.doubleToLongBits(mass);
+		bits = 31 * bits + Double.doubleToLongBits(charge);
+		bits = 31 * bits + Double.doubleToLongBits(radius);
+		return (int) (bits ^ (bits >>> 32));
+	}
+
+	@Override
+	public String toString() {
+		return "Species[mass=" + mass + ", charge=" + charge + ", radius=" + radius + "]";
+	}
+}
@@ -0,0 +1,157 @@
+package org.openpixi.pixi.physics;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Registry of the species of a ParticleStore.
+ * The particles only carry the id of their species (the index within this table);
+ * the mass, the charge and the radius are kept here once per species.
+ *
+ * The species are added on the fly when a particle with new properties enters the store.
+ * Species are never removed, so an id stays valid for the lifetime of the table.
+ *
+ * The properties are kept in arrays indexed by the species id. The arrays are replaced
+ * (not modified) when a species is added, so the hot loops can read them without locking.
+ */
+public class SpeciesTable {
+
+	private Map<Species, Integer> ids = new HashMap<Species, Integer>();
+
+	private volatile Species[] species = new Species[0];
+	private volatile double[] masses = new double[0];
+	private volatile double[] charges = new double[0];
+	private volatile double[] radii = new double[0];
+
+	/** Number of time steps whose constants are kept (sub-cycled species use several). */
+	private static final int MAX_CACHED_STEPS = 4;
+
+	/** Constants of the recently requested time steps. */
+	private volatile StepConstants[] stepConstants = new StepConstants[0];
+
+
+	public int size() {
+		return species.length;
+	}
+
+	public Species get(int id) {
+		return species[id];
+	}
+
+	/** Masses of the species indexed by the species id. */
+	public double[] getMasses() {
+		return masses;
+	}
+
+	/** Charges of the species indexed by the species id. */
+	public double[] getCharges() {
+		return charges;
+	}
+
+	/** Radii of the species indexed by the species id. */
+	public double[] getRadii() {
+		return radii;
+	}
+
+
+	/**
+	 * Returns the id of the species with the given properties;
+	 * adds the species if it is not in the table yet.
+	 */
+	public synchronized int idOf(double mass, double charge, double radius) {
+		Species s = new Species(mass, charge, radius);
+		Integer id = ids.get(s);
+		if (id != null) {
+			return id;
+		}
+
+		int newId = species.length;
+		ids.put(s, newId);
+
+		Species[] newSpecies = new Species[newId + 1];
+		double[] newMasses = new double[newId + 1];
+		double[] newCharges = new double[newId + 1];
+		double[] newRadii = new double[newId + 1];
+		System.arraycopy(species, 0, newSpecies, 0, newId);
+		System.arraycopy(masses, 0, newMasses, 0, newId);
+		System.arraycopy(charges, 0, newCharges, 0, newId);
+		System.arraycopy(radii, 0, newRadii, 0, newId);
+		newSpecies[newId] = s;
+		newMasses[newId] = mass;
+		newCharges[newId] = charge;
+		newRadii[newId] = radius;
+
+		// The masses last; getStepConstants() reads them first
+		charges = newCharges;
+		radii = newRadii;
+		species = newSpecies;
+		masses = newMasses;
+		return newId;
+	}
+
+
+	/**
+	 * Returns the constants of all the species for the given time step.
+	 * The constants of the last few time steps are cached and recomputed only
+	 * when the number of species changes, so this can be called at the beginning of each push.
+	 */
+	public StepConstants getStepConstants(double step) {
+		double[] m = masses;
+		double[] q = charges;
+		StepConstants[] cached = stepConstants;
+		for (StepConstants constants: cached) {
+			if (constants.step == step && constants.chargeOverMass.length == m.length) {
+				return constants;
+			}
+		}
+
+		StepConstants constants = new StepConstants(step, m, q);
+		int numOfKept = Math.min(cached.length, MAX_CACHED_STEPS - 1);
+		StepConstants[] newCached = new StepConstants[numOfKept + 1];
+		newCached[0] = constants;
+		System.arraycopy(cached, 0, newCached, 1, numOfKept);
+		stepConstants = newCached;
+		return constants;
+	}
+
+
+	/**
+	 * Per species constants of the push for one time step,
+	 * so that the solvers multiply instead of dividing by the mass of each particle.
+	 * All the arrays are indexed by the species id.
+	 */
+	public static class StepConstants {
+
+		/** Time step the constants were computed for. */
+		public final double step;
+
+		/** 1 / m */
+		public final double[] inverseMass;
+		/** q / m */
+		public final double[] chargeOverMass;
+		/** dt / m */
+		public final double[] stepOverMass;
+		/** dt / (2 m) */
+		public final double[] halfStepOverMass;
+		/** q dt / (2 m) */
+		public final double[] halfStepChargeOverMass;
+
+
+		StepConstants(double step, double[] masses, double[] charges) {
+			this.step = step;
+			int n = masses.length;
+			inverseMass = new double[n];
+			chargeOverMass = new double[n];
+			stepOverMass = new double[n];
+			halfStepOverMass = new double[n];
+			halfStepChargeOverMass = new double[n];
+			for (int id = 0; id < n; ++id) {
+				inverseMass[id] = 1 / masses[id];
+				chargeOverMass[id] = charges[id] / masses[id];
+				stepOverMass[id] = step / masses[id];
+				halfStepOverMass[id] = step / (2.0 * masses[id]);
+				halfStepChargeOverMass[id] = charges[id] * step / (2.0 * masses[id]);
+			}
+		}
+	}
+}
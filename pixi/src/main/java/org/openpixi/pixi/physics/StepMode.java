@@ -0,0 +1,25 @@
+package org.openpixi.pixi.physics;
+
+/**
+ * Defines how Simulation.step() processes the particles.
+ */
+public enum StepMode {
+	/**
+	 * Separate passes over the particles for the push, the interpolation to the grid
+	 * and the interpolation to the particles.
+	 */
+	MultiPass,
+	/**
+	 * Single pass which gathers the fields, pushes the particle and deposits its current
+	 * (see FusedParticleKernel).
+	 * Falls back to MultiPass for configurations the fused pass does not support.
+	 */
+	Fused,
+	/**
+	 * Electrostatic PIC: instead of depositing the current and advancing the fields
+	 * with the field solver, the charge density is deposited
+	 * and the Poisson equation is solved in each step.
+	 * The magnetic field is not evolved.
+	 */
+	Electrostatic,
+}
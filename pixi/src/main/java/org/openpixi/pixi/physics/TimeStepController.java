@@ -0,0 +1,155 @@
+package org.openpixi.pixi.physics;
+
+import org.openpixi.pixi.parallel.particleaccess.ParticleIterator;
+import org.openpixi.pixi.parallel.particleaccess.ParticleRangeAction;
+import org.openpixi.pixi.physics.grid.Grid;
+
+import java.util.List;
+
+/**
+ * Adapts the time step to the state of the simulation.
+ *
+ * In each step the controller finds the largest particle speed (in cells per unit of time)
+ * with a parallel reduction over the particles and proposes the largest time step for which
+ * <ul>
+ *     <li>no particle moves further than maxParticleDisplacement cells in one step
+ *     (the charge conserving interpolation requires moves shorter than a cell) and</li>
+ *     <li>the Courant number of the field solver, dt * sqrt(1/dx^2 + 1/dy^2),
+ *     does not exceed maxCourantNumber (the field solver works in units with c = 1).
+ *     This bound applies only if the field solver advances the fields; in the electrostatic
+ *     mode the fields come from the Poisson equation and the step is not limited by it.</li>
+ * </ul>
+ * The proposed step is limited to [minTimeStep, maxTimeStep].
+ * Each change of the time step costs a resynchronization of the particle velocities
+ * (see Simulation), therefore the step grows at most by the factor maxGrowth and only
+ * if it grows by more than minRelativeChange; it shrinks whenever needed.
+ *
+ * For relativistic solvers the particles store u = gamma * v instead of v,
+ * so the displacement is overestimated (the step is on the safe side).
+ */
+public class TimeStepController {
+
+	private ParticleIterator particleIterator;
+
+	private double minTimeStep;
+	private double maxTimeStep;
+	private double maxParticleDisplacement;
+	private double maxCourantNumber;
+	private double maxGrowth = 1.2;
+	private double minRelativeChange = 0.05;
+
+	/** Largest particle speed in cells per unit of time found by the last reduction. */
+	private double maxSpeed;
+
+	/* These are set in each step to enable the inner classes to read them. */
+	private double cellWidth;
+	private double cellHeight;
+
+	private MaxSpeed maxSpeedAction = new MaxSpeed();
+
+
+	public TimeStepController(ParticleIterator particleIterator,
+	                          double minTimeStep, double maxTimeStep,
+	                          double maxParticleDisplacement, double maxCourantNumber) {
+		if (minTimeStep > maxTimeStep) {
+			throw new RuntimeException("The minimal time step is larger than the maximal one!");
+		}
+		this.particleIterator = particleIterator;
+		this.minTimeStep = minTimeStep;
+		this.maxTimeStep = maxTimeStep;
+		this.maxParticleDisplacement = maxParticleDisplacement;
+		this.maxCourantNumber = maxCourantNumber;
+	}
+
+
+	public void setMaxGrowth(double maxGrowth) {
+		this.maxGrowth = maxGrowth;
+	}
+
+	public void setMinRelativeChange(double minRelativeChange) {
+		this.minRelativeChange = minRelativeChange;
+	}
+
+	/**
+	 * Largest particle speed in cells per unit of time found by the last call of
+	 * computeTimeStep().
+	 */
+	public double getMaxSpeed() {
+		return maxSpeed;
+	}
+
+	/**
+	 * Largest particle move in cells during one step of the given length
+	 * (according to the speeds found by the last call of computeTimeStep()).
+	 */
+	public double getMaxDisplacement(double timeStep) {
+		return maxSpeed * timeStep;
+	}
+
+	public static double getCourantNumber(Grid grid, double timeStep) {
+		double dx = grid.getCellWidth();
+		double dy = grid.getCellHeight();
+		return timeStep * Math.sqrt(1 / (dx * dx) + 1 / (dy * dy));
+	}
+
+
+	/**
+	 * Returns the time step for the next step (the current one if it should not change).
+	 * The Courant number is limited only if courantLimit is set
+	 * (i.e. if the field solver advances the fields).
+	 */
+	public double computeTimeStep(List<Particle> particles, Grid grid, double timeStep,
+	                              boolean courantLimit) {
+		cellWidth = grid.getCellWidth();
+		cellHeight = grid.getCellHeight();
+		maxSpeed = 0;
+		particleIterator.execute(particles, maxSpeedAction);
+
+		double proposed = Double.MAX_VALUE;
+		if (courantLimit) {
+			// Courant number of a unit time step
+			proposed = maxCourantNumber / getCourantNumber(grid, 1);
+		}
+		if (maxSpeed > 0) {
+			proposed = Math.min(proposed, maxParticleDisplacement / maxSpeed);
+		}
+		proposed = Math.min(proposed, maxGrowth * timeStep);
+		proposed = Math.max(minTimeStep, Math.min(maxTimeStep, proposed));
+
+		if (proposed < timeStep || proposed > timeStep * (1 + minRelativeChange)) {
+			return proposed;
+		}
+		return timeStep;
+	}
+
+
+	private synchronized void mergeMaxSpeed(double speed) {
+		maxSpeed = Math.max(maxSpeed, speed);
+	}
+
+
+	/**
+	 * Each range finds its own maximum; the maxima are merged once per range.
+	 * The velocities of the particles in a store are read directly from its arrays.
+	 */
+	private class MaxSpeed implements ParticleRangeAction {
+		public void execute(List<Particle> particles, int from, int to) {
+			double max = 0;
+			ParticleStore store = ParticleStore.storeOf(particles);
+			if (store != null) {
+				for (int i = from; i < to; ++i) {
+					max = Math.max(max, Math.abs(store.vx[i]) / cellWidth);
+					max = Math.max(max, Math.abs(store.vy[i]) / cellHeight);
+				}
+				mergeMaxSpeed(max);
+				return;
+			}
+			for (int i = from; i < to; ++i) {
+				Particle p = particles.get(i);
+				max = Math.max(max, Math.abs(p.getVx()) / cellWidth);
+				max = Math.max(max, Math.abs(p.getVy()) / cellHeight);
+			}
+			mergeMaxSpeed(max);
+		}
+	}
+}
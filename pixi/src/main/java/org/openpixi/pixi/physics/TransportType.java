@@ -0,0 +1,18 @@
+package org.openpixi.pixi.physics;
+
+/**
+ * Defines how the nodes of the distributed simulation communicate.
+ */
+public enum TransportType {
+	/** Ibis IPL with a registry server (see Settings.getIplServer()). */
+	Ibis,
+	/**
+	 * Plain TCP sockets (java.nio); the nodes are given by Settings.getNodeAddresses().
+	 */
+	Nio,
+	/**
+	 * All the nodes run in one JVM and hand the messages over in memory;
+	 * the nodes with the same Settings.getIplPool() form one network.
+	 */
+	InProcess,
+}
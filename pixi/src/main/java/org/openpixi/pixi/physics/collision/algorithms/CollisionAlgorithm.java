@@ -16,5 +16,13 @@ public class CollisionAlgorithm {
 	public void collide(ArrayList<Pair<Particle, Particle>> parlist, Force f, Solver s, double step) {
 		
 	}
+	
+	/**
+	 * Resolves the collision of one pair. Touches only the two particles,
+	 * so pairs without a common particle can be resolved concurrently (see ParallelCollision).
+	 */
+	public void collidePair(Particle p1, Particle p2, Force f, Solver s, double step) {
+		
+	}
 
 }
@@ -0,0 +1,258 @@
+package org.openpixi.pixi.physics.collision.algorithms;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.openpixi.pixi.parallel.cellaccess.CellIterator;
+import org.openpixi.pixi.parallel.cellaccess.CellRangeAction;
+import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.ParticleStore;
+import org.openpixi.pixi.physics.grid.Grid;
+import org.openpixi.pixi.physics.util.SplitMix64;
+
+/**
+ * Monte Carlo binary Coulomb collisions (Takizuka and Abe, J. Comput. Phys. 25, 205 (1977)).
+ *
+ * In each step the particles of each grid cell are paired at random and the relative velocity
+ * of each pair is rotated by a random angle theta with tan(theta / 2) normally distributed
+ * with the variance
+ *
+ *     (q1 q2)^2 n lnL dt / (8 pi mu^2 u^3)
+ *
+ * (mu is the reduced mass, u the relative speed, n the number of particles of the cell
+ * per cell area and lnL the Coulomb logarithm; in the units of the simulation with eps0 = 1).
+ * The rotation conserves the momentum and the energy of each pair exactly.
+ * As the velocities are two dimensional, the scattering happens in the plane.
+ * All the species of a cell are paired together; with an odd number of particles
+ * the first three collide with each other with half the variance.
+ *
+ * The cost is proportional to the number of particles. The cells are processed in parallel
+ * by the cell iterator. Each cell draws its random numbers from its own stream
+ * seeded from the seed, the number of the step and the cell index,
+ * so the results do not depend on the number of threads.
+ * The velocities are changed directly (without completing and preparing the solver step)
+ * and the operator is nonrelativistic.
+ */
+public class CoulombCollisions {
+
+	private CellIterator cellIterator;
+	private double coulombLogarithm;
+	private long seed;
+	/** Number of calls of collide(); selects the random streams of the step. */
+	private long numOfSteps = 0;
+
+	/** Cell index of each particle. */
+	private int[] particleCells = new int[0];
+	/** Particles ordered by cell (shuffled within each cell before the pairing). */
+	private int[] order = new int[0];
+	/** First position of each cell in order; the last entry is the number of particles. */
+	private int[] cellOffsets = new int[1];
+	/** Next free position of each cell during the counting sort. */
+	private int[] nextPosition = new int[0];
+
+	private ThreadLocal<SplitMix64> generators = new ThreadLocal<SplitMix64>() {
+		@Override
+		protected SplitMix64 initialValue() {
+			return new SplitMix64(0);
+		}
+	};
+
+	/* These are set in each step to enable the inner classes to read them. */
+	private List<Particle> particles;
+	private ParticleStore store;
+	private int numCellsY;
+	/** lnL dt / (8 pi cell area); the variance without the pair dependent factors and n. */
+	private double variancePrefactor;
+	private long stepSeed;
+
+	private CollideCells collideCells = new CollideCells();
+
+
+	public CoulombCollisions(double coulombLogarithm, long seed, CellIterator cellIterator) {
+		if (coulombLogarithm <= 0) {
+			throw new RuntimeException("Invalid Coulomb logarithm: " + coulombLogarithm);
+		}
+		this.coulombLogarithm = coulombLogarithm;
+		this.seed = seed;
+		this.cellIterator = cellIterator;
+	}
+
+
+	public double getCoulombLogarithm() {
+		return coulombLogarithm;
+	}
+
+
+	public void collide(List<Particle> particles, Grid grid, double step) {
+		this.particles = particles;
+		this.store = ParticleStore.storeOf(particles);
+		this.numCellsY = grid.getNumCellsY();
+		this.variancePrefactor = coulombLogarithm * step /
+				(8 * Math.PI * grid.getCellWidth() * grid.getCellHeight());
+		this.stepSeed = SplitMix64.streamSeed(seed, numOfSteps++);
+
+		sortByCells(grid);
+		cellIterator.setNormalMode(grid.getNumCellsX(), grid.getNumCellsY());
+		cellIterator.execute(grid, collideCells);
+
+		this.particles = null;
+		this.store = null;
+	}
+
+
+	/**
+	 * Counting sort of the particle indices by the cells of the grid (same cells as ParticleSorter).
+	 * When the particles were sorted by the ParticleSorter, the order is the identity.
+	 */
+	private void sortByCells(Grid grid) {
+		int numCellsX = grid.getNumCellsX();
+		double cellWidth = grid.getCellWidth();
+		double cellHeight = grid.getCellHeight();
+		int numOfParticles = particles.size();
+		int numOfCells = numCellsX * numCellsY;
+
+		if (cellOffsets.length != numOfCells + 1) {
+			cellOffsets = new int[numOfCells + 1];
+			nextPosition = new int[numOfCells];
+		}
+		if (particleCells.length < numOfParticles) {
+			particleCells = new int[numOfParticles + (numOfParticles >> 2)];
+			order = new int[particleCells.length];
+		}
+
+		for (int i = 0; i < numOfParticles; ++i) {
+			double x = (store != null) ? store.x[i] : particles.get(i).getX();
+			double y = (store != null) ? store.y[i] : particles.get(i).getY();
+			int cellX = (int) Math.floor(x / cellWidth);
+			int cellY = (int) Math.floor(y / cellHeight);
+			cellX = Math.min(Math.max(cellX, 0), numCellsX - 1);
+			cellY = Math.min(Math.max(cellY, 0), numCellsY - 1);
+			particleCells[i] = cellX * numCellsY + cellY;
+		}
+
+		Arrays.fill(cellOffsets, 0);
+		for (int i = 0; i < numOfParticles; ++i) {
+			cellOffsets[particleCells[i] + 1]++;
+		}
+		for (int c = 0; c < numOfCells; ++c) {
+			cellOffsets[c + 1] += cellOffsets[c];
+			nextPosition[c] = cellOffsets[c];
+		}
+		for (int i = 0; i < numOfParticles; ++i) {
+			order[nextPosition[particleCells[i]]++] = i;
+		}
+	}
+
+
+	private class CollideCells implements CellRangeAction {
+		public void execute(Grid grid, int xmin, int xmax, int ymin, int ymax) {
+			SplitMix64 random = generators.get();
+			for (int x = xmin; x <= xmax; ++x) {
+				for (int y = ymin; y <= ymax; ++y) {
+					int cell = x * numCellsY + y;
+					random.setSeed(SplitMix64.streamSeed(stepSeed, cell));
+					collideCell(cellOffsets[cell], cellOffsets[cell + 1], random);
+				}
+			}
+		}
+	}
+
+
+	private void collideCell(int begin, int end, SplitMix64 random) {
+		int count = end - begin;
+		if (count < 2) {
+			return;
+		}
+
+		// Fisher-Yates shuffle of the particles of the cell
+		for (int k = count - 1; k > 0; --k) {
+			int j = random.nextInt(k + 1);
+			int tmp = order[begin + k];
+			order[begin + k] = order[begin + j];
+			order[begin + j] = tmp;
+		}
+
+		double variance = variancePrefactor * count;
+		int first = begin;
+		if (count % 2 == 1) {
+			collidePair(order[begin], order[begin + 1], 0.5 * variance, random);
+			collidePair(order[begin + 1], order[begin + 2], 0.5 * variance, random);
+			collidePair(order[begin + 2], order[begin], 0.5 * variance, random);
+			first += 3;
+		}
+		for (int k = first; k + 1 < end; k += 2) {
+			collidePair(order[k], order[k + 1], variance, random);
+		}
+	}
+
+
+	/**
+	 * @param variance variance of tan(theta / 2) without the factor (q1 q2)^2 / (mu^2 u^3)
+	 */
+	private void collidePair(int i, int j, double variance, SplitMix64 random) {
+		double m1;
+		double m2;
+		double q1;
+		double q2;
+		double vx1;
+		double vy1;
+		double vx2;
+		double vy2;
+		if (store != null) {
+			m1 = store.getMass(i);
+			m2 = store.getMass(j);
+			q1 = store.getCharge(i);
+			q2 = store.getCharge(j);
+			vx1 = store.vx[i];
+			vy1 = store.vy[i];
+			vx2 = store.vx[j];
+			vy2 = store.vy[j];
+		}
+		else {
+			Particle p1 = particles.get(i);
+			Particle p2 = particles.get(j);
+			m1 = p1.getMass();
+			m2 = p2.getMass();
+			q1 = p1.getCharge();
+			q2 = p2.getCharge();
+			vx1 = p1.getVx();
+			vy1 = p1.getVy();
+			vx2 = p2.getVx();
+			vy2 = p2.getVy();
+		}
+
+		double ux = vx1 - vx2;
+		double uy = vy1 - vy2;
+		double u2 = ux * ux + uy * uy;
+		double qq = q1 * q2;
+		if (u2 == 0 || qq == 0) {
+			return;
+		}
+
+		double mu = m1 * m2 / (m1 + m2);
+		double u = Math.sqrt(u2);
+		double delta = random.nextGaussian() * Math.sqrt(variance * qq * qq / (mu * mu * u2 * u));
+
+		// cos(theta) and sin(theta) for tan(theta / 2) = delta
+		double denominator = 1 + delta * delta;
+		double cosTheta = (1 - delta * delta) / denominator;
+		double sinTheta = 2 * delta / denominator;
+		double dux = ux * (cosTheta - 1) - uy * sinTheta;
+		double duy = ux * sinTheta + uy * (cosTheta - 1);
+
+		double factor1 = m2 / (m1 + m2);
+		double factor2 = m1 / (m1 + m2);
+		if (store != null) {
+			store.vx[i] = vx1 + factor1 * dux;
+			store.vy[i] = vy1 + factor1 * duy;
+			store.vx[j] = vx2 - factor2 * dux;
+			store.vy[j] = vy2 - factor2 * duy;
+		}
+		else {
+			particles.get(i).setVx(vx1 + factor1 * dux);
+			particles.get(i).setVy(vy1 + factor1 * duy);
+			particles.get(j).setVx(vx2 - factor2 * dux);
+			particles.get(j).setVy(vy2 - factor2 * duy);
+		}
+	}
+}
@@ -75,15 +75,19 @@ public class MatrixTransformation extends CollisionAlgorithm{
 		for(int i = 0; i < pairs.size(); i++) {
 			Particle p1 = (Particle) pairs.get(i).getFirst();
 			Particle p2 = (Particle) pairs.get(i).getSecond();
-		
-			double distanceSquare = ((p1.getX() - p2.getX()) * (p1.getX() - p2.getX()) + (p1.getY() - p2.getY()) * (p1.getY() - p2.getY()));
-			if(distanceSquare <= ((p1.getRadius() + p2.getRadius()) * (p1.getRadius() + p2.getRadius()))) {
-				s.complete(p1, f, step);
-				s.complete(p2, f, step);
-				doCollision(p1, p2);
-				s.prepare(p1, f, step);
-				s.prepare(p2, f, step);
-			}
+			collidePair(p1, p2, f, s, step);
+		}
+	}
+	
+	public void collidePair(Particle p1, Particle p2, Force f, Solver s, double step) {
+		
+		double distanceSquare = ((p1.getX() - p2.getX()) * (p1.getX() - p2.getX()) + (p1.getY() - p2.getY()) * (p1.getY() - p2.getY()));
+		if(distanceSquare <= ((p1.getRadius() + p2.getRadius()) * (p1.getRadius() + p2.getRadius()))) {
+			s.complete(p1, f, step);
+			s.complete(p2, f, step);
+			doCollision(p1, p2);
+			s.prepare(p1, f, step);
+			s.prepare(p2, f, step);
 		}
 	}
 }
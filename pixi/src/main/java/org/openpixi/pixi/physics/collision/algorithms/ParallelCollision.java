@@ -0,0 +1,178 @@
+package org.openpixi.pixi.physics.collision.algorithms;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import org.openpixi.pixi.parallel.particleaccess.ParticleIterator;
+import org.openpixi.pixi.parallel.particleaccess.ParticleRangeAction;
+import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.collision.util.Pair;
+import org.openpixi.pixi.physics.force.Force;
+import org.openpixi.pixi.physics.solver.Solver;
+
+/**
+ * Resolves the pairs of another collision algorithm concurrently on the threads
+ * of a ParticleIterator.
+ *
+ * The pairs are colored by levels: the level of a pair is one more than the highest level
+ * of the earlier pairs sharing a particle with it. The pairs of one level have no common
+ * particle and are resolved in parallel; the levels are resolved one after another.
+ * Each particle thus takes part in its collisions in the same order as in the sequential
+ * collide() of the algorithm, so the results are the same as the sequential ones
+ * independent of the number of threads.
+ */
+public class ParallelCollision extends CollisionAlgorithm {
+
+	/** Smaller levels are resolved on the calling thread. */
+	private static final int MIN_PARALLEL_PAIRS = 64;
+
+	private CollisionAlgorithm algorithm;
+	private ParticleIterator particleIterator;
+
+	/** Highest level of the pairs of each particle seen so far. */
+	private IdentityHashMap<Particle, Integer> particleLevels = new IdentityHashMap<Particle, Integer>();
+	private int[] pairLevels = new int[0];
+	/** Indices of the pairs sorted by level. */
+	private int[] order = new int[0];
+	/** First position of each level in order; the last entry is the number of pairs. */
+	private int[] levelOffsets = new int[1];
+	/** Next free position of each level during the counting sort. */
+	private int[] nextPosition = new int[0];
+	private int numOfLevels;
+
+	/* These are set in each step to enable the inner classes to read them. */
+	private ArrayList<Pair<Particle, Particle>> pairs;
+	private Force force;
+	private Solver solver;
+	private double step;
+	private int levelBegin;
+
+	private LevelList levelList = new LevelList();
+	private ResolvePairs resolvePairs = new ResolvePairs();
+
+
+	public ParallelCollision(CollisionAlgorithm algorithm, ParticleIterator particleIterator) {
+		this.algorithm = algorithm;
+		this.particleIterator = particleIterator;
+	}
+
+
+	public CollisionAlgorithm getAlgorithm() {
+		return algorithm;
+	}
+
+	/** Number of levels of the last collide(). */
+	public int getNumOfLevels() {
+		return numOfLevels;
+	}
+
+
+	@Override
+	public void collide(ArrayList<Pair<Particle, Particle>> pairs, Force f, Solver s, double step) {
+		computeLevels(pairs);
+
+		this.pairs = pairs;
+		this.force = f;
+		this.solver = s;
+		this.step = step;
+		for (int level = 0; level < numOfLevels; ++level) {
+			levelBegin = levelOffsets[level];
+			levelList.size = levelOffsets[level + 1] - levelBegin;
+			if (levelList.size < MIN_PARALLEL_PAIRS) {
+				resolvePairs.execute(levelList, 0, levelList.size);
+			}
+			else {
+				particleIterator.execute(levelList, resolvePairs);
+			}
+		}
+		this.pairs = null;
+		this.force = null;
+		this.solver = null;
+	}
+
+
+	@Override
+	public void collidePair(Particle p1, Particle p2, Force f, Solver s, double step) {
+		algorithm.collidePair(p1, p2, f, s, step);
+	}
+
+
+	/**
+	 * Assigns the levels to the pairs and sorts the pairs by level (counting sort).
+	 */
+	private void computeLevels(ArrayList<Pair<Particle, Particle>> pairs) {
+		int numOfPairs = pairs.size();
+		if (pairLevels.length < numOfPairs) {
+			pairLevels = new int[numOfPairs + (numOfPairs >> 1)];
+			order = new int[pairLevels.length];
+		}
+
+		numOfLevels = 0;
+		particleLevels.clear();
+		for (int k = 0; k < numOfPairs; ++k) {
+			Particle p1 = pairs.get(k).getFirst();
+			Particle p2 = pairs.get(k).getSecond();
+			int level = Math.max(levelOf(p1), levelOf(p2)) + 1;
+			particleLevels.put(p1, level);
+			particleLevels.put(p2, level);
+			pairLevels[k] = level;
+			numOfLevels = Math.max(numOfLevels, level + 1);
+		}
+		particleLevels.clear();
+
+		if (levelOffsets.length < numOfLevels + 1) {
+			levelOffsets = new int[2 * numOfLevels + 1];
+			nextPosition = new int[levelOffsets.length - 1];
+		}
+		Arrays.fill(levelOffsets, 0, numOfLevels + 1, 0);
+		for (int k = 0; k < numOfPairs; ++k) {
+			levelOffsets[pairLevels[k] + 1]++;
+		}
+		for (int level = 0; level < numOfLevels; ++level) {
+			levelOffsets[level + 1] += levelOffsets[level];
+			nextPosition[level] = levelOffsets[level];
+		}
+		for (int k = 0; k < numOfPairs; ++k) {
+			order[nextPosition[pairLevels[k]]++] = k;
+		}
+	}
+
+
+	private int levelOf(Particle p) {
+		Integer level = particleLevels.get(p);
+		return (level == null) ? -1 : level;
+	}
+
+
+	/**
+	 * Pairs of the current level; the list holds the first particle of each pair
+	 * so that the pairs can be split among the threads by the ParticleIterator.
+	 */
+	private class LevelList extends AbstractList<Particle> {
+
+		private int size;
+
+		@Override
+		public Particle get(int index) {
+			return pairs.get(order[levelBegin + index]).getFirst();
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+
+
+	private class ResolvePairs implements ParticleRangeAction {
+		public void execute(List<Particle> particles, int from, int to) {
+			for (int k = from; k < to; ++k) {
+				Pair<Particle, Particle> pair = pairs.get(order[levelBegin + k]);
+				algorithm.collidePair(pair.getFirst(), pair.getSecond(), force, solver, step);
+			}
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package org.openpixi.pixi.physics.collision.detectors;
 
 import java.util.ArrayList;
+import java.util.List;
 import org.openpixi.pixi.physics.*;
 import org.openpixi.pixi.physics.collision.util.Pair;
 
@@ -10,7 +11,7 @@ public class AllParticles extends Detector{
 	
 	private ArrayList<Particle> particlelist = new ArrayList<Particle>();
 	
-	public AllParticles(ArrayList<Particle> parlist) {
+	public AllParticles(List<Particle> parlist) {
 		particlelist.clear();
 		
 		for(int i = 0; i < parlist.size(); i++) {
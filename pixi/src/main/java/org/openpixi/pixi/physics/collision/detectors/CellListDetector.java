@@ -0,0 +1,318 @@
+package org.openpixi.pixi.physics.collision.detectors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.ParticleSorter;
+import org.openpixi.pixi.physics.ParticleStore;
+import org.openpixi.pixi.physics.collision.util.Pair;
+import org.openpixi.pixi.physics.collision.util.PairBuffer;
+import org.openpixi.pixi.physics.grid.Grid;
+
+/**
+ * Finds the overlapping pairs with a uniform grid of cells (cell list).
+ *
+ * The cells are at least as large as the largest particle diameter, so a particle
+ * can only overlap with the particles of its own cell and of the eight neighbouring cells.
+ * Each pair of neighbouring cells is checked once (half stencil), which gives
+ * the same pairs as AllParticles in O(N) instead of O(N^2).
+ *
+ * When the particles were sorted by the cells of the PIC grid right before run()
+ * (see particlesSorted()) and the grid cells are large enough,
+ * the cell offsets of the sorter are used instead of binning the particles again.
+ *
+ * The detector works with the given list (not a copy), so particles added later are included.
+ * The pairs are written as particle indices to a reusable PairBuffer;
+ * getOverlappedPairs() converts them to the Pair objects used by the collision algorithms.
+ */
+public class CellListDetector extends Detector {
+
+	/** Limits the number of cells of the own binning to this many per particle. */
+	private static final int MAX_CELLS_PER_PARTICLE = 4;
+
+	private List<Particle> particles;
+
+	private PairBuffer pairs = new PairBuffer();
+	private ArrayList<Pair<Particle, Particle>> overlappedPairs = new ArrayList<Pair<Particle, Particle>>();
+	private boolean overlappedPairsCurrent = true;
+
+	/* Cell list of the current run. */
+	private int numCellsX;
+	private int numCellsY;
+	/** First position of each cell; the last entry is the number of particles. */
+	private int[] cellOffsets = new int[1];
+	/** Index of the particle at each position of the cell list (null if the identity). */
+	private int[] order;
+
+	/* Own binning; reused from run to run. */
+	private int[] ownCellOffsets = new int[1];
+	private int[] nextPosition = new int[0];
+	private int[] particleCells = new int[0];
+	private int[] ownOrder = new int[0];
+
+	/** Positions and radii by particle index. */
+	private double[] x = new double[0];
+	private double[] y = new double[0];
+	private double[] radius = new double[0];
+	/** Positions and radii in the order of the cell list. */
+	private double[] sortedX = new double[0];
+	private double[] sortedY = new double[0];
+	private double[] sortedRadius = new double[0];
+
+	/* Set by particlesSorted() and used by the next run() only. */
+	private ParticleSorter sorter;
+	private double sortedCellWidth;
+	private double sortedCellHeight;
+
+
+	public CellListDetector(List<Particle> particles) {
+		this.particles = particles;
+	}
+
+
+	public PairBuffer getPairs() {
+		return pairs;
+	}
+
+
+	/**
+	 * The particles are in the order of the cells of the sorter until they move,
+	 * thus the offsets of the sorter are only used in the next run().
+	 */
+	@Override
+	public void particlesSorted(ParticleSorter sorter, Grid grid) {
+		if (ParticleStore.storeOf(particles) == null) {
+			return;
+		}
+		this.sorter = sorter;
+		this.sortedCellWidth = grid.getCellWidth();
+		this.sortedCellHeight = grid.getCellHeight();
+	}
+
+
+	@Override
+	public void run() {
+		int n = particles.size();
+		pairs.clear();
+		overlappedPairsCurrent = false;
+
+		double maxRadius = readParticles(n);
+		if (n < 2) {
+			sorter = null;
+			return;
+		}
+
+		if (canUseSorter(n, maxRadius)) {
+			numCellsX = sorter.getNumCellsX();
+			numCellsY = sorter.getNumCellsY();
+			cellOffsets = sorter.getCellOffsets();
+			order = null;
+			findPairs(x, y, radius);
+		}
+		else {
+			binParticles(n, maxRadius);
+			findPairs(sortedX, sortedY, sortedRadius);
+		}
+		sorter = null;
+	}
+
+
+	@Override
+	public ArrayList<Pair<Particle, Particle>> getOverlappedPairs() {
+		if (!overlappedPairsCurrent) {
+			overlappedPairs.clear();
+			for (int k = 0; k < pairs.size(); ++k) {
+				overlappedPairs.add(new Pair<Particle, Particle>(
+						particles.get(pairs.getFirst(k)), particles.get(pairs.getSecond(k))));
+			}
+			overlappedPairsCurrent = true;
+		}
+		return overlappedPairs;
+	}
+
+
+	private boolean canUseSorter(int n, double maxRadius) {
+		return sorter != null &&
+				sorter.getCellOffsets()[sorter.getCellOffsets().length - 1] == n &&
+				sortedCellWidth >= 2 * maxRadius &&
+				sortedCellHeight >= 2 * maxRadius;
+	}
+
+
+	/**
+	 * Copies the positions and radii to the arrays of the detector
+	 * (directly from the arrays of the store if the list is backed by one).
+	 * @return the largest radius
+	 */
+	private double readParticles(int n) {
+		if (x.length < n) {
+			int capacity = n + (n >> 2) + 1;
+			x = new double[capacity];
+			y = new double[capacity];
+			radius = new double[capacity];
+		}
+
+		ParticleStore store = ParticleStore.storeOf(particles);
+		if (store != null) {
+			System.arraycopy(store.x, 0, x, 0, n);
+			System.arraycopy(store.y, 0, y, 0, n);
+			double[] radii = store.getSpeciesTable().getRadii();
+			for (int i = 0; i < n; ++i) {
+				radius[i] = radii[store.species[i]];
+			}
+		}
+		else {
+			for (int i = 0; i < n; ++i) {
+				Particle p = particles.get(i);
+				x[i] = p.getX();
+				y[i] = p.getY();
+				radius[i] = p.getRadius();
+			}
+		}
+
+		double maxRadius = 0;
+		for (int i = 0; i < n; ++i) {
+			maxRadius = Math.max(maxRadius, radius[i]);
+		}
+		return maxRadius;
+	}
+
+
+	/**
+	 * Counting sort of the particles into cells of at least the largest diameter
+	 * spanning the bounding box of the particles.
+	 */
+	private void binParticles(int n, double maxRadius) {
+		double minX = Double.MAX_VALUE;
+		double minY = Double.MAX_VALUE;
+		double maxX = -Double.MAX_VALUE;
+		double maxY = -Double.MAX_VALUE;
+		for (int i = 0; i < n; ++i) {
+			minX = Math.min(minX, x[i]);
+			maxX = Math.max(maxX, x[i]);
+			minY = Math.min(minY, y[i]);
+			maxY = Math.max(maxY, y[i]);
+		}
+
+		double minCellSize = Math.max(2 * maxRadius, Double.MIN_NORMAL);
+		numCellsX = numOfCells(maxX - minX, minCellSize);
+		numCellsY = numOfCells(maxY - minY, minCellSize);
+		long maxNumOfCells = (long) MAX_CELLS_PER_PARTICLE * n;
+		while ((long) numCellsX * numCellsY > maxNumOfCells) {
+			numCellsX = (numCellsX + 1) / 2;
+			numCellsY = (numCellsY + 1) / 2;
+		}
+		double inverseCellWidth = numCellsX / Math.max(maxX - minX, minCellSize);
+		double inverseCellHeight = numCellsY / Math.max(maxY - minY, minCellSize);
+
+		prepareBinning(n, numCellsX * numCellsY);
+		for (int i = 0; i < n; ++i) {
+			int cellX = Math.min((int) ((x[i] - minX) * inverseCellWidth), numCellsX - 1);
+			int cellY = Math.min((int) ((y[i] - minY) * inverseCellHeight), numCellsY - 1);
+			particleCells[i] = cellX * numCellsY + cellY;
+		}
+
+		int numOfCells = numCellsX * numCellsY;
+		Arrays.fill(ownCellOffsets, 0, numOfCells + 1, 0);
+		for (int i = 0; i < n; ++i) {
+			ownCellOffsets[particleCells[i] + 1]++;
+		}
+		for (int c = 0; c < numOfCells; ++c) {
+			ownCellOffsets[c + 1] += ownCellOffsets[c];
+			nextPosition[c] = ownCellOffsets[c];
+		}
+		for (int i = 0; i < n; ++i) {
+			int k = nextPosition[particleCells[i]]++;
+			ownOrder[k] = i;
+			sortedX[k] = x[i];
+			sortedY[k] = y[i];
+			sortedRadius[k] = radius[i];
+		}
+
+		cellOffsets = ownCellOffsets;
+		order = ownOrder;
+	}
+
+
+	private static int numOfCells(double extent, double minCellSize) {
+		return (int) Math.max(1, Math.min(Integer.MAX_VALUE, Math.floor(extent / minCellSize)));
+	}
+
+
+	private void prepareBinning(int n, int numOfCells) {
+		if (ownCellOffsets.length < numOfCells + 1) {
+			ownCellOffsets = new int[numOfCells + 1];
+			nextPosition = new int[numOfCells];
+		}
+		if (particleCells.length < n) {
+			int capacity = x.length;
+			particleCells = new int[capacity];
+			ownOrder = new int[capacity];
+			sortedX = new double[capacity];
+			sortedY = new double[capacity];
+			sortedRadius = new double[capacity];
+		}
+	}
+
+
+	/**
+	 * With the cells numbered cellX * numCellsY + cellY, the own cell together with the cell above
+	 * and the three cells of the next column are two contiguous ranges of the cell list.
+	 */
+	private void findPairs(double[] px, double[] py, double[] pr) {
+		for (int cellX = 0; cellX < numCellsX; ++cellX) {
+			for (int cellY = 0; cellY < numCellsY; ++cellY) {
+				int c = cellX * numCellsY + cellY;
+				int begin = cellOffsets[c];
+				int end = cellOffsets[c + 1];
+				if (begin == end) {
+					continue;
+				}
+
+				int sameColumnEnd = cellOffsets[cellY + 1 < numCellsY ? c + 2 : c + 1];
+				int nextColumnBegin = 0;
+				int nextColumnEnd = 0;
+				if (cellX + 1 < numCellsX) {
+					int next = c + numCellsY;
+					nextColumnBegin = cellOffsets[cellY > 0 ? next - 1 : next];
+					nextColumnEnd = cellOffsets[cellY + 1 < numCellsY ? next + 2 : next + 1];
+				}
+
+				for (int a = begin; a < end; ++a) {
+					checkRange(px, py, pr, a, a + 1, sameColumnEnd);
+					checkRange(px, py, pr, a, nextColumnBegin, nextColumnEnd);
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Same overlap test as AllParticles (bounding squares of the particles).
+	 */
+	private void checkRange(double[] px, double[] py, double[] pr, int a, int from, int to) {
+		double xa = px[a];
+		double ya = py[a];
+		double ra = pr[a];
+		for (int b = from; b < to; ++b) {
+			double r = ra + pr[b];
+			if (Math.abs(xa - px[b]) <= r && Math.abs(ya - py[b]) <= r) {
+				addPair(a, b);
+			}
+		}
+	}
+
+
+	private void addPair(int a, int b) {
+		int i = (order == null) ? a : order[a];
+		int j = (order == null) ? b : order[b];
+		if (i < j) {
+			pairs.add(i, j);
+		}
+		else {
+			pairs.add(j, i);
+		}
+	}
+}
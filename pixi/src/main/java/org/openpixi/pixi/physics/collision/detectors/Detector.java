@@ -3,7 +3,9 @@ package org.openpixi.pixi.physics.collision.detectors;
 import java.util.ArrayList;
 
 import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.ParticleSorter;
 import org.openpixi.pixi.physics.collision.util.Pair;
+import org.openpixi.pixi.physics.grid.Grid;
 
 public class Detector {
 	
@@ -18,6 +20,14 @@ public class Detector {
 		
 	}
 	
+	/**
+	 * Called by the simulation right after the particles were sorted by the cells of the grid
+	 * (before run() in the same step). Detectors which bin the particles can reuse the order.
+	 */
+	public void particlesSorted(ParticleSorter sorter, Grid grid) {
+		
+	}
+	
 	public ArrayList<Pair<Particle, Particle>> getOverlappedPairs() {
 		return overlappedPairs;
 	}
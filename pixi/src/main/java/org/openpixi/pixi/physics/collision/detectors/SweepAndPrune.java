@@ -4,149 +4,225 @@ import org.openpixi.pixi.physics.*;
 import org.openpixi.pixi.physics.collision.util.*;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
-import java.util.ListIterator;
-import java.util.Map;
-import java.util.Map.Entry;
 
+/**
+ * Sweep and prune along both axes.
+ *
+ * The begin and end points of the bounding boxes are kept sorted along each axis
+ * in primitive arrays. As the particles move only a little from step to step,
+ * insertion sort brings the arrays back in order with few swaps; a begin point
+ * moving past an end point starts an overlap on that axis and an end point moving
+ * past a begin point ends it. The overlapping pairs are kept as long keys
+ * in a LongHashSet.
+ *
+ * All the buffers (including the Pair objects returned by getOverlappedPairs())
+ * are reused, so there is no allocation in the steps once they are large enough.
+ * Works with the particles given to the constructor; the indices of the PairBuffer
+ * refer to their order in that list.
+ */
 public class SweepAndPrune extends Detector{
-	
+
+	private Particle[] particles;
+
+	/* Bounding boxes by particle index. */
+	private double[] xMin;
+	private double[] xMax;
+	private double[] yMin;
+	private double[] yMax;
+
+	/* Sorted end points of each axis: particle index * 2, plus 1 for the end of a box. */
+	private int[] pointsX;
+	private int[] pointsY;
+	private double[] valuesX;
+	private double[] valuesY;
+
+	private LongHashSet overlaps = new LongHashSet();
+	private boolean initialized = false;
+
+	/* Used by the initial sweep only. */
+	private int[] active;
+	private int[] activePosition;
+
+	private PairBuffer pairs = new PairBuffer();
 	private ArrayList<Pair<Particle, Particle>> overlappedPairs = new ArrayList<Pair<Particle, Particle>>();
+	private ArrayList<Pair<Particle, Particle>> pairPool = new ArrayList<Pair<Particle, Particle>>();
 
-	private ArrayList<BoundingBox> boxlist = new ArrayList<BoundingBox>();
-	
-	private ArrayList<SweepParticle> axisX = new ArrayList<SweepParticle>();
-	private ArrayList<SweepParticle> axisY = new ArrayList<SweepParticle>();
-	
-	private ArrayList<Pair<BoundingBox, BoundingBox>> overlaps = new ArrayList<Pair<BoundingBox, BoundingBox>>();
-	
-	//private ArrayList<Pair<Particle2D, Particle2D>> overlappedPairs = new ArrayList<Pair<Particle2D, Particle2D>>();
-	
-	private Map<Pair<BoundingBox, BoundingBox>, OverlapCounter> overlapCounter = 
-			new HashMap<Pair<BoundingBox, BoundingBox>, OverlapCounter>();
-	
 	//constructor
-	public SweepAndPrune(ArrayList<Particle> parlist) {
-		
-		boxlist.clear();
-		axisX.clear();
-		axisY.clear();
-		overlaps.clear();
+	public SweepAndPrune(List<Particle> parlist) {
+		int n = parlist.size();
+		particles = parlist.toArray(new Particle[n]);
+
+		xMin = new double[n];
+		xMax = new double[n];
+		yMin = new double[n];
+		yMax = new double[n];
+
+		pointsX = new int[2 * n];
+		pointsY = new int[2 * n];
+		valuesX = new double[2 * n];
+		valuesY = new double[2 * n];
+		for (int k = 0; k < 2 * n; ++k) {
+			pointsX[k] = k;
+			pointsY[k] = k;
+		}
+
+		active = new int[n];
+		activePosition = new int[n];
+	}
+
+
+	public PairBuffer getPairs() {
+		return pairs;
+	}
+
+
+	public void run() {
+		updateBoxes();
+
+		if (initialized) {
+			sortAxis(pointsX, valuesX, true);
+			sortAxis(pointsY, valuesY, true);
+		}
+		else {
+			sortAxis(pointsX, valuesX, false);
+			sortAxis(pointsY, valuesY, false);
+			sweepX();
+			initialized = true;
+		}
+
+		pairs.clear();
+		for (int slot = 0; slot < overlaps.capacity(); ++slot) {
+			long key = overlaps.getSlot(slot);
+			if (key != LongHashSet.EMPTY) {
+				pairs.add(LongHashSet.firstOf(key), LongHashSet.secondOf(key));
+			}
+		}
+	}
+
+
+	public ArrayList<Pair<Particle, Particle>> getOverlappedPairs() {
 		overlappedPairs.clear();
-		overlapCounter.clear();
-		
-		for(int i = 0; i < parlist.size(); i++) {
-			Particle par = (Particle) parlist.get(i);
-			BoundingBox box = new BoundingBox(par);
-		
-			if(!boxlist.contains(box)) {
-				boxlist.add(box);
-				
-				axisX.add(new SweepParticle(box, 0, true));
-				axisX.add(new SweepParticle(box, 0, false));
-				axisY.add(new SweepParticle(box, 1, true));
-				axisY.add(new SweepParticle(box, 1, false));
-				//System.out.println("Particles added");
+
+		for (int k = 0; k < pairs.size(); k++) {
+			if (pairPool.size() == k) {
+				pairPool.add(new Pair<Particle, Particle>(null, null));
 			}
+			Pair<Particle, Particle> pairpar = pairPool.get(k);
+			pairpar.setFirst(particles[pairs.getFirst(k)]);
+			pairpar.setSecond(particles[pairs.getSecond(k)]);
+			overlappedPairs.add(pairpar);
+		}
+		return overlappedPairs;
+	}
+
+
+	private void updateBoxes() {
+		for (int i = 0; i < particles.length; i++) {
+			Particle par = particles[i];
+			double x = par.getX();
+			double y = par.getY();
+			double r = par.getRadius();
+			xMin[i] = x - r;
+			xMax[i] = x + r;
+			yMin[i] = y - r;
+			yMax[i] = y + r;
+		}
+		for (int k = 0; k < pointsX.length; k++) {
+			valuesX[k] = value(pointsX[k], xMin, xMax);
+			valuesY[k] = value(pointsY[k], yMin, yMax);
 		}
 	}
-	
-	
-	//adding a method for sorting the lists
-	private void sortList(ArrayList<SweepParticle> list) {
-		
-		for(int i = 1; i < list.size(); i++) {
-			
-			SweepParticle sweepPar = list.get(i);
-			double sweepParValue = sweepPar.updateGetValue();
-			
+
+
+	private static double value(int point, double[] min, double[] max) {
+		return ((point & 1) == 0) ? min[point >> 1] : max[point >> 1];
+	}
+
+
+	/**
+	 * Insertion sort of the end points of one axis. For equal values the begin points
+	 * come first, so that touching boxes overlap (as in AllParticles).
+	 * @param updateOverlaps whether the swaps update the set of overlapping pairs
+	 */
+	private void sortAxis(int[] points, double[] values, boolean updateOverlaps) {
+		for (int i = 1; i < points.length; i++) {
+			int point = points[i];
+			double value = values[i];
+
 			int j = i - 1;
-			
-			while(j >= 0 && (list.get(j).updateGetValue() > sweepParValue)) {
-				
-				SweepParticle swapPar = list.get(j);
-				
-				//creating a pair of the possibly overlapping particles
-				Pair<BoundingBox, BoundingBox> pairbox = new Pair<BoundingBox, BoundingBox>(sweepPar.bb, swapPar.bb);
-				
-				if(sweepPar.begin && !swapPar.begin) {
-					
-					//setting them into a list
-					if(overlapCounter.containsKey(pairbox)) {
-						overlapCounter.get(pairbox).overlaps++;
-					}
-					else {
-						OverlapCounter newOverlapCounter = new OverlapCounter();
-						newOverlapCounter.overlaps = 1;
-						overlapCounter.put(pairbox, newOverlapCounter);
-					}
-				}
-				if(!sweepPar.begin && swapPar.begin) {
-					if(overlapCounter.containsKey(pairbox)) {
-						overlapCounter.get(pairbox).overlaps--;
-					}
+			while (j >= 0 && isBefore(value, point, values[j], points[j])) {
+				if (updateOverlaps) {
+					swapped(point, points[j]);
 				}
-				
-				list.set(j + 1, swapPar);
-				j = j - 1;
+				points[j + 1] = points[j];
+				values[j + 1] = values[j];
+				j--;
 			}
-			
-			list.set(j + 1, sweepPar);
-			//System.out.println("Particles swapped");
+			points[j + 1] = point;
+			values[j + 1] = value;
 		}
 	}
-	
-	public void run() {
-		
-		//sorting the axes lists
-		sortList(axisX);
-		sortList(axisY);
-		//System.out.println("Axes sorted");
-		
-		//one needs to look at the counters (similar like with the remove method)
-		Iterator<Entry<Pair<BoundingBox, BoundingBox>, OverlapCounter>> iterator = overlapCounter.entrySet().iterator();
-		
-		while(iterator.hasNext()) {
-			Entry<Pair<BoundingBox, BoundingBox>, OverlapCounter> entry = iterator.next();
-			OverlapCounter counter = entry.getValue();
-			Pair<BoundingBox, BoundingBox> pairbox = entry.getKey();
-			
-			//System.out.println(counter.overlaps);
-			if(counter.overlappedBoolean) {
-				if(counter.overlaps < 2) {
-					overlaps.remove(pairbox);
-					counter.overlappedBoolean = false;
 
-				}
-				else if (counter.overlaps > 1) {
-				}
+
+	private static boolean isBefore(double value, int point, double otherValue, int otherPoint) {
+		return value < otherValue || (value == otherValue && (point & 1) < (otherPoint & 1));
+	}
+
+
+	/**
+	 * The end point moving (to the front) passed the other end point.
+	 */
+	private void swapped(int moving, int passed) {
+		boolean movingIsBegin = (moving & 1) == 0;
+		boolean passedIsBegin = (passed & 1) == 0;
+		if (movingIsBegin == passedIsBegin) {
+			return;
+		}
+		int i = moving >> 1;
+		int j = passed >> 1;
+		if (movingIsBegin) {
+			if (boxesOverlap(i, j)) {
+				overlaps.add(LongHashSet.key(i, j));
 			}
-			else {
-				if(counter.overlaps > 1) {
-					overlaps.add(pairbox);
-					counter.overlappedBoolean = true;
+		}
+		else {
+			overlaps.remove(LongHashSet.key(i, j));
+		}
+	}
+
+
+	private boolean boxesOverlap(int i, int j) {
+		return xMin[i] <= xMax[j] && xMin[j] <= xMax[i] &&
+				yMin[i] <= yMax[j] && yMin[j] <= yMax[i];
+	}
+
+
+	/**
+	 * Finds all the overlapping pairs by sweeping along the sorted x axis
+	 * (the swaps of the first sort do not give the overlaps).
+	 */
+	private void sweepX() {
+		overlaps.clear();
+		int numActive = 0;
+		for (int k = 0; k < pointsX.length; k++) {
+			int i = pointsX[k] >> 1;
+			if ((pointsX[k] & 1) == 0) {
+				for (int a = 0; a < numActive; a++) {
+					int j = active[a];
+					if (yMin[i] <= yMax[j] && yMin[j] <= yMax[i]) {
+						overlaps.add(LongHashSet.key(i, j));
+					}
 				}
+				activePosition[i] = numActive;
+				active[numActive++] = i;
 			}
-			if(counter.overlaps < 1) {
-				iterator.remove();
+			else {
+				int last = active[--numActive];
+				active[activePosition[i]] = last;
+				activePosition[last] = activePosition[i];
 			}
 		}
 	}
-	
-	public ArrayList<Pair<Particle, Particle>> getOverlappedPairs() {
-		
-		overlappedPairs.clear();
-		
-		for(int i = 0; i < overlaps.size(); i++) {
-			BoundingBox box1 = (BoundingBox) overlaps.get(i).getFirst();
-			BoundingBox box2 = (BoundingBox) overlaps.get(i).getSecond();
-			Pair<Particle, Particle> pairpar = new Pair<Particle, Particle>(box1.particle, box2.particle);
-			overlappedPairs.add(pairpar);
-		}
-		return overlappedPairs;
-		
-	}
 
 }
@@ -0,0 +1,171 @@
+package org.openpixi.pixi.physics.collision.util;
+
+import java.util.Arrays;
+
+/**
+ * Set of non-negative long keys (e.g. pairs of particle indices, see key())
+ * with open addressing and linear probing.
+ * Removing a key shifts the following keys back instead of leaving a tombstone,
+ * so the table does not fill up when keys are added and removed in every step.
+ * Allocates only when the table grows.
+ */
+public class LongHashSet {
+
+	/** Marks the free slots; is returned by getSlot() for them. */
+	public static final long EMPTY = -1;
+
+	private long[] slots;
+	private int mask;
+	private int size;
+
+
+	public LongHashSet() {
+		this(16);
+	}
+
+	public LongHashSet(int expectedSize) {
+		allocate(tableSize(expectedSize));
+	}
+
+
+	/**
+	 * Key of the pair of indices i and j (in either order).
+	 */
+	public static long key(int i, int j) {
+		if (i > j) {
+			int tmp = i;
+			i = j;
+			j = tmp;
+		}
+		return ((long) i << 32) | j;
+	}
+
+	public static int firstOf(long key) {
+		return (int) (key >>> 32);
+	}
+
+	public static int secondOf(long key) {
+		return (int) key;
+	}
+
+
+	public int size() {
+		return size;
+	}
+
+	/** Number of slots; the keys are iterated by getSlot(0) ... getSlot(capacity() - 1). */
+	public int capacity() {
+		return slots.length;
+	}
+
+	/** Key in the given slot or EMPTY. */
+	public long getSlot(int slot) {
+		return slots[slot];
+	}
+
+
+	public boolean contains(long key) {
+		return slots[find(key)] == key;
+	}
+
+
+	/**
+	 * @return false if the key was already in the set
+	 */
+	public boolean add(long key) {
+		if (key < 0) {
+			throw new IllegalArgumentException("Keys have to be non-negative.");
+		}
+		int slot = find(key);
+		if (slots[slot] == key) {
+			return false;
+		}
+		slots[slot] = key;
+		size++;
+		if (2 * size > slots.length) {
+			rehash(2 * slots.length);
+		}
+		return true;
+	}
+
+
+	/**
+	 * @return false if the key was not in the set
+	 */
+	public boolean remove(long key) {
+		int hole = find(key);
+		if (slots[hole] != key) {
+			return false;
+		}
+
+		// Moves back the keys which would not be found behind the hole
+		int next = (hole + 1) & mask;
+		while (slots[next] != EMPTY) {
+			int home = index(slots[next]);
+			if (((next - home) & mask) >= ((next - hole) & mask)) {
+				slots[hole] = slots[next];
+				hole = next;
+			}
+			next = (next + 1) & mask;
+		}
+		slots[hole] = EMPTY;
+		size--;
+		return true;
+	}
+
+
+	public void clear() {
+		Arrays.fill(slots, EMPTY);
+		size = 0;
+	}
+
+
+	/**
+	 * Slot of the key or the free slot where it would be inserted.
+	 */
+	private int find(long key) {
+		int slot = index(key);
+		while (slots[slot] != EMPTY && slots[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+
+	private int index(long key) {
+		// Finalizer of MurmurHash3
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return (int) key & mask;
+	}
+
+
+	private void rehash(int newCapacity) {
+		long[] oldSlots = slots;
+		allocate(newCapacity);
+		for (long key: oldSlots) {
+			if (key != EMPTY) {
+				slots[find(key)] = key;
+			}
+		}
+	}
+
+
+	private void allocate(int capacity) {
+		slots = new long[capacity];
+		Arrays.fill(slots, EMPTY);
+		mask = capacity - 1;
+	}
+
+
+	private static int tableSize(int expectedSize) {
+		int capacity = 16;
+		while (capacity < 2 * expectedSize) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+}
@@ -0,0 +1,46 @@
+package org.openpixi.pixi.physics.collision.util;
+
+/**
+ * Growable buffer of pairs of particle indices.
+ * The arrays are kept from one step to the next and only grow,
+ * so the detection does not allocate once the buffer is large enough.
+ */
+public class PairBuffer {
+
+	private int[] first = new int[16];
+	private int[] second = new int[16];
+	private int size;
+
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	public int getFirst(int k) {
+		return first[k];
+	}
+
+	public int getSecond(int k) {
+		return second[k];
+	}
+
+
+	public void add(int i, int j) {
+		if (size == first.length) {
+			int newCapacity = first.length + (first.length >> 1) + 1;
+			int[] newFirst = new int[newCapacity];
+			int[] newSecond = new int[newCapacity];
+			System.arraycopy(first, 0, newFirst, 0, size);
+			System.arraycopy(second, 0, newSecond, 0, size);
+			first = newFirst;
+			second = newSecond;
+		}
+		first[size] = i;
+		second[size] = j;
+		size++;
+	}
+}
@@ -39,6 +39,14 @@ public class FieldSolver {
 		this.cellIterator.setNormalMode(numCellsX, numCellsY);
 	}
 
+	/**
+	 * Keeps the magnetic field of the previous time step (Bz -> Bzo).
+	 * Is called by the grid right before step().
+	 */
+	public void storeFields(Grid g) {
+		g.storeFields();
+	}
+
 	public void step(Grid g, double timeStep) {
 
 	}
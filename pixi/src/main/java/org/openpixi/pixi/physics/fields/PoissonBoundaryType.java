@@ -0,0 +1,11 @@
+package org.openpixi.pixi.physics.fields;
+
+/**
+ * Condition for the electrostatic potential at the walls of a non periodic simulation area.
+ */
+public enum PoissonBoundaryType {
+	/** The potential vanishes at the walls (grounded conducting walls). */
+	Dirichlet,
+	/** The normal derivative of the potential (the normal electric field) vanishes at the walls. */
+	Neumann,
+}
@@ -3,8 +3,31 @@ package org.openpixi.pixi.physics.fields;
 import edu.emory.mathcs.jtransforms.fft.*;
 import org.openpixi.pixi.physics.grid.Grid;
 
+/**
+ * The FFT plan, the work array and the inverse Laplacian in Fourier space are created
+ * on the first call and reused as long as the grid keeps its dimensions,
+ * so that the solver is cheap enough to be called in every time step.
+ * The instance must not be used by two threads at the same time.
+ *
+ * <p>The number of threads of the transforms is the JTransforms setting of the whole process
+ * (ConcurrencyUtils.setNumberOfThreads(), by default one per processor; JTransforms splits
+ * only the transforms of large enough grids among the threads). The solver does not change it;
+ * an application which runs several solvers concurrently (e.g. one per node of an emulated
+ * distributed simulation) may want to set it to one before starting them.</p>
+ */
 public class PoissonSolverFFTPeriodic implements PoissonSolver {
-	
+
+	/* Cached for the grid dimensions below. */
+	private int columns;
+	private int rows;
+	private double cellArea;
+	private DoubleFFT_2D fft;
+	/** JTransform saves the imaginary part as a second row entry. */
+	private double[][] phi;
+	/** Multiplies the transformed charge density to get the transformed potential. */
+	private double[][] inverseLaplacian;
+
+
 	/**Solves the electrostatic Poisson equation with FFT assuming periodic boundaries.
 	 * 
 	 * <p>This method should be called every time when new particles
@@ -18,46 +41,29 @@ public class PoissonSolverFFTPeriodic implements PoissonSolver {
 	 * @param g Grid on which the calculation should be performed
 	 */
 	public void solve(Grid g) {
-		
-		//size of the array to be transformed
-		int columns = g.getNumCellsX();
-		int rows = g.getNumCellsY();
-		double cellArea = g.getCellWidth() * g.getCellHeight();
-		//JTransform saves the imaginary part as a second row entry
-		//therefore there must be twice as many rows
-		double[][] trho = new double[columns][2*rows];
-		double[][] phi = new double[columns][2*rows];
 
-		DoubleFFT_2D fft = new DoubleFFT_2D(columns, rows);
-		
+		prepare(g);
+
 		//prepare input for fft
+		//the real transform expects the real data in the first half of each row
 		for(int i = 0; i < columns; i++) {
 			for(int j = 0; j < rows; j++) {
-				trho[i][2*j] = g.getRho(i,j);
-				trho[i][2*j+1] = 0;
+				phi[i][j] = g.getRho(i,j);
 			}
 		}
-		
+
 		//perform Fourier transformation
-		fft.complexForward(trho);
-		
+		//gives the same result as the complex transform with zero imaginary part
+		fft.realForwardFull(phi);
+
 		//Solve Poisson equation in Fourier space
-		//We omit the term with i,j=0 where d would become 0. This term only contributes a constant term
-		//to the potential and can therefore be chosen arbitrarily.
-		for(int i = 1; i < columns; i++) {
+		for(int i = 0; i < columns; i++) {
 			for(int j = 0; j < rows; j++) {
-				double d = (4 - 2 * Math.cos((2 * Math.PI * i) / g.getNumCellsX()) - 2 * Math.cos((2 * Math.PI * j) / g.getNumCellsY()));
-				phi[i][2*j] = (cellArea * trho[i][2*j]) / d;
-				phi[i][2*j+1] = (cellArea * trho[i][2*j+1]) / d;
+				phi[i][2*j] *= inverseLaplacian[i][j];
+				phi[i][2*j+1] *= inverseLaplacian[i][j];
 			}
 		}
-		//i=0 but j!=0
-		for(int j = 1; j < rows; j++) {
-			double d = (2 - 2 * Math.cos((2 * Math.PI * j) / g.getNumCellsY()));
-			phi[0][2*j] = (cellArea * trho[0][2*j]) / d;
-			phi[0][2*j+1] = (cellArea * trho[0][2*j+1]) / d;		
-		}
-		
+
 		//perform inverse Fourier transform
 		fft.complexInverse(phi, true);
 		
@@ -114,5 +120,47 @@ public class PoissonSolverFFTPeriodic implements PoissonSolver {
 		}
 		
 	}
-	
+
+
+	/**
+	 * Creates the FFT plan, the work array and the inverse Laplacian
+	 * if the grid differs from the one of the previous call.
+	 */
+	private void prepare(Grid g) {
+		double newCellArea = g.getCellWidth() * g.getCellHeight();
+		if (fft != null && columns == g.getNumCellsX() && rows == g.getNumCellsY() &&
+				cellArea == newCellArea) {
+			return;
+		}
+		columns = g.getNumCellsX();
+		rows = g.getNumCellsY();
+		cellArea = newCellArea;
+		fft = new DoubleFFT_2D(columns, rows);
+		//twice as many rows for the imaginary parts
+		phi = new double[columns][2*rows];
+		inverseLaplacian = new double[columns][rows];
+
+		double[] cosX = new double[columns];
+		double[] cosY = new double[rows];
+		for(int i = 0; i < columns; i++) {
+			cosX[i] = Math.cos((2 * Math.PI * i) / columns);
+		}
+		for(int j = 0; j < rows; j++) {
+			cosY[j] = Math.cos((2 * Math.PI * j) / rows);
+		}
+
+		//We omit the term with i,j=0 where d would become 0. This term only contributes a constant term
+		//to the potential and can therefore be chosen arbitrarily.
+		for(int i = 0; i < columns; i++) {
+			for(int j = 0; j < rows; j++) {
+				if (i == 0 && j == 0) {
+					inverseLaplacian[i][j] = 0;
+					continue;
+				}
+				double d = (4 - 2 * cosX[i] - 2 * cosY[j]);
+				inverseLaplacian[i][j] = cellArea / d;
+			}
+		}
+	}
+
 }
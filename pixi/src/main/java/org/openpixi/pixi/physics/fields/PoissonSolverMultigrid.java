@@ -0,0 +1,608 @@
+package org.openpixi.pixi.physics.fields;
+
+import org.openpixi.pixi.parallel.cellaccess.CellIterator;
+import org.openpixi.pixi.parallel.cellaccess.CellRangeAction;
+import org.openpixi.pixi.parallel.cellaccess.SequentialCellIterator;
+import org.openpixi.pixi.physics.grid.Grid;
+
+import java.util.Arrays;
+
+/**
+ * Solves the electrostatic Poisson equation with walls (no periodicity) by geometric multigrid.
+ *
+ * <p>The potential lives in the centers of the cells and the walls are at the outer faces
+ * of the first and last cells. The discretized equation is
+ * (2 phi[x,y] - phi[x-1,y] - phi[x+1,y]) / dx^2 + (2 phi[x,y] - phi[x,y-1] - phi[x,y+1]) / dy^2
+ * = rho[x,y]
+ * where the potential behind a wall is the mirrored potential of the neighboring cell
+ * (with opposite sign for Dirichlet, with the same sign for Neumann walls).
+ * For Neumann walls the mean charge density is removed (as the FFT solver does)
+ * and the potential is shifted to a zero mean.</p>
+ *
+ * <p>The equation is solved by V-cycles with red-black Gauss-Seidel smoothing,
+ * bilinear prolongation and its transpose as restriction.
+ * A side is coarsened from n to (n + 1) / 2 cells which cover the same length (for odd n
+ * the coarse cells are slightly shorter than twice the fine cells) unless its cells are
+ * already much longer than the cells of the other side (the point smoother does not damp
+ * the errors along the weakly coupled side). The grid with at most COARSEST_SIZE cells
+ * is solved directly. Thus, the number of cycles does not depend on the numbers of cells
+ * being even.
+ * The cycles stop when the residual drops below tolerance times the charge density
+ * (both in the L2 norm).</p>
+ *
+ * <p>Each level is swept by the cell iterator (two passes per smoothing step, one per color)
+ * so that the solver runs in parallel with the parallel cell iterators.
+ * By default the solver starts from the potential stored in the grid (warm start);
+ * if the charge density changes only slightly between the calls
+ * (e.g. when solving in each time step) one or two cycles are enough.</p>
+ */
+public class PoissonSolverMultigrid implements PoissonSolver {
+
+	private static final int PRE_SMOOTHING_STEPS = 2;
+	private static final int POST_SMOOTHING_STEPS = 2;
+	/** Maximal number of cells of the coarsest level. */
+	private static final int COARSEST_SIZE = 16;
+	/** A side is not coarsened if its cells are longer than this times the cells of the other side. */
+	private static final double MAX_ASPECT_RATIO = 1.5;
+
+	private PoissonBoundaryType boundaryType;
+	private CellIterator cellIterator;
+
+	private double tolerance = 1e-8;
+	private int maxCycles = 50;
+	private boolean useWarmStart = true;
+
+	/** Potential behind a wall = ghostSign * potential of the mirrored cell. */
+	private double ghostSign;
+
+	/** Levels built for the grid of the previous call (null before the first call). */
+	private Level finest;
+	private int numOfCycles;
+
+	/* These are set in each call to enable the inner classes to read them. */
+	private Grid grid;
+	private double residualNorm;
+
+
+	public PoissonSolverMultigrid() {
+		this(PoissonBoundaryType.Dirichlet, new SequentialCellIterator());
+	}
+
+	public PoissonSolverMultigrid(PoissonBoundaryType boundaryType, CellIterator cellIterator) {
+		this.boundaryType = boundaryType;
+		this.cellIterator = cellIterator;
+		this.ghostSign = boundaryType == PoissonBoundaryType.Dirichlet ? -1 : 1;
+	}
+
+
+	public PoissonBoundaryType getBoundaryType() {
+		return boundaryType;
+	}
+
+	public void setTolerance(double tolerance) {
+		this.tolerance = tolerance;
+	}
+
+	public void setMaxCycles(int maxCycles) {
+		this.maxCycles = maxCycles;
+	}
+
+	public void useWarmStart(boolean useWarmStart) {
+		this.useWarmStart = useWarmStart;
+	}
+
+	/**
+	 * Number of V-cycles done in the last call of solve().
+	 */
+	public int getNumOfCycles() {
+		return numOfCycles;
+	}
+
+
+	/**
+	 * Calculates the potential for the charge density of the grid
+	 * and the electric field as its negative gradient (central differences).
+	 * @param g Grid on which the calculation should be performed
+	 */
+	public void solve(Grid g) {
+		grid = g;
+		prepare(g);
+
+		double[] rhs = finest.rhs;
+		double[] phi = finest.phi;
+		for (int x = 0; x < finest.nx; x++) {
+			for (int y = 0; y < finest.ny; y++) {
+				int idx = finest.index(x, y);
+				rhs[idx] = g.getRho(x, y);
+				phi[idx] = useWarmStart ? g.getPhi(x, y) : 0;
+			}
+		}
+		if (boundaryType == PoissonBoundaryType.Neumann) {
+			addConstant(rhs, -mean(rhs));
+		}
+
+		double rhsNorm = norm(rhs);
+		numOfCycles = 0;
+		if (rhsNorm == 0) {
+			Arrays.fill(phi, 0);
+		}
+		else {
+			while (finest.computeResidual() > tolerance * rhsNorm && numOfCycles < maxCycles) {
+				vCycle(finest);
+				numOfCycles++;
+			}
+		}
+		if (boundaryType == PoissonBoundaryType.Neumann) {
+			addConstant(phi, -mean(phi));
+		}
+
+		finest.execute(finest.writeFields);
+	}
+
+
+	/**
+	 * Builds the levels if the grid differs from the one of the previous call.
+	 */
+	private void prepare(Grid g) {
+		if (finest != null && finest.nx == g.getNumCellsX() && finest.ny == g.getNumCellsY() &&
+				finest.dx == g.getCellWidth() && finest.dy == g.getCellHeight()) {
+			return;
+		}
+		finest = new Level(g.getNumCellsX(), g.getNumCellsY(), g.getCellWidth(), g.getCellHeight());
+		Level level = finest;
+		while (level.nx * level.ny > COARSEST_SIZE) {
+			// With a single cell on one side the other side has no anisotropy to respect
+			boolean coarsenX = level.nx > 1 &&
+					(level.ny == 1 || level.dx <= MAX_ASPECT_RATIO * level.dy);
+			boolean coarsenY = level.ny > 1 &&
+					(level.nx == 1 || level.dy <= MAX_ASPECT_RATIO * level.dx);
+			int nx = coarsenX ? (level.nx + 1) / 2 : level.nx;
+			int ny = coarsenY ? (level.ny + 1) / 2 : level.ny;
+			Level coarser = new Level(nx, ny, level.nx * level.dx / nx, level.ny * level.dy / ny);
+			level.setCoarser(coarser);
+			level = coarser;
+		}
+		level.invert();
+	}
+
+
+	private void vCycle(Level level) {
+		if (level.coarser == null) {
+			level.solveDirectly();
+			return;
+		}
+		level.smooth(PRE_SMOOTHING_STEPS);
+		level.computeResidual();
+		level.coarser.execute(level.coarser.restrict);
+		vCycle(level.coarser);
+		level.execute(level.prolong);
+		level.smooth(POST_SMOOTHING_STEPS);
+	}
+
+
+	private synchronized void addToResidualNorm(double sumOfSquares) {
+		residualNorm += sumOfSquares;
+	}
+
+
+	private static double norm(double[] values) {
+		double sum = 0;
+		for (int i = 0; i < values.length; ++i) {
+			sum += values[i] * values[i];
+		}
+		return Math.sqrt(sum);
+	}
+
+	private static double mean(double[] values) {
+		double sum = 0;
+		for (int i = 0; i < values.length; ++i) {
+			sum += values[i];
+		}
+		return sum / values.length;
+	}
+
+	private static void addConstant(double[] values, double constant) {
+		for (int i = 0; i < values.length; ++i) {
+			values[i] += constant;
+		}
+	}
+
+	private static void swapRows(double[][] matrix, int a, int b) {
+		double[] row = matrix[a];
+		matrix[a] = matrix[b];
+		matrix[b] = row;
+	}
+
+
+	/**
+	 * One grid of the hierarchy.
+	 * The arrays are laid out row by row in x (as in FlatGrid) without extra cells.
+	 */
+	private class Level {
+
+		private final int nx;
+		private final int ny;
+		private final double dx;
+		private final double dy;
+		/** Coefficients of the neighbors in x and y direction. */
+		private final double cx;
+		private final double cy;
+
+		private final double[] phi;
+		private final double[] rhs;
+		private final double[] res;
+
+		private Level coarser;
+		private Level finer;
+		/* Transfers to the coarser level (null on the coarsest level). */
+		private Transfer transferX;
+		private Transfer transferY;
+		/** Inverse of the matrix of the equation (only on the coarsest level). */
+		private double[][] inverse;
+
+		private Smooth smoothRed = new Smooth(0);
+		private Smooth smoothBlack = new Smooth(1);
+		private Residual residual = new Residual();
+		private Restrict restrict = new Restrict();
+		private Prolong prolong = new Prolong();
+		private WriteFields writeFields = new WriteFields();
+
+
+		private Level(int nx, int ny, double dx, double dy) {
+			this.nx = nx;
+			this.ny = ny;
+			this.dx = dx;
+			this.dy = dy;
+			this.cx = 1 / (dx * dx);
+			this.cy = 1 / (dy * dy);
+			phi = new double[nx * ny];
+			rhs = new double[nx * ny];
+			res = new double[nx * ny];
+		}
+
+
+		private int index(int x, int y) {
+			return x * ny + y;
+		}
+
+
+		private void setCoarser(Level coarser) {
+			this.coarser = coarser;
+			coarser.finer = this;
+			transferX = new Transfer(nx, coarser.nx);
+			transferY = new Transfer(ny, coarser.ny);
+		}
+
+
+		/**
+		 * Builds the matrix of the discretized equation and inverts it (Gauss-Jordan elimination).
+		 * With Neumann walls the matrix is singular (constant potential);
+		 * cx + cy is added to all its elements, so the solution of a right hand side
+		 * with zero sum has zero sum as well.
+		 */
+		private void invert() {
+			int n = nx * ny;
+			double[][] matrix = new double[n][n];
+			for (int x = 0; x < nx; ++x) {
+				for (int y = 0; y < ny; ++y) {
+					int row = index(x, y);
+					matrix[row][row] = diagonal(x, y);
+					if (x > 0) {
+						matrix[row][index(x - 1, y)] -= cx;
+					}
+					if (x < nx - 1) {
+						matrix[row][index(x + 1, y)] -= cx;
+					}
+					if (y > 0) {
+						matrix[row][index(x, y - 1)] -= cy;
+					}
+					if (y < ny - 1) {
+						matrix[row][index(x, y + 1)] -= cy;
+					}
+					if (boundaryType == PoissonBoundaryType.Neumann) {
+						for (int column = 0; column < n; ++column) {
+							matrix[row][column] += cx + cy;
+						}
+					}
+				}
+			}
+
+			inverse = new double[n][n];
+			for (int i = 0; i < n; ++i) {
+				inverse[i][i] = 1;
+			}
+			for (int column = 0; column < n; ++column) {
+				int pivot = column;
+				for (int row = column + 1; row < n; ++row) {
+					if (Math.abs(matrix[row][column]) > Math.abs(matrix[pivot][column])) {
+						pivot = row;
+					}
+				}
+				if (matrix[pivot][column] == 0) {
+					throw new RuntimeException("Singular matrix of the coarsest level!");
+				}
+				swapRows(matrix, column, pivot);
+				swapRows(inverse, column, pivot);
+
+				double scale = 1 / matrix[column][column];
+				for (int j = 0; j < n; ++j) {
+					matrix[column][j] *= scale;
+					inverse[column][j] *= scale;
+				}
+				for (int row = 0; row < n; ++row) {
+					double factor = matrix[row][column];
+					if (row != column && factor != 0) {
+						for (int j = 0; j < n; ++j) {
+							matrix[row][j] -= factor * matrix[column][j];
+							inverse[row][j] -= factor * inverse[column][j];
+						}
+					}
+				}
+			}
+		}
+
+
+		private void solveDirectly() {
+			for (int i = 0; i < phi.length; ++i) {
+				double sum = 0;
+				for (int j = 0; j < rhs.length; ++j) {
+					sum += inverse[i][j] * rhs[j];
+				}
+				phi[i] = sum;
+			}
+		}
+
+
+		/**
+		 * Potential of the cell; behind the walls the potential of the mirrored cell is taken.
+		 */
+		private double value(int x, int y) {
+			double sign = 1;
+			if (x < 0) {
+				x = 0;
+				sign *= ghostSign;
+			}
+			else if (x >= nx) {
+				x = nx - 1;
+				sign *= ghostSign;
+			}
+			if (y < 0) {
+				y = 0;
+				sign *= ghostSign;
+			}
+			else if (y >= ny) {
+				y = ny - 1;
+				sign *= ghostSign;
+			}
+			return sign * phi[index(x, y)];
+		}
+
+
+		/**
+		 * Coefficient of phi[x,y] in the discretized equation of the cell.
+		 * A wall neighbor adds (1 - ghostSign) times the coefficient of the inner neighbor.
+		 */
+		private double diagonal(int x, int y) {
+			double wall = 1 - ghostSign;
+			return cx * ((x > 0 ? 1 : wall) + (x < nx - 1 ? 1 : wall)) +
+					cy * ((y > 0 ? 1 : wall) + (y < ny - 1 ? 1 : wall));
+		}
+
+
+		/**
+		 * Weighted sum of the potential of the inner neighbors.
+		 */
+		private double neighbors(int x, int y) {
+			int idx = index(x, y);
+			double sum = 0;
+			if (x > 0) {
+				sum += cx * phi[idx - ny];
+			}
+			if (x < nx - 1) {
+				sum += cx * phi[idx + ny];
+			}
+			if (y > 0) {
+				sum += cy * phi[idx - 1];
+			}
+			if (y < ny - 1) {
+				sum += cy * phi[idx + 1];
+			}
+			return sum;
+		}
+
+
+		private void execute(CellRangeAction action) {
+			cellIterator.setNormalMode(nx, ny);
+			cellIterator.execute(grid, action);
+		}
+
+
+		private void smooth(int steps) {
+			for (int i = 0; i < steps; ++i) {
+				execute(smoothRed);
+				execute(smoothBlack);
+			}
+		}
+
+
+		/**
+		 * Computes the residual of each cell and returns its L2 norm.
+		 */
+		private double computeResidual() {
+			residualNorm = 0;
+			execute(residual);
+			return Math.sqrt(residualNorm);
+		}
+
+
+		/**
+		 * Gauss-Seidel update of the cells with (x + y) % 2 == color.
+		 * The cells of one color depend only on the cells of the other color.
+		 */
+		private class Smooth implements CellRangeAction {
+
+			private int color;
+
+			private Smooth(int color) {
+				this.color = color;
+			}
+
+			public void execute(Grid grid, int xmin, int xmax, int ymin, int ymax) {
+				for (int x = xmin; x <= xmax; ++x) {
+					for (int y = ymin + ((x + ymin + color) & 1); y <= ymax; y += 2) {
+						double diagonal = diagonal(x, y);
+						if (diagonal != 0) {
+							phi[index(x, y)] = (rhs[index(x, y)] + neighbors(x, y)) / diagonal;
+						}
+					}
+				}
+			}
+		}
+
+
+		private class Residual implements CellRangeAction {
+			public void execute(Grid grid, int xmin, int xmax, int ymin, int ymax) {
+				double sumOfSquares = 0;
+				for (int x = xmin; x <= xmax; ++x) {
+					for (int y = ymin; y <= ymax; ++y) {
+						int idx = index(x, y);
+						res[idx] = rhs[idx] - diagonal(x, y) * phi[idx] + neighbors(x, y);
+						sumOfSquares += res[idx] * res[idx];
+					}
+				}
+				addToResidualNorm(sumOfSquares);
+			}
+		}
+
+
+		/**
+		 * Executed on the coarser level: its right hand side is the weighted residual
+		 * of the cells of the finer level it covers (see Transfer).
+		 */
+		private class Restrict implements CellRangeAction {
+			public void execute(Grid grid, int xmin, int xmax, int ymin, int ymax) {
+				Transfer tx = finer.transferX;
+				Transfer ty = finer.transferY;
+				for (int x = xmin; x <= xmax; ++x) {
+					int[] fineX = tx.fineCells[x];
+					double[] weightsX = tx.fineWeights[x];
+					for (int y = ymin; y <= ymax; ++y) {
+						int[] fineY = ty.fineCells[y];
+						double[] weightsY = ty.fineWeights[y];
+						double sum = 0;
+						for (int i = 0; i < fineX.length; ++i) {
+							int row = finer.index(fineX[i], 0);
+							for (int j = 0; j < fineY.length; ++j) {
+								sum += weightsX[i] * weightsY[j] * finer.res[row + fineY[j]];
+							}
+						}
+						rhs[index(x, y)] = sum;
+						phi[index(x, y)] = 0;
+					}
+				}
+			}
+		}
+
+
+		/**
+		 * Adds the correction from the coarser level (bilinear interpolation between the
+		 * centers of the coarse cells).
+		 */
+		private class Prolong implements CellRangeAction {
+			public void execute(Grid grid, int xmin, int xmax, int ymin, int ymax) {
+				Transfer tx = transferX;
+				Transfer ty = transferY;
+				double[] coarse = coarser.phi;
+				for (int x = xmin; x <= xmax; ++x) {
+					int low = coarser.index(tx.low[x], 0);
+					int high = coarser.index(tx.high[x], 0);
+					for (int y = ymin; y <= ymax; ++y) {
+						phi[index(x, y)] +=
+								tx.lowWeight[x] * (ty.lowWeight[y] * coarse[low + ty.low[y]] +
+										ty.highWeight[y] * coarse[low + ty.high[y]]) +
+								tx.highWeight[x] * (ty.lowWeight[y] * coarse[high + ty.low[y]] +
+										ty.highWeight[y] * coarse[high + ty.high[y]]);
+					}
+				}
+			}
+		}
+
+
+		private class WriteFields implements CellRangeAction {
+			public void execute(Grid grid, int xmin, int xmax, int ymin, int ymax) {
+				for (int x = xmin; x <= xmax; ++x) {
+					for (int y = ymin; y <= ymax; ++y) {
+						grid.setPhi(x, y, phi[index(x, y)]);
+						grid.setEx(x, y, -(value(x + 1, y) - value(x - 1, y)) / (2 * dx));
+						grid.setEy(x, y, -(value(x, y + 1) - value(x, y - 1)) / (2 * dy));
+					}
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Transfer between the cells of a level and of the coarser level along one side.
+	 * Both levels cover the same length. The value in the center of a fine cell is interpolated
+	 * linearly between the centers of the two closest coarse cells; behind a wall the mirrored
+	 * coarse cell is taken with the sign of the ghost (so its weight is folded into the cell
+	 * next to the wall). The restriction is the transposed interpolation scaled by the ratio
+	 * of the cell sizes (for an even number of cells the weights are 1/8, 3/8, 3/8, 1/8).
+	 */
+	private class Transfer {
+
+		/* For each fine cell the two coarse cells and their weights. */
+		private final int[] low;
+		private final int[] high;
+		private final double[] lowWeight;
+		private final double[] highWeight;
+
+		/* For each coarse cell the fine cells and their weights. */
+		private final int[][] fineCells;
+		private final double[][] fineWeights;
+
+
+		private Transfer(int fine, int coarse) {
+			low = new int[fine];
+			high = new int[fine];
+			lowWeight = new double[fine];
+			highWeight = new double[fine];
+
+			int[] count = new int[coarse];
+			for (int i = 0; i < fine; ++i) {
+				// Position of the fine center in the units of the coarse cells
+				double t = (i + 0.5) * coarse / fine - 0.5;
+				int j = (int)Math.floor(t);
+				double weight = t - j;
+				low[i] = mirror(j, coarse);
+				high[i] = mirror(j + 1, coarse);
+				lowWeight[i] = (1 - weight) * (low[i] == j ? 1 : ghostSign);
+				highWeight[i] = weight * (high[i] == j + 1 ? 1 : ghostSign);
+				count[low[i]]++;
+				count[high[i]]++;
+			}
+
+			fineCells = new int[coarse][];
+			fineWeights = new double[coarse][];
+			for (int j = 0; j < coarse; ++j) {
+				fineCells[j] = new int[count[j]];
+				fineWeights[j] = new double[count[j]];
+				count[j] = 0;
+			}
+			double scale = (double)coarse / fine;
+			for (int i = 0; i < fine; ++i) {
+				fineCells[low[i]][count[low[i]]] = i;
+				fineWeights[low[i]][count[low[i]]++] = scale * lowWeight[i];
+				fineCells[high[i]][count[high[i]]] = i;
+				fineWeights[high[i]][count[high[i]]++] = scale * highWeight[i];
+			}
+		}
+
+
+		private int mirror(int cell, int numOfCells) {
+			return Math.max(0, Math.min(cell, numOfCells - 1));
+		}
+	}
+
+}
@@ -1,7 +1,6 @@
 package org.openpixi.pixi.physics.fields;
 
-import org.openpixi.pixi.parallel.cellaccess.CellAction;
-import org.openpixi.pixi.physics.grid.Cell;
+import org.openpixi.pixi.parallel.cellaccess.CellRangeAction;
 import org.openpixi.pixi.physics.grid.Grid;
 
 public class SimpleSolver extends FieldSolver {
@@ -18,44 +17,50 @@ public class SimpleSolver extends FieldSolver {
 	public void step(Grid grid, double timeStep) {
 		this.timeStep = timeStep;
 		cellIterator.execute(grid, solveForE);
+		grid.fillGhostFields();
 		cellIterator.execute(grid, solveForB);
+		grid.fillGhostFields();
 	}
 
 
-	private class SolveForE implements CellAction {
+	private class SolveForE implements CellRangeAction {
 
-		public void execute(Cell cell) {
-			throw new UnsupportedOperationException();
-		}
-
-		public void execute(Grid grid, int x, int y) {
-			/**Curl of the B field using forward difference.
-			 * Because we are using a FDTD grid E(x,y) is in between of B(x,y) and B(x+1,y)
-			 * (same for y). Therefore this is something like a center difference.*/
-			double cx = (grid.getBz(x, y+1) - grid.getBz(x, y)) / grid.getCellHeight();
-			double cy = -(grid.getBz(x+1, y) - grid.getBz(x, y)) / grid.getCellWidth();
+		public void execute(Grid grid, int xmin, int xmax, int ymin, int ymax) {
+			double cellWidth = grid.getCellWidth();
+			double cellHeight = grid.getCellHeight();
+			for (int x = xmin; x <= xmax; ++x) {
+				for (int y = ymin; y <= ymax; ++y) {
+					/**Curl of the B field using forward difference.
+					 * Because we are using a FDTD grid E(x,y) is in between of B(x,y) and B(x+1,y)
+					 * (same for y). Therefore this is something like a center difference.*/
+					double cx = (grid.getBz(x, y+1) - grid.getBz(x, y)) / cellHeight;
+					double cy = -(grid.getBz(x+1, y) - grid.getBz(x, y)) / cellWidth;
 
-			/**Maxwell equations*/
-			grid.addEx(x, y, timeStep * (cx - grid.getJx(x, y)));
-			grid.addEy(x, y, timeStep * (cy - grid.getJy(x, y)));
+					/**Maxwell equations*/
+					grid.addEx(x, y, timeStep * (cx - grid.getJx(x, y)));
+					grid.addEy(x, y, timeStep * (cy - grid.getJy(x, y)));
+				}
+			}
 		}
 	}
 
-	private class SolveForB implements CellAction {
-
-		public void execute(Cell cell) {
-			throw new UnsupportedOperationException();
-		}
+	private class SolveForB implements CellRangeAction {
 
-		public void execute(Grid grid, int x, int y) {
-			/**Curl of the E field using forward difference.
-			 * Because we are using a FDTD grid B(x,y) is in between of E(x,y) and E(x-1,y)
-			 * (same for y). Therefore this is something like a center difference.*/
-			double cz = (grid.getEy(x, y) - grid.getEy(x-1, y)) / grid.getCellWidth() -
-					(grid.getEx(x, y) - grid.getEx(x, y-1)) / grid.getCellHeight();
+		public void execute(Grid grid, int xmin, int xmax, int ymin, int ymax) {
+			double cellWidth = grid.getCellWidth();
+			double cellHeight = grid.getCellHeight();
+			for (int x = xmin; x <= xmax; ++x) {
+				for (int y = ymin; y <= ymax; ++y) {
+					/**Curl of the E field using forward difference.
+					 * Because we are using a FDTD grid B(x,y) is in between of E(x,y) and E(x-1,y)
+					 * (same for y). Therefore this is something like a center difference.*/
+					double cz = (grid.getEy(x, y) - grid.getEy(x-1, y)) / cellWidth -
+							(grid.getEx(x, y) - grid.getEx(x, y-1)) / cellHeight;
 
-			/**Maxwell equation*/
-			grid.addBz(x, y, -timeStep * cz);
+					/**Maxwell equation*/
+					grid.addBz(x, y, -timeStep * cz);
+				}
+			}
 		}
 	}
 
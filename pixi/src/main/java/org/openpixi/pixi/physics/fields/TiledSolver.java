@@ -0,0 +1,201 @@
+package org.openpixi.pixi.physics.fields;
+
+import org.openpixi.pixi.parallel.cellaccess.CellRangeAction;
+import org.openpixi.pixi.physics.grid.FlatGrid;
+import org.openpixi.pixi.physics.grid.Grid;
+
+/**
+ * Cache blocked variant of SimpleSolver for the FlatGrid.
+ *
+ * SimpleSolver (together with Grid.updateGrid()) streams through the whole grid three times:
+ * Bz is copied to Bzo, then E is updated and then B is updated.
+ * This solver does the same computation in a single sweep:
+ * - Instead of copying Bz to Bzo the new magnetic field is written to the Bzo array
+ *   and the two arrays are swapped after the step.
+ * - E and B are updated cell by cell in the same sweep.
+ *   B[x,y] needs the new E in cells [x,y], [x-1,y] and [x,y-1] which are already updated
+ *   when the sweep goes in increasing x and y.
+ * - The sweep goes through tiles which span tileSize cells in y direction
+ *   so that the rows of the tile needed by the sweep stay in the cache.
+ *
+ * The only exceptions are the cells whose B depends on E computed elsewhere:
+ * the cells with y = 0 (need E of the extra cells which are filled after the sweep)
+ * and the first row of each block of rows handed out by the cell iterator
+ * (need E of the last row of the previous block, possibly computed by another thread).
+ * Their B is computed in a short second pass.
+ *
+ * The results are the same as with SimpleSolver.
+ * For other grids the solver falls back to SimpleSolver.
+ */
+public class TiledSolver extends SimpleSolver {
+
+	private static final int DEFAULT_TILE_SIZE = 256;
+
+	/** Number of cells in y direction swept at once. */
+	private int tileSize;
+
+	/* These are set in each step to enable the inner classes to read them. */
+	private FlatGrid grid;
+	private double timeStep;
+	private double[] ex;
+	private double[] ey;
+	private double[] jx;
+	private double[] jy;
+	private double[] bzOld;
+	private double[] bzNew;
+	private int strideX;
+	private double cellWidth;
+	private double cellHeight;
+
+	/** Rows whose magnetic field is left for the second pass. */
+	private boolean[] deferredRows = new boolean[0];
+
+	private SweepTiles sweepTiles = new SweepTiles();
+	private CompleteDeferred completeDeferred = new CompleteDeferred();
+
+
+	public TiledSolver() {
+		this(DEFAULT_TILE_SIZE);
+	}
+
+	public TiledSolver(int tileSize) {
+		if (tileSize < 1) {
+			throw new RuntimeException("Invalid tile size: " + tileSize);
+		}
+		this.tileSize = tileSize;
+	}
+
+
+	/**
+	 * For the FlatGrid the old magnetic field is kept by swapping the arrays after the step.
+	 */
+	@Override
+	public void storeFields(Grid g) {
+		if (!(g instanceof FlatGrid)) {
+			super.storeFields(g);
+		}
+	}
+
+
+	@Override
+	public void step(Grid g, double timeStep) {
+		if (!(g instanceof FlatGrid)) {
+			super.step(g, timeStep);
+			return;
+		}
+		prepare((FlatGrid) g, timeStep);
+		copyExtraCells();
+
+		cellIterator.execute(g, sweepTiles);
+		g.fillGhostFields();
+		cellIterator.execute(g, completeDeferred);
+
+		grid.swapBz();
+		g.fillGhostFields();
+	}
+
+
+	private void prepare(FlatGrid grid, double timeStep) {
+		this.grid = grid;
+		this.timeStep = timeStep;
+		ex = grid.getExArray();
+		ey = grid.getEyArray();
+		jx = grid.getJxArray();
+		jy = grid.getJyArray();
+		bzOld = grid.getBzArray();
+		bzNew = grid.getBzoArray();
+		strideX = grid.getStrideX();
+		cellWidth = grid.getCellWidth();
+		cellHeight = grid.getCellHeight();
+		if (deferredRows.length != grid.getNumCellsX()) {
+			deferredRows = new boolean[grid.getNumCellsX()];
+		}
+	}
+
+
+	/**
+	 * The solver does not update the magnetic field of the extra cells;
+	 * they have to keep their values in the new array as well.
+	 */
+	private void copyExtraCells() {
+		int numCellsX = grid.getNumCellsX();
+		int numCellsY = grid.getNumCellsY();
+		int ymin = -Grid.EXTRA_CELLS_BEFORE_GRID;
+		int ymax = numCellsY + Grid.EXTRA_CELLS_AFTER_GRID - 1;
+		for (int x = -Grid.EXTRA_CELLS_BEFORE_GRID; x < numCellsX + Grid.EXTRA_CELLS_AFTER_GRID; ++x) {
+			if (x < 0 || x >= numCellsX) {
+				System.arraycopy(bzOld, grid.index(x, ymin), bzNew, grid.index(x, ymin), strideX);
+			}
+			else {
+				for (int y = ymin; y < 0; ++y) {
+					bzNew[grid.index(x, y)] = bzOld[grid.index(x, y)];
+				}
+				for (int y = numCellsY; y <= ymax; ++y) {
+					bzNew[grid.index(x, y)] = bzOld[grid.index(x, y)];
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Curl of the B field (see SimpleSolver.SolveForE).
+	 */
+	private void solveForE(int idx) {
+		double cx = (bzOld[idx + 1] - bzOld[idx]) / cellHeight;
+		double cy = -(bzOld[idx + strideX] - bzOld[idx]) / cellWidth;
+
+		ex[idx] += timeStep * (cx - jx[idx]);
+		ey[idx] += timeStep * (cy - jy[idx]);
+	}
+
+
+	/**
+	 * Curl of the E field (see SimpleSolver.SolveForB).
+	 */
+	private void solveForB(int idx) {
+		double cz = (ey[idx] - ey[idx - strideX]) / cellWidth -
+				(ex[idx] - ex[idx - 1]) / cellHeight;
+
+		bzNew[idx] = bzOld[idx] + -timeStep * cz;
+	}
+
+
+	private class SweepTiles implements CellRangeAction {
+		public void execute(Grid g, int xmin, int xmax, int ymin, int ymax) {
+			deferredRows[xmin] = true;
+			for (int tileStart = ymin; tileStart <= ymax; tileStart += tileSize) {
+				int tileEnd = Math.min(tileStart + tileSize - 1, ymax);
+				for (int x = xmin; x <= xmax; ++x) {
+					int rowStart = grid.index(x, 0);
+					for (int y = tileStart; y <= tileEnd; ++y) {
+						solveForE(rowStart + y);
+					}
+					if (x > xmin) {
+						for (int y = Math.max(tileStart, 1); y <= tileEnd; ++y) {
+							solveForB(rowStart + y);
+						}
+					}
+				}
+			}
+		}
+	}
+
+
+	private class CompleteDeferred implements CellRangeAction {
+		public void execute(Grid g, int xmin, int xmax, int ymin, int ymax) {
+			for (int x = xmin; x <= xmax; ++x) {
+				int rowStart = grid.index(x, 0);
+				if (deferredRows[x]) {
+					deferredRows[x] = false;
+					for (int y = ymin; y <= ymax; ++y) {
+						solveForB(rowStart + y);
+					}
+				}
+				else {
+					solveForB(rowStart);
+				}
+			}
+		}
+	}
+}
@@ -2,13 +2,14 @@ package org.openpixi.pixi.physics.force;
 
 
 import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.ParticleStore;
 
 import java.util.ArrayList;
 
 /**
  * Combines various forces into a single force.
  */
-public class CombinedForce implements Force {
+public class CombinedForce implements ForceKernel {
 
 	public ArrayList<Force> forces = new ArrayList<Force>();
 
@@ -109,4 +110,13 @@ public class CombinedForce implements Force {
 	public void remove(Force force) {
 		forces.remove(force);
 	}
+
+	/**
+	 * Adds the components of each force in the same order as the getters sum them.
+	 */
+	public void addRange(ParticleStore store, int from, int to, ForceBuffer buffer) {
+		for (Force f : forces) {
+			buffer.add(f, store, from, to);
+		}
+	}
 }
@@ -1,8 +1,9 @@
 package org.openpixi.pixi.physics.force;
 
 import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.ParticleStore;
 
-public class ConstantForce implements Force {
+public class ConstantForce implements ForceKernel {
 
 	/** Constant gravity in x-direction */
 	public double gx;
@@ -76,5 +77,69 @@ public class ConstantForce implements Force {
 	public double getLinearDragCoefficient(Particle p) {
 		return drag;
 	}
-	
+
+	/**
+	 * Adds the components for a range of particles.
+	 * The coefficients are read once per range; the terms of the coefficients
+	 * which are zero are skipped (they would only add zeros).
+	 */
+	public void addRange(ParticleStore s, int from, int to, ForceBuffer b) {
+		double gx = this.gx;
+		double gy = this.gy;
+		double drag = this.drag;
+		double ex = this.ex;
+		double ey = this.ey;
+		double bz = this.bz;
+		int[] species = s.species;
+		double[] masses = s.getSpeciesTable().getMasses();
+		double[] charges = s.getSpeciesTable().getCharges();
+
+		if (gx != 0 || gy != 0 || ex != 0 || ey != 0) {
+			for (int i = from; i < to; ++i) {
+				int k = i - from;
+				double m = masses[species[i]];
+				double q = charges[species[i]];
+				b.positionComponentX[k] += m * gx + q * ex;
+				b.positionComponentY[k] += m * gy + q * ey;
+			}
+		}
+		if (drag != 0) {
+			for (int i = from; i < to; ++i) {
+				int k = i - from;
+				b.tangentVelocityComponentX[k] += - drag * s.vx[i];
+				b.tangentVelocityComponentY[k] += - drag * s.vy[i];
+				b.linearDragCoefficient[k] += drag;
+			}
+		}
+		if (bz != 0) {
+			for (int i = from; i < to; ++i) {
+				int k = i - from;
+				double q = charges[species[i]];
+				b.normalVelocityComponentX[k] += q * s.vy[i] * bz;
+				b.normalVelocityComponentY[k] += - q * s.vx[i] * bz;
+				b.bz[k] += bz;
+			}
+		}
+		if (gx != 0 || gy != 0 || ex != 0 || ey != 0 || drag != 0 || bz != 0) {
+			for (int i = from; i < to; ++i) {
+				int k = i - from;
+				double m = masses[species[i]];
+				double q = charges[species[i]];
+				b.forceX[k] += -drag * s.vx[i] + m * gx + q * ex + q * s.vy[i] * bz;
+				b.forceY[k] += - drag * s.vy[i] + m * gy + q * ey - q * s.vx[i] * bz;
+			}
+		}
+	}
+
+	/**
+	 * Adds the coefficients of the other force to the ones of this force.
+	 */
+	public void fold(ConstantForce other) {
+		gx += other.gx;
+		gy += other.gy;
+		drag += other.drag;
+		ex += other.ex;
+		ey += other.ey;
+		bz += other.bz;
+	}
 }
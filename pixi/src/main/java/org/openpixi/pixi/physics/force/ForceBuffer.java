@@ -0,0 +1,100 @@
+package org.openpixi.pixi.physics.force;
+
+import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.ParticleStore;
+
+import java.util.Arrays;
+
+/**
+ * Reusable buffer holding all the force components for a range of particles.
+ *
+ * The entry k of each array belongs to the particle from + k of the evaluated range.
+ * The arrays are reallocated only when a larger range is evaluated,
+ * so a buffer should be kept for the whole simulation (one per thread).
+ */
+public class ForceBuffer {
+
+	public double[] positionComponentX = new double[0];
+	public double[] positionComponentY = new double[0];
+	public double[] tangentVelocityComponentX = new double[0];
+	public double[] tangentVelocityComponentY = new double[0];
+	public double[] normalVelocityComponentX = new double[0];
+	public double[] normalVelocityComponentY = new double[0];
+	public double[] bz = new double[0];
+	public double[] linearDragCoefficient = new double[0];
+	public double[] forceX = new double[0];
+	public double[] forceY = new double[0];
+
+
+	/**
+	 * Evaluates the force for the particles from (inclusive) to (exclusive) of the store.
+	 */
+	public void evaluate(Force f, ParticleStore store, int from, int to) {
+		reset(to - from);
+		add(f, store, from, to);
+	}
+
+
+	/**
+	 * Adds the components of the force to the buffer;
+	 * uses the kernel of the force if there is one.
+	 */
+	public void add(Force f, ParticleStore store, int from, int to) {
+		if (f instanceof ForceKernel) {
+			((ForceKernel) f).addRange(store, from, to, this);
+		} else {
+			addEach(f, store, from, to);
+		}
+	}
+
+
+	/**
+	 * Adds the components of the force through the getters of the Force interface.
+	 */
+	public void addEach(Force f, ParticleStore store, int from, int to) {
+		for (int i = from; i < to; ++i) {
+			Particle p = store.get(i);
+			int k = i - from;
+			positionComponentX[k] += f.getPositionComponentofForceX(p);
+			positionComponentY[k] += f.getPositionComponentofForceY(p);
+			tangentVelocityComponentX[k] += f.getTangentVelocityComponentOfForceX(p);
+			tangentVelocityComponentY[k] += f.getTangentVelocityComponentOfForceY(p);
+			normalVelocityComponentX[k] += f.getNormalVelocityComponentofForceX(p);
+			normalVelocityComponentY[k] += f.getNormalVelocityComponentofForceY(p);
+			bz[k] += f.getBz(p);
+			linearDragCoefficient[k] += f.getLinearDragCoefficient(p);
+			forceX[k] += f.getForceX(p);
+			forceY[k] += f.getForceY(p);
+		}
+	}
+
+
+	/**
+	 * Clears the first size entries of the buffer (grows it if needed).
+	 */
+	public void reset(int size) {
+		if (forceX.length < size) {
+			positionComponentX = new double[size];
+			positionComponentY = new double[size];
+			tangentVelocityComponentX = new double[size];
+			tangentVelocityComponentY = new double[size];
+			normalVelocityComponentX = new double[size];
+			normalVelocityComponentY = new double[size];
+			bz = new double[size];
+			linearDragCoefficient = new double[size];
+			forceX = new double[size];
+			forceY = new double[size];
+		} else {
+			Arrays.fill(positionComponentX, 0, size, 0);
+			Arrays.fill(positionComponentY, 0, size, 0);
+			Arrays.fill(tangentVelocityComponentX, 0, size, 0);
+			Arrays.fill(tangentVelocityComponentY, 0, size, 0);
+			Arrays.fill(normalVelocityComponentX, 0, size, 0);
+			Arrays.fill(normalVelocityComponentY, 0, size, 0);
+			Arrays.fill(bz, 0, size, 0);
+			Arrays.fill(linearDragCoefficient, 0, size, 0);
+			Arrays.fill(forceX, 0, size, 0);
+			Arrays.fill(forceY, 0, size, 0);
+		}
+	}
+}
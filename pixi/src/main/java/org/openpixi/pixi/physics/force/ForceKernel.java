@@ -0,0 +1,19 @@
+package org.openpixi.pixi.physics.force;
+
+import org.openpixi.pixi.physics.ParticleStore;
+
+/**
+ * Force which can evaluate all its components for a range of particles in one call.
+ *
+ * Forces which do not implement this interface are evaluated by ForceBuffer
+ * through the getters of the Force interface.
+ */
+public interface ForceKernel extends Force {
+
+	/**
+	 * Adds all the force components of the particles from (inclusive) to (exclusive)
+	 * of the store to the buffer. The components of particle i go to the entry i - from.
+	 * The results are the same as the ones of the getters of the Force interface.
+	 */
+	public void addRange(ParticleStore store, int from, int to, ForceBuffer buffer);
+}
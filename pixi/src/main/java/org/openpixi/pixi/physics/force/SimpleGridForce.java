@@ -1,8 +1,9 @@
 package org.openpixi.pixi.physics.force;
 
 import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.ParticleStore;
 
-public class SimpleGridForce implements Force {
+public class SimpleGridForce implements ForceKernel {
 
 	public double getForceX(Particle p) {
 		return p.getCharge() * ( p.getEx() + p.getVy() * p.getBz());
@@ -43,4 +44,19 @@ public class SimpleGridForce implements Force {
 	public double getLinearDragCoefficient(Particle p) {
 		return 0;
 	}
+
+	public void addRange(ParticleStore s, int from, int to, ForceBuffer b) {
+		double[] charges = s.getSpeciesTable().getCharges();
+		for (int i = from; i < to; ++i) {
+			int k = i - from;
+			double q = charges[s.species[i]];
+			b.positionComponentX[k] += q * s.Ex[i];
+			b.positionComponentY[k] += q * s.Ey[i];
+			b.normalVelocityComponentX[k] += q * s.vy[i] * s.Bz[i];
+			b.normalVelocityComponentY[k] += - q * s.vx[i] * s.Bz[i];
+			b.bz[k] += s.Bz[i];
+			b.forceX[k] += q * (s.Ex[i] + s.vy[i] * s.Bz[i]);
+			b.forceY[k] += q * (s.Ey[i] - s.vx[i] * s.Bz[i]);
+		}
+	}
 }
@@ -1,8 +1,10 @@
 package org.openpixi.pixi.physics.force.relativistic;
 
 import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.ParticleStore;
 import org.openpixi.pixi.physics.RelativisticVelocity;
 import org.openpixi.pixi.physics.force.ConstantForce;
+import org.openpixi.pixi.physics.force.ForceBuffer;
 
 public class ConstantForceRelativistic extends ConstantForce {
 	
@@ -111,5 +113,13 @@ public class ConstantForceRelativistic extends ConstantForce {
 	public double getLinearDragCoefficient(Particle p) {
 		return drag;
 	}
-	
+
+	/**
+	 * The velocity dependent terms need gamma of each particle,
+	 * so the components are evaluated through the getters.
+	 */
+	@Override
+	public void addRange(ParticleStore store, int from, int to, ForceBuffer buffer) {
+		buffer.addEach(this, store, from, to);
+	}
 }
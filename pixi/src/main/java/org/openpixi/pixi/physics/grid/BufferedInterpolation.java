@@ -0,0 +1,190 @@
+package org.openpixi.pixi.physics.grid;
+
+import org.openpixi.pixi.parallel.cellaccess.CellAction;
+import org.openpixi.pixi.parallel.cellaccess.CellIterator;
+import org.openpixi.pixi.parallel.particleaccess.ParticleIterator;
+import org.openpixi.pixi.parallel.particleaccess.ParticleRangeAction;
+import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.ParticleStore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lock-free variant of the local interpolation to the grid.
+ *
+ * Each thread of the particle iterator deposits the current (charge density) of its particles
+ * to its own private DepositionBuffer; hence, no synchronization is needed during
+ * the deposition.
+ * Afterwards, the buffers are summed up into the grid by a parallel reduction over the cells.
+ * Each cell is summed up by exactly one thread.
+ *
+ * The interpolation to particles is the same as in LocalInterpolation.
+ */
+public class BufferedInterpolation extends LocalInterpolation {
+
+	/** Iterates over all the cells (including the extra cells) when summing up the buffers. */
+	private CellIterator cellIterator;
+
+	/** Buffers of all the threads which took part in the deposition so far. */
+	private final List<DepositionBuffer> buffers = new ArrayList<DepositionBuffer>();
+
+	private ThreadLocal<DepositionBuffer> threadBuffer;
+
+	private Grid grid;
+	private double timeStep;
+	/** Store behind the particles if the ranges can be deposited at once (null otherwise). */
+	private ParticleStore store;
+
+	private DepositCurrent depositCurrent = new DepositCurrent();
+	private DepositCharge depositCharge = new DepositCharge();
+	private MergeCurrent mergeCurrent = new MergeCurrent();
+	private MergeCharge mergeCharge = new MergeCharge();
+
+
+	public BufferedInterpolation(
+			InterpolatorAlgorithm interpolator,
+			ParticleIterator particleIterator,
+			CellIterator cellIterator) {
+		super(interpolator, particleIterator);
+		this.cellIterator = cellIterator;
+	}
+
+
+	@Override
+	public void interpolateToGrid(List<Particle> particles, Grid grid, double timeStep) {
+		grid.resetCurrent();
+		prepareBuffers(grid);
+		this.timeStep = timeStep;
+		this.store = rangeStore(particles);
+		particleIterator.execute(particles, depositCurrent);
+		cellIterator.execute(grid, mergeCurrent);
+		grid.collectGhostCurrent();
+	}
+
+
+	@Override
+	public void interpolateChargedensity(List<Particle> particles, Grid grid) {
+		grid.resetCharge();
+		prepareBuffers(grid);
+		this.store = rangeStore(particles);
+		particleIterator.execute(particles, depositCharge);
+		cellIterator.execute(grid, mergeCharge);
+		grid.collectGhostCharge();
+	}
+
+
+	/**
+	 * Throws away the buffers if they do not fit the grid (e.g. the grid was resized).
+	 */
+	private void prepareBuffers(Grid grid) {
+		if (this.grid != grid || !buffersFit(grid)) {
+			synchronized (buffers) {
+				buffers.clear();
+			}
+			threadBuffer = new BufferForThread(grid);
+			cellIterator.setExtraCellsMode(grid.getNumCellsX(), grid.getNumCellsY());
+		}
+		this.grid = grid;
+	}
+
+
+	private boolean buffersFit(Grid grid) {
+		synchronized (buffers) {
+			for (DepositionBuffer buffer: buffers) {
+				if (!buffer.fits(grid)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 * Creates the buffer for each thread on its first use and registers it for merging.
+	 */
+	private class BufferForThread extends ThreadLocal<DepositionBuffer> {
+
+		private Grid grid;
+
+		private BufferForThread(Grid grid) {
+			this.grid = grid;
+		}
+
+		@Override
+		protected DepositionBuffer initialValue() {
+			DepositionBuffer buffer = new DepositionBuffer(grid);
+			synchronized (buffers) {
+				buffers.add(buffer);
+			}
+			return buffer;
+		}
+	}
+
+
+	/**
+	 * The buffer of the thread is looked up once per block of particles.
+	 */
+	private class DepositCurrent implements ParticleRangeAction {
+		public void execute(List<Particle> particles, int from, int to) {
+			DepositionBuffer buffer = threadBuffer.get();
+			if (store != null) {
+				((RangeInterpolator) interpolator).interpolateToGrid(store, from, to, buffer, timeStep);
+				return;
+			}
+			for (int i = from; i < to; ++i) {
+				interpolator.interpolateToGrid(particles.get(i), buffer, timeStep);
+			}
+		}
+	}
+
+
+	private class DepositCharge implements ParticleRangeAction {
+		public void execute(List<Particle> particles, int from, int to) {
+			DepositionBuffer buffer = threadBuffer.get();
+			if (store != null) {
+				((RangeInterpolator) interpolator).interpolateChargedensity(store, from, to, buffer);
+				return;
+			}
+			for (int i = from; i < to; ++i) {
+				interpolator.interpolateChargedensity(particles.get(i), buffer);
+			}
+		}
+	}
+
+
+	/**
+	 * The buffers are cleared while being merged so that they are ready for the next deposition.
+	 */
+	private class MergeCurrent implements CellAction {
+		public void execute(Grid grid, int x, int y) {
+			double jx = 0;
+			double jy = 0;
+			for (int i = 0; i < buffers.size(); ++i) {
+				DepositionBuffer buffer = buffers.get(i);
+				jx += buffer.takeJx(x, y);
+				jy += buffer.takeJy(x, y);
+			}
+			if (jx != 0) {
+				grid.addJx(x, y, jx);
+			}
+			if (jy != 0) {
+				grid.addJy(x, y, jy);
+			}
+		}
+	}
+
+
+	private class MergeCharge implements CellAction {
+		public void execute(Grid grid, int x, int y) {
+			double rho = 0;
+			for (int i = 0; i < buffers.size(); ++i) {
+				rho += buffers.get(i).takeRho(x, y);
+			}
+			if (rho != 0) {
+				grid.addRho(x, y, rho);
+			}
+		}
+	}
+}
@@ -131,14 +131,14 @@ public class Cell implements Serializable {
 	 * thus, a manual solution is more preferable than reflection.
 	 */
 	public void copyFrom(Cell other) {
-		this.jx = other.jx;
-		this.jy = other.jy;
-		this.rho = other.rho;
-		this.phi = other.phi;
-		this.Ex = other.Ex;
-		this.Ey = other.Ey;
-		this.Bz = other.Bz;
-		this.Bzo = other.Bzo;
+		this.jx = other.getJx();
+		this.jy = other.getJy();
+		this.rho = other.getRho();
+		this.phi = other.getPhi();
+		this.Ex = other.getEx();
+		this.Ey = other.getEy();
+		this.Bz = other.getBz();
+		this.Bzo = other.getBzo();
 	}
 
 	@Override
@@ -2,6 +2,7 @@ package org.openpixi.pixi.physics.grid;
 
 import org.openpixi.pixi.physics.Debug;
 import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.ParticleStore;
 
 /**
  *Interpolates current from the particles to the grid in a way s.t. the continuity equation 
@@ -14,7 +15,35 @@ import org.openpixi.pixi.physics.Particle;
 public class ChargeConservingCIC extends CloudInCell {
 
 	@Override
-	public void interpolateToGrid(Particle p, Grid g, double tstep) {
+	public void interpolateToGrid(Particle p, DepositionTarget g, double tstep) {
+		interpolateToGrid(
+				p.getPrevX() / g.getCellWidth(), p.getPrevY() / g.getCellHeight(),
+				p.getX() / g.getCellWidth(), p.getY() / g.getCellHeight(),
+				p.getCharge(), g);
+	}
+
+	@Override
+	public void interpolateToGrid(
+			ParticleStore store, int from, int to, DepositionTarget g, double tstep) {
+		double cellWidth = g.getCellWidth();
+		double cellHeight = g.getCellHeight();
+		int[] species = store.species;
+		double[] charges = store.getSpeciesTable().getCharges();
+		for (int k = from; k < to; ++k) {
+			interpolateToGrid(
+					store.prevX[k] / cellWidth, store.prevY[k] / cellHeight,
+					store.x[k] / cellWidth, store.y[k] / cellHeight,
+					charges[species[k]], g);
+		}
+	}
+
+	/**
+	 * Deposits the current of a particle which moved from [xPrev, yPrev] to [xNext, yNext].
+	 * The coordinates are normalized by the cell width and height so that the callers
+	 * which already know them (fused particle kernel) do not have to recompute them.
+	 */
+	public void interpolateToGrid(
+			double xPrev, double yPrev, double xNext, double yNext, double charge, DepositionTarget g) {
 		/**X index of local origin i.e. nearest grid point BEFORE particle push*/
 		int xStart;
 		/**Y index of local origin i.e. nearest grid point BEFORE particle push*/
@@ -32,14 +61,14 @@ public class ChargeConservingCIC extends CloudInCell {
 		/**Normalized distance covered in X direction*/
 		double deltaY;
 		
-		x = p.getPrevX() / g.getCellWidth();
-		y = p.getPrevY() / g.getCellHeight();
+		x = xPrev;
+		y = yPrev;
 		
 		xStart = (int) Math.floor(x + 0.5);
 		yStart = (int) Math.floor(y + 0.5);
 		
-		deltaX = p.getX() / g.getCellWidth();
-		deltaY = p.getY() / g.getCellHeight();
+		deltaX = xNext;
+		deltaY = yNext;
 		
 		xEnd = (int) Math.floor(deltaX + 0.5);
 		yEnd = (int) Math.floor(deltaY + 0.5);
@@ -57,15 +86,15 @@ public class ChargeConservingCIC extends CloudInCell {
 
 		//4-boundary move?
 		if (xStart == xEnd && yStart == yEnd) {
-			fourBoundaryMove(xStart, yStart, x, y, deltaX, deltaY, p, g, tstep);
+			fourBoundaryMove(xStart, yStart, x, y, deltaX, deltaY, charge, g);
 			}
 		//7-boundary move?
 		else if (xStart == xEnd || yStart == yEnd) {
-				sevenBoundaryMove(x, y, xStart, yStart, xEnd, yEnd, deltaX, deltaY, p, g, tstep);
+				sevenBoundaryMove(x, y, xStart, yStart, xEnd, yEnd, deltaX, deltaY, charge, g);
 			}
 			// 10-boundary move
 				else {
-					tenBoundaryMove(x, y, xStart, yStart, xEnd, yEnd, deltaX, deltaY, p, g, tstep);
+					tenBoundaryMove(x, y, xStart, yStart, xEnd, yEnd, deltaX, deltaY, charge, g);
 				}
 	}
 
@@ -77,23 +106,23 @@ public class ChargeConservingCIC extends CloudInCell {
 	 * @param y local y coordinate relative to ly BEFORE particle push
 	 * @param deltaX x distance covered by particle (not absolute but only for this 4-boundary move)
 	 * @param deltaY y distance covered by particle (not absolute but only for this 4-boundary move)
-	 * @param tstep
+	 * @param charge charge of the particle
 	 */
 	private void fourBoundaryMove(int lx, int ly, double x, double y,
-								  double deltaX, double deltaY, Particle p, Grid g, double tstep) {
+								  double deltaX, double deltaY, double charge, DepositionTarget g) {
 		//A few cancellations were made to reduce computation time. Till this point the algorithm has
 		//calculated the area that swept over a cell boundary for a normalized grid (i.e. unit square cells).
 		//and unit square charges. This area needs to be denormalized and then multiplied with the charge
 		//density. But these operations cancel and no further calculations need to be done.
-		g.addJx(lx, 	ly - 1, p.getCharge() * deltaX * ((1 - deltaY) / 2 - y));
-		g.addJx(lx, 	ly, 	p.getCharge() * deltaX * ((1 + deltaY) / 2 + y));
-		g.addJy(lx - 1, ly, 	p.getCharge() * deltaY * ((1 - deltaX) / 2 - x));
-		g.addJy(lx, 	ly, 	p.getCharge() * deltaY * ((1 + deltaX) / 2 + x));
+		g.addJx(lx, 	ly - 1, charge * deltaX * ((1 - deltaY) / 2 - y));
+		g.addJx(lx, 	ly, 	charge * deltaX * ((1 + deltaY) / 2 + y));
+		g.addJy(lx - 1, ly, 	charge * deltaY * ((1 - deltaX) / 2 - x));
+		g.addJy(lx, 	ly, 	charge * deltaY * ((1 + deltaX) / 2 + x));
 
 	}
 
 	private void sevenBoundaryMove(double x, double y, int xStart, int yStart, int xEnd, int yEnd,
-								   double deltaX, double deltaY, Particle p, Grid g, double tstep) {
+								   double deltaX, double deltaY, double charge, DepositionTarget g) {
 		//7-boundary move with equal y?
 		if (yStart == yEnd) {
 			//particle moves right?
@@ -101,12 +130,12 @@ public class ChargeConservingCIC extends CloudInCell {
 
 				double deltaX1 = 0.5 - x;
 				double deltaY1 = (deltaY / deltaX) * deltaX1;
-				fourBoundaryMove(xStart, yStart, x, y, deltaX1, deltaY1, p, g, tstep);
+				fourBoundaryMove(xStart, yStart, x, y, deltaX1, deltaY1, charge, g);
 
 				deltaX -= deltaX1;
 				deltaY -= deltaY1;
 				y += deltaY1;
-				fourBoundaryMove(xEnd, yEnd, - 0.5, y, deltaX, deltaY, p, g, tstep);
+				fourBoundaryMove(xEnd, yEnd, - 0.5, y, deltaX, deltaY, charge, g);
 
 			}
 			//particle moves left
@@ -114,12 +143,12 @@ public class ChargeConservingCIC extends CloudInCell {
 
 				double deltaX1 = -(0.5 + x);
 				double deltaY1 = (deltaY / deltaX) * deltaX1;
-				fourBoundaryMove(xStart, yStart, x, y, deltaX1, deltaY1, p, g, tstep);
+				fourBoundaryMove(xStart, yStart, x, y, deltaX1, deltaY1, charge, g);
 
 				deltaX -= deltaX1;
 				deltaY -= deltaY1;
 				y += deltaY1;
-				fourBoundaryMove(xEnd, yEnd, 0.5, y, deltaX, deltaY, p, g, tstep);
+				fourBoundaryMove(xEnd, yEnd, 0.5, y, deltaX, deltaY, charge, g);
 
 			}
 		}
@@ -130,12 +159,12 @@ public class ChargeConservingCIC extends CloudInCell {
 
 				double deltaY1 = 0.5 - y;
 				double deltaX1 = deltaX  * (deltaY1 / deltaY);
-				fourBoundaryMove(xStart, yStart, x, y, deltaX1, deltaY1, p, g, tstep);
+				fourBoundaryMove(xStart, yStart, x, y, deltaX1, deltaY1, charge, g);
 
 				deltaX -= deltaX1;
 				deltaY -= deltaY1;
 				y += deltaY1;
-				fourBoundaryMove(xEnd, yEnd, x, -0.5, deltaX, deltaY, p, g, tstep);
+				fourBoundaryMove(xEnd, yEnd, x, -0.5, deltaX, deltaY, charge, g);
 
 			}
 			//particle moves down
@@ -143,12 +172,12 @@ public class ChargeConservingCIC extends CloudInCell {
 
 				double deltaY1 = -(0.5 + y);
 				double deltaX1 = (deltaX / deltaY) * deltaY1;
-				fourBoundaryMove(xStart, yStart, x, y, deltaX1, deltaY1, p, g, tstep);
+				fourBoundaryMove(xStart, yStart, x, y, deltaX1, deltaY1, charge, g);
 
 				deltaX -= deltaX1;
 				deltaY -= deltaY1;
 				y += deltaY1;
-				fourBoundaryMove(xEnd, yEnd, x, 0.5, deltaX, deltaY, p, g, tstep);
+				fourBoundaryMove(xEnd, yEnd, x, 0.5, deltaX, deltaY, charge, g);
 
 			}
 		}
@@ -156,7 +185,7 @@ public class ChargeConservingCIC extends CloudInCell {
 	}
 
 	private void tenBoundaryMove(double x, double y, int xStart, int yStart, int xEnd, int yEnd,
-								 double deltaX, double deltaY, Particle p, Grid g, double tstep) {
+								 double deltaX, double deltaY, double charge, DepositionTarget g) {
 		//moved right?
 		if (xEnd == (xStart+1)) {
 			//moved up?
@@ -168,17 +197,17 @@ public class ChargeConservingCIC extends CloudInCell {
 				if(((deltaY / deltaX) * deltaX1 + y) < 0.5) {
 
 					double deltaY1 = (deltaY / deltaX) * deltaX1;
-					fourBoundaryMove(xStart, yStart, x, y, deltaX1, deltaY1, p, g, tstep);
+					fourBoundaryMove(xStart, yStart, x, y, deltaX1, deltaY1, charge, g);
 
 					double deltaY2 = 0.5 - y - deltaY1;
 					double deltaX2 = (deltaX1 / deltaY1) * deltaY2;
 					y += deltaY1;
-					fourBoundaryMove(xStart+1, yStart, -0.5, y, deltaX2, deltaY2, p, g, tstep);
+					fourBoundaryMove(xStart+1, yStart, -0.5, y, deltaX2, deltaY2, charge, g);
 
 					deltaX -= (deltaX1 + deltaX2);
 					deltaY -= (deltaY1 + deltaY2);
 					x = deltaX2 - 0.5;
-					fourBoundaryMove(xEnd, yEnd, x, -0.5, deltaX, deltaY, p, g, tstep);
+					fourBoundaryMove(xEnd, yEnd, x, -0.5, deltaX, deltaY, charge, g);
 
 					if (Debug.asserts) {
 						assert deltaX1 >= 0: deltaX1;
@@ -197,17 +226,17 @@ public class ChargeConservingCIC extends CloudInCell {
 
 					double deltaY1 = 0.5 - y;
 					deltaX1 = (deltaX / deltaY) * deltaY1;
-					fourBoundaryMove(xStart, yStart, x, y, deltaX1, deltaY1, p, g, tstep);
+					fourBoundaryMove(xStart, yStart, x, y, deltaX1, deltaY1, charge, g);
 
 					double deltaX2 = 0.5 - x - deltaX1;
 					double deltaY2 = (deltaY1 / deltaX1) * deltaX2;
 					x += deltaX1;
-					fourBoundaryMove(xStart, yStart+1, x, -0.5, deltaX2, deltaY2, p, g, tstep);
+					fourBoundaryMove(xStart, yStart+1, x, -0.5, deltaX2, deltaY2, charge, g);
 
 					deltaX -= (deltaX1 + deltaX2);
 					deltaY -= (deltaY1 + deltaY2);
 					y = deltaY2 - 0.5;
-					fourBoundaryMove(xEnd, yEnd, -0.5, y, deltaX, deltaY, p, g, tstep);
+					fourBoundaryMove(xEnd, yEnd, -0.5, y, deltaX, deltaY, charge, g);
 
 					if (Debug.asserts) {
 						assert deltaX1 >= 0: deltaX1;
@@ -231,17 +260,17 @@ public class ChargeConservingCIC extends CloudInCell {
 				if(((deltaX / deltaY) * deltaY1 + x) < 0.5) {
 
 					double deltaX1 = (deltaX / deltaY) * deltaY1;
-					fourBoundaryMove(xStart, yStart, x, y, deltaX1, deltaY1, p, g, tstep);
+					fourBoundaryMove(xStart, yStart, x, y, deltaX1, deltaY1, charge, g);
 
 					double deltaX2 = 0.5 - x - deltaX1;
 					double deltaY2 = (deltaY / deltaX) * deltaX2;
 					x += deltaX1;
-					fourBoundaryMove(xStart, yStart-1, x, 0.5, deltaX2, deltaY2, p, g, tstep);
+					fourBoundaryMove(xStart, yStart-1, x, 0.5, deltaX2, deltaY2, charge, g);
 
 					deltaX -= (deltaX1 + deltaX2);
 					deltaY -= (deltaY1 + deltaY2);
 					y = 0.5 + deltaY2;
-					fourBoundaryMove(xEnd, yEnd, -0.5, y, deltaX, deltaY, p, g, tstep);
+					fourBoundaryMove(xEnd, yEnd, -0.5, y, deltaX, deltaY, charge, g);
 
 					if (Debug.asserts) {
 						assert deltaY1 <= 0: deltaY1;
@@ -260,17 +289,17 @@ public class ChargeConservingCIC extends CloudInCell {
 
 					double deltaX1 = 0.5 - x;
 					deltaY1 = (deltaY / deltaX) * deltaX1;
-					fourBoundaryMove(xStart, yStart, x, y, deltaX1, deltaY1, p, g, tstep);
+					fourBoundaryMove(xStart, yStart, x, y, deltaX1, deltaY1, charge, g);
 
 					double deltaY2 = -(0.5 + y + deltaY1);
 					double deltaX2 = (deltaX1 / deltaY1) * deltaY2;
 					y += deltaY1;
-					fourBoundaryMove(xStart+1, yStart, -0.5, y, deltaX2, deltaY2, p, g, tstep);
+					fourBoundaryMove(xStart+1, yStart, -0.5, y, deltaX2, deltaY2, charge, g);
 
 					deltaX -= (deltaX1 + deltaX2);
 					deltaY -= (deltaY1 + deltaY2);
 					x = deltaX2 - 0.5;
-					fourBoundaryMove(xEnd, yEnd, x, 0.5, deltaX, deltaY, p, g, tstep);
+					fourBoundaryMove(xEnd, yEnd, x, 0.5, deltaX, deltaY, charge, g);
 
 					if (Debug.asserts) {
 						assert deltaX1 >= 0: deltaX1;
@@ -296,17 +325,17 @@ public class ChargeConservingCIC extends CloudInCell {
 				if(((deltaY / deltaX) * deltaX1 + y) < 0.5) {
 
 					double deltaY1 = (deltaY / deltaX) * deltaX1;
-					fourBoundaryMove(xStart, yStart, x, y, deltaX1, deltaY1, p, g, tstep);
+					fourBoundaryMove(xStart, yStart, x, y, deltaX1, deltaY1, charge, g);
 
 					double deltaY2 = 0.5 - y - deltaY1;
 					double deltaX2 = (deltaX1 / deltaY1) * deltaY2;
 					y += deltaY1;
-					fourBoundaryMove(xStart-1, yStart, 0.5, y, deltaX2, deltaY2, p, g, tstep);
+					fourBoundaryMove(xStart-1, yStart, 0.5, y, deltaX2, deltaY2, charge, g);
 
 					deltaX -= (deltaX1 + deltaX2);
 					deltaY -= (deltaY1 + deltaY2);
 					x = 0.5 + deltaX2;
-					fourBoundaryMove(xEnd, yEnd, x, -0.5, deltaX, deltaY, p, g, tstep);
+					fourBoundaryMove(xEnd, yEnd, x, -0.5, deltaX, deltaY, charge, g);
 
 					if (Debug.asserts) {
 						assert deltaX1 <= 0: deltaX1;
@@ -324,17 +353,17 @@ public class ChargeConservingCIC extends CloudInCell {
 
 					double deltaY1 = 0.5 - y;
 					deltaX1 = (deltaX / deltaY) * deltaY1;
-					fourBoundaryMove(xStart, yStart, x, y, deltaX1, deltaY1, p, g, tstep);
+					fourBoundaryMove(xStart, yStart, x, y, deltaX1, deltaY1, charge, g);
 
 					double deltaX2 = -(0.5 + x + deltaX1);
 					double deltaY2 = (deltaY1 / deltaX1) * deltaX2;
 					x += deltaX1;
-					fourBoundaryMove(xStart, yStart+1, x, -0.5, deltaX2, deltaY2, p, g, tstep);
+					fourBoundaryMove(xStart, yStart+1, x, -0.5, deltaX2, deltaY2, charge, g);
 
 					deltaX -= (deltaX1 + deltaX2);
 					deltaY -= (deltaY1 + deltaY2);
 					y = deltaY2 - 0.5;
-					fourBoundaryMove(xEnd, yEnd, 0.5, y, deltaX, deltaY,p, g, tstep);
+					fourBoundaryMove(xEnd, yEnd, 0.5, y, deltaX, deltaY, charge, g);
 
 					if (Debug.asserts) {
 						assert deltaX1 <= 0: deltaX1;
@@ -356,17 +385,17 @@ public class ChargeConservingCIC extends CloudInCell {
 				if((-(deltaX / deltaY) * deltaY1 - x) < 0.5) {
 
 					double deltaX1 = (deltaX / deltaY) * deltaY1;
-					fourBoundaryMove(xStart, yStart, x, y, deltaX1, deltaY1,p, g, tstep);
+					fourBoundaryMove(xStart, yStart, x, y, deltaX1, deltaY1, charge, g);
 
 					double deltaX2 = -(0.5 + x + deltaX1);
 					double deltaY2 = (deltaY / deltaX) * deltaX2;
 					x += deltaX1;
-					fourBoundaryMove(xStart, yStart-1, x, 0.5, deltaX2, deltaY2, p, g, tstep);
+					fourBoundaryMove(xStart, yStart-1, x, 0.5, deltaX2, deltaY2, charge, g);
 
 					deltaX -= (deltaX1 + deltaX2);
 					deltaY -= (deltaY1 + deltaY2);
 					y = 0.5 + deltaY2;
-					fourBoundaryMove(xEnd, yEnd, 0.5, y, deltaX, deltaY, p, g, tstep);
+					fourBoundaryMove(xEnd, yEnd, 0.5, y, deltaX, deltaY, charge, g);
 
 					if (Debug.asserts) {
 						assert deltaY1 <= 0: deltaY1;
@@ -385,17 +414,17 @@ public class ChargeConservingCIC extends CloudInCell {
 
 					double deltaX1 = -(0.5 + x);
 					deltaY1 = (deltaY / deltaX) * deltaX1;
-					fourBoundaryMove(xStart, yStart, x, y, deltaX1, deltaY1, p, g, tstep);
+					fourBoundaryMove(xStart, yStart, x, y, deltaX1, deltaY1, charge, g);
 
 					double deltaY2 = -(0.5 + y + deltaY1);
 					double deltaX2 = (deltaX1 / deltaY1) * deltaY2;
 					y += deltaY1;
-					fourBoundaryMove(xStart+1, yStart, 0.5, y, deltaX2, deltaY2, p, g, tstep);
+					fourBoundaryMove(xStart+1, yStart, 0.5, y, deltaX2, deltaY2, charge, g);
 
 					deltaX -= (deltaX1 + deltaX2);
 					deltaY -= (deltaY1 + deltaY2);
 					x = 0.5 + deltaX2;
-					fourBoundaryMove(xEnd, yEnd, x, 0.5, deltaX, deltaY, p, g, tstep);
+					fourBoundaryMove(xEnd, yEnd, x, 0.5, deltaX, deltaY, charge, g);
 
 					if (Debug.asserts) {
 						assert deltaX1 <= 0: deltaX1;
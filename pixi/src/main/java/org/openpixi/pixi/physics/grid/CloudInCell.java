@@ -1,11 +1,36 @@
 package org.openpixi.pixi.physics.grid;
 
 import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.ParticleStore;
 
-public class CloudInCell implements InterpolatorAlgorithm {
+public class CloudInCell implements RangeInterpolator {
 
 	@Override
-	public void interpolateToGrid(Particle p, Grid g, double tstep) {
+	public void interpolateToGrid(Particle p, DepositionTarget g, double tstep) {
+		depositCurrent(p.getX(), p.getY(),
+				p.getCharge() * p.getVx(), p.getCharge() * p.getVy(), g);
+	}
+
+	@Override
+	public void interpolateToGrid(
+			ParticleStore store, int from, int to, DepositionTarget g, double tstep) {
+		double[] x = store.x;
+		double[] y = store.y;
+		double[] vx = store.vx;
+		double[] vy = store.vy;
+		int[] species = store.species;
+		double[] charges = store.getSpeciesTable().getCharges();
+		for (int k = from; k < to; ++k) {
+			double charge = charges[species[k]];
+			depositCurrent(x[k], y[k], charge * vx[k], charge * vy[k], g);
+		}
+	}
+
+	/**
+	 * Deposits the current of a particle at [x, y] with the velocity times the charge
+	 * [qvx, qvy].
+	 */
+	private void depositCurrent(double x, double y, double qvx, double qvy, DepositionTarget g) {
 		/**X index of the grid point that is left from or at the x position of the particle*/
 		int i;
 		/**Y index of the grid point that is below or at the y position of the particle*/
@@ -19,12 +44,12 @@ public class CloudInCell implements InterpolatorAlgorithm {
 		/**Normalized distance to the upper cell boundary*/
 		double d;
 		
-		a = p.getX() / g.getCellWidth();
+		a = x / g.getCellWidth();
 		i = (int) Math.floor(a);
 		a -= i;
 		b = 1 - a;
 		
-		c = p.getY() / g.getCellHeight();
+		c = y / g.getCellHeight();
 		j = (int) Math.floor(c);
 		c -= j;
 		d = 1 - c;
@@ -39,10 +64,10 @@ public class CloudInCell implements InterpolatorAlgorithm {
 			c += 0.5;
 			d -= 0.5;
 			
-			g.addJx(i,		j,		p.getCharge() * p.getVx() * b * d);
-			g.addJx(i,		j + 1,	p.getCharge() * p.getVx() * b * c);
-			g.addJx(i + 1,	j + 1,	p.getCharge() * p.getVx() * a * c);
-			g.addJx(i + 1,	j,		p.getCharge() * p.getVx() * a * d);
+			g.addJx(i,		j,		qvx * b * d);
+			g.addJx(i,		j + 1,	qvx * b * c);
+			g.addJx(i + 1,	j + 1,	qvx * a * c);
+			g.addJx(i + 1,	j,		qvx * a * d);
 			
 			c -= 0.5;
 			d += 0.5;
@@ -51,10 +76,10 @@ public class CloudInCell implements InterpolatorAlgorithm {
 			c -= 0.5;
 			d += 0.5;
 			
-			g.addJx(i,		j,		p.getCharge() * p.getVx() * b * d);
-			g.addJx(i,		j + 1,	p.getCharge() * p.getVx() * b * c);
-			g.addJx(i + 1,	j + 1,	p.getCharge() * p.getVx() * a * c);
-			g.addJx(i + 1,	j,		p.getCharge() * p.getVx() * a * d);
+			g.addJx(i,		j,		qvx * b * d);
+			g.addJx(i,		j + 1,	qvx * b * c);
+			g.addJx(i + 1,	j + 1,	qvx * a * c);
+			g.addJx(i + 1,	j,		qvx * a * d);
 			
 			c += 0.5;
 			d -= 0.5;
@@ -69,10 +94,10 @@ public class CloudInCell implements InterpolatorAlgorithm {
 			a += 0.5;
 			b -= 0.5;
 			
-			g.addJy(i,		j,		p.getCharge() * p.getVy() * b * d);
-			g.addJy(i,		j + 1,	p.getCharge() * p.getVy() * b * c);
-			g.addJy(i + 1,	j + 1,	p.getCharge() * p.getVy() * a * c);
-			g.addJy(i + 1,	j,		p.getCharge() * p.getVy() * a * d);
+			g.addJy(i,		j,		qvy * b * d);
+			g.addJy(i,		j + 1,	qvy * b * c);
+			g.addJy(i + 1,	j + 1,	qvy * a * c);
+			g.addJy(i + 1,	j,		qvy * a * d);
 			
 			//No need to return the values to their previous state because they are
 			//not going to be used anymore.
@@ -80,10 +105,10 @@ public class CloudInCell implements InterpolatorAlgorithm {
 			a -= 0.5;
 			b += 0.5;
 			
-			g.addJy(i,		j,		p.getCharge() * p.getVy() * b * d);
-			g.addJy(i,		j + 1,	p.getCharge() * p.getVy() * b * c);
-			g.addJy(i + 1,	j + 1,	p.getCharge() * p.getVy() * a * c);
-			g.addJy(i + 1,	j,		p.getCharge() * p.getVy() * a * d);
+			g.addJy(i,		j,		qvy * b * d);
+			g.addJy(i,		j + 1,	qvy * b * c);
+			g.addJy(i + 1,	j + 1,	qvy * a * c);
+			g.addJy(i + 1,	j,		qvy * a * d);
 			
 			//No need to return the values to their previous state because they are
 			//not going to be used anymore.			
@@ -91,7 +116,26 @@ public class CloudInCell implements InterpolatorAlgorithm {
 	}
 
 	@Override
-	public void interpolateChargedensity(Particle p, Grid g) {
+	public void interpolateChargedensity(Particle p, DepositionTarget g) {
+		depositCharge(p.getX(), p.getY(), p.getCharge(), g);
+	}
+
+	@Override
+	public void interpolateChargedensity(
+			ParticleStore store, int from, int to, DepositionTarget g) {
+		double[] x = store.x;
+		double[] y = store.y;
+		int[] species = store.species;
+		double[] charges = store.getSpeciesTable().getCharges();
+		for (int k = from; k < to; ++k) {
+			depositCharge(x[k], y[k], charges[species[k]], g);
+		}
+	}
+
+	/**
+	 * Deposits the charge of a particle at [x, y].
+	 */
+	private void depositCharge(double x, double y, double charge, DepositionTarget g) {
 		/**X index of the grid point that is left from or at the x position of the particle*/
 		int i;
 		/**Y index of the grid point that is below or at the y position of the particle*/
@@ -106,27 +150,60 @@ public class CloudInCell implements InterpolatorAlgorithm {
 		double d;
 		
 		//The -0.5 is there to shift the grid
-		a = p.getX() / g.getCellWidth() - 0.5;
+		a = x / g.getCellWidth() - 0.5;
 		i = (int) Math.floor(a);
 		a -= i;
 		b = 1 - a;
 
 		//The -0.5 is there to shift the grid
-		c = p.getY() / g.getCellHeight() - 0.5;
+		c = y / g.getCellHeight() - 0.5;
 		j = (int) Math.floor(c);
 		c -= j;
 		d = 1 - c;	
 
 		//Assign a portion of the charge to the four surrounding points depending on
 		//the distance.
-		g.addRho(i,		j,		p.getCharge() * b * d);
-		g.addRho(i,		j + 1,	p.getCharge() * b * c);
-		g.addRho(i + 1,	j + 1,	p.getCharge() * a * c);
-		g.addRho(i + 1,	j,		p.getCharge() * a * d);
+		g.addRho(i,		j,		charge * b * d);
+		g.addRho(i,		j + 1,	charge * b * c);
+		g.addRho(i + 1,	j + 1,	charge * a * c);
+		g.addRho(i + 1,	j,		charge * a * d);
 	}
 	
 	@Override
 	public void interpolateToParticle(Particle p, Grid g) {
+		interpolateToParticle(p, p.getX() / g.getCellWidth(), p.getY() / g.getCellHeight(), g);
+	}
+
+	/**
+	 * Interpolates the fields to the particle at the position [x, y]
+	 * normalized by the cell width and height.
+	 */
+	public void interpolateToParticle(Particle p, double x, double y, Grid g) {
+		double[] fields = new double[3];
+		interpolateFields(x, y, g, fields);
+		p.setEx(fields[0]);
+		p.setEy(fields[1]);
+		p.setBz(fields[2]);
+	}
+
+	@Override
+	public void interpolateToParticle(ParticleStore store, int from, int to, Grid g) {
+		double cellWidth = g.getCellWidth();
+		double cellHeight = g.getCellHeight();
+		double[] fields = new double[3];
+		for (int k = from; k < to; ++k) {
+			interpolateFields(store.x[k] / cellWidth, store.y[k] / cellHeight, g, fields);
+			store.Ex[k] = fields[0];
+			store.Ey[k] = fields[1];
+			store.Bz[k] = fields[2];
+		}
+	}
+
+	/**
+	 * Interpolates the fields to the position [x, y] normalized by the cell width and height.
+	 * @param fields receives Ex, Ey and Bz (in this order)
+	 */
+	public void interpolateFields(double x, double y, Grid g, double[] fields) {
 		/**X index of the grid point that is left from or at the x position of the particle*/
 		int i;
 		/**Y index of the grid point that is below or at the y position of the particle*/
@@ -140,12 +217,12 @@ public class CloudInCell implements InterpolatorAlgorithm {
 		/**Normalized distance to the upper cell boundary*/
 		double d;
 		
-		a = p.getX() / g.getCellWidth();
+		a = x;
 		i = (int) Math.floor(a);
 		a -= i;
 		b = 1 - a;
 		
-		c = p.getY() / g.getCellHeight();
+		c = y;
 		j = (int) Math.floor(c);
 		c -= j;
 		d = 1 - c;
@@ -154,11 +231,11 @@ public class CloudInCell implements InterpolatorAlgorithm {
 		//time. Therefore we have to average over the old Bz (that is half a timestep behind)
 		//and the current Bz. The magnetic field is located at the grid points. 
 		//No adjustments to the grid are necessary.
-		p.setBz((formFactor(
+		fields[2] = (formFactor(
 				g.getBzo(i, j), g.getBzo(i, j+1), g.getBzo(i+1, j+1), g.getBzo(i+1, j),
 				a, b, c, d) + 
 				formFactor(g.getBz(i, j), g.getBz(i, j+1), g.getBz(i+1, j+1), g.getBz(i+1, j),
-				a, b, c, d)) / 2);
+				a, b, c, d)) / 2;
 		
 		//The Ex-field is located in the middle of the left cell boundary.
 		//This means that the Ex-field-grid is shifted upwards by half a cell height.
@@ -170,9 +247,9 @@ public class CloudInCell implements InterpolatorAlgorithm {
 			c += 0.5;
 			d -= 0.5;
 			
-			p.setEx(formFactor(
+			fields[0] = formFactor(
 					g.getEx(i, j), g.getEx(i, j+1), g.getEx(i+1, j+1), g.getEx(i+1, j),
-					a, b, c, d));
+					a, b, c, d);
 			
 			c -= 0.5;
 			d += 0.5;
@@ -181,9 +258,9 @@ public class CloudInCell implements InterpolatorAlgorithm {
 			c -= 0.5;
 			d += 0.5;
 			
-			p.setEx(formFactor(
+			fields[0] = formFactor(
 					g.getEx(i, j), g.getEx(i, j+1), g.getEx(i+1, j+1), g.getEx(i+1, j),
-					a, b, c, d));
+					a, b, c, d);
 			
 			c += 0.5;
 			d -= 0.5;
@@ -198,9 +275,9 @@ public class CloudInCell implements InterpolatorAlgorithm {
 			a += 0.5;
 			b -= 0.5;
 			
-			p.setEy(formFactor(
+			fields[1] = formFactor(
 					g.getEy(i, j), g.getEy(i, j+1), g.getEy(i+1, j+1), g.getEy(i+1, j),
-					a, b, c, d));
+					a, b, c, d);
 			
 			//No need to return the values to their previous state because they are
 			//not going to be used anymore.
@@ -208,9 +285,9 @@ public class CloudInCell implements InterpolatorAlgorithm {
 			a -= 0.5;
 			b += 0.5;
 			
-			p.setEy(formFactor(
+			fields[1] = formFactor(
 					g.getEy(i, j), g.getEy(i, j+1), g.getEy(i+1, j+1), g.getEy(i+1, j),
-					a, b, c, d));
+					a, b, c, d);
 			
 			//No need to return the values to their previous state because they are
 			//not going to be used anymore.		
@@ -0,0 +1,105 @@
+package org.openpixi.pixi.physics.grid;
+
+/**
+ * Private accumulation buffer of one thread for the current and charge density.
+ * Has the same dimensions (including the extra cells) as the grid it belongs to.
+ *
+ * The add methods are NOT synchronized as the buffer is never shared between threads.
+ */
+public class DepositionBuffer implements DepositionTarget {
+
+	private int numCellsX;
+	private int numCellsY;
+	private double cellWidth;
+	private double cellHeight;
+
+	private double[] jx;
+	private double[] jy;
+	private double[] rho;
+
+	/** Distance between the cells [x,y] and [x+1,y] in the arrays. */
+	private int strideX;
+
+
+	public DepositionBuffer(Grid grid) {
+		numCellsX = grid.getNumCellsX();
+		numCellsY = grid.getNumCellsY();
+		cellWidth = grid.getCellWidth();
+		cellHeight = grid.getCellHeight();
+
+		strideX = grid.getNumCellsYTotal();
+		int size = grid.getNumCellsXTotal() * strideX;
+		jx = new double[size];
+		jy = new double[size];
+		rho = new double[size];
+	}
+
+
+	private int index(int x, int y) {
+		return (x + Grid.EXTRA_CELLS_BEFORE_GRID) * strideX + y + Grid.EXTRA_CELLS_BEFORE_GRID;
+	}
+
+
+	public double getCellWidth() {
+		return cellWidth;
+	}
+
+	public double getCellHeight() {
+		return cellHeight;
+	}
+
+
+	/**
+	 * Whether the buffer can be used for the given grid.
+	 */
+	public boolean fits(Grid grid) {
+		return grid.getNumCellsX() == numCellsX &&
+				grid.getNumCellsY() == numCellsY &&
+				grid.getCellWidth() == cellWidth &&
+				grid.getCellHeight() == cellHeight;
+	}
+
+
+	public void addJx(int x, int y, double value) {
+		jx[index(x, y)] += value;
+	}
+
+	public void addJy(int x, int y, double value) {
+		jy[index(x, y)] += value;
+	}
+
+	public void addRho(int x, int y, double value) {
+		rho[index(x, y)] += value;
+	}
+
+
+	/**
+	 * Returns the current in x direction in cell [x,y] and clears it.
+	 */
+	public double takeJx(int x, int y) {
+		int idx = index(x, y);
+		double value = jx[idx];
+		jx[idx] = 0;
+		return value;
+	}
+
+	/**
+	 * Returns the current in y direction in cell [x,y] and clears it.
+	 */
+	public double takeJy(int x, int y) {
+		int idx = index(x, y);
+		double value = jy[idx];
+		jy[idx] = 0;
+		return value;
+	}
+
+	/**
+	 * Returns the charge density in cell [x,y] and clears it.
+	 */
+	public double takeRho(int x, int y) {
+		int idx = index(x, y);
+		double value = rho[idx];
+		rho[idx] = 0;
+		return value;
+	}
+}
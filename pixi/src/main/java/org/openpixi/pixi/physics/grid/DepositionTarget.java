@@ -0,0 +1,19 @@
+package org.openpixi.pixi.physics.grid;
+
+/**
+ * Receives the current and the charge density deposited by the interpolation algorithms
+ * (see InterpolatorAlgorithm).
+ * Implemented by the grid and by the private deposition buffers of the threads.
+ */
+public interface DepositionTarget {
+
+	public double getCellWidth();
+
+	public double getCellHeight();
+
+	public void addJx(int x, int y, double value);
+
+	public void addJy(int x, int y, double value);
+
+	public void addRho(int x, int y, double value);
+}
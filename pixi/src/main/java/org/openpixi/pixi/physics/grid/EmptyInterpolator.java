@@ -1,11 +1,12 @@
 package org.openpixi.pixi.physics.grid;
 
 import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.ParticleStore;
 
-public class EmptyInterpolator implements InterpolatorAlgorithm {
+public class EmptyInterpolator implements RangeInterpolator {
 
 	@Override
-	public void interpolateToGrid(Particle p, Grid g, double tstep) {
+	public void interpolateToGrid(Particle p, DepositionTarget g, double tstep) {
 		// DO NOTHING
 	}
 
@@ -15,7 +16,24 @@ public class EmptyInterpolator implements InterpolatorAlgorithm {
 	}
 
 	@Override
-	public void interpolateChargedensity(Particle p, Grid g) {
+	public void interpolateChargedensity(Particle p, DepositionTarget g) {
+		// DO NOTHING
+	}
+
+	@Override
+	public void interpolateToGrid(
+			ParticleStore store, int from, int to, DepositionTarget g, double tstep) {
+		// DO NOTHING
+	}
+
+	@Override
+	public void interpolateChargedensity(
+			ParticleStore store, int from, int to, DepositionTarget g) {
+		// DO NOTHING
+	}
+
+	@Override
+	public void interpolateToParticle(ParticleStore store, int from, int to, Grid g) {
 		// DO NOTHING
 	}
 }
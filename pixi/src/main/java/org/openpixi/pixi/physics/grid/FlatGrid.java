@@ -0,0 +1,566 @@
+package org.openpixi.pixi.physics.grid;
+
+import org.openpixi.pixi.physics.Settings;
+import org.openpixi.pixi.physics.StepMode;
+
+import java.util.Arrays;
+
+/**
+ * Grid which keeps each field in one flat array instead of an array of Cell objects.
+ *
+ * The arrays include the extra cells and are laid out row by row in x;
+ * cell [x,y] is stored at index(x,y) = (x + EXTRA_CELLS_BEFORE_GRID) * strideX
+ *                                      + (y + EXTRA_CELLS_BEFORE_GRID).
+ * Thus, the neighbors in y direction are adjacent in memory which matches the order in which
+ * the cell iterators traverse the grid.
+ *
+ * Unlike in Grid, the periodic extra cells are not shared with the inner cells.
+ * They are kept consistent by explicit halo passes
+ * (see collectGhostCurrent(), collectGhostCharge() and fillGhostFields()).
+ *
+ * The electrostatic simulation (see StepMode.Electrostatic) neither deposits the current
+ * nor evolves the magnetic field. For it the arrays of jx, jy, Bz and Bzo are not allocated
+ * and read as zero until something writes to them (see allocateCurrentAndMagneticField()).
+ */
+public class FlatGrid extends Grid {
+
+	/** Number of locks protecting the concurrent additions to the current and charge. */
+	private static final int NUM_OF_LOCKS = 64;
+
+	private double[] jx;
+	private double[] jy;
+	private double[] rho;
+	private double[] phi;
+	private double[] Ex;
+	private double[] Ey;
+	private double[] Bz;
+	private double[] Bzo;
+
+	/** Whether the arrays of the current and the magnetic field are kept. */
+	private boolean hasCurrentAndMagneticField;
+
+	/** Distance between the cells [x,y] and [x+1,y] in the arrays. */
+	private int strideX;
+
+	/**
+	 * Periodic extra cells (ghostCells[i]) and the inner cells they represent (innerCells[i]).
+	 * Empty for hardwall boundaries.
+	 */
+	private int[] ghostCells;
+	private int[] innerCells;
+
+	/**
+	 * Striped locks for the add methods of current and charge.
+	 * In the parallel version two threads can update the same cell at the same time.
+	 */
+	private Object[] locks;
+
+
+	public FlatGrid(Settings settings) {
+		super(settings);
+		if (settings.getStepMode() != StepMode.Electrostatic) {
+			allocateCurrentAndMagneticField();
+		}
+	}
+
+
+	@Override
+	protected void createGridWithBoundaries() {
+		strideX = getNumCellsYTotal();
+		int size = getNumCellsXTotal() * strideX;
+
+		rho = new double[size];
+		phi = new double[size];
+		Ex = new double[size];
+		Ey = new double[size];
+		jx = null;
+		jy = null;
+		Bz = null;
+		Bzo = null;
+		if (hasCurrentAndMagneticField) {
+			allocateCurrentAndMagneticField();
+		}
+
+		locks = new Object[NUM_OF_LOCKS];
+		for (int i = 0; i < NUM_OF_LOCKS; ++i) {
+			locks[i] = new Object();
+		}
+
+		createGhostCellsMap();
+	}
+
+
+	public boolean hasCurrentAndMagneticField() {
+		return hasCurrentAndMagneticField;
+	}
+
+	/**
+	 * Allocates the arrays of the current and the magnetic field
+	 * (if they were left out for the electrostatic simulation).
+	 * Is idempotent (can be called multiple times without side-effects).
+	 */
+	public synchronized void allocateCurrentAndMagneticField() {
+		hasCurrentAndMagneticField = true;
+		if (jx == null) {
+			int size = rho.length;
+			jx = new double[size];
+			jy = new double[size];
+			Bz = new double[size];
+			Bzo = new double[size];
+		}
+	}
+
+
+	/**
+	 * For each periodic extra cell finds the inner cell it represents.
+	 */
+	private void createGhostCellsMap() {
+		if (getBoundaryType() != GridBoundaryType.Periodic) {
+			ghostCells = new int[0];
+			innerCells = new int[0];
+			return;
+		}
+
+		int numCellsX = getNumCellsX();
+		int numCellsY = getNumCellsY();
+		int numOfGhostCells = getNumCellsXTotal() * getNumCellsYTotal() - numCellsX * numCellsY;
+		ghostCells = new int[numOfGhostCells];
+		innerCells = new int[numOfGhostCells];
+
+		int i = 0;
+		for (int x = -EXTRA_CELLS_BEFORE_GRID; x < numCellsX + EXTRA_CELLS_AFTER_GRID; ++x) {
+			for (int y = -EXTRA_CELLS_BEFORE_GRID; y < numCellsY + EXTRA_CELLS_AFTER_GRID; ++y) {
+				if (x >= 0 && x < numCellsX && y >= 0 && y < numCellsY) {
+					continue;
+				}
+				int refX = (x + numCellsX) % numCellsX;
+				int refY = (y + numCellsY) % numCellsY;
+				ghostCells[i] = index(x, y);
+				innerCells[i] = index(refX, refY);
+				++i;
+			}
+		}
+	}
+
+
+	/**
+	 * Maps the client cell coordinates (which can be negative) to the index in the flat arrays.
+	 */
+	public int index(int x, int y) {
+		return (x + EXTRA_CELLS_BEFORE_GRID) * strideX + y + EXTRA_CELLS_BEFORE_GRID;
+	}
+
+	public int getStrideX() {
+		return strideX;
+	}
+
+	/*
+	 * Direct access to the arrays (indexed by index(x,y))
+	 * for the kernels which sweep through the whole grid (see TiledSolver).
+	 */
+
+	public double[] getJxArray() {
+		allocateCurrentAndMagneticField();
+		return jx;
+	}
+
+	public double[] getJyArray() {
+		allocateCurrentAndMagneticField();
+		return jy;
+	}
+
+	public double[] getExArray() {
+		return Ex;
+	}
+
+	public double[] getEyArray() {
+		return Ey;
+	}
+
+	public double[] getBzArray() {
+		allocateCurrentAndMagneticField();
+		return Bz;
+	}
+
+	public double[] getBzoArray() {
+		allocateCurrentAndMagneticField();
+		return Bzo;
+	}
+
+	/**
+	 * Exchanges the arrays of Bz and Bzo.
+	 * Lets the field solver write the new magnetic field into the array of the old one
+	 * instead of copying Bz to Bzo before each step.
+	 */
+	public void swapBz() {
+		allocateCurrentAndMagneticField();
+		double[] tmp = Bz;
+		Bz = Bzo;
+		Bzo = tmp;
+	}
+
+
+	@Override
+	public double getJx(int x, int y) {
+		return jx == null ? 0 : jx[index(x, y)];
+	}
+
+	@Override
+	public void addJx(int x, int y, double value) {
+		if (jx == null) {
+			allocateCurrentAndMagneticField();
+		}
+		int idx = index(x, y);
+		synchronized (locks[idx % NUM_OF_LOCKS]) {
+			jx[idx] += value;
+		}
+	}
+
+	@Override
+	public double getJy(int x, int y) {
+		return jy == null ? 0 : jy[index(x, y)];
+	}
+
+	@Override
+	public void addJy(int x, int y, double value) {
+		if (jy == null) {
+			allocateCurrentAndMagneticField();
+		}
+		int idx = index(x, y);
+		synchronized (locks[idx % NUM_OF_LOCKS]) {
+			jy[idx] += value;
+		}
+	}
+
+	@Override
+	public double getRho(int x, int y) {
+		return rho[index(x, y)];
+	}
+
+	@Override
+	public void setRho(int x, int y, double value) {
+		rho[index(x, y)] = value;
+	}
+
+	@Override
+	public void addRho(int x, int y, double value) {
+		int idx = index(x, y);
+		synchronized (locks[idx % NUM_OF_LOCKS]) {
+			rho[idx] += value;
+		}
+	}
+
+	@Override
+	public double getPhi(int x, int y) {
+		return phi[index(x, y)];
+	}
+
+	@Override
+	public void setPhi(int x, int y, double value) {
+		phi[index(x, y)] = value;
+	}
+
+	@Override
+	public double getEx(int x, int y) {
+		return Ex[index(x, y)];
+	}
+
+	@Override
+	public void setEx(int x, int y, double value) {
+		Ex[index(x, y)] = value;
+	}
+
+	@Override
+	public void addEx(int x, int y, double value) {
+		Ex[index(x, y)] += value;
+	}
+
+	@Override
+	public double getEy(int x, int y) {
+		return Ey[index(x, y)];
+	}
+
+	@Override
+	public void setEy(int x, int y, double value) {
+		Ey[index(x, y)] = value;
+	}
+
+	@Override
+	public void addEy(int x, int y, double value) {
+		Ey[index(x, y)] += value;
+	}
+
+	@Override
+	public double getBz(int x, int y) {
+		return Bz == null ? 0 : Bz[index(x, y)];
+	}
+
+	@Override
+	public void setBz(int x, int y, double value) {
+		if (Bz == null) {
+			allocateCurrentAndMagneticField();
+		}
+		Bz[index(x, y)] = value;
+	}
+
+	@Override
+	public void addBz(int x, int y, double value) {
+		if (Bz == null) {
+			allocateCurrentAndMagneticField();
+		}
+		Bz[index(x, y)] += value;
+	}
+
+	@Override
+	public double getBzo(int x, int y) {
+		return Bzo == null ? 0 : Bzo[index(x, y)];
+	}
+
+	@Override
+	public void setBzo(int x, int y, double value) {
+		if (Bzo == null) {
+			allocateCurrentAndMagneticField();
+		}
+		Bzo[index(x, y)] = value;
+	}
+
+
+	/**
+	 * Returns a view of the cell; the changes made through the view are written to the grid.
+	 */
+	@Override
+	public Cell getCell(int x, int y) {
+		return new CellView(index(x, y));
+	}
+
+
+	@Override
+	public void resetCurrent() {
+		if (jx != null) {
+			Arrays.fill(jx, 0);
+			Arrays.fill(jy, 0);
+		}
+	}
+
+	@Override
+	public void resetCharge() {
+		Arrays.fill(rho, 0);
+	}
+
+	@Override
+	public void storeFields() {
+		if (Bz != null) {
+			System.arraycopy(Bz, 0, Bzo, 0, Bz.length);
+		}
+	}
+
+
+	@Override
+	public void collectGhostCurrent() {
+		if (jx != null) {
+			collect(jx);
+			collect(jy);
+		}
+	}
+
+	@Override
+	public void collectGhostCharge() {
+		collect(rho);
+	}
+
+	@Override
+	public void fillGhostFields() {
+		fill(phi);
+		fill(Ex);
+		fill(Ey);
+		if (Bz != null) {
+			fill(Bz);
+			fill(Bzo);
+		}
+	}
+
+
+	/**
+	 * Adds the values deposited to the periodic extra cells to the inner cells they represent
+	 * and then copies the sums back to the extra cells.
+	 */
+	private void collect(double[] field) {
+		for (int i = 0; i < ghostCells.length; ++i) {
+			field[innerCells[i]] += field[ghostCells[i]];
+		}
+		fill(field);
+	}
+
+	/**
+	 * Copies the values of the inner cells to the periodic extra cells.
+	 */
+	private void fill(double[] field) {
+		for (int i = 0; i < ghostCells.length; ++i) {
+			field[ghostCells[i]] = field[innerCells[i]];
+		}
+	}
+
+
+	/**
+	 * Cell which reads and writes the arrays of the grid.
+	 */
+	private class CellView extends Cell {
+
+		private int idx;
+
+		private CellView(int idx) {
+			this.idx = idx;
+		}
+
+		@Override
+		public double getJx() {
+			return jx == null ? 0 : jx[idx];
+		}
+
+		@Override
+		public void addJx(double value) {
+			if (jx == null) {
+				allocateCurrentAndMagneticField();
+			}
+			synchronized (locks[idx % NUM_OF_LOCKS]) {
+				jx[idx] += value;
+			}
+		}
+
+		@Override
+		public double getJy() {
+			return jy == null ? 0 : jy[idx];
+		}
+
+		@Override
+		public void addJy(double value) {
+			if (jy == null) {
+				allocateCurrentAndMagneticField();
+			}
+			synchronized (locks[idx % NUM_OF_LOCKS]) {
+				jy[idx] += value;
+			}
+		}
+
+		@Override
+		public double getRho() {
+			return rho[idx];
+		}
+
+		@Override
+		public void setRho(double value) {
+			rho[idx] = value;
+		}
+
+		@Override
+		public void addRho(double value) {
+			synchronized (locks[idx % NUM_OF_LOCKS]) {
+				rho[idx] += value;
+			}
+		}
+
+		@Override
+		public double getPhi() {
+			return phi[idx];
+		}
+
+		@Override
+		public void setPhi(double value) {
+			phi[idx] = value;
+		}
+
+		@Override
+		public double getEx() {
+			return Ex[idx];
+		}
+
+		@Override
+		public void setEx(double value) {
+			Ex[idx] = value;
+		}
+
+		@Override
+		public double getEy() {
+			return Ey[idx];
+		}
+
+		@Override
+		public void setEy(double value) {
+			Ey[idx] = value;
+		}
+
+		@Override
+		public double getBz() {
+			return Bz == null ? 0 : Bz[idx];
+		}
+
+		@Override
+		public void setBz(double value) {
+			if (Bz == null) {
+				allocateCurrentAndMagneticField();
+			}
+			Bz[idx] = value;
+		}
+
+		@Override
+		public double getBzo() {
+			return Bzo == null ? 0 : Bzo[idx];
+		}
+
+		@Override
+		public void setBzo(double value) {
+			if (Bzo == null) {
+				allocateCurrentAndMagneticField();
+			}
+			Bzo[idx] = value;
+		}
+
+		@Override
+		public void resetCurrent() {
+			if (jx != null) {
+				jx[idx] = 0;
+				jy[idx] = 0;
+			}
+		}
+
+		@Override
+		public void resetCharge() {
+			rho[idx] = 0;
+		}
+
+		@Override
+		public void storeFields() {
+			if (Bz != null) {
+				Bzo[idx] = Bz[idx];
+			}
+		}
+
+		@Override
+		public void copyFrom(Cell other) {
+			allocateCurrentAndMagneticField();
+			jx[idx] = other.getJx();
+			jy[idx] = other.getJy();
+			rho[idx] = other.getRho();
+			phi[idx] = other.getPhi();
+			Ex[idx] = other.getEx();
+			Ey[idx] = other.getEy();
+			Bz[idx] = other.getBz();
+			Bzo[idx] = other.getBzo();
+		}
+
+		@Override
+		public String toString() {
+			return String.format("E[%.3f,%.3f] Bz[%.3f] J[%.3f,%.3f]",
+					getEx(), getEy(), getBz(), getJx(), getJy());
+		}
+
+		/**
+		 * The grid is not sent over the wire; the receiver gets an ordinary cell.
+		 */
+		private Object writeReplace() {
+			Cell cell = new Cell();
+			cell.copyFrom(this);
+			return cell;
+		}
+	}
+}
@@ -6,7 +6,7 @@ import org.openpixi.pixi.physics.Settings;
 import org.openpixi.pixi.physics.fields.FieldSolver;
 
 
-public class Grid {
+public class Grid implements DepositionTarget {
 
 	/*
 	 * TODO remove the accessors for individual cell fields and call directly the accessors on the cell
@@ -173,6 +173,10 @@ public class Grid {
 		return cells[index(x)][index(y)];
 	}
 
+	public GridBoundaryType getBoundaryType() {
+		return boundaryType;
+	}
+
 
 	public Grid(Settings settings) {
 		this.boundaryType = settings.getGridBoundary();
@@ -232,7 +236,11 @@ public class Grid {
 		createGridWithBoundaries();
 	}
 
-	private void createGridWithBoundaries() {
+	/**
+	 * Allocates the storage for the cells (including the extra cells).
+	 * Called whenever the dimensions of the grid change.
+	 */
+	protected void createGridWithBoundaries() {
 		cells = new Cell[getNumCellsXTotal()][getNumCellsYTotal()];
 
 		// Create inner cells
@@ -303,7 +311,7 @@ public class Grid {
 	}
 
 	public void updateGrid(double tstep) {
-		storeFields();
+		getFsolver().storeFields(this);
 		getFsolver().step(this, tstep);
 	}
 
@@ -319,6 +327,32 @@ public class Grid {
 		cellIterator.execute(this, storeFields);
 	}
 
+	/*
+	 * The following methods keep the extra cells consistent with the cells they represent.
+	 * In this grid the periodic extra cells are the very same objects as the inner cells
+	 * on the other side of the grid; hence, there is nothing to do.
+	 * Grid implementations which store the extra cells separately (see FlatGrid) have to
+	 * exchange the values explicitly.
+	 */
+
+	/**
+	 * Called after the current was interpolated to the grid.
+	 */
+	public void collectGhostCurrent() {
+	}
+
+	/**
+	 * Called after the charge density was interpolated to the grid.
+	 */
+	public void collectGhostCharge() {
+	}
+
+	/**
+	 * Called after the fields (E, B, phi) in the inner cells were updated.
+	 */
+	public void fillGhostFields() {
+	}
+
 	/**
 	 * Maps the client index which can be negative to the real array index
 	 * which has to be non-negative.
@@ -326,17 +360,17 @@ public class Grid {
 	 * top or left boundary.
 	 * (By client we mean any code which is using this class)
 	 * */
-	private int index(int clientIdx) {
+	protected int index(int clientIdx) {
 		return EXTRA_CELLS_BEFORE_GRID + clientIdx;
 	}
 
 	/** Includes the extra cells. */
-	private int getNumCellsXTotal() {
+	protected int getNumCellsXTotal() {
 		return numCellsX + EXTRA_CELLS_BEFORE_GRID + EXTRA_CELLS_AFTER_GRID;
 	}
 
 	/** Includes the extra cells. */
-	private int getNumCellsYTotal() {
+	protected int getNumCellsYTotal() {
 		return numCellsY + EXTRA_CELLS_BEFORE_GRID + EXTRA_CELLS_AFTER_GRID;
 	}
 
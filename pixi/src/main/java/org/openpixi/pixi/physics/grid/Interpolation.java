@@ -15,6 +15,10 @@ public abstract class Interpolation {
 		this.interpolator = interpolator;
 	}
 
+	public InterpolatorAlgorithm getInterpolator() {
+		return interpolator;
+	}
+
 	public abstract void interpolateToGrid(List<Particle> particles, Grid grid, double tstep);
 
 	public abstract void interpolateToParticle(List<Particle> particles, Grid grid);
@@ -4,9 +4,9 @@ import org.openpixi.pixi.physics.Particle;
 
 public interface InterpolatorAlgorithm {
 
-	public void interpolateToGrid(Particle p, Grid g, double tstep);
+	public void interpolateToGrid(Particle p, DepositionTarget g, double tstep);
 	
-	public void interpolateChargedensity(Particle p, Grid g);
+	public void interpolateChargedensity(Particle p, DepositionTarget g);
 
 	public void interpolateToParticle(Particle p, Grid g);
 
@@ -1,21 +1,29 @@
 package org.openpixi.pixi.physics.grid;
 
-import org.openpixi.pixi.parallel.particleaccess.ParticleAction;
 import org.openpixi.pixi.parallel.particleaccess.ParticleIterator;
+import org.openpixi.pixi.parallel.particleaccess.ParticleRangeAction;
 import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.ParticleStore;
 
 import java.util.List;
 
 /**
  * Calls the specific interpolation algorithm.
  * Implements the iteration over the particles using the ParticleIterator.
+ * Ranges of particles of a ParticleStore are passed to the algorithm at once
+ * if it is a RangeInterpolator.
  */
 public class LocalInterpolation extends Interpolation {
 
-	private ParticleIterator particleIterator;
+	protected ParticleIterator particleIterator;
 
 	private Grid grid;
 	private double timeStep;
+	/**
+	 * Store behind the particles if the algorithm can process whole ranges of it
+	 * (null otherwise).
+	 */
+	private ParticleStore store;
 
 	private InterpolateToGrid interpolateToGrid = new InterpolateToGrid();
 	private InterpolateToParticle interpolateToParticle = new InterpolateToParticle();
@@ -35,12 +43,15 @@ public class LocalInterpolation extends Interpolation {
 		grid.resetCurrent();
 		this.grid = grid;
 		this.timeStep = timeStep;
+		this.store = rangeStore(particles);
 		particleIterator.execute(particles, interpolateToGrid);
+		grid.collectGhostCurrent();
 	}
 
 	@Override
 	public void interpolateToParticle(List<Particle> particles, Grid grid) {
 		this.grid = grid;
+		this.store = rangeStore(particles);
 		particleIterator.execute(particles, interpolateToParticle);
 	}
 
@@ -48,27 +59,56 @@ public class LocalInterpolation extends Interpolation {
 	public void interpolateChargedensity(List<Particle> particles, Grid grid) {
 		grid.resetCharge();
 		this.grid = grid;
+		this.store = rangeStore(particles);
 		particleIterator.execute(particles, interpolateChargedensity);
+		grid.collectGhostCharge();
 	}
 
 
-	private class InterpolateToGrid implements ParticleAction {
-		public void execute(Particle particle) {
-			interpolator.interpolateToGrid(particle, grid, timeStep);
+	/**
+	 * Returns the store behind the particles if the algorithm can process its ranges
+	 * or null otherwise.
+	 */
+	protected ParticleStore rangeStore(List<Particle> particles) {
+		return (interpolator instanceof RangeInterpolator) ? ParticleStore.storeOf(particles) : null;
+	}
+
+
+	private class InterpolateToGrid implements ParticleRangeAction {
+		public void execute(List<Particle> particles, int from, int to) {
+			if (store != null) {
+				((RangeInterpolator) interpolator).interpolateToGrid(store, from, to, grid, timeStep);
+				return;
+			}
+			for (int i = from; i < to; ++i) {
+				interpolator.interpolateToGrid(particles.get(i), grid, timeStep);
+			}
 		}
 	}
 
 
-	private class InterpolateToParticle implements ParticleAction {
-		public void execute(Particle particle) {
-			interpolator.interpolateToParticle(particle, grid);
+	private class InterpolateToParticle implements ParticleRangeAction {
+		public void execute(List<Particle> particles, int from, int to) {
+			if (store != null) {
+				((RangeInterpolator) interpolator).interpolateToParticle(store, from, to, grid);
+				return;
+			}
+			for (int i = from; i < to; ++i) {
+				interpolator.interpolateToParticle(particles.get(i), grid);
+			}
 		}
 	}
 
 
-	private class InterpolateChargedensity implements ParticleAction {
-		public void execute(Particle particle) {
-			interpolator.interpolateChargedensity(particle, grid);
+	private class InterpolateChargedensity implements ParticleRangeAction {
+		public void execute(List<Particle> particles, int from, int to) {
+			if (store != null) {
+				((RangeInterpolator) interpolator).interpolateChargedensity(store, from, to, grid);
+				return;
+			}
+			for (int i = from; i < to; ++i) {
+				interpolator.interpolateChargedensity(particles.get(i), grid);
+			}
 		}
 	}
 }
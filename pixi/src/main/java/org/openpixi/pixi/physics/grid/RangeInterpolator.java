@@ -0,0 +1,30 @@
+package org.openpixi.pixi.physics.grid;
+
+import org.openpixi.pixi.physics.ParticleStore;
+
+/**
+ * Interpolation algorithm which can process a whole range of particles of a ParticleStore
+ * at once, reading and writing the primitive arrays of the store directly.
+ * The results are the same as when calling the per particle methods for each particle.
+ */
+public interface RangeInterpolator extends InterpolatorAlgorithm {
+
+	/**
+	 * Does the same as interpolateToGrid() for the particles from (inclusive) to (exclusive).
+	 */
+	public void interpolateToGrid(
+			ParticleStore store, int from, int to, DepositionTarget g, double tstep);
+
+	/**
+	 * Does the same as interpolateChargedensity() for the particles from (inclusive)
+	 * to (exclusive).
+	 */
+	public void interpolateChargedensity(
+			ParticleStore store, int from, int to, DepositionTarget g);
+
+	/**
+	 * Does the same as interpolateToParticle() for the particles from (inclusive)
+	 * to (exclusive).
+	 */
+	public void interpolateToParticle(ParticleStore store, int from, int to, Grid g);
+}
@@ -0,0 +1,200 @@
+package org.openpixi.pixi.physics.movement;
+
+import org.openpixi.pixi.parallel.particleaccess.ParticleIterator;
+import org.openpixi.pixi.parallel.particleaccess.ParticleRangeAction;
+import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.ParticleStore;
+import org.openpixi.pixi.physics.RelativisticVelocity;
+import org.openpixi.pixi.physics.SpeciesTable;
+import org.openpixi.pixi.physics.force.CombinedForce;
+import org.openpixi.pixi.physics.force.SimpleGridForce;
+import org.openpixi.pixi.physics.grid.ChargeConservingCIC;
+import org.openpixi.pixi.physics.grid.Grid;
+import org.openpixi.pixi.physics.grid.InterpolatorAlgorithm;
+import org.openpixi.pixi.physics.movement.boundary.ParticleBoundaries;
+import org.openpixi.pixi.physics.solver.Boris;
+import org.openpixi.pixi.physics.solver.Solver;
+import org.openpixi.pixi.physics.solver.relativistic.BorisRelativistic;
+
+import java.util.List;
+
+/**
+ * Processes each particle in a single pass:
+ * gathers the fields at its position, pushes it with the Boris (or relativistic Boris)
+ * algorithm, applies the particle boundaries and deposits its charge conserving current.
+ *
+ * The multi-pass version walks the particles three times
+ * (ParticleMover.push(), Interpolation.interpolateToGrid(), Interpolation.interpolateToParticle())
+ * and each pass recomputes the normalized position of the particle.
+ * Here the normalized position is computed once, shared by the gather and the deposit,
+ * and the push works directly with the arrays of the ParticleStore.
+ *
+ * The results are the same as with the multi-pass version as long as the only force is
+ * the SimpleGridForce (see supports()).
+ * The particle boundaries are applied to the particle in the store
+ * (boundaries which call back the solver, e.g. hardwall, go through its view).
+ */
+public class FusedParticleKernel {
+
+	private ParticleIterator particleIterator;
+
+	/* These are set in each pass to enable the inner classes to read them. */
+	private ParticleStore store;
+	private Grid grid;
+	private ChargeConservingCIC interpolator;
+	private ParticleBoundaries boundaries;
+	private Solver solver;
+	private CombinedForce force;
+	private double timeStep;
+	private SpeciesTable.StepConstants constants;
+	private boolean gather;
+	/** Null for the non-relativistic Boris solver. */
+	private RelativisticVelocity relativisticVelocity;
+
+	private Pass pass = new Pass();
+
+
+	public FusedParticleKernel(ParticleIterator particleIterator) {
+		this.particleIterator = particleIterator;
+	}
+
+
+	/**
+	 * Whether the fused pass gives the same results as the multi-pass version
+	 * for the given solver, force and interpolation algorithm.
+	 */
+	public static boolean supports(Solver solver, CombinedForce force, InterpolatorAlgorithm interpolator) {
+		boolean supportedSolver =
+				solver.getClass() == Boris.class || solver.getClass() == BorisRelativistic.class;
+		boolean onlyGridForce =
+				force.forces.size() == 1 && force.forces.get(0) instanceof SimpleGridForce;
+		boolean supportedInterpolator = interpolator.getClass() == ChargeConservingCIC.class;
+		return supportedSolver && onlyGridForce && supportedInterpolator;
+	}
+
+
+	/**
+	 * Runs the fused pass over all the particles of the store.
+	 * The caller is responsible for resetting the current before the pass
+	 * and for collecting the current of the extra cells after it.
+	 *
+	 * @param gather whether to interpolate the fields to the particles before the push
+	 *               (false if the particles already hold the fields at their positions)
+	 */
+	public void run(ParticleStore store, Grid grid, ParticleMover mover,
+	                CombinedForce force, ChargeConservingCIC interpolator,
+	                double timeStep, boolean gather) {
+		this.store = store;
+		this.grid = grid;
+		this.interpolator = interpolator;
+		this.boundaries = mover.getBoundaries();
+		this.solver = mover.getSolver();
+		this.force = force;
+		this.timeStep = timeStep;
+		this.constants = store.getSpeciesTable().getStepConstants(timeStep);
+		this.gather = gather;
+		if (solver instanceof BorisRelativistic) {
+			relativisticVelocity = ((BorisRelativistic) solver).getRelativisticVelocity();
+		}
+		else {
+			relativisticVelocity = null;
+		}
+
+		particleIterator.execute(store.asList(), pass);
+	}
+
+
+	private class Pass implements ParticleRangeAction {
+		public void execute(List<Particle> particles, int from, int to) {
+			double cellWidth = grid.getCellWidth();
+			double cellHeight = grid.getCellHeight();
+			// Ex, Ey and Bz gathered by the interpolator (one array per range and thread)
+			double[] fields = new double[3];
+			for (int i = from; i < to; ++i) {
+				double x = store.x[i];
+				double y = store.y[i];
+				double xNormalized = x / cellWidth;
+				double yNormalized = y / cellHeight;
+
+				if (gather) {
+					interpolator.interpolateFields(xNormalized, yNormalized, grid, fields);
+					store.Ex[i] = fields[0];
+					store.Ey[i] = fields[1];
+					store.Bz[i] = fields[2];
+				}
+
+				store.prevX[i] = x;
+				store.prevY[i] = y;
+				push(i);
+				boundaries.applyOnParticleCenter(solver, force, store, i, i + 1, timeStep);
+
+				// Periodic boundaries shift also the previous position
+				double xPrevNormalized =
+						(store.prevX[i] == x) ? xNormalized : store.prevX[i] / cellWidth;
+				double yPrevNormalized =
+						(store.prevY[i] == y) ? yNormalized : store.prevY[i] / cellHeight;
+				interpolator.interpolateToGrid(
+						xPrevNormalized, yPrevNormalized,
+						store.x[i] / cellWidth, store.y[i] / cellHeight,
+						store.getCharge(i), grid);
+			}
+		}
+	}
+
+
+	/**
+	 * Boris step (see Boris.step() and BorisRelativistic.step()) with the SimpleGridForce
+	 * evaluated directly from the arrays of the store
+	 * and the per species constants instead of the divisions by the mass.
+	 */
+	private void push(int i) {
+		double step = timeStep;
+		int species = store.species[i];
+		double charge = store.getSpeciesTable().getCharges()[species];
+		double h = constants.halfStepOverMass[species];
+		double forceX = charge * store.Ex[i];
+		double forceY = charge * store.Ey[i];
+		double bz = store.Bz[i];
+
+		// remember for complete()
+		store.prevPositionComponentForceX[i] = forceX;
+		store.prevPositionComponentForceY[i] = forceY;
+		store.prevBz[i] = bz;
+		store.prevTangentVelocityComponentOfForceX[i] = 0;
+		store.prevTangentVelocityComponentOfForceY[i] = 0;
+
+		double vxminus = store.vx[i] + forceX * h;
+		double vyminus = store.vy[i] + forceY * h;
+
+		double t_z;
+		if (relativisticVelocity == null) {
+			t_z = constants.halfStepChargeOverMass[species] * bz;
+		}
+		else {
+			double gamma = relativisticVelocity.calculateGamma(vxminus, vyminus);
+			t_z = constants.halfStepChargeOverMass[species] * bz / gamma;
+		}
+		double s_z = 2 * t_z / (1 + t_z * t_z);
+
+		double vxprime = vxminus + vyminus * t_z;
+		double vyprime = vyminus - vxminus * t_z;
+
+		double vxplus = vxminus + vyprime * s_z;
+		double vyplus = vyminus - vxprime * s_z;
+
+		double vx = vxplus + forceX * h;
+		double vy = vyplus + forceY * h;
+		store.vx[i] = vx;
+		store.vy[i] = vy;
+
+		if (relativisticVelocity == null) {
+			store.x[i] += vx * step;
+			store.y[i] += vy * step;
+		}
+		else {
+			double gamma = relativisticVelocity.calculateGamma(vx, vy);
+			store.x[i] += vx * step / gamma;
+			store.y[i] += vy * step / gamma;
+		}
+	}
+}
@@ -1,11 +1,13 @@
 package org.openpixi.pixi.physics.movement;
 
-import org.openpixi.pixi.parallel.particleaccess.ParticleAction;
 import org.openpixi.pixi.parallel.particleaccess.ParticleIterator;
+import org.openpixi.pixi.parallel.particleaccess.ParticleRangeAction;
 import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.ParticleStore;
 import org.openpixi.pixi.physics.force.Force;
 import org.openpixi.pixi.physics.movement.boundary.ParticleBoundaries;
 import org.openpixi.pixi.physics.movement.boundary.ParticleBoundaryType;
+import org.openpixi.pixi.physics.solver.RangeSolver;
 import org.openpixi.pixi.physics.solver.Solver;
 
 import java.util.List;
@@ -23,6 +25,16 @@ public class ParticleMover {
 	/* These are set in each iteration to enable the inner classes to read them. */
 	private Force force;
 	private double timeStep;
+	/**
+	 * Store behind the pushed particles if the solver can push whole ranges of it
+	 * (null otherwise).
+	 */
+	private ParticleStore store;
+
+	/** Push intervals of the species (null if all the particles are pushed in each step). */
+	private SubCycling subCycling;
+	/** Number of pushes done so far; decides which sub-cycled particles are pushed. */
+	private int pushCount = 0;
 
 	private Push push = new Push();
 	private Prepare prepare = new Prepare();
@@ -33,6 +45,10 @@ public class ParticleMover {
 		return boundaries.getType();
 	}
 
+	public ParticleBoundaries getBoundaries() {
+		return boundaries;
+	}
+
 	public Solver getSolver() {
 		return solver;
 	}
@@ -41,6 +57,14 @@ public class ParticleMover {
 		this.solver = psolver;
 	}
 
+	public SubCycling getSubCycling() {
+		return subCycling;
+	}
+
+	public void setSubCycling(SubCycling subCycling) {
+		this.subCycling = subCycling;
+	}
+
 
 	public ParticleMover(
 			Solver solver,
@@ -60,13 +84,16 @@ public class ParticleMover {
 	public void push(List<Particle> particles, Force force, double timeStep) {
 		this.force = force;
 		this.timeStep = timeStep;
+		this.store = rangeStore(particles);
 		particleIterator.execute(particles, push);
+		pushCount++;
 	}
 
 
 	public void prepare(List<Particle> particles, Force force, double timeStep) {
 		this.force = force;
 		this.timeStep = timeStep;
+		this.store = rangeStore(particles);
 		particleIterator.execute(particles, prepare);
 	}
 
@@ -74,29 +101,145 @@ public class ParticleMover {
 	public void complete(List<Particle> particles, Force force, double timeStep) {
 		this.force = force;
 		this.timeStep = timeStep;
+		this.store = rangeStore(particles);
 		particleIterator.execute(particles, complete);
 	}
 
 
-	private class Push implements ParticleAction {
-		public void execute(Particle particle) {
-			particle.storePosition();
-			solver.step(particle, force, timeStep);
-			boundaries.applyOnParticleCenter(solver, force, particle, timeStep);
+	/**
+	 * Store behind the given list if the solver can work on its ranges (null otherwise).
+	 */
+	private ParticleStore rangeStore(List<Particle> particles) {
+		return (solver instanceof RangeSolver) ? ParticleStore.storeOf(particles) : null;
+	}
+
+
+	/**
+	 * Push interval of the given particle (1 without sub-cycling).
+	 */
+	private int getPushInterval(Particle particle) {
+		return subCycling == null ? 1 : subCycling.getPushInterval(particle);
+	}
+
+
+	/**
+	 * Action on a range of the store which is split into runs of particles with the same
+	 * push interval (the whole range is one run without sub-cycling).
+	 */
+	private abstract class RunAction {
+
+		void executeRuns(int from, int to) {
+			if (subCycling == null) {
+				executeRun(from, to, 1);
+				return;
+			}
+
+			int[] intervals = subCycling.getPushIntervals(store.getSpeciesTable());
+			int[] species = store.species;
+			int start = from;
+			while (start < to) {
+				int interval = intervals[species[start]];
+				int end = start + 1;
+				while (end < to && intervals[species[end]] == interval) {
+					end++;
+				}
+				executeRun(start, end, interval);
+				start = end;
+			}
+		}
+
+		abstract void executeRun(int from, int to, int interval);
+	}
+
+
+	/**
+	 * If possible the solver pushes the whole range at once
+	 * and the boundaries are applied afterwards.
+	 */
+	private class Push extends RunAction implements ParticleRangeAction {
+		public void execute(List<Particle> particles, int from, int to) {
+			if (store != null) {
+				executeRuns(from, to);
+				return;
+			}
+			for (int i = from; i < to; ++i) {
+				Particle particle = particles.get(i);
+				int interval = getPushInterval(particle);
+				if (!SubCycling.isPushed(interval, pushCount)) {
+					// No move, no current
+					particle.setPrevX(particle.getX());
+					particle.setPrevY(particle.getY());
+					continue;
+				}
+				double step = interval * timeStep;
+				particle.storePosition();
+				solver.step(particle, force, step);
+				boundaries.applyOnParticleCenter(solver, force, particle, step);
+			}
+		}
+
+		void executeRun(int from, int to, int interval) {
+			if (SubCycling.isPushed(interval, pushCount)) {
+				pushRun(from, to, interval * timeStep);
+			}
+			else {
+				// No move, no current
+				System.arraycopy(store.x, from, store.prevX, from, to - from);
+				System.arraycopy(store.y, from, store.prevY, from, to - from);
+			}
+		}
+	}
+
+
+	private void pushRun(int from, int to, double step) {
+		double[] x = store.x;
+		double[] y = store.y;
+		double[] prevX = store.prevX;
+		double[] prevY = store.prevY;
+		for (int i = from; i < to; ++i) {
+			prevX[i] = x[i];
+			prevY[i] = y[i];
 		}
+		((RangeSolver) solver).stepRange(store, from, to, force, step);
+		boundaries.applyOnParticleCenter(solver, force, store, from, to, step);
 	}
 
 
-	private class Prepare implements ParticleAction {
-		public void execute(Particle particle) {
-			solver.prepare(particle, force, timeStep);
+	/**
+	 * Like the push, works on whole ranges of the store if possible.
+	 */
+	private class Prepare extends RunAction implements ParticleRangeAction {
+		public void execute(List<Particle> particles, int from, int to) {
+			if (store != null) {
+				executeRuns(from, to);
+				return;
+			}
+			for (int i = from; i < to; ++i) {
+				Particle particle = particles.get(i);
+				solver.prepare(particle, force, getPushInterval(particle) * timeStep);
+			}
+		}
+
+		void executeRun(int from, int to, int interval) {
+			((RangeSolver) solver).prepareRange(store, from, to, force, interval * timeStep);
 		}
 	}
 
 
-	private class Complete implements ParticleAction {
-		public void execute(Particle particle) {
-			solver.complete(particle, force, timeStep);
+	private class Complete extends RunAction implements ParticleRangeAction {
+		public void execute(List<Particle> particles, int from, int to) {
+			if (store != null) {
+				executeRuns(from, to);
+				return;
+			}
+			for (int i = from; i < to; ++i) {
+				Particle particle = particles.get(i);
+				solver.complete(particle, force, getPushInterval(particle) * timeStep);
+			}
+		}
+
+		void executeRun(int from, int to, int interval) {
+			((RangeSolver) solver).completeRange(store, from, to, force, interval * timeStep);
 		}
 	}
 }
@@ -0,0 +1,79 @@
+package org.openpixi.pixi.physics.movement;
+
+import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.Species;
+import org.openpixi.pixi.physics.SpeciesTable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Push intervals of the species for sub-cycling.
+ * The particles of a species with the push interval k are pushed only in every k-th step
+ * (starting with the first one) with k times the time step.
+ * Species which are not listed are pushed in every step.
+ *
+ * In the steps in which a particle is not pushed its previous position is set to its
+ * current position. Charge conserving interpolation (ChargeConservingCIC) thus deposits
+ * the current of the whole move in the step of the push and nothing in the other steps,
+ * so the continuity equation holds in each step.
+ */
+public class SubCycling {
+
+	private Map<Species, Integer> pushIntervals = new HashMap<Species, Integer>();
+
+	/* Push intervals indexed by the species id of the last used table. */
+	private SpeciesTable table;
+	private int[] intervalsOfTable = new int[0];
+
+
+	public SubCycling(Map<Species, Integer> pushIntervals) {
+		for (Map.Entry<Species, Integer> entry: pushIntervals.entrySet()) {
+			setPushInterval(entry.getKey(), entry.getValue());
+		}
+	}
+
+
+	public void setPushInterval(Species species, int interval) {
+		if (interval < 1) {
+			throw new RuntimeException("The push interval has to be at least 1!");
+		}
+		pushIntervals.put(species, interval);
+	}
+
+
+	public int getPushInterval(Species species) {
+		Integer interval = pushIntervals.get(species);
+		return interval == null ? 1 : interval;
+	}
+
+
+	public int getPushInterval(Particle p) {
+		return getPushInterval(new Species(p.getMass(), p.getCharge(), p.getRadius()));
+	}
+
+
+	/**
+	 * Returns the push intervals indexed by the species id of the given table.
+	 * The array is rebuilt only when the table or the number of its species changes.
+	 */
+	public synchronized int[] getPushIntervals(SpeciesTable table) {
+		if (this.table != table || intervalsOfTable.length != table.size()) {
+			int[] intervals = new int[table.size()];
+			for (int id = 0; id < intervals.length; ++id) {
+				intervals[id] = getPushInterval(table.get(id));
+			}
+			this.table = table;
+			intervalsOfTable = intervals;
+		}
+		return intervalsOfTable;
+	}
+
+
+	/**
+	 * Whether the particles with the given push interval are pushed in the given step.
+	 */
+	public static boolean isPushed(int interval, int stepCount) {
+		return stepCount % interval == 0;
+	}
+}
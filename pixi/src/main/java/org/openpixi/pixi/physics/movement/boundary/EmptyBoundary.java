@@ -1,6 +1,7 @@
 package org.openpixi.pixi.physics.movement.boundary;
 
 import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.ParticleStore;
 import org.openpixi.pixi.physics.force.Force;
 import org.openpixi.pixi.physics.solver.Solver;
 
@@ -17,4 +18,9 @@ public class EmptyBoundary extends ParticleBoundary {
 	public void apply(Solver solver, Force force, Particle particle, double timeStep) {
 		// DO NOTHING
 	}
+
+	@Override
+	public void apply(Solver solver, Force force, ParticleStore store, int i, double timeStep) {
+		// DO NOTHING
+	}
 }
@@ -1,7 +1,9 @@
 package org.openpixi.pixi.physics.movement.boundary;
 
 import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.ParticleStore;
 import org.openpixi.pixi.physics.force.Force;
+import org.openpixi.pixi.physics.solver.RangeSolver;
 import org.openpixi.pixi.physics.solver.Solver;
 
 /**
@@ -36,4 +38,32 @@ public class HardwallBoundary extends ParticleBoundary {
 
 		solver.prepare(particle, force, timeStep);
 	}
+
+	/**
+	 * Same as above directly on the arrays of the store if the solver works on ranges.
+	 */
+	@Override
+	public void apply(Solver solver, Force force, ParticleStore store, int i, double timeStep) {
+		if (!(solver instanceof RangeSolver)) {
+			super.apply(solver, force, store, i, timeStep);
+			return;
+		}
+		RangeSolver rangeSolver = (RangeSolver) solver;
+		rangeSolver.completeRange(store, i, i + 1, force, timeStep);
+
+		if (xoffset < 0) {
+			store.vx[i] = Math.abs(store.vx[i]);
+		}
+		else if (xoffset > 0) {
+			store.vx[i] = -Math.abs(store.vx[i]);
+		}
+		if (yoffset < 0) {
+			store.vy[i] = Math.abs(store.vy[i]);
+		}
+		else if (yoffset > 0) {
+			store.vy[i] = -Math.abs(store.vy[i]);
+		}
+
+		rangeSolver.prepareRange(store, i, i + 1, force, timeStep);
+	}
 }
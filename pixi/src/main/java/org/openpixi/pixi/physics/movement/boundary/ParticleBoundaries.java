@@ -1,6 +1,7 @@
 package org.openpixi.pixi.physics.movement.boundary;
 
 import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.ParticleStore;
 import org.openpixi.pixi.physics.force.Force;
 import org.openpixi.pixi.physics.solver.Solver;
 
@@ -31,5 +32,14 @@ public interface ParticleBoundaries {
 	 */
 	void applyOnParticleCenter(Solver solver, Force force, Particle particle, double timeStep);
 
+	/**
+	 * Does the same as applyOnParticleCenter() for the particles from (inclusive)
+	 * to (exclusive) of the store.
+	 * The positions are read from the arrays of the store; the particles which stay
+	 * within the simulation area are not touched otherwise.
+	 */
+	void applyOnParticleCenter(
+			Solver solver, Force force, ParticleStore store, int from, int to, double timeStep);
+
 	ParticleBoundaryType getType();
 }
@@ -1,6 +1,7 @@
 package org.openpixi.pixi.physics.movement.boundary;
 
 import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.ParticleStore;
 import org.openpixi.pixi.physics.force.Force;
 import org.openpixi.pixi.physics.solver.Solver;
 
@@ -29,4 +30,12 @@ public abstract class ParticleBoundary {
 	}
 
 	public abstract void apply(Solver solver, Force force, Particle particle, double timeStep);
+
+	/**
+	 * Applies the boundary to the i-th particle of the store.
+	 * By default works through the view of the particle.
+	 */
+	public void apply(Solver solver, Force force, ParticleStore store, int i, double timeStep) {
+		apply(solver, force, store.get(i), timeStep);
+	}
 }
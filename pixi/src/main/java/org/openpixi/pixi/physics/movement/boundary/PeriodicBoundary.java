@@ -1,6 +1,7 @@
 package org.openpixi.pixi.physics.movement.boundary;
 
 import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.ParticleStore;
 import org.openpixi.pixi.physics.force.Force;
 import org.openpixi.pixi.physics.solver.Solver;
 
@@ -21,4 +22,12 @@ public class PeriodicBoundary extends ParticleBoundary {
 		particle.addY(-yoffset);
 		particle.addPrevY(-yoffset);
 	}
+
+	@Override
+	public void apply(Solver solver, Force force, ParticleStore store, int i, double timeStep) {
+		store.x[i] -= xoffset;
+		store.prevX[i] -= xoffset;
+		store.y[i] -= yoffset;
+		store.prevY[i] -= yoffset;
+	}
 }
@@ -1,6 +1,7 @@
 package org.openpixi.pixi.physics.movement.boundary;
 
 import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.ParticleStore;
 import org.openpixi.pixi.physics.force.Force;
 import org.openpixi.pixi.physics.solver.Solver;
 import org.openpixi.pixi.physics.util.DoubleBox;
@@ -91,4 +92,15 @@ public class SimpleParticleBoundaries implements ParticleBoundaries {
 		int region = boundaryRegions.getRegion(particle.getX(), particle.getY());
 		regionBoundaryMap[region].apply(solver, force, particle, timeStep);
 	}
+
+
+	public void applyOnParticleCenter(
+			Solver solver, Force force, ParticleStore store, int from, int to, double timeStep) {
+		for (int i = from; i < to; ++i) {
+			int region = boundaryRegions.getRegion(store.x[i], store.y[i]);
+			if (region != BoundaryRegions.X_CENTER + BoundaryRegions.Y_CENTER) {
+				regionBoundaryMap[region].apply(solver, force, store, i, timeStep);
+			}
+		}
+	}
 }
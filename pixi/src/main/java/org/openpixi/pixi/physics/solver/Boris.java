@@ -25,7 +25,7 @@ import org.openpixi.pixi.physics.force.Force;
 /**The calculation is due to Boris and the equations((7) - (10)) can be found here:
  * http://ptsg.eecs.berkeley.edu/publications/Verboncoeur2005IOP.pdf
  */
-public class Boris implements Solver{
+public class Boris implements RangeSolver {
 	
 	public Boris()
 	{
@@ -40,13 +40,18 @@ public class Boris implements Solver{
 	 *                 after the update: x(t+dt), v(t+dt/2)
 	 */
 	public void step(Particle p, Force f, double step) {
+		ParticleView view = ParticleStore.viewOf(p);
+		if (view != null) {
+			stepRange(view.getStore(), view.getIndex(), view.getIndex() + 1, f, step);
+			return;
+		}
 
 		double getPositionComponentofForceX = f.getPositionComponentofForceX(p);
 		double getPositionComponentofForceY = f.getPositionComponentofForceY(p);
 		double getBz = f.getBz(p);
 		double getTangentVelocityComponentOfForceX = f.getTangentVelocityComponentOfForceX(p);
 		double getTangentVelocityComponentOfForceY = f.getTangentVelocityComponentOfForceY(p);
-		double getMass = p.getMass();
+		double inverseMass = 1 / p.getMass();
 		
 		// remember for complete()
 		p.setPrevPositionComponentForceX(getPositionComponentofForceX);
@@ -55,11 +60,14 @@ public class Boris implements Solver{
 		p.setPrevTangentVelocityComponentOfForceX(getTangentVelocityComponentOfForceX);
 		p.setPrevTangentVelocityComponentOfForceY(getTangentVelocityComponentOfForceY);
 
-		double vxminus = p.getVx() + getPositionComponentofForceX * step / (2.0 * getMass);
+		double halfStepOverMass = 0.5 * step * inverseMass;
+		double stepOverMass = step * inverseMass;
+
+		double vxminus = p.getVx() + getPositionComponentofForceX * halfStepOverMass;
 		
-		double vyminus = p.getVy() + getPositionComponentofForceY * step / (2.0 * getMass);
+		double vyminus = p.getVy() + getPositionComponentofForceY * halfStepOverMass;
 		
-		double t_z = p.getCharge() * getBz * step / (2.0 * getMass);   //t vector
+		double t_z = p.getCharge() * getBz * halfStepOverMass;   //t vector
 		
 		double s_z = 2 * t_z / (1 + t_z * t_z);               //s vector
 		
@@ -69,8 +77,8 @@ public class Boris implements Solver{
 		double vxplus = vxminus + vyprime * s_z;
 		double vyplus = vyminus - vxprime * s_z;
 		
-		p.setVx(vxplus + getPositionComponentofForceX * step / (2.0 * getMass) + getTangentVelocityComponentOfForceX * step / getMass);
-		p.setVy(vyplus + getPositionComponentofForceY * step / (2.0 * getMass) + getTangentVelocityComponentOfForceY * step / getMass);
+		p.setVx(vxplus + getPositionComponentofForceX * halfStepOverMass + getTangentVelocityComponentOfForceX * stepOverMass);
+		p.setVy(vyplus + getPositionComponentofForceY * halfStepOverMass + getTangentVelocityComponentOfForceY * stepOverMass);
 		
 		p.setX(p.getX() + p.getVx() * step);
 		p.setY(p.getY() + p.getVy() * step);
@@ -83,12 +91,18 @@ public class Boris implements Solver{
 	 */
 	public void prepare(Particle p, Force f, double dt)
 	{
+		ParticleView view = ParticleStore.viewOf(p);
+		if (view != null) {
+			prepareRange(view.getStore(), view.getIndex(), view.getIndex() + 1, f, dt);
+			return;
+		}
+
 		double getPositionComponentofForceX = f.getPositionComponentofForceX(p);
 		double getPositionComponentofForceY = f.getPositionComponentofForceY(p);
 		double getBz = f.getBz(p);
 		double getTangentVelocityComponentOfForceX = f.getTangentVelocityComponentOfForceX(p);
 		double getTangentVelocityComponentOfForceY = f.getTangentVelocityComponentOfForceY(p);
-		double getMass = p.getMass();
+		double inverseMass = 1 / p.getMass();
 		
 		// remember for complete()
 		p.setPrevPositionComponentForceX(getPositionComponentofForceX);
@@ -98,12 +112,14 @@ public class Boris implements Solver{
 		p.setPrevTangentVelocityComponentOfForceY(getTangentVelocityComponentOfForceY);
 
 		double step = -0.5 * dt;
+		double halfStepOverMass = 0.5 * step * inverseMass;
+		double stepOverMass = step * inverseMass;
 		
-		double vxminus = p.getVx() + getPositionComponentofForceX * step / (2.0 * getMass) + getTangentVelocityComponentOfForceX * step / getMass;
+		double vxminus = p.getVx() + getPositionComponentofForceX * halfStepOverMass + getTangentVelocityComponentOfForceX * stepOverMass;
 		
-		double vyminus = p.getVy() + getPositionComponentofForceY * step / (2.0 * getMass) + getTangentVelocityComponentOfForceY * step / getMass;
+		double vyminus = p.getVy() + getPositionComponentofForceY * halfStepOverMass + getTangentVelocityComponentOfForceY * stepOverMass;
 		
-		double t_z = p.getCharge() * getBz * step / (2.0 * getMass);   //t vector
+		double t_z = p.getCharge() * getBz * halfStepOverMass;   //t vector
 		
 		double s_z = 2 * t_z / (1 + t_z * t_z);               //s vector
 		
@@ -113,8 +129,8 @@ public class Boris implements Solver{
 		double vxplus = vxminus + vyprime * s_z;
 		double vyplus = vyminus - vxprime * s_z;
 		
-		p.setVx(vxplus + getPositionComponentofForceX * step / (2.0 * getMass));
-		p.setVy(vyplus + getPositionComponentofForceY * step / (2.0 * getMass));
+		p.setVx(vxplus + getPositionComponentofForceX * halfStepOverMass);
+		p.setVy(vyplus + getPositionComponentofForceY * halfStepOverMass);
 		
 	}
 
@@ -125,16 +141,25 @@ public class Boris implements Solver{
 	 */
 	public void complete(Particle p, Force f, double dt)
 	{
+		ParticleView view = ParticleStore.viewOf(p);
+		if (view != null) {
+			completeRange(view.getStore(), view.getIndex(), view.getIndex() + 1, f, dt);
+			return;
+		}
+
 		double getPrevPositionComponentForceX = p.getPrevPositionComponentForceX();
 		double getPrevPositionComponentForceY = p.getPrevPositionComponentForceY();
-		double getMass = p.getMass();
+		double inverseMass = 1 / p.getMass();
 		
 		dt = dt * 0.5;
-		double vxminus = p.getVx() + getPrevPositionComponentForceX * dt / (2.0 * getMass);
+		double halfStepOverMass = 0.5 * dt * inverseMass;
+		double stepOverMass = dt * inverseMass;
+
+		double vxminus = p.getVx() + getPrevPositionComponentForceX * halfStepOverMass;
 		
-		double vyminus = p.getVy() + getPrevPositionComponentForceY * dt / (2.0 * getMass);
+		double vyminus = p.getVy() + getPrevPositionComponentForceY * halfStepOverMass;
 		
-		double t_z = p.getCharge() * p.getPrevBz() * dt / (2.0 * getMass);   //t vector
+		double t_z = p.getCharge() * p.getPrevBz() * halfStepOverMass;   //t vector
 		
 		double s_z = 2 * t_z / (1 + t_z * t_z);               //s vector
 		
@@ -144,7 +169,132 @@ public class Boris implements Solver{
 		double vxplus = vxminus + vyprime * s_z;
 		double vyplus = vyminus - vxprime * s_z;
 		
-		p.setVx(vxplus + getPrevPositionComponentForceX * dt / (2.0 * getMass) + p.getPrevTangentVelocityComponentOfForceX() * dt / getMass);
-		p.setVy(vyplus + getPrevPositionComponentForceY * dt / (2.0 * getMass) + p.getPrevTangentVelocityComponentOfForceY() * dt / getMass);
+		p.setVx(vxplus + getPrevPositionComponentForceX * halfStepOverMass + p.getPrevTangentVelocityComponentOfForceX() * stepOverMass);
+		p.setVy(vyplus + getPrevPositionComponentForceY * halfStepOverMass + p.getPrevTangentVelocityComponentOfForceY() * stepOverMass);
+	}
+
+	/**
+	 * Same as step() for a range of particles of the store.
+	 * Uses the per species constants instead of dividing by the mass of each particle.
+	 */
+	public void stepRange(ParticleStore s, int from, int to, Force f, double step) {
+		RangeForces.positionAndTangent(s, from, to, f);
+
+		double[] x = s.x;
+		double[] y = s.y;
+		double[] vx = s.vx;
+		double[] vy = s.vy;
+		int[] species = s.species;
+		SpeciesTable.StepConstants constants = s.getSpeciesTable().getStepConstants(step);
+		double[] halfStepOverMass = constants.halfStepOverMass;
+		double[] stepOverMass = constants.stepOverMass;
+		double[] halfStepChargeOverMass = constants.halfStepChargeOverMass;
+		double[] forceX = s.prevPositionComponentForceX;
+		double[] forceY = s.prevPositionComponentForceY;
+		double[] bz = s.prevBz;
+		double[] tangentX = s.prevTangentVelocityComponentOfForceX;
+		double[] tangentY = s.prevTangentVelocityComponentOfForceY;
+
+		for (int i = from; i < to; ++i) {
+			int sp = species[i];
+			double h = halfStepOverMass[sp];
+			double vxminus = vx[i] + forceX[i] * h;
+			double vyminus = vy[i] + forceY[i] * h;
+
+			double t_z = halfStepChargeOverMass[sp] * bz[i];
+			double s_z = 2 * t_z / (1 + t_z * t_z);
+
+			double vxprime = vxminus + vyminus * t_z;
+			double vyprime = vyminus - vxminus * t_z;
+
+			double vxplus = vxminus + vyprime * s_z;
+			double vyplus = vyminus - vxprime * s_z;
+
+			vx[i] = vxplus + forceX[i] * h + tangentX[i] * stepOverMass[sp];
+			vy[i] = vyplus + forceY[i] * h + tangentY[i] * stepOverMass[sp];
+
+			x[i] = x[i] + vx[i] * step;
+			y[i] = y[i] + vy[i] * step;
+		}
+	}
+
+	/**
+	 * Same as prepare() for a range of particles of the store.
+	 * Goes back half a time step, so the constants of dt are scaled by -1/2.
+	 */
+	public void prepareRange(ParticleStore s, int from, int to, Force f, double dt) {
+		RangeForces.positionAndTangent(s, from, to, f);
+
+		double[] vx = s.vx;
+		double[] vy = s.vy;
+		int[] species = s.species;
+		SpeciesTable.StepConstants constants = s.getSpeciesTable().getStepConstants(dt);
+		double[] halfStepOverMass = constants.halfStepOverMass;
+		double[] stepOverMass = constants.stepOverMass;
+		double[] halfStepChargeOverMass = constants.halfStepChargeOverMass;
+		double[] forceX = s.prevPositionComponentForceX;
+		double[] forceY = s.prevPositionComponentForceY;
+		double[] bz = s.prevBz;
+		double[] tangentX = s.prevTangentVelocityComponentOfForceX;
+		double[] tangentY = s.prevTangentVelocityComponentOfForceY;
+
+		for (int i = from; i < to; ++i) {
+			int sp = species[i];
+			double h = -0.5 * halfStepOverMass[sp];
+			double so = -0.5 * stepOverMass[sp];
+			double vxminus = vx[i] + forceX[i] * h + tangentX[i] * so;
+			double vyminus = vy[i] + forceY[i] * h + tangentY[i] * so;
+
+			double t_z = -0.5 * halfStepChargeOverMass[sp] * bz[i];
+			double s_z = 2 * t_z / (1 + t_z * t_z);
+
+			double vxprime = vxminus + vyminus * t_z;
+			double vyprime = vyminus - vxminus * t_z;
+
+			double vxplus = vxminus + vyprime * s_z;
+			double vyplus = vyminus - vxprime * s_z;
+
+			vx[i] = vxplus + forceX[i] * h;
+			vy[i] = vyplus + forceY[i] * h;
+		}
+	}
+
+	/**
+	 * Same as complete() for a range of particles of the store.
+	 * Goes forward half a time step with the forces remembered by the last step() or prepare().
+	 */
+	public void completeRange(ParticleStore s, int from, int to, Force f, double dt) {
+		double[] vx = s.vx;
+		double[] vy = s.vy;
+		int[] species = s.species;
+		SpeciesTable.StepConstants constants = s.getSpeciesTable().getStepConstants(dt);
+		double[] halfStepOverMass = constants.halfStepOverMass;
+		double[] stepOverMass = constants.stepOverMass;
+		double[] halfStepChargeOverMass = constants.halfStepChargeOverMass;
+		double[] forceX = s.prevPositionComponentForceX;
+		double[] forceY = s.prevPositionComponentForceY;
+		double[] bz = s.prevBz;
+		double[] tangentX = s.prevTangentVelocityComponentOfForceX;
+		double[] tangentY = s.prevTangentVelocityComponentOfForceY;
+
+		for (int i = from; i < to; ++i) {
+			int sp = species[i];
+			double h = 0.5 * halfStepOverMass[sp];
+			double so = 0.5 * stepOverMass[sp];
+			double vxminus = vx[i] + forceX[i] * h;
+			double vyminus = vy[i] + forceY[i] * h;
+
+			double t_z = 0.5 * halfStepChargeOverMass[sp] * bz[i];
+			double s_z = 2 * t_z / (1 + t_z * t_z);
+
+			double vxprime = vxminus + vyminus * t_z;
+			double vyprime = vyminus - vxminus * t_z;
+
+			double vxplus = vxminus + vyprime * s_z;
+			double vyplus = vyminus - vxprime * s_z;
+
+			vx[i] = vxplus + forceX[i] * h + tangentX[i] * so;
+			vy[i] = vyplus + forceY[i] * h + tangentY[i] * so;
+		}
 	}
 }
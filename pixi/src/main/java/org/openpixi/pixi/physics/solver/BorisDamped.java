@@ -25,7 +25,7 @@ import org.openpixi.pixi.physics.force.Force;
 /**The calculation is due to Boris and the equations((7) - (10)) can be found here:
  * http://ptsg.eecs.berkeley.edu/publications/Verboncoeur2005IOP.pdf
  */
-public class BorisDamped implements Solver{
+public class BorisDamped implements RangeSolver {
 	
 	public BorisDamped()
 	{
@@ -40,6 +40,11 @@ public class BorisDamped implements Solver{
 	 *                 after the update: x(t+dt), v(t+dt/2)
 	 */
 	public void step(Particle p, Force f, double step) {
+		ParticleView view = ParticleStore.viewOf(p);
+		if (view != null) {
+			stepRange(view.getStore(), view.getIndex(), view.getIndex() + 1, f, step);
+			return;
+		}
 
 		double getPositionComponentofForceX = f.getPositionComponentofForceX(p);
 		double getPositionComponentofForceY = f.getPositionComponentofForceY(p);
@@ -53,31 +58,33 @@ public class BorisDamped implements Solver{
 		p.setPrevBz(getBz);
 		p.setPrevLinearDragCoefficient(getLinearDragCoefficient);
 		
+		double halfStepOverMass = 0.5 * step / getMass;
+
 		//help coefficients for the dragging
-		double help1_coef = 1 - getLinearDragCoefficient * step / (2 * getMass);
-		double help2_coef = 1 + getLinearDragCoefficient * step / (2 * getMass);
+		double help1_coef = 1 - getLinearDragCoefficient * halfStepOverMass;
+		double help2_coef = 1 + getLinearDragCoefficient * halfStepOverMass;
 		
-		double vxminus = help1_coef * p.getVx() / help2_coef + getPositionComponentofForceX * step / (2.0 * getMass * help2_coef);
-		double vyminus = help1_coef * p.getVy() / help2_coef + getPositionComponentofForceY * step / (2.0 * getMass * help2_coef);
+		double vxminus = help1_coef * p.getVx() / help2_coef + getPositionComponentofForceX * halfStepOverMass / help2_coef;
+		double vyminus = help1_coef * p.getVy() / help2_coef + getPositionComponentofForceY * halfStepOverMass / help2_coef;
 		
-		double t_z = p.getCharge() * getBz * step / (2.0 * getMass * help2_coef);   //t vector
+		double t_z = p.getCharge() * getBz * halfStepOverMass / help2_coef;   //t vector
 		
 		double s_z = 2 * t_z / (1 + t_z * t_z);               //s vector
 		
 		double kappa = - 4 * getMass * getLinearDragCoefficient * step / (4 * getMass * getMass - 
 				getLinearDragCoefficient * getLinearDragCoefficient * step * step);
 		
-		double vxprime = vxminus + help2_coef * vyminus * t_z / help1_coef + kappa * step * getPositionComponentofForceY * t_z / (2.0 * getMass);;
-		double vyprime = vyminus - help2_coef * vxminus * t_z / help1_coef - kappa * step * getPositionComponentofForceX * t_z / (2.0 * getMass);;
+		double vxprime = vxminus + help2_coef * vyminus * t_z / help1_coef + kappa * getPositionComponentofForceY * t_z * halfStepOverMass;;
+		double vyprime = vyminus - help2_coef * vxminus * t_z / help1_coef - kappa * getPositionComponentofForceX * t_z * halfStepOverMass;;
 		
 		double vxplus = vxminus + vyprime * s_z + (help2_coef / help1_coef - 1) * (vyminus * t_z + vxminus * t_z * t_z) / (1 + t_z * t_z) +
-				kappa * step * (getPositionComponentofForceY + getPositionComponentofForceX * t_z) * s_z / (4.0 * getMass);
+				kappa * (getPositionComponentofForceY + getPositionComponentofForceX * t_z) * s_z * halfStepOverMass / 2;
 		
 		double vyplus = vyminus - vxprime * s_z + (help2_coef / help1_coef - 1) * (- vxminus * t_z + vyminus * t_z * t_z) / (1 + t_z * t_z) -
-				kappa * step * (getPositionComponentofForceX - getPositionComponentofForceY * t_z) * s_z / (4.0 * getMass);
+				kappa * (getPositionComponentofForceX - getPositionComponentofForceY * t_z) * s_z * halfStepOverMass / 2;
 	
-		p.setVx(vxplus + getPositionComponentofForceX * step / (2.0 * getMass * help2_coef));
-		p.setVy(vyplus + getPositionComponentofForceY * step / (2.0 * getMass * help2_coef));
+		p.setVx(vxplus + getPositionComponentofForceX * halfStepOverMass / help2_coef);
+		p.setVy(vyplus + getPositionComponentofForceY * halfStepOverMass / help2_coef);
 		
 		p.setX(p.getX() + p.getVx() * step);
 		p.setY(p.getY() + p.getVy() * step);
@@ -90,6 +97,12 @@ public class BorisDamped implements Solver{
 	 */
 	public void prepare(Particle p, Force f, double dt)
 	{	
+		ParticleView view = ParticleStore.viewOf(p);
+		if (view != null) {
+			prepareRange(view.getStore(), view.getIndex(), view.getIndex() + 1, f, dt);
+			return;
+		}
+
 		double getPositionComponentofForceX = f.getPositionComponentofForceX(p);
 		double getPositionComponentofForceY = f.getPositionComponentofForceY(p);
 		double getBz = f.getBz(p);
@@ -104,31 +117,33 @@ public class BorisDamped implements Solver{
 		
 		double step = - dt * 0.5;
 		
+		double halfStepOverMass = 0.5 * step / getMass;
+
 		//help coefficients for the dragging
-		double help1_coef = 1 - getLinearDragCoefficient * step / (2 * getMass);
-		double help2_coef = 1 + getLinearDragCoefficient * step / (2 * getMass);
+		double help1_coef = 1 - getLinearDragCoefficient * halfStepOverMass;
+		double help2_coef = 1 + getLinearDragCoefficient * halfStepOverMass;
 		
-		double vxminus = help1_coef * p.getVx() / help2_coef + getPositionComponentofForceX * step / (2.0 * getMass * help2_coef);
-		double vyminus = help1_coef * p.getVy() / help2_coef + getPositionComponentofForceY * step / (2.0 * getMass * help2_coef);
+		double vxminus = help1_coef * p.getVx() / help2_coef + getPositionComponentofForceX * halfStepOverMass / help2_coef;
+		double vyminus = help1_coef * p.getVy() / help2_coef + getPositionComponentofForceY * halfStepOverMass / help2_coef;
 		
-		double t_z = p.getCharge() * getBz * step / (2.0 * getMass * help2_coef);   //t vector
+		double t_z = p.getCharge() * getBz * halfStepOverMass / help2_coef;   //t vector
 		
 		double s_z = 2 * t_z / (1 + t_z * t_z);               //s vector
 		
 		double kappa = - 4 * getMass * getLinearDragCoefficient * step / (4 * getMass * getMass - 
 				getLinearDragCoefficient * getLinearDragCoefficient * step * step);
 		
-		double vxprime = vxminus + help2_coef * vyminus * t_z / help1_coef + kappa * step * getPositionComponentofForceY * t_z / (2.0 * getMass);;
-		double vyprime = vyminus - help2_coef * vxminus * t_z / help1_coef - kappa * step * getPositionComponentofForceX * t_z / (2.0 * getMass);;
+		double vxprime = vxminus + help2_coef * vyminus * t_z / help1_coef + kappa * getPositionComponentofForceY * t_z * halfStepOverMass;;
+		double vyprime = vyminus - help2_coef * vxminus * t_z / help1_coef - kappa * getPositionComponentofForceX * t_z * halfStepOverMass;;
 		
 		double vxplus = vxminus + vyprime * s_z + (help2_coef / help1_coef - 1) * (vyminus * t_z + vxminus * t_z * t_z) / (1 + t_z * t_z) +
-				kappa * step * (getPositionComponentofForceY + getPositionComponentofForceX * t_z) * s_z / (4.0 * getMass);
+				kappa * (getPositionComponentofForceY + getPositionComponentofForceX * t_z) * s_z * halfStepOverMass / 2;
 		
 		double vyplus = vyminus - vxprime * s_z + (help2_coef / help1_coef - 1) * (- vxminus * t_z + vyminus * t_z * t_z) / (1 + t_z * t_z) -
-				kappa * step * (getPositionComponentofForceX - getPositionComponentofForceY * t_z) * s_z / (4.0 * getMass);
+				kappa * (getPositionComponentofForceX - getPositionComponentofForceY * t_z) * s_z * halfStepOverMass / 2;
 	
-		p.setVx(vxplus + getPositionComponentofForceX * step / (2.0 * getMass * help2_coef));
-		p.setVy(vyplus + getPositionComponentofForceY * step / (2.0 * getMass * help2_coef));		
+		p.setVx(vxplus + getPositionComponentofForceX * halfStepOverMass / help2_coef);
+		p.setVy(vyplus + getPositionComponentofForceY * halfStepOverMass / help2_coef);		
 	}
 	
 	/**
@@ -138,6 +153,12 @@ public class BorisDamped implements Solver{
 	 */
 	public void complete(Particle p, Force f, double dt)
 	{
+		ParticleView view = ParticleStore.viewOf(p);
+		if (view != null) {
+			completeRange(view.getStore(), view.getIndex(), view.getIndex() + 1, f, dt);
+			return;
+		}
+
 		double getPrevPositionComponentForceX = p.getPrevPositionComponentForceX();
 		double getPrevPositionComponentForceY = p.getPrevPositionComponentForceY();
 		double getPrevLinearDragCoefficient = p.getPrevLinearDragCoefficient();
@@ -145,30 +166,116 @@ public class BorisDamped implements Solver{
 		
 		double step = dt * 0.5;
 		
+		double halfStepOverMass = 0.5 * step / getMass;
+
 		//help coefficients for the dragging
-		double help1_coef = 1 - getPrevLinearDragCoefficient * step / (2 * getMass);
-		double help2_coef = 1 + getPrevLinearDragCoefficient * step / (2 * getMass);
+		double help1_coef = 1 - getPrevLinearDragCoefficient * halfStepOverMass;
+		double help2_coef = 1 + getPrevLinearDragCoefficient * halfStepOverMass;
 		
-		double vxminus = help1_coef * p.getVx() / help2_coef + getPrevPositionComponentForceX * step / (2.0 * getMass * help2_coef);
-		double vyminus = help1_coef * p.getVy() / help2_coef + getPrevPositionComponentForceY * step / (2.0 * getMass * help2_coef);
+		double vxminus = help1_coef * p.getVx() / help2_coef + getPrevPositionComponentForceX * halfStepOverMass / help2_coef;
+		double vyminus = help1_coef * p.getVy() / help2_coef + getPrevPositionComponentForceY * halfStepOverMass / help2_coef;
 		
-		double t_z = p.getCharge() * p.getPrevBz() * step / (2.0 * getMass * help2_coef);   //t vector
+		double t_z = p.getCharge() * p.getPrevBz() * halfStepOverMass / help2_coef;   //t vector
 		
 		double s_z = 2 * t_z / (1 + t_z * t_z);               //s vector
 		
 		double kappa = - 4 * getMass * getPrevLinearDragCoefficient * step / (4 * getMass * getMass - 
 				getPrevLinearDragCoefficient * getPrevLinearDragCoefficient * step * step);
 		
-		double vxprime = vxminus + help2_coef * vyminus * t_z / help1_coef + kappa * step * getPrevPositionComponentForceY * t_z / (2.0 * getMass);;
-		double vyprime = vyminus - help2_coef * vxminus * t_z / help1_coef - kappa * step * getPrevPositionComponentForceX * t_z / (2.0 * getMass);;
+		double vxprime = vxminus + help2_coef * vyminus * t_z / help1_coef + kappa * getPrevPositionComponentForceY * t_z * halfStepOverMass;;
+		double vyprime = vyminus - help2_coef * vxminus * t_z / help1_coef - kappa * getPrevPositionComponentForceX * t_z * halfStepOverMass;;
 		
 		double vxplus = vxminus + vyprime * s_z + (help2_coef / help1_coef - 1) * (vyminus * t_z + vxminus * t_z * t_z) / (1 + t_z * t_z) +
-				kappa * step * (getPrevPositionComponentForceY + getPrevPositionComponentForceX * t_z) * s_z / (4.0 * getMass);
+				kappa * (getPrevPositionComponentForceY + getPrevPositionComponentForceX * t_z) * s_z * halfStepOverMass / 2;
 		
 		double vyplus = vyminus - vxprime * s_z + (help2_coef / help1_coef - 1) * (- vxminus * t_z + vyminus * t_z * t_z) / (1 + t_z * t_z) -
-				kappa * step * (getPrevPositionComponentForceX - getPrevPositionComponentForceY * t_z) * s_z / (4.0 * getMass);
+				kappa * (getPrevPositionComponentForceX - getPrevPositionComponentForceY * t_z) * s_z * halfStepOverMass / 2;
 	
-		p.setVx(vxplus + getPrevPositionComponentForceX * step / (2.0 * getMass * help2_coef));
-		p.setVy(vyplus + getPrevPositionComponentForceY * step / (2.0 * getMass * help2_coef));
+		p.setVx(vxplus + getPrevPositionComponentForceX * halfStepOverMass / help2_coef);
+		p.setVy(vyplus + getPrevPositionComponentForceY * halfStepOverMass / help2_coef);
+	}
+
+	/**
+	 * Same as step() for a range of particles of the store.
+	 */
+	public void stepRange(ParticleStore s, int from, int to, Force f, double step) {
+		RangeForces.positionAndDrag(s, from, to, f);
+		pushVelocities(s, from, to, step, 1);
+
+		double[] x = s.x;
+		double[] y = s.y;
+		double[] vx = s.vx;
+		double[] vy = s.vy;
+		for (int i = from; i < to; ++i) {
+			x[i] = x[i] + vx[i] * step;
+			y[i] = y[i] + vy[i] * step;
+		}
+	}
+
+	/**
+	 * Same as prepare() for a range of particles of the store.
+	 */
+	public void prepareRange(ParticleStore s, int from, int to, Force f, double dt) {
+		RangeForces.positionAndDrag(s, from, to, f);
+		pushVelocities(s, from, to, dt, -0.5);
+	}
+
+	/**
+	 * Same as complete() for a range of particles of the store.
+	 */
+	public void completeRange(ParticleStore s, int from, int to, Force f, double dt) {
+		pushVelocities(s, from, to, dt, 0.5);
+	}
+
+	/**
+	 * Velocity update of the particles of the range by scale * dt with the remembered forces.
+	 * The constants of dt are scaled, so prepare and complete share the constants of the step.
+	 */
+	private void pushVelocities(ParticleStore s, int from, int to, double dt, double scale) {
+		double[] vx = s.vx;
+		double[] vy = s.vy;
+		int[] species = s.species;
+		SpeciesTable.StepConstants constants = s.getSpeciesTable().getStepConstants(dt);
+		double[] masses = s.getSpeciesTable().getMasses();
+		double[] halfStepOverMass = constants.halfStepOverMass;
+		double[] halfStepChargeOverMass = constants.halfStepChargeOverMass;
+		double[] forceX = s.prevPositionComponentForceX;
+		double[] forceY = s.prevPositionComponentForceY;
+		double[] bz = s.prevBz;
+		double[] drag = s.prevLinearDragCoefficient;
+		double step = scale * dt;
+
+		for (int i = from; i < to; ++i) {
+			int sp = species[i];
+			double m = masses[sp];
+			double h = scale * halfStepOverMass[sp];
+			double fx = forceX[i];
+			double fy = forceY[i];
+			double d = drag[i];
+
+			double help1_coef = 1 - d * h;
+			double help2_coef = 1 + d * h;
+			double h2 = h / help2_coef;
+
+			double vxminus = help1_coef * vx[i] / help2_coef + fx * h2;
+			double vyminus = help1_coef * vy[i] / help2_coef + fy * h2;
+
+			double t_z = scale * halfStepChargeOverMass[sp] * bz[i] / help2_coef;
+			double s_z = 2 * t_z / (1 + t_z * t_z);
+
+			double kappa = - 4 * m * d * step / (4 * m * m - d * d * step * step);
+
+			double vxprime = vxminus + help2_coef * vyminus * t_z / help1_coef + kappa * fy * t_z * h;
+			double vyprime = vyminus - help2_coef * vxminus * t_z / help1_coef - kappa * fx * t_z * h;
+
+			double vxplus = vxminus + vyprime * s_z + (help2_coef / help1_coef - 1) * (vyminus * t_z + vxminus * t_z * t_z) / (1 + t_z * t_z) +
+					kappa * (fy + fx * t_z) * s_z * h / 2;
+
+			double vyplus = vyminus - vxprime * s_z + (help2_coef / help1_coef - 1) * (- vxminus * t_z + vyminus * t_z * t_z) / (1 + t_z * t_z) -
+					kappa * (fx - fy * t_z) * s_z * h / 2;
+
+			vx[i] = vxplus + fx * h2;
+			vy[i] = vyplus + fy * h2;
+		}
 	}
 }
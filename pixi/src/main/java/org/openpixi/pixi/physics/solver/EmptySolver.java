@@ -19,12 +19,13 @@
 package org.openpixi.pixi.physics.solver;
 
 import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.ParticleStore;
 import org.openpixi.pixi.physics.force.Force;
 
 /**This class is empty and does not solve the equations
  *of motion. It implements the Solver interface.
  */
-public class EmptySolver implements Solver {
+public class EmptySolver implements RangeSolver {
 	
 	public void step(Particle p, Force f, double step) {
 	}
@@ -35,4 +36,13 @@ public class EmptySolver implements Solver {
 	public void complete(Particle p, Force f, double step) {
 	}
 
+	public void stepRange(ParticleStore s, int from, int to, Force f, double step) {
+	}
+
+	public void prepareRange(ParticleStore s, int from, int to, Force f, double step) {
+	}
+
+	public void completeRange(ParticleStore s, int from, int to, Force f, double step) {
+	}
+
 }
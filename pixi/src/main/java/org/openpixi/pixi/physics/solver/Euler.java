@@ -24,7 +24,7 @@ import org.openpixi.pixi.physics.force.Force;
 /**This class represents the simple Euler algorithm.
  *
  */
-public class Euler implements Solver {
+public class Euler implements RangeSolver {
 
 	public Euler()
 	{
@@ -38,9 +38,16 @@ public class Euler implements Solver {
 	 */
 	public void step(Particle p, Force f, double step)
 	{
+		ParticleView view = ParticleStore.viewOf(p);
+		if (view != null) {
+			stepRange(view.getStore(), view.getIndex(), view.getIndex() + 1, f, step);
+			return;
+		}
+
 		//a(t) = F(v(t), x(t)) / m
-		p.setAx(f.getForceX(p) / p.getMass());
-		p.setAy(f.getForceY(p) / p.getMass());
+		double inverseMass = 1 / p.getMass();
+		p.setAx(f.getForceX(p) * inverseMass);
+		p.setAy(f.getForceY(p) * inverseMass);
 
 		// x(t+dt) = x(t) + v(t)*dt
 		p.setX(p.getX() + p.getVx() * step);
@@ -57,4 +64,38 @@ public class Euler implements Solver {
 
 	public void complete(Particle p, Force f, double step){
 	}
+
+	/**
+	 * Same as step() for a range of particles of the store.
+	 */
+	public void stepRange(ParticleStore s, int from, int to, Force f, double step) {
+		RangeForces.total(s, from, to, f);
+
+		double[] x = s.x;
+		double[] y = s.y;
+		double[] vx = s.vx;
+		double[] vy = s.vy;
+		double[] ax = s.ax;
+		double[] ay = s.ay;
+		int[] species = s.species;
+		double[] inverseMass = s.getSpeciesTable().getStepConstants(step).inverseMass;
+
+		for (int i = from; i < to; ++i) {
+			double im = inverseMass[species[i]];
+			ax[i] = ax[i] * im;
+			ay[i] = ay[i] * im;
+
+			x[i] = x[i] + vx[i] * step;
+			y[i] = y[i] + vy[i] * step;
+
+			vx[i] = vx[i] + ax[i] * step;
+			vy[i] = vy[i] + ay[i] * step;
+		}
+	}
+
+	public void prepareRange(ParticleStore s, int from, int to, Force f, double step) {
+	}
+
+	public void completeRange(ParticleStore s, int from, int to, Force f, double step) {
+	}
 }
\ No newline at end of file
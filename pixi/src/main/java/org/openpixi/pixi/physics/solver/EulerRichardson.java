@@ -31,8 +31,16 @@ import org.openpixi.pixi.physics.force.Force;
  * http://www.physics.udel.edu/~bnikolic/teaching/phys660/numerical_ode/node4.html</a>
  * </p>
  */
-public class EulerRichardson implements Solver{
+public class EulerRichardson implements RangeSolver {
 	
+	/** Start values of the particles of a range, one buffer per thread. */
+	private static final ThreadLocal<double[][]> startBuffers = new ThreadLocal<double[][]>() {
+		@Override
+		protected double[][] initialValue() {
+			return new double[4][0];
+		}
+	};
+
 	public EulerRichardson()
 	{
 		super();
@@ -45,15 +53,22 @@ public class EulerRichardson implements Solver{
 	 */
 	public void step(Particle p, Force f, double step)
 	{
+		ParticleView view = ParticleStore.viewOf(p);
+		if (view != null) {
+			stepRange(view.getStore(), view.getIndex(), view.getIndex() + 1, f, step);
+			return;
+		}
+
 		//saving the starting value of the position & velocity
 		double xstart = p.getX();
 		double ystart = p.getY();
 		double vxstart = p.getVx();
 		double vystart = p.getVy();
+		double inverseMass = 1 / p.getMass();
 		
 		//a(t) = F(v(t), x(t)) / m
-		p.setAx(f.getForceX(p) / p.getMass());
-		p.setAy(f.getForceY(p) / p.getMass());
+		p.setAx(f.getForceX(p) * inverseMass);
+		p.setAy(f.getForceY(p) * inverseMass);
 		
 		//starting the Euler-Richardson algorithm (the equations correspond with the ones on the above mentioned website)
 		//v(t + dt / 2) = v(t) + a(t) * dt / 2
@@ -65,8 +80,8 @@ public class EulerRichardson implements Solver{
 		p.setY(p.getY() + p.getVy() * step / 2); 
 		
 		//a(t + dt / 2) = F(v(t + dt / 2), x(t + dt / 2)) / m
-		p.setAx(f.getForceX(p) / p.getMass());
-		p.setAy(f.getForceY(p) / p.getMass());
+		p.setAx(f.getForceX(p) * inverseMass);
+		p.setAy(f.getForceY(p) * inverseMass);
 		
 		//x(t + dt) = x(t) + v(t + dt / 2) * dt
 		p.setX(xstart + p.getVx() * step);
@@ -83,4 +98,78 @@ public class EulerRichardson implements Solver{
 
 	public void complete(Particle p, Force f, double step){
 	}
+
+	/**
+	 * Same as step() for a range of particles of the store.
+	 * The start values of the range are kept in a buffer of the thread
+	 * while the force is evaluated at the half step.
+	 */
+	public void stepRange(ParticleStore s, int from, int to, Force f, double step) {
+		double[] x = s.x;
+		double[] y = s.y;
+		double[] vx = s.vx;
+		double[] vy = s.vy;
+		double[] ax = s.ax;
+		double[] ay = s.ay;
+		int[] species = s.species;
+		double[] inverseMass = s.getSpeciesTable().getStepConstants(step).inverseMass;
+		double[][] start = startBuffer(to - from);
+		double[] xstart = start[0];
+		double[] ystart = start[1];
+		double[] vxstart = start[2];
+		double[] vystart = start[3];
+
+		RangeForces.total(s, from, to, f);
+
+		for (int i = from; i < to; ++i) {
+			int k = i - from;
+			xstart[k] = x[i];
+			ystart[k] = y[i];
+			vxstart[k] = vx[i];
+			vystart[k] = vy[i];
+
+			double im = inverseMass[species[i]];
+			ax[i] = ax[i] * im;
+			ay[i] = ay[i] * im;
+
+			vx[i] = vx[i] + ax[i] * step / 2;
+			vy[i] = vy[i] + ay[i] * step / 2;
+
+			x[i] = x[i] + vx[i] * step / 2;
+			y[i] = y[i] + vy[i] * step / 2;
+		}
+
+		RangeForces.total(s, from, to, f);
+
+		for (int i = from; i < to; ++i) {
+			int k = i - from;
+			double im = inverseMass[species[i]];
+			ax[i] = ax[i] * im;
+			ay[i] = ay[i] * im;
+
+			x[i] = xstart[k] + vx[i] * step;
+			y[i] = ystart[k] + vy[i] * step;
+
+			vx[i] = vxstart[k] + ax[i] * step;
+			vy[i] = vystart[k] + ay[i] * step;
+		}
+	}
+
+	public void prepareRange(ParticleStore s, int from, int to, Force f, double step) {
+	}
+
+	public void completeRange(ParticleStore s, int from, int to, Force f, double step) {
+	}
+
+	/**
+	 * Buffer of the current thread for the start values (x, y, vx, vy) of size particles.
+	 */
+	private static double[][] startBuffer(int size) {
+		double[][] start = startBuffers.get();
+		if (start[0].length < size) {
+			start = new double[4][size];
+			startBuffers.set(start);
+		}
+		return start;
+	}
 }
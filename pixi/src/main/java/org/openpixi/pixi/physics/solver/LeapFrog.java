@@ -26,7 +26,7 @@ import org.openpixi.pixi.physics.force.Force;
  * and also here:
  * http://www.artcompsci.org/vol_1/v1_web/node34.html#leapfrog-step2
  */
-public class LeapFrog implements Solver{
+public class LeapFrog implements RangeSolver {
 	
 	public LeapFrog()
 	{
@@ -40,14 +40,21 @@ public class LeapFrog implements Solver{
 	 *                 after the update: x(t+dt), v(t+3*dt/2), a(t+dt)
 	 */
 	public void step(Particle p, Force f, double dt) {
+		ParticleView view = ParticleStore.viewOf(p);
+		if (view != null) {
+			stepRange(view.getStore(), view.getIndex(), view.getIndex() + 1, f, dt);
+			return;
+		}
+
 		// x(t+dt) = x(t) + v(t+dt/2)*dt
 		p.setX(p.getX() + p.getVx() * dt);
 		p.setY(p.getY() + p.getVy() * dt);
 
 		// a(t+dt) = F(v(t+dt/2), x(t+dt)) / m
 		// WARNING: Force is evaluated at two different times t+dt/2 and t+dt!
-		p.setAx(f.getForceX(p) / p.getMass());
-		p.setAy(f.getForceY(p) / p.getMass());
+		double inverseMass = 1 / p.getMass();
+		p.setAx(f.getForceX(p) * inverseMass);
+		p.setAy(f.getForceY(p) * inverseMass);
 
 		// v(t+3*dt/2) = v(t+dt/2) + a(t+dt)*dt
 		p.setVx(p.getVx() + p.getAx() * dt);
@@ -61,9 +68,16 @@ public class LeapFrog implements Solver{
 	 */
 	public void prepare(Particle p, Force f, double dt)
 	{
+		ParticleView view = ParticleStore.viewOf(p);
+		if (view != null) {
+			prepareRange(view.getStore(), view.getIndex(), view.getIndex() + 1, f, dt);
+			return;
+		}
+
 		//a(t) = F(v(t), x(t)) / m
-		p.setAx(f.getForceX(p) / p.getMass());
-		p.setAy(f.getForceY(p) / p.getMass());
+		double inverseMass = 1 / p.getMass();
+		p.setAx(f.getForceX(p) * inverseMass);
+		p.setAy(f.getForceY(p) * inverseMass);
 		
 		//v(t + dt / 2) = v(t) + a(t)*dt / 2
 		p.setVx(p.getVx() + p.getAx() * dt / 2);
@@ -81,4 +95,72 @@ public class LeapFrog implements Solver{
 		p.setVy(p.getVy() - p.getAy() * dt / 2);
 	}
 
+	/**
+	 * Same as step() for a range of particles of the store.
+	 * The force is evaluated after all the particles of the range have been moved.
+	 */
+	public void stepRange(ParticleStore s, int from, int to, Force f, double dt) {
+		double[] x = s.x;
+		double[] y = s.y;
+		double[] vx = s.vx;
+		double[] vy = s.vy;
+		double[] ax = s.ax;
+		double[] ay = s.ay;
+		int[] species = s.species;
+		double[] inverseMass = s.getSpeciesTable().getStepConstants(dt).inverseMass;
+
+		for (int i = from; i < to; ++i) {
+			x[i] = x[i] + vx[i] * dt;
+			y[i] = y[i] + vy[i] * dt;
+		}
+
+		RangeForces.total(s, from, to, f);
+
+		for (int i = from; i < to; ++i) {
+			double im = inverseMass[species[i]];
+			ax[i] = ax[i] * im;
+			ay[i] = ay[i] * im;
+
+			vx[i] = vx[i] + ax[i] * dt;
+			vy[i] = vy[i] + ay[i] * dt;
+		}
+	}
+
+	/**
+	 * Same as prepare() for a range of particles of the store.
+	 */
+	public void prepareRange(ParticleStore s, int from, int to, Force f, double dt) {
+		RangeForces.total(s, from, to, f);
+
+		double[] vx = s.vx;
+		double[] vy = s.vy;
+		double[] ax = s.ax;
+		double[] ay = s.ay;
+		int[] species = s.species;
+		double[] inverseMass = s.getSpeciesTable().getStepConstants(dt).inverseMass;
+
+		for (int i = from; i < to; ++i) {
+			double im = inverseMass[species[i]];
+			ax[i] = ax[i] * im;
+			ay[i] = ay[i] * im;
+
+			vx[i] = vx[i] + ax[i] * dt / 2;
+			vy[i] = vy[i] + ay[i] * dt / 2;
+		}
+	}
+
+	/**
+	 * Same as complete() for a range of particles of the store.
+	 */
+	public void completeRange(ParticleStore s, int from, int to, Force f, double dt) {
+		double[] vx = s.vx;
+		double[] vy = s.vy;
+		double[] ax = s.ax;
+		double[] ay = s.ay;
+
+		for (int i = from; i < to; ++i) {
+			vx[i] = vx[i] - ax[i] * dt / 2;
+			vy[i] = vy[i] - ay[i] * dt / 2;
+		}
+	}
 }
@@ -26,7 +26,7 @@ import org.openpixi.pixi.physics.force.Force;
  * and also here:
  * http://www.artcompsci.org/vol_1/v1_web/node34.html#leapfrog-step2
  */
-public class LeapFrogDamped implements Solver{
+public class LeapFrogDamped implements RangeSolver {
 	
 	public LeapFrogDamped()
 	{
@@ -40,13 +40,19 @@ public class LeapFrogDamped implements Solver{
 	 *                 after the update: x(t+dt), v(t+dt/2), a(t+dt)
 	 */
 	public void step(Particle p, Force f, double dt) {
+		ParticleView view = ParticleStore.viewOf(p);
+		if (view != null) {
+			stepRange(view.getStore(), view.getIndex(), view.getIndex() + 1, f, dt);
+			return;
+		}
+
 		
 		double getPositionComponentofForceX = f.getPositionComponentofForceX(p);
 		double getPositionComponentofForceY = f.getPositionComponentofForceY(p);
 		double getNormalVelocityComponentofForceX = f.getNormalVelocityComponentofForceX(p);
 		double getNormalVelocityComponentofForceY = f.getNormalVelocityComponentofForceY(p);
 		double getLinearDragCoefficient = f.getLinearDragCoefficient(p);
-		double getMass = p.getMass();
+		double inverseMass = 1 / p.getMass();
 	
 		// remember for complete()
 		p.setPrevPositionComponentForceX(getPositionComponentofForceX);
@@ -56,8 +62,8 @@ public class LeapFrogDamped implements Solver{
 		p.setPrevLinearDragCoefficient(getLinearDragCoefficient);
 		
 		//help coefficients for the dragging
-		double help1_coef = 1 - getLinearDragCoefficient * dt / (2 * getMass);
-		double help2_coef = 1 + getLinearDragCoefficient * dt / (2 * getMass);
+		double help1_coef = 1 - getLinearDragCoefficient * dt * inverseMass / 2;
+		double help2_coef = 1 + getLinearDragCoefficient * dt * inverseMass / 2;
 		
 		// v(t+dt/2) = v(t-dt/2) + a(t)*dt
 		p.setVx((p.getVx() * help1_coef + p.getAx() * dt) / help2_coef);
@@ -70,8 +76,8 @@ public class LeapFrogDamped implements Solver{
 
 		// a(t+dt) = F(v(t+dt/2), x(t+dt)) / m
 		// WARNING: Force is evaluated at two different times t+dt/2 and t+dt!
-		p.setAx((getPositionComponentofForceX + getNormalVelocityComponentofForceX) / getMass);
-		p.setAy((getPositionComponentofForceY + getNormalVelocityComponentofForceY) / getMass);
+		p.setAx((getPositionComponentofForceX + getNormalVelocityComponentofForceX) * inverseMass);
+		p.setAy((getPositionComponentofForceY + getNormalVelocityComponentofForceY) * inverseMass);
 		
 	}
 	/**
@@ -81,12 +87,18 @@ public class LeapFrogDamped implements Solver{
 	 */
 	public void prepare(Particle p, Force f, double dt)
 	{
+		ParticleView view = ParticleStore.viewOf(p);
+		if (view != null) {
+			prepareRange(view.getStore(), view.getIndex(), view.getIndex() + 1, f, dt);
+			return;
+		}
+
 		double getPositionComponentofForceX = f.getPositionComponentofForceX(p);
 		double getPositionComponentofForceY = f.getPositionComponentofForceY(p);
 		double getNormalVelocityComponentofForceX = f.getNormalVelocityComponentofForceX(p);
 		double getNormalVelocityComponentofForceY = f.getNormalVelocityComponentofForceY(p);
 		double getLinearDragCoefficient = f.getLinearDragCoefficient(p);
-		double getMass = p.getMass();
+		double inverseMass = 1 / p.getMass();
 		
 		// remember for complete()
 		p.setPrevPositionComponentForceX(getPositionComponentofForceX);
@@ -98,12 +110,12 @@ public class LeapFrogDamped implements Solver{
 		dt = - dt * 0.5;
 		
 		//help coefficients for the dragging
-		double help1_coef = 1 - getLinearDragCoefficient * dt / (2 * getMass);
-		double help2_coef = 1 + getLinearDragCoefficient * dt / (2 * getMass);
+		double help1_coef = 1 - getLinearDragCoefficient * dt * inverseMass / 2;
+		double help2_coef = 1 + getLinearDragCoefficient * dt * inverseMass / 2;
 		
 		//a(t) = F(v(t), x(t)) / m
-		p.setAx((f.getPositionComponentofForceX(p) + f.getNormalVelocityComponentofForceX(p)) / getMass);
-		p.setAy((f.getPositionComponentofForceY(p) + f.getNormalVelocityComponentofForceY(p)) / getMass);
+		p.setAx((f.getPositionComponentofForceX(p) + f.getNormalVelocityComponentofForceX(p)) * inverseMass);
+		p.setAy((f.getPositionComponentofForceY(p) + f.getNormalVelocityComponentofForceY(p)) * inverseMass);
 		
 		//v(t - dt / 2) = v(t) - a(t)*dt / 2
 		p.setVx((p.getVx() * help1_coef + p.getAx() * dt) / help2_coef);
@@ -116,20 +128,112 @@ public class LeapFrogDamped implements Solver{
 	 */
 	public void complete(Particle p, Force f, double dt)
 	{
+		ParticleView view = ParticleStore.viewOf(p);
+		if (view != null) {
+			completeRange(view.getStore(), view.getIndex(), view.getIndex() + 1, f, dt);
+			return;
+		}
+
 		double getPrevLinearDragCoefficient = p.getPrevLinearDragCoefficient();
-		double getMass = p.getMass();
+		double inverseMass = 1 / p.getMass();
 		
 		dt = dt * 0.5;
 
-		double help1_coef = 1 - getPrevLinearDragCoefficient * dt / (2 * getMass);
-		double help2_coef = 1 + getPrevLinearDragCoefficient * dt / (2 * getMass);
+		double help1_coef = 1 - getPrevLinearDragCoefficient * dt * inverseMass / 2;
+		double help2_coef = 1 + getPrevLinearDragCoefficient * dt * inverseMass / 2;
 		
-		p.setAx((p.getPrevPositionComponentForceX() + p.getPrevNormalVelocityComponentOfForceX()) / getMass);
-		p.setAy((p.getPrevPositionComponentForceY() + p.getPrevNormalVelocityComponentOfForceY()) / getMass);
+		p.setAx((p.getPrevPositionComponentForceX() + p.getPrevNormalVelocityComponentOfForceX()) * inverseMass);
+		p.setAy((p.getPrevPositionComponentForceY() + p.getPrevNormalVelocityComponentOfForceY()) * inverseMass);
 		
 		//v(t) = v(t - dt /2) + a(t)*dt / 2
 		p.setVx((p.getVx() * help1_coef + p.getAx() * dt) / help2_coef);
 		p.setVy((p.getVy() * help1_coef + p.getAy() * dt) / help2_coef);
 	}
 
+	/**
+	 * Same as step() for a range of particles of the store.
+	 */
+	public void stepRange(ParticleStore s, int from, int to, Force f, double dt) {
+		RangeForces.positionNormalAndDrag(s, from, to, f);
+
+		double[] x = s.x;
+		double[] y = s.y;
+		double[] vx = s.vx;
+		double[] vy = s.vy;
+		double[] ax = s.ax;
+		double[] ay = s.ay;
+		int[] species = s.species;
+		SpeciesTable.StepConstants constants = s.getSpeciesTable().getStepConstants(dt);
+		double[] inverseMass = constants.inverseMass;
+		double[] halfStepOverMass = constants.halfStepOverMass;
+		double[] forceX = s.prevPositionComponentForceX;
+		double[] forceY = s.prevPositionComponentForceY;
+		double[] normalX = s.prevNormalVelocityComponentOfForceX;
+		double[] normalY = s.prevNormalVelocityComponentOfForceY;
+		double[] drag = s.prevLinearDragCoefficient;
+
+		for (int i = from; i < to; ++i) {
+			int sp = species[i];
+			double help1_coef = 1 - drag[i] * halfStepOverMass[sp];
+			double help2_coef = 1 + drag[i] * halfStepOverMass[sp];
+
+			vx[i] = (vx[i] * help1_coef + ax[i] * dt) / help2_coef;
+			vy[i] = (vy[i] * help1_coef + ay[i] * dt) / help2_coef;
+
+			x[i] = x[i] + vx[i] * dt;
+			y[i] = y[i] + vy[i] * dt;
+
+			ax[i] = (forceX[i] + normalX[i]) * inverseMass[sp];
+			ay[i] = (forceY[i] + normalY[i]) * inverseMass[sp];
+		}
+	}
+
+	/**
+	 * Same as prepare() for a range of particles of the store.
+	 */
+	public void prepareRange(ParticleStore s, int from, int to, Force f, double dt) {
+		RangeForces.positionNormalAndDrag(s, from, to, f);
+		accelerateHalfStep(s, from, to, dt, -0.5);
+	}
+
+	/**
+	 * Same as complete() for a range of particles of the store.
+	 */
+	public void completeRange(ParticleStore s, int from, int to, Force f, double dt) {
+		accelerateHalfStep(s, from, to, dt, 0.5);
+	}
+
+	/**
+	 * Acceleration from the remembered forces and velocity update by scale * dt.
+	 * The constants of dt are scaled, so prepare and complete share the constants of the step.
+	 */
+	private void accelerateHalfStep(ParticleStore s, int from, int to, double dt, double scale) {
+		double[] vx = s.vx;
+		double[] vy = s.vy;
+		double[] ax = s.ax;
+		double[] ay = s.ay;
+		int[] species = s.species;
+		SpeciesTable.StepConstants constants = s.getSpeciesTable().getStepConstants(dt);
+		double[] inverseMass = constants.inverseMass;
+		double[] halfStepOverMass = constants.halfStepOverMass;
+		double[] forceX = s.prevPositionComponentForceX;
+		double[] forceY = s.prevPositionComponentForceY;
+		double[] normalX = s.prevNormalVelocityComponentOfForceX;
+		double[] normalY = s.prevNormalVelocityComponentOfForceY;
+		double[] drag = s.prevLinearDragCoefficient;
+		double step = scale * dt;
+
+		for (int i = from; i < to; ++i) {
+			int sp = species[i];
+			double h = scale * halfStepOverMass[sp];
+			double help1_coef = 1 - drag[i] * h;
+			double help2_coef = 1 + drag[i] * h;
+
+			ax[i] = (forceX[i] + normalX[i]) * inverseMass[sp];
+			ay[i] = (forceY[i] + normalY[i]) * inverseMass[sp];
+
+			vx[i] = (vx[i] * help1_coef + ax[i] * step) / help2_coef;
+			vy[i] = (vy[i] * help1_coef + ay[i] * step) / help2_coef;
+		}
+	}
 }
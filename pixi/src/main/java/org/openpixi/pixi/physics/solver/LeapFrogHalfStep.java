@@ -19,6 +19,8 @@
 package org.openpixi.pixi.physics.solver;
 
 import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.ParticleStore;
+import org.openpixi.pixi.physics.ParticleView;
 import org.openpixi.pixi.physics.force.Force;
 
 /**This class represents the LeapFrog algorithm and the equations that are used one can be find here:
@@ -26,13 +28,19 @@ import org.openpixi.pixi.physics.force.Force;
  * and also here:
  * http://www.artcompsci.org/vol_1/v1_web/node34.html#leapfrog-step2
  */
-public class LeapFrogHalfStep implements Solver{
+public class LeapFrogHalfStep implements RangeSolver {
 	
 	public LeapFrogHalfStep()
 	{
 		super();
 	}
 	public void step(Particle p, Force f, double dt) {
+		ParticleView view = ParticleStore.viewOf(p);
+		if (view != null) {
+			stepRange(view.getStore(), view.getIndex(), view.getIndex() + 1, f, dt);
+			return;
+		}
+
 		
 		/**
 		 * LeapFrog algorithm.
@@ -50,8 +58,9 @@ public class LeapFrogHalfStep implements Solver{
 
 		// a(t+dt) = F(v(t+dt/2), x(t+dt)) / m
 		// WARNING: Force is evaluated at two different times t+dt/2 and t+dt!
-		p.setAx(f.getForceX(p) / p.getMass());
-		p.setAy(f.getForceY(p) / p.getMass());
+		double inverseMass = 1 / p.getMass();
+		p.setAx(f.getForceX(p) * inverseMass);
+		p.setAy(f.getForceY(p) * inverseMass);
 
 		// v(t+dt) = v(t+dt/2) + a(t+dt)*dt/2
 		p.setVx(p.getVx() + p.getAx() * dt / 2.0);
@@ -65,4 +74,44 @@ public class LeapFrogHalfStep implements Solver{
 
 	public void complete(Particle p, Force f, double step){
 	}
+
+	/**
+	 * Same as step() for a range of particles of the store.
+	 * The force is evaluated after all the particles of the range have been moved.
+	 */
+	public void stepRange(ParticleStore s, int from, int to, Force f, double dt) {
+		double[] x = s.x;
+		double[] y = s.y;
+		double[] vx = s.vx;
+		double[] vy = s.vy;
+		double[] ax = s.ax;
+		double[] ay = s.ay;
+		int[] species = s.species;
+		double[] inverseMass = s.getSpeciesTable().getStepConstants(dt).inverseMass;
+
+		for (int i = from; i < to; ++i) {
+			vx[i] = vx[i] + ax[i] * dt / 2.0;
+			vy[i] = vy[i] + ay[i] * dt / 2.0;
+
+			x[i] = x[i] + vx[i] * dt;
+			y[i] = y[i] + vy[i] * dt;
+		}
+
+		RangeForces.total(s, from, to, f);
+
+		for (int i = from; i < to; ++i) {
+			double im = inverseMass[species[i]];
+			ax[i] = ax[i] * im;
+			ay[i] = ay[i] * im;
+
+			vx[i] = vx[i] + ax[i] * dt / 2.0;
+			vy[i] = vy[i] + ay[i] * dt / 2.0;
+		}
+	}
+
+	public void prepareRange(ParticleStore s, int from, int to, Force f, double step) {
+	}
+
+	public void completeRange(ParticleStore s, int from, int to, Force f, double step) {
+	}
 }
@@ -0,0 +1,100 @@
+package org.openpixi.pixi.physics.solver;
+
+import org.openpixi.pixi.physics.ParticleStore;
+import org.openpixi.pixi.physics.force.Force;
+import org.openpixi.pixi.physics.force.ForceBuffer;
+
+/**
+ * Evaluates the force components needed by the range solvers
+ * for a range of particles of a store and writes them to the arrays of the store.
+ *
+ * The components are written to the same arrays (prev... for the Boris solvers,
+ * ax and ay for the total force) in which the per particle solvers keep them.
+ * All the components of the range are evaluated in one call to a ForceBuffer
+ * (one buffer per thread, reused across the steps).
+ */
+public class RangeForces {
+
+	private static final ThreadLocal<ForceBuffer> buffers = new ThreadLocal<ForceBuffer>() {
+		@Override
+		protected ForceBuffer initialValue() {
+			return new ForceBuffer();
+		}
+	};
+
+
+	private static ForceBuffer evaluate(ParticleStore s, int from, int to, Force f) {
+		ForceBuffer b = buffers.get();
+		b.evaluate(f, s, from, to);
+		return b;
+	}
+
+
+	/**
+	 * Position dependent force, magnetic field and tangent velocity dependent force
+	 * (remembered by Boris and BorisRelativistic for complete()).
+	 */
+	public static void positionAndTangent(ParticleStore s, int from, int to, Force f) {
+		ForceBuffer b = evaluate(s, from, to, f);
+		for (int i = from; i < to; ++i) {
+			int k = i - from;
+			s.prevPositionComponentForceX[i] = b.positionComponentX[k];
+			s.prevPositionComponentForceY[i] = b.positionComponentY[k];
+			s.prevBz[i] = b.bz[k];
+			s.prevTangentVelocityComponentOfForceX[i] = b.tangentVelocityComponentX[k];
+			s.prevTangentVelocityComponentOfForceY[i] = b.tangentVelocityComponentY[k];
+		}
+	}
+
+
+	/**
+	 * Position dependent force, magnetic field and drag coefficient
+	 * (remembered by BorisDamped for complete()).
+	 */
+	public static void positionAndDrag(ParticleStore s, int from, int to, Force f) {
+		ForceBuffer b = evaluate(s, from, to, f);
+		for (int i = from; i < to; ++i) {
+			int k = i - from;
+			s.prevPositionComponentForceX[i] = b.positionComponentX[k];
+			s.prevPositionComponentForceY[i] = b.positionComponentY[k];
+			s.prevBz[i] = b.bz[k];
+			s.prevLinearDragCoefficient[i] = b.linearDragCoefficient[k];
+		}
+	}
+
+
+	/**
+	 * Position dependent force, normal velocity dependent force and drag coefficient
+	 * (remembered by LeapFrogDamped for complete()).
+	 */
+	public static void positionNormalAndDrag(ParticleStore s, int from, int to, Force f) {
+		ForceBuffer b = evaluate(s, from, to, f);
+		for (int i = from; i < to; ++i) {
+			int k = i - from;
+			s.prevPositionComponentForceX[i] = b.positionComponentX[k];
+			s.prevPositionComponentForceY[i] = b.positionComponentY[k];
+			s.prevNormalVelocityComponentOfForceX[i] = b.normalVelocityComponentX[k];
+			s.prevNormalVelocityComponentOfForceY[i] = b.normalVelocityComponentY[k];
+			s.prevLinearDragCoefficient[i] = b.linearDragCoefficient[k];
+		}
+	}
+
+
+	/**
+	 * Total force; written to the acceleration arrays (the solver multiplies it by the inverse mass).
+	 */
+	public static void total(ParticleStore s, int from, int to, Force f) {
+		ForceBuffer b = evaluate(s, from, to, f);
+		System.arraycopy(b.forceX, 0, s.ax, from, to - from);
+		System.arraycopy(b.forceY, 0, s.ay, from, to - from);
+	}
+
+
+	/**
+	 * Magnetic field at the current positions (BorisRelativistic.complete() does not use the remembered one).
+	 * The returned buffer is indexed by i - from and is valid until the next evaluation on this thread.
+	 */
+	public static double[] bz(ParticleStore s, int from, int to, Force f) {
+		return evaluate(s, from, to, f).bz;
+	}
+}
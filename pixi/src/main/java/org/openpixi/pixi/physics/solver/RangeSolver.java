@@ -0,0 +1,32 @@
+package org.openpixi.pixi.physics.solver;
+
+import org.openpixi.pixi.physics.ParticleStore;
+import org.openpixi.pixi.physics.force.Force;
+
+/**
+ * Solver which can advance a whole range of particles of a ParticleStore at once.
+ *
+ * The implementations first evaluate the forces for the range (see RangeForces)
+ * and then update the particles in tight loops over the primitive arrays of the store,
+ * multiplying by the per species constants (SpeciesTable.StepConstants) instead of
+ * dividing by the mass of each particle.
+ * The results are the same as when calling step(), prepare() and complete() for each particle;
+ * for a particle which lives in a store these methods use the range methods themselves.
+ */
+public interface RangeSolver extends Solver {
+
+	/**
+	 * Does the same as step() for the particles from (inclusive) to (exclusive) of the store.
+	 */
+	public void stepRange(ParticleStore store, int from, int to, Force f, double step);
+
+	/**
+	 * Does the same as prepare() for the particles from (inclusive) to (exclusive) of the store.
+	 */
+	public void prepareRange(ParticleStore store, int from, int to, Force f, double step);
+
+	/**
+	 * Does the same as complete() for the particles from (inclusive) to (exclusive) of the store.
+	 */
+	public void completeRange(ParticleStore store, int from, int to, Force f, double step);
+}
@@ -25,7 +25,7 @@ import org.openpixi.pixi.physics.force.Force;
  * For more information: 
  * http://en.wikipedia.org/wiki/Semi-implicit_Euler_method
  */
-public class SemiImplicitEuler implements Solver {
+public class SemiImplicitEuler implements RangeSolver {
 	
 	public SemiImplicitEuler()
 	{
@@ -39,9 +39,16 @@ public class SemiImplicitEuler implements Solver {
 	 */
 	public void step(Particle p, Force f, double step)
 	{
+		ParticleView view = ParticleStore.viewOf(p);
+		if (view != null) {
+			stepRange(view.getStore(), view.getIndex(), view.getIndex() + 1, f, step);
+			return;
+		}
+
 		//a(t) = F(v(t), x(t)) / m
-		p.setAx(f.getForceX(p) / p.getMass());
-		p.setAy(f.getForceY(p) / p.getMass());
+		double inverseMass = 1 / p.getMass();
+		p.setAx(f.getForceX(p) * inverseMass);
+		p.setAy(f.getForceY(p) * inverseMass);
 		
 		// v(t+dt) = v(t) + a(t)*dt
 		p.setVx(p.getVx() + p.getAx() * step);
@@ -58,4 +65,38 @@ public class SemiImplicitEuler implements Solver {
 
 	public void complete(Particle p, Force f, double step){
 	}
+
+	/**
+	 * Same as step() for a range of particles of the store.
+	 */
+	public void stepRange(ParticleStore s, int from, int to, Force f, double step) {
+		RangeForces.total(s, from, to, f);
+
+		double[] x = s.x;
+		double[] y = s.y;
+		double[] vx = s.vx;
+		double[] vy = s.vy;
+		double[] ax = s.ax;
+		double[] ay = s.ay;
+		int[] species = s.species;
+		double[] inverseMass = s.getSpeciesTable().getStepConstants(step).inverseMass;
+
+		for (int i = from; i < to; ++i) {
+			double im = inverseMass[species[i]];
+			ax[i] = ax[i] * im;
+			ay[i] = ay[i] * im;
+
+			vx[i] = vx[i] + ax[i] * step;
+			vy[i] = vy[i] + ay[i] * step;
+
+			x[i] = x[i] + vx[i] * step;
+			y[i] = y[i] + vy[i] * step;
+		}
+	}
+
+	public void prepareRange(ParticleStore s, int from, int to, Force f, double step) {
+	}
+
+	public void completeRange(ParticleStore s, int from, int to, Force f, double step) {
+	}
 }
@@ -21,12 +21,14 @@ package org.openpixi.pixi.physics.solver.relativistic;
 
 import org.openpixi.pixi.physics.*;
 import org.openpixi.pixi.physics.force.Force;
+import org.openpixi.pixi.physics.solver.RangeForces;
+import org.openpixi.pixi.physics.solver.RangeSolver;
 import org.openpixi.pixi.physics.solver.Solver;
 
 /**The calculation is due to Boris and the equations((7) - (10)) can be found here:
  * http://ptsg.eecs.berkeley.edu/publications/Verboncoeur2005IOP.pdf
  */
-public class BorisRelativistic implements Solver{
+public class BorisRelativistic implements RangeSolver {
 	
 	RelativisticVelocity relvelocity;
 	
@@ -34,6 +36,10 @@ public class BorisRelativistic implements Solver{
 	{
 		relvelocity = new RelativisticVelocity(c);
 	}
+
+	public RelativisticVelocity getRelativisticVelocity() {
+		return relvelocity;
+	}
 	
 	/**
 	 * Boris algorithm for implementing the electric and magnetic field.
@@ -44,13 +50,18 @@ public class BorisRelativistic implements Solver{
 	 *                 u(t) is the relativistic momentum
 	 */
 	public void step(Particle p, Force f, double step) {
+		ParticleView view = ParticleStore.viewOf(p);
+		if (view != null) {
+			stepRange(view.getStore(), view.getIndex(), view.getIndex() + 1, f, step);
+			return;
+		}
 
 		double getPositionComponentofForceX = f.getPositionComponentofForceX(p);
 		double getPositionComponentofForceY = f.getPositionComponentofForceY(p);
 		double getBz = f.getBz(p);
 		double getTangentVelocityComponentOfForceX = f.getTangentVelocityComponentOfForceX(p);
 		double getTangentVelocityComponentOfForceY = f.getTangentVelocityComponentOfForceY(p);
-		double getMass = p.getMass();
+		double inverseMass = 1 / p.getMass();
 		
 		// remember for complete()
 		p.setPrevPositionComponentForceX(getPositionComponentofForceX);
@@ -58,16 +69,19 @@ public class BorisRelativistic implements Solver{
 		p.setPrevBz(getBz);
 		p.setPrevTangentVelocityComponentOfForceX(getTangentVelocityComponentOfForceX);
 		p.setPrevTangentVelocityComponentOfForceY(getTangentVelocityComponentOfForceY);
+
+		double halfStepOverMass = 0.5 * step * inverseMass;
+		double stepOverMass = step * inverseMass;
 		
 		//calculating u(t + dt / 2). Although getV() and setV() are used, the represent the relativistic momentum, i.e. v->u
-		double uxminus = p.getVx() + getPositionComponentofForceX * step / (2.0 * getMass);
+		double uxminus = p.getVx() + getPositionComponentofForceX * halfStepOverMass;
 		
-		double uyminus = p.getVy() + getPositionComponentofForceY * step / (2.0 * getMass);
+		double uyminus = p.getVy() + getPositionComponentofForceY * halfStepOverMass;
 		
 		//gamma(t)
 		double gamma = relvelocity.calculateGamma(uxminus, uyminus);
 		
-		double t_z = p.getCharge() * getBz * step / (2.0 * getMass * gamma);   //t vector
+		double t_z = p.getCharge() * getBz * halfStepOverMass / gamma;   //t vector
 		
 		double s_z = 2 * t_z / (1 + t_z * t_z);               //s vector
 		
@@ -77,8 +91,8 @@ public class BorisRelativistic implements Solver{
 		double uxplus = uxminus + uyprime * s_z;
 		double uyplus = uyminus - uxprime * s_z;
 		
-		p.setVx(uxplus + getPositionComponentofForceX * step / (2.0 * getMass) + getTangentVelocityComponentOfForceX * step / getMass);
-		p.setVy(uyplus + getPositionComponentofForceY * step / (2.0 * getMass) + getTangentVelocityComponentOfForceY * step / getMass);
+		p.setVx(uxplus + getPositionComponentofForceX * halfStepOverMass + getTangentVelocityComponentOfForceX * stepOverMass);
+		p.setVy(uyplus + getPositionComponentofForceY * halfStepOverMass + getTangentVelocityComponentOfForceY * stepOverMass);
 		
 		//calculating gamma(t + dt / 2)
 		gamma = relvelocity.calculateGamma(p);
@@ -95,12 +109,18 @@ public class BorisRelativistic implements Solver{
 	 */
 	public void prepare(Particle p, Force f, double dt)
 	{	
+		ParticleView view = ParticleStore.viewOf(p);
+		if (view != null) {
+			prepareRange(view.getStore(), view.getIndex(), view.getIndex() + 1, f, dt);
+			return;
+		}
+
 		double getPositionComponentofForceX = f.getPositionComponentofForceX(p);
 		double getPositionComponentofForceY = f.getPositionComponentofForceY(p);
 		double getBz = f.getBz(p);
 		double getTangentVelocityComponentOfForceX = f.getTangentVelocityComponentOfForceX(p);
 		double getTangentVelocityComponentOfForceY = f.getTangentVelocityComponentOfForceY(p);
-		double getMass = p.getMass();
+		double inverseMass = 1 / p.getMass();
 		
 		// remember for complete()
 		p.setPrevPositionComponentForceX(getPositionComponentofForceX);
@@ -110,16 +130,18 @@ public class BorisRelativistic implements Solver{
 		p.setPrevTangentVelocityComponentOfForceY(getTangentVelocityComponentOfForceY);
 		
 		double step = - dt * 0.5;
+		double halfStepOverMass = 0.5 * step * inverseMass;
+		double stepOverMass = step * inverseMass;
 		
 		//calculating u(t + dt / 2). Although getV() and setV() are used, the represent the relativistic momentum, i.e. v->u
-		double uxminus = p.getVx() + getPositionComponentofForceX * step / (2.0 * getMass) + getTangentVelocityComponentOfForceX * step / getMass;
+		double uxminus = p.getVx() + getPositionComponentofForceX * halfStepOverMass + getTangentVelocityComponentOfForceX * stepOverMass;
 		
-		double uyminus = p.getVy() + getPositionComponentofForceY * step / (2.0 * getMass) + getTangentVelocityComponentOfForceY * step / getMass;
+		double uyminus = p.getVy() + getPositionComponentofForceY * halfStepOverMass + getTangentVelocityComponentOfForceY * stepOverMass;
 		
 		//gamma(t)
 		double gamma = relvelocity.calculateGamma(uxminus, uyminus);
 		
-		double t_z = p.getCharge() * getBz * step / (2.0 * getMass * gamma);   //t vector
+		double t_z = p.getCharge() * getBz * halfStepOverMass / gamma;   //t vector
 		
 		double s_z = 2 * t_z / (1 + t_z * t_z);               //s vector
 		
@@ -129,8 +151,8 @@ public class BorisRelativistic implements Solver{
 		double uxplus = uxminus + uyprime * s_z;
 		double uyplus = uyminus - uxprime * s_z;
 		
-		p.setVx(uxplus + getPositionComponentofForceX * step / (2.0 * getMass));
-		p.setVy(uyplus + getPositionComponentofForceY * step / (2.0 * getMass));
+		p.setVx(uxplus + getPositionComponentofForceX * halfStepOverMass);
+		p.setVy(uyplus + getPositionComponentofForceY * halfStepOverMass);
 	}
 
 	/**
@@ -140,18 +162,27 @@ public class BorisRelativistic implements Solver{
 	 */
 	public void complete(Particle p, Force f, double dt)
 	{
+		ParticleView view = ParticleStore.viewOf(p);
+		if (view != null) {
+			completeRange(view.getStore(), view.getIndex(), view.getIndex() + 1, f, dt);
+			return;
+		}
+
 		double getPrevPositionComponentForceX = p.getPrevPositionComponentForceX();
 		double getPrevPositionComponentForceY = p.getPrevPositionComponentForceY();
-		double getMass = p.getMass();
+		double inverseMass = 1 / p.getMass();
 		
 		dt = dt * 0.5;
-		double uxminus = p.getVx() + getPrevPositionComponentForceX * dt / (2.0 * getMass);
+		double halfStepOverMass = 0.5 * dt * inverseMass;
+		double stepOverMass = dt * inverseMass;
+
+		double uxminus = p.getVx() + getPrevPositionComponentForceX * halfStepOverMass;
 		
-		double uyminus = p.getVy() + getPrevPositionComponentForceY * dt / (2.0 * getMass);
+		double uyminus = p.getVy() + getPrevPositionComponentForceY * halfStepOverMass;
 		
 		//gamma(t)
 		double gamma = relvelocity.calculateGamma(uxminus, uyminus);
-		double t_z = p.getCharge() * f.getBz(p) * dt / (2.0 * getMass * gamma);   //t vector
+		double t_z = p.getCharge() * f.getBz(p) * halfStepOverMass / gamma;   //t vector
 		
 		double s_z = 2 * t_z / (1 + t_z * t_z);               //s vector
 		
@@ -161,7 +192,140 @@ public class BorisRelativistic implements Solver{
 		double uxplus = uxminus + uyprime * s_z;
 		double uyplus = uyminus - uxprime * s_z;
 		
-		p.setVx(uxplus + getPrevPositionComponentForceX * dt / (2.0 * getMass) + p.getPrevTangentVelocityComponentOfForceX() * dt / getMass);
-		p.setVy(uyplus + getPrevPositionComponentForceY * dt / (2.0 * getMass) + p.getPrevTangentVelocityComponentOfForceY() * dt / getMass);
+		p.setVx(uxplus + getPrevPositionComponentForceX * halfStepOverMass + p.getPrevTangentVelocityComponentOfForceX() * stepOverMass);
+		p.setVy(uyplus + getPrevPositionComponentForceY * halfStepOverMass + p.getPrevTangentVelocityComponentOfForceY() * stepOverMass);
+	}
+
+	/**
+	 * Same as step() for a range of particles of the store.
+	 */
+	public void stepRange(ParticleStore s, int from, int to, Force f, double step) {
+		RangeForces.positionAndTangent(s, from, to, f);
+
+		double[] x = s.x;
+		double[] y = s.y;
+		double[] ux = s.vx;
+		double[] uy = s.vy;
+		int[] species = s.species;
+		SpeciesTable.StepConstants constants = s.getSpeciesTable().getStepConstants(step);
+		double[] halfStepOverMass = constants.halfStepOverMass;
+		double[] stepOverMass = constants.stepOverMass;
+		double[] halfStepChargeOverMass = constants.halfStepChargeOverMass;
+		double[] forceX = s.prevPositionComponentForceX;
+		double[] forceY = s.prevPositionComponentForceY;
+		double[] bz = s.prevBz;
+		double[] tangentX = s.prevTangentVelocityComponentOfForceX;
+		double[] tangentY = s.prevTangentVelocityComponentOfForceY;
+
+		for (int i = from; i < to; ++i) {
+			int sp = species[i];
+			double h = halfStepOverMass[sp];
+			double uxminus = ux[i] + forceX[i] * h;
+			double uyminus = uy[i] + forceY[i] * h;
+
+			double gamma = relvelocity.calculateGamma(uxminus, uyminus);
+
+			double t_z = halfStepChargeOverMass[sp] * bz[i] / gamma;
+			double s_z = 2 * t_z / (1 + t_z * t_z);
+
+			double uxprime = uxminus + uyminus * t_z;
+			double uyprime = uyminus - uxminus * t_z;
+
+			double uxplus = uxminus + uyprime * s_z;
+			double uyplus = uyminus - uxprime * s_z;
+
+			ux[i] = uxplus + forceX[i] * h + tangentX[i] * stepOverMass[sp];
+			uy[i] = uyplus + forceY[i] * h + tangentY[i] * stepOverMass[sp];
+
+			gamma = relvelocity.calculateGamma(ux[i], uy[i]);
+
+			x[i] = x[i] + ux[i] * step / gamma;
+			y[i] = y[i] + uy[i] * step / gamma;
+		}
+	}
+
+	/**
+	 * Same as prepare() for a range of particles of the store.
+	 * Goes back half a time step, so the constants of dt are scaled by -1/2.
+	 */
+	public void prepareRange(ParticleStore s, int from, int to, Force f, double dt) {
+		RangeForces.positionAndTangent(s, from, to, f);
+
+		double[] ux = s.vx;
+		double[] uy = s.vy;
+		int[] species = s.species;
+		SpeciesTable.StepConstants constants = s.getSpeciesTable().getStepConstants(dt);
+		double[] halfStepOverMass = constants.halfStepOverMass;
+		double[] stepOverMass = constants.stepOverMass;
+		double[] halfStepChargeOverMass = constants.halfStepChargeOverMass;
+		double[] forceX = s.prevPositionComponentForceX;
+		double[] forceY = s.prevPositionComponentForceY;
+		double[] bz = s.prevBz;
+		double[] tangentX = s.prevTangentVelocityComponentOfForceX;
+		double[] tangentY = s.prevTangentVelocityComponentOfForceY;
+
+		for (int i = from; i < to; ++i) {
+			int sp = species[i];
+			double h = -0.5 * halfStepOverMass[sp];
+			double so = -0.5 * stepOverMass[sp];
+			double uxminus = ux[i] + forceX[i] * h + tangentX[i] * so;
+			double uyminus = uy[i] + forceY[i] * h + tangentY[i] * so;
+
+			double gamma = relvelocity.calculateGamma(uxminus, uyminus);
+
+			double t_z = -0.5 * halfStepChargeOverMass[sp] * bz[i] / gamma;
+			double s_z = 2 * t_z / (1 + t_z * t_z);
+
+			double uxprime = uxminus + uyminus * t_z;
+			double uyprime = uyminus - uxminus * t_z;
+
+			double uxplus = uxminus + uyprime * s_z;
+			double uyplus = uyminus - uxprime * s_z;
+
+			ux[i] = uxplus + forceX[i] * h;
+			uy[i] = uyplus + forceY[i] * h;
+		}
+	}
+
+	/**
+	 * Same as complete() for a range of particles of the store.
+	 * Like complete(), uses the magnetic field at the current positions.
+	 */
+	public void completeRange(ParticleStore s, int from, int to, Force f, double dt) {
+		double[] currentBz = RangeForces.bz(s, from, to, f);
+
+		double[] ux = s.vx;
+		double[] uy = s.vy;
+		int[] species = s.species;
+		SpeciesTable.StepConstants constants = s.getSpeciesTable().getStepConstants(dt);
+		double[] halfStepOverMass = constants.halfStepOverMass;
+		double[] stepOverMass = constants.stepOverMass;
+		double[] halfStepChargeOverMass = constants.halfStepChargeOverMass;
+		double[] forceX = s.prevPositionComponentForceX;
+		double[] forceY = s.prevPositionComponentForceY;
+		double[] tangentX = s.prevTangentVelocityComponentOfForceX;
+		double[] tangentY = s.prevTangentVelocityComponentOfForceY;
+
+		for (int i = from; i < to; ++i) {
+			int sp = species[i];
+			double h = 0.5 * halfStepOverMass[sp];
+			double so = 0.5 * stepOverMass[sp];
+			double uxminus = ux[i] + forceX[i] * h;
+			double uyminus = uy[i] + forceY[i] * h;
+
+			double gamma = relvelocity.calculateGamma(uxminus, uyminus);
+
+			double t_z = 0.5 * halfStepChargeOverMass[sp] * currentBz[i - from] / gamma;
+			double s_z = 2 * t_z / (1 + t_z * t_z);
+
+			double uxprime = uxminus + uyminus * t_z;
+			double uyprime = uyminus - uxminus * t_z;
+
+			double uxplus = uxminus + uyprime * s_z;
+			double uyplus = uyminus - uxprime * s_z;
+
+			ux[i] = uxplus + forceX[i] * h + tangentX[i] * so;
+			uy[i] = uyplus + forceY[i] * h + tangentY[i] * so;
+		}
 	}
 }
@@ -20,6 +20,8 @@ package org.openpixi.pixi.physics.solver.relativistic;
 
 import org.openpixi.pixi.physics.*;
 import org.openpixi.pixi.physics.force.Force;
+import org.openpixi.pixi.physics.solver.RangeForces;
+import org.openpixi.pixi.physics.solver.RangeSolver;
 import org.openpixi.pixi.physics.solver.Solver;
 
 /**This class represents the LeapFrog algorithm and the equations that are used one can be find here:
@@ -27,7 +29,7 @@ import org.openpixi.pixi.physics.solver.Solver;
  * and also here:
  * http://www.artcompsci.org/vol_1/v1_web/node34.html#leapfrog-step2
  */
-public class LeapFrogRelativistic implements Solver{
+public class LeapFrogRelativistic implements RangeSolver {
 	
 	RelativisticVelocity relvelocity;
 	
@@ -44,6 +46,12 @@ public class LeapFrogRelativistic implements Solver{
 	 *                  u(t) is the relativistic momentum
 	 */
 	public void step(Particle p, Force f, double dt) {
+		ParticleView view = ParticleStore.viewOf(p);
+		if (view != null) {
+			stepRange(view.getStore(), view.getIndex(), view.getIndex() + 1, f, dt);
+			return;
+		}
+
 		
 		double gamma = relvelocity.calculateGamma(p);
 		
@@ -53,8 +61,9 @@ public class LeapFrogRelativistic implements Solver{
 
 		// a(t+dt) = F(u(t+dt/2), x(t+dt)) / m
 		// WARNING: Force is evaluated at two different times t+dt/2 and t+dt!
-		p.setAx(f.getForceX(p) / p.getMass());
-		p.setAy(f.getForceY(p) / p.getMass());
+		double inverseMass = 1 / p.getMass();
+		p.setAx(f.getForceX(p) * inverseMass);
+		p.setAy(f.getForceY(p) * inverseMass);
 
 		// u(t+3*dt/2) = u(t+dt/2) + a(t+dt)*dt
 		p.setVx(p.getVx() + p.getAx() * dt);
@@ -68,9 +77,16 @@ public class LeapFrogRelativistic implements Solver{
 	 */
 	public void prepare(Particle p, Force f, double dt)
 	{
+		ParticleView view = ParticleStore.viewOf(p);
+		if (view != null) {
+			prepareRange(view.getStore(), view.getIndex(), view.getIndex() + 1, f, dt);
+			return;
+		}
+
 		//a(t) = F(v(t), x(t)) / m
-		p.setAx(f.getForceX(p) / p.getMass());
-		p.setAy(f.getForceY(p) / p.getMass());
+		double inverseMass = 1 / p.getMass();
+		p.setAx(f.getForceX(p) * inverseMass);
+		p.setAy(f.getForceY(p) * inverseMass);
 		
 		//v(t + dt / 2) = v(t) + a(t)*dt / 2
 		p.setVx(p.getVx() + p.getAx() * dt);
@@ -88,4 +104,73 @@ public class LeapFrogRelativistic implements Solver{
 		p.setVy(p.getVy() - p.getAy() * dt);
 	}
 
+	/**
+	 * Same as step() for a range of particles of the store.
+	 * The force is evaluated after all the particles of the range have been moved.
+	 */
+	public void stepRange(ParticleStore s, int from, int to, Force f, double dt) {
+		double[] x = s.x;
+		double[] y = s.y;
+		double[] ux = s.vx;
+		double[] uy = s.vy;
+		double[] ax = s.ax;
+		double[] ay = s.ay;
+		int[] species = s.species;
+		double[] inverseMass = s.getSpeciesTable().getStepConstants(dt).inverseMass;
+
+		for (int i = from; i < to; ++i) {
+			double gamma = relvelocity.calculateGamma(ux[i], uy[i]);
+			x[i] = x[i] + ux[i] * dt / gamma;
+			y[i] = y[i] + uy[i] * dt / gamma;
+		}
+
+		RangeForces.total(s, from, to, f);
+
+		for (int i = from; i < to; ++i) {
+			double im = inverseMass[species[i]];
+			ax[i] = ax[i] * im;
+			ay[i] = ay[i] * im;
+
+			ux[i] = ux[i] + ax[i] * dt;
+			uy[i] = uy[i] + ay[i] * dt;
+		}
+	}
+
+	/**
+	 * Same as prepare() for a range of particles of the store.
+	 */
+	public void prepareRange(ParticleStore s, int from, int to, Force f, double dt) {
+		RangeForces.total(s, from, to, f);
+
+		double[] ux = s.vx;
+		double[] uy = s.vy;
+		double[] ax = s.ax;
+		double[] ay = s.ay;
+		int[] species = s.species;
+		double[] inverseMass = s.getSpeciesTable().getStepConstants(dt).inverseMass;
+
+		for (int i = from; i < to; ++i) {
+			double im = inverseMass[species[i]];
+			ax[i] = ax[i] * im;
+			ay[i] = ay[i] * im;
+
+			ux[i] = ux[i] + ax[i] * dt;
+			uy[i] = uy[i] + ay[i] * dt;
+		}
+	}
+
+	/**
+	 * Same as complete() for a range of particles of the store.
+	 */
+	public void completeRange(ParticleStore s, int from, int to, Force f, double dt) {
+		double[] ux = s.vx;
+		double[] uy = s.vy;
+		double[] ax = s.ax;
+		double[] ay = s.ay;
+
+		for (int i = from; i < to; ++i) {
+			ux[i] = ux[i] - ax[i] * dt;
+			uy[i] = uy[i] - ay[i] * dt;
+		}
+	}
 }
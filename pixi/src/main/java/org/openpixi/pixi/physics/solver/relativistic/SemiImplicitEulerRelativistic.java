@@ -20,13 +20,15 @@ package org.openpixi.pixi.physics.solver.relativistic;
 
 import org.openpixi.pixi.physics.*;
 import org.openpixi.pixi.physics.force.Force;
+import org.openpixi.pixi.physics.solver.RangeForces;
+import org.openpixi.pixi.physics.solver.RangeSolver;
 import org.openpixi.pixi.physics.solver.Solver;
 
 /**This class represents the simple Semi Implicit Euler algorithm.
  * For more information: 
  * http://en.wikipedia.org/wiki/Semi-implicit_Euler_method
  */
-public class SemiImplicitEulerRelativistic implements Solver {
+public class SemiImplicitEulerRelativistic implements RangeSolver {
 	
 	RelativisticVelocity relvelocity;
 
@@ -45,9 +47,16 @@ public class SemiImplicitEulerRelativistic implements Solver {
 	 */
 	public void step(Particle p, Force f, double step)
 	{
+		ParticleView view = ParticleStore.viewOf(p);
+		if (view != null) {
+			stepRange(view.getStore(), view.getIndex(), view.getIndex() + 1, f, step);
+			return;
+		}
+
 		//a(t) = F(u(t), x(t)) / m
-		p.setAx(f.getForceX(p) / p.getMass());
-		p.setAy(f.getForceY(p) / p.getMass());
+		double inverseMass = 1 / p.getMass();
+		p.setAx(f.getForceX(p) * inverseMass);
+		p.setAy(f.getForceY(p) * inverseMass);
 		
 		// u(t+dt) = u(t) + a(t)*dt
 		p.setVx(p.getVx() + p.getAx() * step);
@@ -66,4 +75,40 @@ public class SemiImplicitEulerRelativistic implements Solver {
 
 	public void complete(Particle p, Force f, double step){
 	}
+
+	/**
+	 * Same as step() for a range of particles of the store.
+	 */
+	public void stepRange(ParticleStore s, int from, int to, Force f, double step) {
+		RangeForces.total(s, from, to, f);
+
+		double[] x = s.x;
+		double[] y = s.y;
+		double[] ux = s.vx;
+		double[] uy = s.vy;
+		double[] ax = s.ax;
+		double[] ay = s.ay;
+		int[] species = s.species;
+		double[] inverseMass = s.getSpeciesTable().getStepConstants(step).inverseMass;
+
+		for (int i = from; i < to; ++i) {
+			double im = inverseMass[species[i]];
+			ax[i] = ax[i] * im;
+			ay[i] = ay[i] * im;
+
+			ux[i] = ux[i] + ax[i] * step;
+			uy[i] = uy[i] + ay[i] * step;
+
+			double gamma = relvelocity.calculateGamma(ux[i], uy[i]);
+
+			x[i] = x[i] + ux[i] * step / gamma;
+			y[i] = y[i] + uy[i] * step / gamma;
+		}
+	}
+
+	public void prepareRange(ParticleStore s, int from, int to, Force f, double step) {
+	}
+
+	public void completeRange(ParticleStore s, int from, int to, Force f, double step) {
+	}
 }
@@ -2,9 +2,15 @@ package org.openpixi.pixi.physics.util;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 
 /**
  * Creates shallow field copy of source in destination class.
+ *
+ * Static fields are not copied.
+ * Neither are the fields holding instances of inner classes (e.g. the cell actions of
+ * the field solvers); these are bound to the source object, so the destination keeps
+ * the ones created by its own constructor.
  */
 public class ClassCopier {
 
@@ -36,6 +42,9 @@ public class ClassCopier {
 
 	public static <T> void copy(T source, T destination) {
 		for (Field sourceField: source.getClass().getDeclaredFields()) {
+			if (Modifier.isStatic(sourceField.getModifiers()) || isInnerClass(sourceField.getType())) {
+				continue;
+			}
 			try {
 				Field destinationField = destination.getClass().getDeclaredField(sourceField.getName());
 
@@ -50,4 +59,9 @@ public class ClassCopier {
 			}
 		}
 	}
+
+
+	private static boolean isInnerClass(Class<?> type) {
+		return type.isMemberClass() && !Modifier.isStatic(type.getModifiers());
+	}
 }
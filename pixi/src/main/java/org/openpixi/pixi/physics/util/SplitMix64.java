@@ -0,0 +1,100 @@
+package org.openpixi.pixi.physics.util;
+
+/**
+ * Small and fast splittable pseudo random number generator (SplitMix64).
+ *
+ * Independent streams are obtained either by split() or by seeding with mix() of
+ * a combination of the seed and e.g. a cell index; the latter makes the numbers
+ * of each cell independent of which thread processes the cell.
+ * Not thread safe; each thread needs its own instance.
+ */
+public class SplitMix64 {
+
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private long state;
+	private double nextGaussian;
+	private boolean hasNextGaussian = false;
+
+
+	public SplitMix64(long seed) {
+		setSeed(seed);
+	}
+
+
+	public void setSeed(long seed) {
+		state = seed;
+		hasNextGaussian = false;
+	}
+
+
+	/**
+	 * New generator with a stream independent of this one.
+	 */
+	public SplitMix64 split() {
+		return new SplitMix64(mix(nextLong()));
+	}
+
+
+	public long nextLong() {
+		state += GOLDEN_GAMMA;
+		return mix(state);
+	}
+
+
+	/**
+	 * Uniformly distributed in [0, bound).
+	 */
+	public int nextInt(int bound) {
+		return (int) (((nextLong() >>> 33) * bound) >>> 31);
+	}
+
+
+	/**
+	 * Uniformly distributed in [0, 1).
+	 */
+	public double nextDouble() {
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+
+
+	/**
+	 * Normally distributed with zero mean and unit variance (polar Box-Muller method).
+	 */
+	public double nextGaussian() {
+		if (hasNextGaussian) {
+			hasNextGaussian = false;
+			return nextGaussian;
+		}
+		double u;
+		double v;
+		double s;
+		do {
+			u = 2 * nextDouble() - 1;
+			v = 2 * nextDouble() - 1;
+			s = u * u + v * v;
+		} while (s >= 1 || s == 0);
+		double factor = Math.sqrt(-2 * Math.log(s) / s);
+		nextGaussian = v * factor;
+		hasNextGaussian = true;
+		return u * factor;
+	}
+
+
+	/**
+	 * Finalizer of SplitMix64; maps similar values to very different ones.
+	 */
+	public static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+
+	/**
+	 * Seed of the stream with the given index derived from a base seed.
+	 */
+	public static long streamSeed(long seed, long index) {
+		return mix(seed + (index + 1) * GOLDEN_GAMMA);
+	}
+}
@@ -125,7 +125,8 @@ public class MainControlApplet extends JApplet {
 	String[] collisionsString = {
 			"No collisions",
 			"All particles",
-			"Sweep & Prune"
+			"Sweep & Prune",
+			"Cell list"
 	};
 
 	String[] collisionalgorithmString = {
@@ -26,6 +26,7 @@ import org.openpixi.pixi.physics.collision.algorithms.MatrixTransformation;
 import org.openpixi.pixi.physics.collision.algorithms.SimpleCollision;
 import org.openpixi.pixi.physics.collision.algorithms.VectorTransformation;
 import org.openpixi.pixi.physics.collision.detectors.AllParticles;
+import org.openpixi.pixi.physics.collision.detectors.CellListDetector;
 import org.openpixi.pixi.physics.collision.detectors.Detector;
 import org.openpixi.pixi.physics.collision.detectors.SweepAndPrune;
 import org.openpixi.pixi.physics.force.CombinedForce;
@@ -209,7 +210,8 @@ public class Particle2DPanel extends JPanel {
 			//force.gy = -1;
 			//force.drag = 0.08;
 			s.f.add(force);
-			s.particles = InitialConditions.createRandomParticles(s.getWidth(), s.getHeight(), s.getSpeedOfLight(), 1, 1);
+			s.particles.clear();
+			s.particles.addAll(InitialConditions.createRandomParticles(s.getWidth(), s.getHeight(), s.getSpeedOfLight(), 1, 1));
 			Particle par = (Particle) s.particles.get(0);
 			par.setX(s.getWidth() * 0.5);
 			par.setY(s.getHeight() * 0.5);
@@ -329,6 +331,9 @@ public class Particle2DPanel extends JPanel {
 		case 2:
 			s.detector = new SweepAndPrune(s.particles);
 			break;
+		case 3:
+			s.detector = new CellListDetector(s.particles);
+			break;
 		}
 	}
 
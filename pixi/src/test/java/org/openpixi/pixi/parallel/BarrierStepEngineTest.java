@@ -0,0 +1,106 @@
+package org.openpixi.pixi.parallel;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Tests the dispatch of the phases and the error handling of BarrierStepEngine.
+ */
+public class BarrierStepEngineTest extends TestCase {
+
+	private static final int NUM_OF_THREADS = 4;
+
+	private BarrierStepEngine engine;
+
+
+	protected void setUp() {
+		engine = new BarrierStepEngine(NUM_OF_THREADS);
+	}
+
+
+	protected void tearDown() {
+		engine.terminate();
+	}
+
+
+	/**
+	 * Each phase is executed once by each thread and is finished when run() returns.
+	 */
+	public void testPhaseSequence() {
+		final AtomicIntegerArray executions = new AtomicIntegerArray(NUM_OF_THREADS);
+		final int numOfPhases = 100;
+		for (int i = 0; i < numOfPhases; ++i) {
+			final int expected = i;
+			engine.run(new BarrierStepEngine.Phase() {
+				public void execute(int threadIdx, int numOfThreads) {
+					assertEquals(NUM_OF_THREADS, numOfThreads);
+					executions.compareAndSet(threadIdx, expected, expected + 1);
+				}
+			});
+		}
+		for (int i = 0; i < NUM_OF_THREADS; ++i) {
+			assertEquals(numOfPhases, executions.get(i));
+		}
+	}
+
+
+	/**
+	 * Dispatching a phase from inside of a phase fails instead of deadlocking.
+	 */
+	public void testReentrantRun() {
+		try {
+			engine.run(new BarrierStepEngine.Phase() {
+				public void execute(int threadIdx, int numOfThreads) {
+					engine.run(new BarrierStepEngine.Phase() {
+						public void execute(int threadIdx, int numOfThreads) {
+						}
+					});
+				}
+			});
+			fail("The re-entrant run did not fail!");
+		} catch (RuntimeException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+
+		// The engine stays usable
+		final AtomicIntegerArray executions = new AtomicIntegerArray(NUM_OF_THREADS);
+		engine.run(new BarrierStepEngine.Phase() {
+			public void execute(int threadIdx, int numOfThreads) {
+				executions.incrementAndGet(threadIdx);
+			}
+		});
+		for (int i = 0; i < NUM_OF_THREADS; ++i) {
+			assertEquals(1, executions.get(i));
+		}
+	}
+
+
+	public void testWorkerFailure() {
+		try {
+			engine.run(new BarrierStepEngine.Phase() {
+				public void execute(int threadIdx, int numOfThreads) {
+					if (threadIdx == NUM_OF_THREADS - 1) {
+						throw new ArithmeticException();
+					}
+				}
+			});
+			fail("The failure of the worker was not reported!");
+		} catch (RuntimeException e) {
+			assertTrue(e.getCause() instanceof ArithmeticException);
+		}
+	}
+
+
+	public void testRunAfterTerminate() {
+		engine.terminate();
+		try {
+			engine.run(new BarrierStepEngine.Phase() {
+				public void execute(int threadIdx, int numOfThreads) {
+				}
+			});
+			fail("The terminated engine accepted a phase!");
+		} catch (IllegalStateException e) {
+		}
+	}
+}
@@ -3,6 +3,8 @@ package org.openpixi.pixi.parallel;
 import junit.framework.TestCase;
 import org.openpixi.pixi.physics.Settings;
 import org.openpixi.pixi.physics.Simulation;
+import org.openpixi.pixi.physics.grid.BufferedInterpolation;
+import org.openpixi.pixi.physics.grid.ChargeConservingCIC;
 import org.openpixi.pixi.physics.solver.relativistic.SemiImplicitEulerRelativistic;
 import org.openpixi.pixi.physics.util.ClassCopier;
 import org.openpixi.pixi.physics.util.ResultsComparator;
@@ -40,4 +42,86 @@ public class ParallelSimulationTest extends TestCase {
 				singleThreadedSimulation.particles, multiThreadedSimulation.particles,
 				singleThreadedSimulation.grid, multiThreadedSimulation.grid);
 	}
+
+
+	public void testDepositionBuffers() {
+		Settings defaultSettings = new Settings();
+		defaultSettings.setGridCellsX(50);
+		defaultSettings.setGridCellsY(50);
+		defaultSettings.setNumOfParticles(200);
+		defaultSettings.setIterations(100);
+		defaultSettings.setInterpolator(new ChargeConservingCIC());
+
+		Simulation singleThreadedSimulation = new Simulation(defaultSettings);
+
+		Settings bufferedSettings = ClassCopier.copy(defaultSettings);
+		bufferedSettings.setNumOfThreads(4);
+		bufferedSettings.useDepositionBuffers(true);
+		Simulation bufferedSimulation = new Simulation(bufferedSettings);
+		assertTrue(bufferedSimulation.getInterpolation() instanceof BufferedInterpolation);
+
+		singleThreadedSimulation.run();
+		bufferedSimulation.run();
+
+		bufferedSettings.terminateThreads();
+
+		ResultsComparator comparator = new ResultsComparator();
+		comparator.compare(
+				singleThreadedSimulation.particles, bufferedSimulation.particles,
+				singleThreadedSimulation.grid, bufferedSimulation.grid);
+	}
+
+
+	public void testBarrierEngine() {
+		Settings defaultSettings = new Settings();
+		defaultSettings.setGridCellsX(40);
+		defaultSettings.setGridCellsY(40);
+		defaultSettings.setNumOfParticles(100);
+		defaultSettings.setIterations(100);
+
+		Simulation singleThreadedSimulation = new Simulation(defaultSettings);
+
+		Settings barrierSettings = ClassCopier.copy(defaultSettings);
+		barrierSettings.setNumOfThreads(4);
+		barrierSettings.useBarrierEngine(true);
+		Simulation barrierSimulation = new Simulation(barrierSettings);
+
+		singleThreadedSimulation.run();
+		barrierSimulation.run();
+
+		barrierSettings.terminateThreads();
+
+		ResultsComparator comparator = new ResultsComparator();
+		comparator.compare(
+				singleThreadedSimulation.particles, barrierSimulation.particles,
+				singleThreadedSimulation.grid, barrierSimulation.grid);
+	}
+
+
+	public void testChunkedDistribution() {
+		Settings defaultSettings = new Settings();
+		defaultSettings.setGridCellsX(30);
+		defaultSettings.setGridCellsY(30);
+		defaultSettings.setNumOfParticles(150);
+		defaultSettings.setIterations(100);
+		defaultSettings.setInterpolator(new ChargeConservingCIC());
+
+		Simulation singleThreadedSimulation = new Simulation(defaultSettings);
+
+		Settings chunkedSettings = ClassCopier.copy(defaultSettings);
+		chunkedSettings.setNumOfThreads(4);
+		chunkedSettings.setParticleGrainSize(16);
+		chunkedSettings.setCellGrainSize(3);
+		Simulation chunkedSimulation = new Simulation(chunkedSettings);
+
+		singleThreadedSimulation.run();
+		chunkedSimulation.run();
+
+		chunkedSettings.terminateThreads();
+
+		ResultsComparator comparator = new ResultsComparator();
+		comparator.compare(
+				singleThreadedSimulation.particles, chunkedSimulation.particles,
+				singleThreadedSimulation.grid, chunkedSimulation.grid);
+	}
 }
@@ -0,0 +1,87 @@
+package org.openpixi.pixi.physics;
+
+import junit.framework.TestCase;
+import org.openpixi.pixi.physics.fields.PoissonSolverFFTPeriodic;
+import org.openpixi.pixi.physics.grid.CloudInCell;
+import org.openpixi.pixi.physics.grid.FlatGrid;
+import org.openpixi.pixi.physics.grid.Grid;
+import org.openpixi.pixi.physics.solver.Boris;
+import org.openpixi.pixi.physics.util.ClassCopier;
+
+/**
+ * Checks that the electrostatic step mode keeps the fields consistent
+ * with the charge density of the particles.
+ */
+public class ElectrostaticStepTest extends TestCase {
+
+	private static final double ACCURACY_LIMIT = 1e-10;
+
+
+	public void testFieldsFollowParticles() {
+		Settings settings = createSettings();
+		Simulation simulation = new Simulation(settings);
+		simulation.run();
+
+		Grid expected = settings.getGrid();
+		simulation.getInterpolation().interpolateChargedensity(simulation.particles, expected);
+		new PoissonSolverFFTPeriodic().solve(expected);
+
+		Grid grid = simulation.grid;
+		boolean hasField = false;
+		for (int x = 0; x < grid.getNumCellsX(); ++x) {
+			for (int y = 0; y < grid.getNumCellsY(); ++y) {
+				assertEquals(expected.getEx(x, y), grid.getEx(x, y), ACCURACY_LIMIT);
+				assertEquals(expected.getEy(x, y), grid.getEy(x, y), ACCURACY_LIMIT);
+				assertEquals(0.0, grid.getBz(x, y));
+				hasField |= grid.getEx(x, y) != 0;
+			}
+		}
+		assertTrue(hasField);
+	}
+
+
+	/**
+	 * The flat grid of the electrostatic simulation does without the current
+	 * and the magnetic field until the simulation leaves the electrostatic mode.
+	 */
+	public void testFlatGridWithoutCurrentAndMagneticField() {
+		Settings settings = createSettings();
+		settings.useFlatGrid(true);
+		Simulation simulation = new Simulation(settings);
+		simulation.run();
+
+		Grid expected = settings.getGrid();
+		simulation.getInterpolation().interpolateChargedensity(simulation.particles, expected);
+		new PoissonSolverFFTPeriodic().solve(expected);
+
+		FlatGrid grid = (FlatGrid) simulation.grid;
+		assertFalse(grid.hasCurrentAndMagneticField());
+		for (int x = 0; x < grid.getNumCellsX(); ++x) {
+			for (int y = 0; y < grid.getNumCellsY(); ++y) {
+				assertEquals(expected.getEx(x, y), grid.getEx(x, y), ACCURACY_LIMIT);
+				assertEquals(expected.getEy(x, y), grid.getEy(x, y), ACCURACY_LIMIT);
+				assertEquals(0.0, grid.getJx(x, y));
+				assertEquals(0.0, grid.getBz(x, y));
+			}
+		}
+
+		simulation.setStepMode(StepMode.MultiPass);
+		assertTrue(grid.hasCurrentAndMagneticField());
+		simulation.step();
+	}
+
+
+	private Settings createSettings() {
+		Settings settings = new Settings();
+		settings.setGridCellsX(16);
+		settings.setGridCellsY(16);
+		settings.setNumOfParticles(50);
+		settings.setIterations(30);
+		settings.setTimeStep(0.5);
+		settings.setBoundary(GeneralBoundaryType.Periodic);
+		settings.setParticleSolver(new Boris());
+		settings.setInterpolator(new CloudInCell());
+		settings.setStepMode(StepMode.Electrostatic);
+		return settings;
+	}
+}
@@ -0,0 +1,111 @@
+package org.openpixi.pixi.physics;
+
+import junit.framework.TestCase;
+import org.openpixi.pixi.physics.grid.ChargeConservingCIC;
+import org.openpixi.pixi.physics.solver.Boris;
+import org.openpixi.pixi.physics.solver.Euler;
+import org.openpixi.pixi.physics.solver.Solver;
+import org.openpixi.pixi.physics.solver.relativistic.BorisRelativistic;
+import org.openpixi.pixi.physics.util.ClassCopier;
+import org.openpixi.pixi.physics.util.ResultsComparator;
+
+/**
+ * Compares the fused step with the multi-pass step.
+ */
+public class FusedStepTest extends TestCase {
+
+	public void testPeriodic() {
+		compareWithMultiPass(GeneralBoundaryType.Periodic, new Boris(), 1);
+	}
+
+	public void testHardwall() {
+		compareWithMultiPass(GeneralBoundaryType.Hardwall, new Boris(), 1);
+	}
+
+	public void testRelativistic() {
+		compareWithMultiPass(GeneralBoundaryType.Periodic, new BorisRelativistic(1), 1);
+	}
+
+	public void testMultiThreaded() {
+		compareWithMultiPass(GeneralBoundaryType.Periodic, new Boris(), 4);
+	}
+
+
+	/**
+	 * The resynchronization after a change of the time step needs the fields
+	 * at the current particle positions in both modes.
+	 */
+	public void testAdaptiveTimeStep() {
+		Settings settings = createSettings(GeneralBoundaryType.Periodic, new Boris());
+		settings.useAdaptiveTimeStep(true);
+		compareWithMultiPass(settings, 1);
+	}
+
+
+	public void testSwitchingModes() {
+		Settings settings = createSettings(GeneralBoundaryType.Periodic, new Boris());
+		Simulation multiPassSimulation = new Simulation(settings);
+
+		Settings fusedSettings = ClassCopier.copy(settings);
+		fusedSettings.setStepMode(StepMode.Fused);
+		Simulation switchingSimulation = new Simulation(fusedSettings);
+
+		for (int i = 0; i < 40; ++i) {
+			if (i == 20) {
+				switchingSimulation.setStepMode(StepMode.MultiPass);
+			}
+			multiPassSimulation.step();
+			switchingSimulation.step();
+		}
+
+		new ResultsComparator().compare(
+				multiPassSimulation.particles, switchingSimulation.particles,
+				multiPassSimulation.grid, switchingSimulation.grid);
+	}
+
+
+	public void testUnsupportedSolver() {
+		Settings settings = createSettings(GeneralBoundaryType.Periodic, new Euler());
+		settings.setStepMode(StepMode.Fused);
+		assertFalse(new Simulation(settings).canUseFusedStep());
+	}
+
+
+	private void compareWithMultiPass(
+			GeneralBoundaryType boundary, Solver solver, int numOfThreads) {
+		compareWithMultiPass(createSettings(boundary, solver), numOfThreads);
+	}
+
+
+	private void compareWithMultiPass(Settings settings, int numOfThreads) {
+		Simulation multiPassSimulation = new Simulation(settings);
+
+		Settings fusedSettings = ClassCopier.copy(settings);
+		fusedSettings.setStepMode(StepMode.Fused);
+		fusedSettings.setNumOfThreads(numOfThreads);
+		Simulation fusedSimulation = new Simulation(fusedSettings);
+		assertTrue(fusedSimulation.canUseFusedStep());
+
+		multiPassSimulation.run();
+		fusedSimulation.run();
+		fusedSettings.terminateThreads();
+
+		new ResultsComparator().compare(
+				multiPassSimulation.particles, fusedSimulation.particles,
+				multiPassSimulation.grid, fusedSimulation.grid);
+	}
+
+
+	private Settings createSettings(GeneralBoundaryType boundary, Solver solver) {
+		Settings settings = new Settings();
+		settings.setGridCellsX(20);
+		settings.setGridCellsY(16);
+		settings.setNumOfParticles(100);
+		settings.setIterations(50);
+		settings.setTimeStep(0.2);
+		settings.setBoundary(boundary);
+		settings.setParticleSolver(solver);
+		settings.setInterpolator(new ChargeConservingCIC());
+		return settings;
+	}
+}
@@ -0,0 +1,77 @@
+package org.openpixi.pixi.physics;
+
+import junit.framework.TestCase;
+import org.openpixi.pixi.parallel.particleaccess.SequentialParticleIterator;
+import org.openpixi.pixi.physics.grid.Grid;
+import org.openpixi.pixi.physics.util.ClassCopier;
+import org.openpixi.pixi.physics.util.ResultsComparator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests the sorting of particles by their cells.
+ */
+public class ParticleSorterTest extends TestCase {
+
+	public void testSortByCells() {
+		Settings settings = new Settings();
+		settings.setGridCellsX(5);
+		settings.setGridCellsY(4);
+		settings.setNumOfParticles(300);
+		Grid grid = new Grid(settings);
+
+		ParticleStore store = new ParticleStore(settings.getParticles());
+		List<Particle> views = new ArrayList<Particle>(store.asList());
+		List<Particle> copies = new ArrayList<Particle>();
+		for (Particle p: views) {
+			copies.add(new Particle(p));
+		}
+
+		ParticleSorter sorter = new ParticleSorter(new SequentialParticleIterator());
+		sorter.sort(store, grid);
+
+		// Each view still belongs to the same particle
+		for (int i = 0; i < views.size(); ++i) {
+			assertEquals(copies.get(i).getX(), views.get(i).getX());
+			assertEquals(copies.get(i).getVy(), views.get(i).getVy());
+			assertEquals(copies.get(i).getCharge(), views.get(i).getCharge());
+			assertSame(views.get(i), store.get(((ParticleView) views.get(i)).getIndex()));
+		}
+
+		// Particles lie in the cells given by the offsets
+		int[] offsets = sorter.getCellOffsets();
+		assertEquals(store.size(), offsets[offsets.length - 1]);
+		for (int x = 0; x < grid.getNumCellsX(); ++x) {
+			for (int y = 0; y < grid.getNumCellsY(); ++y) {
+				int c = sorter.getCellIndex(x, y);
+				for (int i = offsets[c]; i < offsets[c + 1]; ++i) {
+					assertEquals(x, (int) (store.x[i] / grid.getCellWidth()));
+					assertEquals(y, (int) (store.y[i] / grid.getCellHeight()));
+				}
+			}
+		}
+	}
+
+
+	public void testSortedSimulation() {
+		Settings settings = new Settings();
+		settings.setGridCellsX(20);
+		settings.setGridCellsY(20);
+		settings.setNumOfParticles(100);
+		settings.setIterations(50);
+
+		Simulation simulation = new Simulation(settings);
+
+		Settings sortedSettings = ClassCopier.copy(settings);
+		sortedSettings.setParticleSortInterval(3);
+		Simulation sortedSimulation = new Simulation(sortedSettings);
+
+		simulation.run();
+		sortedSimulation.run();
+
+		new ResultsComparator().compare(
+				simulation.particles, sortedSimulation.particles,
+				simulation.grid, sortedSimulation.grid);
+	}
+}
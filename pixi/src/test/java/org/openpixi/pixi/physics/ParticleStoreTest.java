@@ -0,0 +1,153 @@
+package org.openpixi.pixi.physics;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests the structure of arrays particle store and its list adapter.
+ */
+public class ParticleStoreTest extends TestCase {
+
+	public void testViewsFollowParticles() {
+		ParticleStore store = new ParticleStore(1);
+		List<Particle> particles = store.asList();
+		for (int i = 0; i < 10; ++i) {
+			particles.add(createParticle(i));
+		}
+		assertEquals(10, store.size());
+
+		Particle fifth = particles.get(5);
+		assertSame(fifth, store.get(5));
+		assertEquals(5.0, fifth.getX());
+
+		particles.remove(particles.get(2));
+		assertSame(fifth, particles.get(4));
+		assertEquals(5.0, fifth.getX());
+		assertEquals(4, ((ParticleView) fifth).getIndex());
+
+		fifth.setVx(42);
+		assertEquals(42.0, store.vx[4]);
+	}
+
+
+	public void testRemovedViewKeepsValues() {
+		ParticleStore store = new ParticleStore();
+		List<Particle> particles = store.asList();
+		particles.add(createParticle(1));
+		particles.add(createParticle(2));
+
+		Particle removed = particles.remove(0);
+		assertEquals(1, store.size());
+		assertEquals(1.0, removed.getX());
+		assertEquals(2.0, particles.get(0).getX());
+
+		removed.setX(7);
+		assertEquals(2.0, store.x[0]);
+	}
+
+
+	public void testHeldViewIsDetachedOnRemoval() {
+		ParticleStore store = new ParticleStore();
+		List<Particle> particles = store.asList();
+		for (int i = 0; i < 3; ++i) {
+			particles.add(createParticle(i));
+		}
+		Particle first = particles.get(0);
+		Particle last = particles.get(2);
+
+		assertSame(first, particles.remove(0));
+		assertNull(((ParticleView) first).getStore());
+		assertEquals(0.0, first.getX());
+		first.setX(7);
+		assertEquals(7.0, first.getX());
+		assertEquals(1.0, store.x[0]);
+
+		store.clear();
+		assertEquals(2.0, last.getX());
+		assertEquals(2.0, last.getCharge());
+	}
+
+
+	public void testSerializesAsOrdinaryList() throws Exception {
+		ParticleStore store = new ParticleStore();
+		store.add(createParticle(3));
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(store.asList());
+		out.close();
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		List<Particle> copy = (List<Particle>) in.readObject();
+
+		assertTrue(copy instanceof ArrayList);
+		assertEquals(Particle.class, copy.get(0).getClass());
+		assertEquals(3.0, copy.get(0).getX());
+		assertEquals(3.0, copy.get(0).getCharge());
+	}
+
+
+	public void testSpecies() {
+		ParticleStore store = new ParticleStore();
+		List<Particle> particles = store.asList();
+		for (int i = 0; i < 10; ++i) {
+			particles.add(createParticle(i % 2 == 0 ? 1 : -1));
+		}
+		SpeciesTable table = store.getSpeciesTable();
+		assertEquals(2, table.size());
+		assertEquals(store.species[0], store.species[8]);
+		assertEquals(-1.0, particles.get(3).getCharge());
+
+		// Changing the charge moves the particle to another species
+		particles.get(3).setCharge(1);
+		assertEquals(store.species[0], store.species[3]);
+		particles.get(3).setMass(4);
+		assertEquals(3, table.size());
+		assertEquals(4.0, particles.get(3).getMass());
+		assertEquals(1.0, particles.get(3).getCharge());
+
+		particles.remove(0);
+		assertEquals(4.0, particles.get(2).getMass());
+
+		SpeciesTable.StepConstants constants = table.getStepConstants(0.5);
+		int id = store.species[2];
+		assertEquals(0.5 / 4, constants.stepOverMass[id], 0.0);
+		assertEquals(1 * 0.5 / (2 * 4), constants.halfStepChargeOverMass[id], 0.0);
+		assertSame(constants, table.getStepConstants(0.5));
+	}
+
+
+	/**
+	 * The particle mover, the boundaries and the interpolation work on the arrays of the store.
+	 */
+	public void testSimulationCreatesNoViews() {
+		for (GeneralBoundaryType boundary: GeneralBoundaryType.values()) {
+			Settings settings = new Settings();
+			settings.setNumOfParticles(100);
+			settings.setBoundary(boundary);
+			Simulation simulation = new Simulation(settings);
+			for (int i = 0; i < 20; ++i) {
+				simulation.step();
+			}
+			simulation.completeAllParticles();
+			simulation.prepareAllParticles();
+
+			assertEquals(0, simulation.getParticleStore().numOfViews());
+		}
+	}
+
+
+	private Particle createParticle(double value) {
+		Particle p = new Particle();
+		p.setX(value);
+		p.setY(value);
+		p.setCharge(value);
+		p.setMass(1);
+		return p;
+	}
+}
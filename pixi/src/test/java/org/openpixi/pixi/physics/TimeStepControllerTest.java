@@ -0,0 +1,112 @@
+package org.openpixi.pixi.physics;
+
+import junit.framework.TestCase;
+import org.openpixi.pixi.physics.solver.Boris;
+
+/**
+ * Tests the adaptation of the time step to the particle speeds and the Courant condition.
+ */
+public class TimeStepControllerTest extends TestCase {
+
+	private static final double CELL_SIZE = 1;
+
+
+	public void testShrinksForFastParticles() {
+		Simulation simulation = new Simulation(createSettings(1, 3));
+		simulation.step();
+
+		// 3 cells per unit of time may move 0.5 cells
+		assertEquals(0.5 / 3, simulation.tstep, 1e-12);
+		assertTrue(simulation.getTimeStepController().getMaxDisplacement(simulation.tstep) <= 0.5);
+	}
+
+
+	public void testGrowsUpToCourantLimit() {
+		Settings settings = createSettings(0.01, 0);
+		Simulation simulation = new Simulation(settings);
+
+		double previous = simulation.tstep;
+		for (int i = 0; i < 50; ++i) {
+			simulation.step();
+			assertTrue(simulation.tstep >= previous);
+			assertTrue(simulation.tstep <= 1.2 * previous + 1e-15);
+			previous = simulation.tstep;
+		}
+		// The Courant number of the field solver is the only limit
+		assertEquals(0.5, TimeStepController.getCourantNumber(simulation.grid, simulation.tstep), 1e-12);
+	}
+
+
+	/**
+	 * The Poisson solver has no Courant condition.
+	 */
+	public void testElectrostaticIgnoresCourantLimit() {
+		Settings settings = createSettings(0.01, 0);
+		settings.setStepMode(StepMode.Electrostatic);
+		Simulation simulation = new Simulation(settings);
+		for (int i = 0; i < 50; ++i) {
+			simulation.step();
+		}
+		assertTrue(TimeStepController.getCourantNumber(simulation.grid, simulation.tstep) > 0.5);
+	}
+
+
+	public void testBounds() {
+		Settings settings = createSettings(0.1, 100);
+		settings.setMinTimeStep(0.05);
+		Simulation simulation = new Simulation(settings);
+		simulation.step();
+		assertEquals(0.05, simulation.tstep, 0.0);
+
+		settings = createSettings(0.01, 0);
+		settings.setMaxTimeStep(0.02);
+		simulation = new Simulation(settings);
+		for (int i = 0; i < 10; ++i) {
+			simulation.step();
+		}
+		assertEquals(0.02, simulation.tstep, 0.0);
+	}
+
+
+	/**
+	 * Without forces the particle moves uniformly even if the time step changes
+	 * (the velocities are resynchronized).
+	 */
+	public void testUniformMotion() {
+		Settings settings = createSettings(0.01, 0.2);
+		Simulation simulation = new Simulation(settings);
+		Particle p = simulation.particles.get(0);
+		double x0 = p.getX();
+
+		double time = 0;
+		for (int i = 0; i < 30; ++i) {
+			simulation.step();
+			time += simulation.tstep;
+		}
+		assertTrue(simulation.tstep > 0.01);
+		assertEquals(0.2, p.getVx(), 1e-12);
+		assertEquals(x0 + 0.2 * time, p.getX(), 1e-12);
+	}
+
+
+	private Settings createSettings(double timeStep, double speed) {
+		Settings settings = new Settings();
+		settings.setSimulationWidth(20 * CELL_SIZE);
+		settings.setSimulationHeight(20 * CELL_SIZE);
+		settings.setGridCellsX(20);
+		settings.setGridCellsY(20);
+		settings.setTimeStep(timeStep);
+		settings.setParticleSolver(new Boris());
+		settings.useGrid(false);
+		settings.useAdaptiveTimeStep(true);
+
+		Particle p = new Particle();
+		p.setX(2);
+		p.setY(10);
+		p.setVx(speed);
+		p.setMass(1);
+		p.setCharge(0);
+		settings.addParticle(p);
+		return settings;
+	}
+}
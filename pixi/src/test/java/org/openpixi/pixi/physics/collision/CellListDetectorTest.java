@@ -0,0 +1,102 @@
+package org.openpixi.pixi.physics.collision;
+
+import junit.framework.TestCase;
+import org.openpixi.pixi.parallel.particleaccess.SequentialParticleIterator;
+import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.ParticleSorter;
+import org.openpixi.pixi.physics.ParticleStore;
+import org.openpixi.pixi.physics.Settings;
+import org.openpixi.pixi.physics.collision.detectors.CellListDetector;
+import org.openpixi.pixi.physics.collision.util.PairBuffer;
+import org.openpixi.pixi.physics.grid.Grid;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Compares the pairs found by the cell list with the pairs found by checking all pairs.
+ */
+public class CellListDetectorTest extends TestCase {
+
+	private static final int NUM_OF_PARTICLES = 400;
+	private static final double SIZE = 10;
+
+
+	public void testParticleList() {
+		List<Particle> particles = createParticles(new Random(1), 0.3);
+		CellListDetector detector = new CellListDetector(particles);
+		detector.run();
+		assertEquals(CollisionTestCommon.allPairs(particles), pairsOf(detector));
+		assertEquals(detector.getPairs().size(), detector.getOverlappedPairs().size());
+	}
+
+
+	/**
+	 * Particles with very different radii and some in the same place.
+	 */
+	public void testParticleStore() {
+		Random random = new Random(2);
+		List<Particle> particles = createParticles(random, 0.05);
+		particles.get(0).setRadius(2);
+		for (int i = 1; i < 10; ++i) {
+			particles.get(i).setX(particles.get(0).getX());
+			particles.get(i).setY(particles.get(0).getY());
+		}
+		ParticleStore store = new ParticleStore(particles);
+
+		CellListDetector detector = new CellListDetector(store.asList());
+		detector.run();
+		assertEquals(CollisionTestCommon.allPairs(particles), pairsOf(detector));
+
+		// The buffer is reused
+		detector.run();
+		assertEquals(CollisionTestCommon.allPairs(particles), pairsOf(detector));
+	}
+
+
+	public void testSortedParticles() {
+		Settings settings = new Settings();
+		settings.setSimulationWidth(SIZE);
+		settings.setSimulationHeight(SIZE);
+		settings.setGridCellsX(10);
+		settings.setGridCellsY(10);
+		settings.setNumOfParticles(0);
+		Grid grid = new Grid(settings);
+
+		ParticleStore store = new ParticleStore(createParticles(new Random(3), 0.3));
+		ParticleSorter sorter = new ParticleSorter(new SequentialParticleIterator());
+		sorter.sort(store, grid);
+
+		CellListDetector detector = new CellListDetector(store.asList());
+		detector.particlesSorted(sorter, grid);
+		detector.run();
+		assertEquals(CollisionTestCommon.allPairs(store.asList()), pairsOf(detector));
+	}
+
+
+	private List<Particle> createParticles(Random random, double maxRadius) {
+		List<Particle> particles = new ArrayList<Particle>();
+		for (int i = 0; i < NUM_OF_PARTICLES; ++i) {
+			Particle p = new Particle();
+			p.setX(SIZE * random.nextDouble());
+			p.setY(SIZE * random.nextDouble());
+			p.setRadius(maxRadius * random.nextDouble());
+			particles.add(p);
+		}
+		return particles;
+	}
+
+
+	/**
+	 * The cell list reports each pair with the lower index first.
+	 */
+	private Set<Long> pairsOf(CellListDetector detector) {
+		PairBuffer pairs = detector.getPairs();
+		for (int k = 0; k < pairs.size(); ++k) {
+			assertTrue(pairs.getFirst(k) < pairs.getSecond(k));
+		}
+		return CollisionTestCommon.toSet(pairs);
+	}
+}
@@ -0,0 +1,48 @@
+package org.openpixi.pixi.physics.collision;
+
+import junit.framework.Assert;
+import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.collision.util.LongHashSet;
+import org.openpixi.pixi.physics.collision.util.PairBuffer;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Brute force reference for the tests of the collision detectors.
+ * The pairs are represented by the keys of their particle indices (see LongHashSet.key()).
+ */
+public class CollisionTestCommon {
+
+	/**
+	 * Finds the pairs of particles with overlapping bounding boxes by checking all pairs.
+	 */
+	public static Set<Long> allPairs(List<Particle> particles) {
+		Set<Long> pairs = new HashSet<Long>();
+		for (int i = 0; i < particles.size(); ++i) {
+			for (int j = i + 1; j < particles.size(); ++j) {
+				Particle p1 = particles.get(i);
+				Particle p2 = particles.get(j);
+				double r = p1.getRadius() + p2.getRadius();
+				if (Math.abs(p1.getX() - p2.getX()) <= r && Math.abs(p1.getY() - p2.getY()) <= r) {
+					pairs.add(LongHashSet.key(i, j));
+				}
+			}
+		}
+		Assert.assertFalse(pairs.isEmpty());
+		return pairs;
+	}
+
+
+	/**
+	 * Keys of the pairs found by a detector; checks that each pair is found only once.
+	 */
+	public static Set<Long> toSet(PairBuffer buffer) {
+		Set<Long> pairs = new HashSet<Long>();
+		for (int k = 0; k < buffer.size(); ++k) {
+			Assert.assertTrue(pairs.add(LongHashSet.key(buffer.getFirst(k), buffer.getSecond(k))));
+		}
+		return pairs;
+	}
+}
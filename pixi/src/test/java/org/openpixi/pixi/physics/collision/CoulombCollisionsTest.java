@@ -0,0 +1,151 @@
+package org.openpixi.pixi.physics.collision;
+
+import junit.framework.TestCase;
+import org.openpixi.pixi.parallel.cellaccess.CellIterator;
+import org.openpixi.pixi.parallel.cellaccess.ParallelCellIterator;
+import org.openpixi.pixi.parallel.cellaccess.SequentialCellIterator;
+import org.openpixi.pixi.physics.GeneralBoundaryType;
+import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.ParticleStore;
+import org.openpixi.pixi.physics.Settings;
+import org.openpixi.pixi.physics.collision.algorithms.CoulombCollisions;
+import org.openpixi.pixi.physics.grid.Grid;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tests the conservation laws, the independence of the number of threads
+ * and the relaxation of a temperature anisotropy.
+ */
+public class CoulombCollisionsTest extends TestCase {
+
+	private static final int NUM_OF_PARTICLES = 1001;
+	private static final double SIZE = 8;
+	private static final double TIME_STEP = 0.1;
+	private static final double ACCURACY_LIMIT = 1e-10;
+
+
+	public void testConservation() {
+		List<Particle> particles = createParticles(2, 1);
+		double[] before = momentumAndEnergy(particles);
+
+		CoulombCollisions collisions = new CoulombCollisions(10, 1, new SequentialCellIterator());
+		Grid grid = createGrid();
+		for (int step = 0; step < 5; ++step) {
+			collisions.collide(particles, grid, TIME_STEP);
+		}
+
+		double[] after = momentumAndEnergy(particles);
+		for (int k = 0; k < before.length; ++k) {
+			assertEquals(before[k], after[k], ACCURACY_LIMIT * Math.max(1, Math.abs(before[k])));
+		}
+		assertTrue(particles.get(0).getVx() != createParticles(2, 1).get(0).getVx());
+	}
+
+
+	public void testIndependentOfThreads() {
+		ParticleStore sequentialStore = new ParticleStore(createParticles(2, 1));
+		ParticleStore parallelStore = new ParticleStore(createParticles(2, 1));
+
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			collide(sequentialStore.asList(), new SequentialCellIterator());
+			collide(parallelStore.asList(), new ParallelCellIterator(3, executor));
+		}
+		finally {
+			executor.shutdown();
+		}
+
+		for (int i = 0; i < NUM_OF_PARTICLES; ++i) {
+			assertEquals(sequentialStore.vx[i], parallelStore.vx[i]);
+			assertEquals(sequentialStore.vy[i], parallelStore.vy[i]);
+		}
+	}
+
+
+	public void testAnisotropyRelaxes() {
+		List<Particle> particles = createParticles(2, 0.5);
+		double initialRatio = temperatureX(particles) / temperatureY(particles);
+
+		collide(particles, new SequentialCellIterator());
+
+		double ratio = temperatureX(particles) / temperatureY(particles);
+		assertTrue(initialRatio > 10);
+		assertTrue(ratio < 2);
+	}
+
+
+	private void collide(List<Particle> particles, CellIterator cellIterator) {
+		CoulombCollisions collisions = new CoulombCollisions(10, 7, cellIterator);
+		Grid grid = createGrid();
+		for (int step = 0; step < 50; ++step) {
+			collisions.collide(particles, grid, TIME_STEP);
+		}
+	}
+
+
+	private Grid createGrid() {
+		Settings settings = new Settings();
+		settings.setBoundary(GeneralBoundaryType.Periodic);
+		settings.setSimulationWidth(SIZE);
+		settings.setSimulationHeight(SIZE);
+		settings.setGridCellsX(4);
+		settings.setGridCellsY(4);
+		settings.setNumOfParticles(0);
+		return settings.getGrid();
+	}
+
+
+	/**
+	 * Particles of two species with the given thermal speeds in x and y.
+	 */
+	private List<Particle> createParticles(double speedX, double speedY) {
+		Random random = new Random(9);
+		List<Particle> particles = new ArrayList<Particle>();
+		for (int i = 0; i < NUM_OF_PARTICLES; ++i) {
+			Particle p = new Particle();
+			p.setX(SIZE * random.nextDouble());
+			p.setY(SIZE * random.nextDouble());
+			p.setVx(speedX * random.nextGaussian());
+			p.setVy(speedY * random.nextGaussian() / 4);
+			p.setMass(i % 2 == 0 ? 1 : 3);
+			p.setCharge(i % 2 == 0 ? -1 : 1);
+			p.setRadius(0.1);
+			particles.add(p);
+		}
+		return particles;
+	}
+
+
+	private double[] momentumAndEnergy(List<Particle> particles) {
+		double[] result = new double[3];
+		for (Particle p: particles) {
+			result[0] += p.getMass() * p.getVx();
+			result[1] += p.getMass() * p.getVy();
+			result[2] += 0.5 * p.getMass() * (p.getVx() * p.getVx() + p.getVy() * p.getVy());
+		}
+		return result;
+	}
+
+
+	private double temperatureX(List<Particle> particles) {
+		double sum = 0;
+		for (Particle p: particles) {
+			sum += p.getMass() * p.getVx() * p.getVx();
+		}
+		return sum;
+	}
+
+
+	private double temperatureY(List<Particle> particles) {
+		double sum = 0;
+		for (Particle p: particles) {
+			sum += p.getMass() * p.getVy() * p.getVy();
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,104 @@
+package org.openpixi.pixi.physics.collision;
+
+import junit.framework.TestCase;
+import org.openpixi.pixi.parallel.particleaccess.ParallelParticleIterator;
+import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.Settings;
+import org.openpixi.pixi.physics.collision.algorithms.CollisionAlgorithm;
+import org.openpixi.pixi.physics.collision.algorithms.ParallelCollision;
+import org.openpixi.pixi.physics.collision.algorithms.SimpleCollision;
+import org.openpixi.pixi.physics.collision.detectors.AllParticles;
+import org.openpixi.pixi.physics.collision.util.Pair;
+import org.openpixi.pixi.physics.force.ConstantForce;
+import org.openpixi.pixi.physics.solver.Boris;
+import org.openpixi.pixi.physics.solver.Solver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The parallel resolution gives the same results as the sequential one.
+ */
+public class ParallelCollisionTest extends TestCase {
+
+	private static final int NUM_OF_PARTICLES = 500;
+	private static final double SIZE = 10;
+	private static final double TIME_STEP = 0.1;
+
+
+	public void testSameAsSequential() {
+		List<Particle> sequentialParticles = createParticles();
+		List<Particle> parallelParticles = new ArrayList<Particle>();
+		for (Particle p: sequentialParticles) {
+			parallelParticles.add(new Particle(p));
+		}
+
+		ConstantForce force = new ConstantForce();
+		force.bz = 0.5;
+		Solver solver = new Boris();
+
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			ParallelCollision parallelCollision = new ParallelCollision(
+					new SimpleCollision(), new ParallelParticleIterator(3, executor));
+			collide(new SimpleCollision(), sequentialParticles, force, solver);
+			collide(parallelCollision, parallelParticles, force, solver);
+			assertTrue(parallelCollision.getNumOfLevels() > 1);
+		}
+		finally {
+			executor.shutdown();
+		}
+
+		for (int i = 0; i < NUM_OF_PARTICLES; ++i) {
+			Particle expected = sequentialParticles.get(i);
+			Particle actual = parallelParticles.get(i);
+			assertEquals(expected.getX(), actual.getX());
+			assertEquals(expected.getY(), actual.getY());
+			assertEquals(expected.getVx(), actual.getVx());
+			assertEquals(expected.getVy(), actual.getVy());
+		}
+	}
+
+
+	public void testSettings() {
+		Settings settings = new Settings();
+		settings.setCollisionResolver(new SimpleCollision());
+		settings.useParallelCollisions(true);
+		assertTrue(settings.getCollisionAlgorithm() instanceof SimpleCollision);
+
+		settings.setNumOfThreads(2);
+		assertTrue(settings.getCollisionAlgorithm() instanceof ParallelCollision);
+		settings.terminateThreads();
+	}
+
+
+	private void collide(CollisionAlgorithm algorithm, List<Particle> particles,
+			ConstantForce force, Solver solver) {
+		AllParticles detector = new AllParticles(particles);
+		detector.run();
+		ArrayList<Pair<Particle, Particle>> pairs = detector.getOverlappedPairs();
+		assertTrue(pairs.size() > 100);
+		algorithm.collide(pairs, force, solver, TIME_STEP);
+	}
+
+
+	private List<Particle> createParticles() {
+		Random random = new Random(8);
+		List<Particle> particles = new ArrayList<Particle>();
+		for (int i = 0; i < NUM_OF_PARTICLES; ++i) {
+			Particle p = new Particle();
+			p.setX(SIZE * random.nextDouble());
+			p.setY(SIZE * random.nextDouble());
+			p.setVx(random.nextDouble() - 0.5);
+			p.setVy(random.nextDouble() - 0.5);
+			p.setRadius(0.3);
+			p.setMass(1 + random.nextDouble());
+			p.setCharge(1);
+			particles.add(p);
+		}
+		return particles;
+	}
+}
@@ -0,0 +1,56 @@
+package org.openpixi.pixi.physics.collision;
+
+import junit.framework.TestCase;
+import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.collision.detectors.SweepAndPrune;
+import org.openpixi.pixi.physics.collision.util.Pair;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the pairs found by sweep and prune with the pairs found by checking all pairs
+ * while the particles move.
+ */
+public class SweepAndPruneTest extends TestCase {
+
+	private static final int NUM_OF_PARTICLES = 300;
+	private static final int NUM_OF_STEPS = 30;
+	private static final double SIZE = 10;
+
+
+	public void testMovingParticles() {
+		Random random = new Random(4);
+		List<Particle> particles = new ArrayList<Particle>();
+		for (int i = 0; i < NUM_OF_PARTICLES; ++i) {
+			Particle p = new Particle();
+			p.setX(SIZE * random.nextDouble());
+			p.setY(SIZE * random.nextDouble());
+			p.setRadius(0.3 * random.nextDouble());
+			particles.add(p);
+		}
+		// Touching boxes overlap
+		particles.get(1).setX(particles.get(0).getX() + particles.get(0).getRadius() + particles.get(1).getRadius());
+		particles.get(1).setY(particles.get(0).getY());
+
+		SweepAndPrune detector = new SweepAndPrune(particles);
+		for (int step = 0; step < NUM_OF_STEPS; ++step) {
+			detector.run();
+			assertEquals(CollisionTestCommon.allPairs(particles),
+					CollisionTestCommon.toSet(detector.getPairs()));
+
+			List<Pair<Particle, Particle>> overlappedPairs = detector.getOverlappedPairs();
+			assertEquals(detector.getPairs().size(), overlappedPairs.size());
+			if (!overlappedPairs.isEmpty()) {
+				assertSame(particles.get(detector.getPairs().getFirst(0)), overlappedPairs.get(0).getFirst());
+			}
+
+			for (Particle p: particles) {
+				p.setX(p.getX() + 0.2 * (random.nextDouble() - 0.5));
+				p.setY(p.getY() + 0.2 * (random.nextDouble() - 0.5));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,50 @@
+package org.openpixi.pixi.physics.collision.util;
+
+import junit.framework.TestCase;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Compares the primitive hash set with a HashSet for random additions and removals.
+ */
+public class LongHashSetTest extends TestCase {
+
+	public void testRandomOperations() {
+		Random random = new Random(6);
+		LongHashSet set = new LongHashSet();
+		Set<Long> expected = new HashSet<Long>();
+
+		for (int n = 0; n < 20000; ++n) {
+			// Few distinct keys, so that the removals hit and the probe sequences collide
+			long key = LongHashSet.key(random.nextInt(40), random.nextInt(40));
+			if (random.nextBoolean()) {
+				assertEquals(expected.add(key), set.add(key));
+			}
+			else {
+				assertEquals(expected.remove(key), set.remove(key));
+			}
+			assertEquals(expected.size(), set.size());
+		}
+
+		Set<Long> actual = new HashSet<Long>();
+		for (int slot = 0; slot < set.capacity(); ++slot) {
+			if (set.getSlot(slot) != LongHashSet.EMPTY) {
+				actual.add(set.getSlot(slot));
+			}
+		}
+		assertEquals(expected, actual);
+		for (long key: expected) {
+			assertTrue(set.contains(key));
+		}
+	}
+
+
+	public void testKey() {
+		long key = LongHashSet.key(7, 3);
+		assertEquals(key, LongHashSet.key(3, 7));
+		assertEquals(3, LongHashSet.firstOf(key));
+		assertEquals(7, LongHashSet.secondOf(key));
+	}
+}
@@ -0,0 +1,216 @@
+package org.openpixi.pixi.physics.fields;
+
+import junit.framework.TestCase;
+import org.openpixi.pixi.parallel.cellaccess.ParallelCellIterator;
+import org.openpixi.pixi.parallel.cellaccess.SequentialCellIterator;
+import org.openpixi.pixi.physics.GeneralBoundaryType;
+import org.openpixi.pixi.physics.Settings;
+import org.openpixi.pixi.physics.grid.Grid;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Recovers a known potential from the charge density given by the discretized Poisson equation.
+ */
+public class PoissonSolverMultigridTest extends TestCase {
+
+	private static final double ACCURACY_LIMIT = 1e-6;
+
+
+	public void testDirichlet() {
+		checkSolution(32, 24, new PoissonSolverMultigrid());
+	}
+
+	public void testNeumann() {
+		checkSolution(32, 24, new PoissonSolverMultigrid(
+				PoissonBoundaryType.Neumann, new SequentialCellIterator()));
+	}
+
+	public void testNonSquareCells() {
+		checkSolution(16, 64, new PoissonSolverMultigrid());
+	}
+
+	public void testOddNumberOfCells() {
+		checkSolution(15, 10, new PoissonSolverMultigrid());
+		checkSolution(33, 17, new PoissonSolverMultigrid(
+				PoissonBoundaryType.Neumann, new SequentialCellIterator()));
+	}
+
+	/**
+	 * Only the long side is coarsened until the cells are about square.
+	 */
+	public void testThinGrid() {
+		checkSolution(200, 3, new PoissonSolverMultigrid(
+				PoissonBoundaryType.Neumann, new SequentialCellIterator()));
+		checkSolution(2, 90, new PoissonSolverMultigrid());
+	}
+
+	/**
+	 * The coarsest level is solved directly.
+	 */
+	public void testSmallGrid() {
+		checkSolution(3, 4, new PoissonSolverMultigrid());
+		checkSolution(1, 3, new PoissonSolverMultigrid(
+				PoissonBoundaryType.Neumann, new SequentialCellIterator()));
+	}
+
+
+	/**
+	 * Odd numbers of cells are coarsened as well; they need about as many cycles as even ones.
+	 */
+	public void testCyclesForOddNumberOfCells() {
+		int[] evenCycles = countCycles(64, 64);
+		int[] oddCycles = countCycles(63, 61);
+		for (int i = 0; i < evenCycles.length; ++i) {
+			assertTrue(oddCycles[i] <= evenCycles[i] + 2);
+		}
+	}
+
+
+	private int[] countCycles(int numCellsX, int numCellsY) {
+		int[] cycles = new int[2];
+		Grid grid = createGrid(numCellsX, numCellsY);
+		setRandomCharge(grid, new Random(7));
+		for (PoissonBoundaryType type: PoissonBoundaryType.values()) {
+			PoissonSolverMultigrid solver = new PoissonSolverMultigrid(type, new SequentialCellIterator());
+			solver.useWarmStart(false);
+			solver.solve(grid);
+			cycles[type.ordinal()] = solver.getNumOfCycles();
+		}
+		return cycles;
+	}
+
+	public void testMultiThreaded() {
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			checkSolution(32, 32, new PoissonSolverMultigrid(
+					PoissonBoundaryType.Dirichlet, new ParallelCellIterator(3, executor)));
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+
+	public void testWarmStart() {
+		Grid grid = createGrid(64, 64);
+		PoissonSolverMultigrid solver = new PoissonSolverMultigrid();
+		Random random = new Random(3);
+		setRandomCharge(grid, random);
+
+		solver.solve(grid);
+		int coldCycles = solver.getNumOfCycles();
+
+		// Small change of the charge as after a time step
+		for (int i = 0; i < 10; ++i) {
+			int x = random.nextInt(grid.getNumCellsX());
+			int y = random.nextInt(grid.getNumCellsY());
+			grid.setRho(x, y, grid.getRho(x, y) + 0.01);
+		}
+		solver.solve(grid);
+		assertTrue(solver.getNumOfCycles() < coldCycles);
+	}
+
+
+	/**
+	 * The multigrid solver is used only when set explicitly.
+	 * Each simulation gets its own copy of the solver (the copies cache different grids).
+	 */
+	public void testOptIn() {
+		Settings settings = new Settings();
+		settings.setBoundary(GeneralBoundaryType.Hardwall);
+		assertTrue(settings.getPoissonSolver() instanceof PoissonSolverFFTPeriodic);
+
+		PoissonSolverMultigrid solver = new PoissonSolverMultigrid(
+				PoissonBoundaryType.Neumann, new SequentialCellIterator());
+		settings.setPoissonSolver(solver);
+		PoissonSolverMultigrid copy = (PoissonSolverMultigrid) settings.getPoissonSolver();
+		assertNotSame(solver, copy);
+		assertNotSame(copy, settings.getPoissonSolver());
+		assertEquals(PoissonBoundaryType.Neumann, copy.getBoundaryType());
+	}
+
+
+	private void checkSolution(int numCellsX, int numCellsY, PoissonSolverMultigrid solver) {
+		Grid grid = createGrid(numCellsX, numCellsY);
+		double dx = grid.getCellWidth();
+		double dy = grid.getCellHeight();
+		double ghostSign = solver.getBoundaryType() == PoissonBoundaryType.Dirichlet ? -1 : 1;
+
+		double[][] phi = new double[numCellsX][numCellsY];
+		Random random = new Random(5);
+		double mean = 0;
+		for (int x = 0; x < numCellsX; ++x) {
+			for (int y = 0; y < numCellsY; ++y) {
+				phi[x][y] = random.nextDouble();
+				mean += phi[x][y];
+			}
+		}
+		mean /= numCellsX * numCellsY;
+		if (solver.getBoundaryType() == PoissonBoundaryType.Neumann) {
+			// The solver returns the potential with zero mean
+			for (int x = 0; x < numCellsX; ++x) {
+				for (int y = 0; y < numCellsY; ++y) {
+					phi[x][y] -= mean;
+				}
+			}
+		}
+
+		for (int x = 0; x < numCellsX; ++x) {
+			for (int y = 0; y < numCellsY; ++y) {
+				double rho = (2 * phi[x][y] - value(phi, x - 1, y, ghostSign)
+						- value(phi, x + 1, y, ghostSign)) / (dx * dx) +
+						(2 * phi[x][y] - value(phi, x, y - 1, ghostSign)
+						- value(phi, x, y + 1, ghostSign)) / (dy * dy);
+				grid.setRho(x, y, rho);
+			}
+		}
+
+		solver.solve(grid);
+
+		for (int x = 0; x < numCellsX; ++x) {
+			for (int y = 0; y < numCellsY; ++y) {
+				assertEquals(phi[x][y], grid.getPhi(x, y), ACCURACY_LIMIT);
+				double ex = -(value(phi, x + 1, y, ghostSign) - value(phi, x - 1, y, ghostSign)) / (2 * dx);
+				assertEquals(ex, grid.getEx(x, y), ACCURACY_LIMIT / dx);
+			}
+		}
+	}
+
+
+	private double value(double[][] phi, int x, int y, double ghostSign) {
+		double sign = 1;
+		if (x < 0 || x >= phi.length) {
+			x = Math.max(0, Math.min(x, phi.length - 1));
+			sign *= ghostSign;
+		}
+		if (y < 0 || y >= phi[0].length) {
+			y = Math.max(0, Math.min(y, phi[0].length - 1));
+			sign *= ghostSign;
+		}
+		return sign * phi[x][y];
+	}
+
+
+	private void setRandomCharge(Grid grid, Random random) {
+		for (int x = 0; x < grid.getNumCellsX(); ++x) {
+			for (int y = 0; y < grid.getNumCellsY(); ++y) {
+				grid.setRho(x, y, random.nextDouble() - 0.5);
+			}
+		}
+	}
+
+
+	private Grid createGrid(int numCellsX, int numCellsY) {
+		Settings settings = new Settings();
+		settings.setBoundary(GeneralBoundaryType.Hardwall);
+		settings.setGridCellsX(numCellsX);
+		settings.setGridCellsY(numCellsY);
+		settings.setSimulationWidth(numCellsX);
+		settings.setSimulationHeight(2 * numCellsY);
+		settings.setNumOfParticles(0);
+		return settings.getGrid();
+	}
+}
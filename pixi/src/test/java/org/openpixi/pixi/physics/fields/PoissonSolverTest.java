@@ -7,6 +7,8 @@ import org.openpixi.pixi.physics.Simulation;
 import org.openpixi.pixi.physics.grid.ChargeConservingCIC;
 import org.openpixi.pixi.physics.grid.Grid;
 
+import java.util.Random;
+
 public class PoissonSolverTest extends TestCase {
 
 	private double ACCURACY_LIMIT = 1.e-5;
@@ -68,6 +70,43 @@ public class PoissonSolverTest extends TestCase {
 		
 	}
 
+	/**
+	 * The potential has to fulfill the discretized Poisson equation
+	 * (up to the mean charge density which is omitted by the solver).
+	 * The second solve with a different charge distribution reuses the cached work arrays.
+	 */
+	public void testDiscretePoissonEquation() {
+		Random random = new Random(7);
+		for (int k = 0; k < 2; ++k) {
+			double mean = 0;
+			for (int i = 0; i < g.getNumCellsX(); i++) {
+				for (int j = 0; j < g.getNumCellsY(); j++) {
+					double rho = random.nextDouble() - 0.3;
+					g.setRho(i, j, rho);
+					mean += rho;
+				}
+			}
+			mean /= g.getNumCellsX() * g.getNumCellsY();
+
+			poisolver.solve(g);
+
+			double cellArea = g.getCellWidth() * g.getCellHeight();
+			for (int i = 0; i < g.getNumCellsX(); i++) {
+				for (int j = 0; j < g.getNumCellsY(); j++) {
+					double laplacian = 4 * phi(i, j) - phi(i + 1, j) - phi(i - 1, j)
+							- phi(i, j + 1) - phi(i, j - 1);
+					assertEquals(cellArea * (g.getRho(i, j) - mean), laplacian, ACCURACY_LIMIT);
+				}
+			}
+		}
+	}
+
+	private double phi(int i, int j) {
+		int columns = g.getNumCellsX();
+		int rows = g.getNumCellsY();
+		return g.getPhi((i + columns) % columns, (j + rows) % rows);
+	}
+
 	public void testFFT() {
 
 		DoubleFFT_2D fft = new DoubleFFT_2D(10,10);
@@ -0,0 +1,59 @@
+package org.openpixi.pixi.physics.fields;
+
+import junit.framework.TestCase;
+import org.openpixi.pixi.physics.GeneralBoundaryType;
+import org.openpixi.pixi.physics.Settings;
+import org.openpixi.pixi.physics.Simulation;
+import org.openpixi.pixi.physics.grid.ChargeConservingCIC;
+import org.openpixi.pixi.physics.solver.Boris;
+import org.openpixi.pixi.physics.util.ClassCopier;
+import org.openpixi.pixi.physics.util.ResultsComparator;
+
+/**
+ * Compares the tiled solver on the flat grid with the simple solver on the cell grid.
+ */
+public class TiledSolverTest extends TestCase {
+
+	public void testPeriodic() {
+		compareWithSimpleSolver(GeneralBoundaryType.Periodic, 1);
+	}
+
+	public void testHardwall() {
+		compareWithSimpleSolver(GeneralBoundaryType.Hardwall, 1);
+	}
+
+	public void testPeriodicMultiThreaded() {
+		compareWithSimpleSolver(GeneralBoundaryType.Periodic, 3);
+	}
+
+
+	private void compareWithSimpleSolver(GeneralBoundaryType boundary, int numOfThreads) {
+		Settings settings = new Settings();
+		settings.setGridCellsX(20);
+		settings.setGridCellsY(16);
+		settings.setNumOfParticles(100);
+		settings.setIterations(50);
+		settings.setTimeStep(0.2);
+		settings.setBoundary(boundary);
+		settings.setParticleSolver(new Boris());
+		settings.setInterpolator(new ChargeConservingCIC());
+		settings.setGridSolver(new SimpleSolver());
+
+		Simulation simpleSimulation = new Simulation(settings);
+
+		Settings tiledSettings = ClassCopier.copy(settings);
+		tiledSettings.useFlatGrid(true);
+		tiledSettings.setNumOfThreads(numOfThreads);
+		// Small tiles so that the grid is split into several of them
+		tiledSettings.setGridSolver(new TiledSolver(5));
+		Simulation tiledSimulation = new Simulation(tiledSettings);
+
+		simpleSimulation.run();
+		tiledSimulation.run();
+		tiledSettings.terminateThreads();
+
+		new ResultsComparator().compare(
+				simpleSimulation.particles, tiledSimulation.particles,
+				simpleSimulation.grid, tiledSimulation.grid);
+	}
+}
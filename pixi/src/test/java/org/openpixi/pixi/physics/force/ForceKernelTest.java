@@ -0,0 +1,124 @@
+package org.openpixi.pixi.physics.force;
+
+import junit.framework.TestCase;
+import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.ParticleStore;
+import org.openpixi.pixi.physics.Settings;
+import org.openpixi.pixi.physics.force.relativistic.ConstantForceRelativistic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the force components evaluated into a ForceBuffer
+ * with the ones returned by the getters of the Force interface.
+ */
+public class ForceKernelTest extends TestCase {
+
+	private static final int NUM_OF_PARTICLES = 20;
+
+
+	public void testBufferMatchesGetters() {
+		ConstantForceRelativistic relativistic = new ConstantForceRelativistic(10);
+		relativistic.drag = 0.2;
+		relativistic.bz = -0.3;
+
+		CombinedForce force = new CombinedForce();
+		force.add(createConstantForce(0.1, 0.4));
+		force.add(new SimpleGridForce());
+		// Only zero coefficients
+		force.add(new ConstantForce());
+		force.add(relativistic);
+		// No kernel
+		force.add(new SpringForce());
+
+		ParticleStore store = new ParticleStore(createParticles());
+		ForceBuffer buffer = new ForceBuffer();
+		// A larger range first to check that the buffer is cleared
+		buffer.evaluate(force, store, 0, NUM_OF_PARTICLES);
+		buffer.evaluate(force, store, 3, 17);
+
+		for (int i = 3; i < 17; ++i) {
+			Particle p = store.get(i);
+			int k = i - 3;
+			assertEquals(force.getPositionComponentofForceX(p), buffer.positionComponentX[k], 0.0);
+			assertEquals(force.getPositionComponentofForceY(p), buffer.positionComponentY[k], 0.0);
+			assertEquals(force.getTangentVelocityComponentOfForceX(p), buffer.tangentVelocityComponentX[k], 0.0);
+			assertEquals(force.getTangentVelocityComponentOfForceY(p), buffer.tangentVelocityComponentY[k], 0.0);
+			assertEquals(force.getNormalVelocityComponentofForceX(p), buffer.normalVelocityComponentX[k], 0.0);
+			assertEquals(force.getNormalVelocityComponentofForceY(p), buffer.normalVelocityComponentY[k], 0.0);
+			assertEquals(force.getBz(p), buffer.bz[k], 0.0);
+			assertEquals(force.getLinearDragCoefficient(p), buffer.linearDragCoefficient[k], 0.0);
+			assertEquals(force.getForceX(p), buffer.forceX[k], 0.0);
+			assertEquals(force.getForceY(p), buffer.forceY[k], 0.0);
+		}
+	}
+
+
+	public void testFoldConstantForces() {
+		ConstantForce first = createConstantForce(0.1, 0.4);
+		ConstantForce second = createConstantForce(-0.7, 0.2);
+		Settings settings = new Settings();
+		settings.addForce(first);
+		settings.addForce(new SimpleGridForce());
+		settings.addForce(second);
+
+		CombinedForce force = settings.getForce();
+		assertEquals(2, force.forces.size());
+		assertTrue(force.forces.get(1) instanceof SimpleGridForce);
+		// The forces of the settings are not modified
+		assertEquals(0.1, first.gx, 0.0);
+
+		for (Particle p: createParticles()) {
+			assertEquals(first.getForceX(p) + p.getCharge() * (p.getEx() + p.getVy() * p.getBz())
+					+ second.getForceX(p), force.getForceX(p), 1e-12);
+			assertEquals(first.getTangentVelocityComponentOfForceY(p)
+					+ second.getTangentVelocityComponentOfForceY(p),
+					force.getTangentVelocityComponentOfForceY(p), 1e-12);
+			assertEquals(first.getBz(p) + p.getBz() + second.getBz(p), force.getBz(p), 1e-12);
+		}
+	}
+
+
+	public void testSingleConstantForceIsKept() {
+		ConstantForce constantForce = createConstantForce(0.1, 0.4);
+		Settings settings = new Settings();
+		settings.addForce(constantForce);
+		settings.addForce(new SimpleGridForce());
+
+		assertSame(constantForce, settings.getForce().forces.get(0));
+	}
+
+
+	private ConstantForce createConstantForce(double g, double b) {
+		ConstantForce force = new ConstantForce();
+		force.gx = g;
+		force.gy = -g;
+		force.ex = 2 * g;
+		force.ey = 0.3;
+		force.bz = b;
+		force.drag = 0.05;
+		return force;
+	}
+
+
+	private List<Particle> createParticles() {
+		Random random = new Random(13);
+		List<Particle> particles = new ArrayList<Particle>();
+		for (int i = 0; i < NUM_OF_PARTICLES; ++i) {
+			Particle p = new Particle();
+			p.setX(10 * random.nextDouble());
+			p.setY(10 * random.nextDouble());
+			p.setVx(random.nextDouble() - 0.5);
+			p.setVy(random.nextDouble() - 0.5);
+			p.setMass(1 + random.nextDouble());
+			p.setCharge(random.nextDouble() - 0.5);
+			p.setEx(random.nextDouble());
+			p.setEy(random.nextDouble());
+			p.setBz(random.nextDouble());
+			particles.add(p);
+		}
+		return particles;
+	}
+}
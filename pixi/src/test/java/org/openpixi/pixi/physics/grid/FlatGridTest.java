@@ -0,0 +1,57 @@
+package org.openpixi.pixi.physics.grid;
+
+import junit.framework.TestCase;
+import org.openpixi.pixi.physics.GeneralBoundaryType;
+import org.openpixi.pixi.physics.Settings;
+import org.openpixi.pixi.physics.Simulation;
+import org.openpixi.pixi.physics.solver.Boris;
+import org.openpixi.pixi.physics.util.ClassCopier;
+import org.openpixi.pixi.physics.util.ResultsComparator;
+
+/**
+ * Runs the same simulation with the cell based grid and with the flat array grid
+ * and compares the results.
+ */
+public class FlatGridTest extends TestCase {
+
+	public void testPeriodic() {
+		compareWithCellGrid(GeneralBoundaryType.Periodic, 1);
+	}
+
+	public void testHardwall() {
+		compareWithCellGrid(GeneralBoundaryType.Hardwall, 1);
+	}
+
+	public void testPeriodicMultiThreaded() {
+		compareWithCellGrid(GeneralBoundaryType.Periodic, 4);
+	}
+
+
+	private void compareWithCellGrid(GeneralBoundaryType boundary, int numOfThreads) {
+		Settings settings = new Settings();
+		settings.setGridCellsX(20);
+		settings.setGridCellsY(16);
+		settings.setNumOfParticles(100);
+		settings.setIterations(50);
+		settings.setTimeStep(0.2);
+		settings.setBoundary(boundary);
+		settings.setParticleSolver(new Boris());
+		settings.setInterpolator(new ChargeConservingCIC());
+
+		Simulation cellSimulation = new Simulation(settings);
+
+		Settings flatSettings = ClassCopier.copy(settings);
+		flatSettings.useFlatGrid(true);
+		flatSettings.setNumOfThreads(numOfThreads);
+		Simulation flatSimulation = new Simulation(flatSettings);
+		assertTrue(flatSimulation.grid instanceof FlatGrid);
+
+		cellSimulation.run();
+		flatSimulation.run();
+		flatSettings.terminateThreads();
+
+		new ResultsComparator().compare(
+				cellSimulation.particles, flatSimulation.particles,
+				cellSimulation.grid, flatSimulation.grid);
+	}
+}
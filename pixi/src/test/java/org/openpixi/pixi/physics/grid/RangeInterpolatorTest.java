@@ -0,0 +1,141 @@
+package org.openpixi.pixi.physics.grid;
+
+import junit.framework.TestCase;
+import org.openpixi.pixi.parallel.particleaccess.SequentialParticleIterator;
+import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.ParticleStore;
+import org.openpixi.pixi.physics.Settings;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the range methods of the interpolation algorithms
+ * with the methods for the individual particles.
+ */
+public class RangeInterpolatorTest extends TestCase {
+
+	private static final int NUM_OF_PARTICLES = 50;
+
+
+	public void testCloudInCell() {
+		compareWithParticles(new CloudInCell());
+	}
+
+	public void testChargeConservingCIC() {
+		compareWithParticles(new ChargeConservingCIC());
+	}
+
+
+	/**
+	 * The interpolation uses the range methods for the particles of a store
+	 * and the particle methods for other lists.
+	 */
+	public void testLocalInterpolation() {
+		Settings settings = GridTestCommon.getCommonSettings();
+		Grid grid = createGrid(settings);
+		Grid expectedGrid = createGrid(settings);
+		List<Particle> particles = createParticles(settings);
+		ParticleStore store = new ParticleStore(particles);
+
+		Interpolation interpolation = new LocalInterpolation(
+				new ChargeConservingCIC(), new SequentialParticleIterator());
+		interpolation.interpolateToParticle(particles, expectedGrid);
+		interpolation.interpolateToParticle(store.asList(), grid);
+		interpolation.interpolateToGrid(particles, expectedGrid, settings.getTimeStep());
+		interpolation.interpolateToGrid(store.asList(), grid, settings.getTimeStep());
+		interpolation.interpolateChargedensity(particles, expectedGrid);
+		interpolation.interpolateChargedensity(store.asList(), grid);
+
+		assertSameFields(particles, store);
+		assertSameDeposit(expectedGrid, grid);
+	}
+
+
+	private void compareWithParticles(RangeInterpolator interpolator) {
+		Settings settings = GridTestCommon.getCommonSettings();
+		Grid grid = createGrid(settings);
+		Grid expectedGrid = createGrid(settings);
+		List<Particle> particles = createParticles(settings);
+		ParticleStore store = new ParticleStore(particles);
+
+		for (Particle p: particles) {
+			interpolator.interpolateToParticle(p, expectedGrid);
+			interpolator.interpolateToGrid(p, expectedGrid, settings.getTimeStep());
+			interpolator.interpolateChargedensity(p, expectedGrid);
+		}
+		// Two ranges to check the range boundaries
+		int half = NUM_OF_PARTICLES / 2;
+		interpolator.interpolateToParticle(store, 0, half, grid);
+		interpolator.interpolateToParticle(store, half, NUM_OF_PARTICLES, grid);
+		interpolator.interpolateToGrid(store, 0, half, grid, settings.getTimeStep());
+		interpolator.interpolateToGrid(store, half, NUM_OF_PARTICLES, grid, settings.getTimeStep());
+		interpolator.interpolateChargedensity(store, 0, half, grid);
+		interpolator.interpolateChargedensity(store, half, NUM_OF_PARTICLES, grid);
+
+		assertSameFields(particles, store);
+		assertSameDeposit(expectedGrid, grid);
+	}
+
+
+	private void assertSameFields(List<Particle> expected, ParticleStore store) {
+		for (int i = 0; i < NUM_OF_PARTICLES; ++i) {
+			assertEquals(expected.get(i).getEx(), store.Ex[i], 0.0);
+			assertEquals(expected.get(i).getEy(), store.Ey[i], 0.0);
+			assertEquals(expected.get(i).getBz(), store.Bz[i], 0.0);
+		}
+	}
+
+
+	private void assertSameDeposit(Grid expected, Grid actual) {
+		for (int x = 0; x < expected.getNumCellsX(); x++) {
+			for (int y = 0; y < expected.getNumCellsY(); y++) {
+				assertEquals(expected.getJx(x, y), actual.getJx(x, y), 0.0);
+				assertEquals(expected.getJy(x, y), actual.getJy(x, y), 0.0);
+				assertEquals(expected.getRho(x, y), actual.getRho(x, y), 0.0);
+			}
+		}
+	}
+
+
+	/**
+	 * Both grids get the same random fields.
+	 */
+	private Grid createGrid(Settings settings) {
+		Random random = new Random(5);
+		Grid grid = new Grid(settings);
+		for (int x = 0; x < grid.getNumCellsX(); x++) {
+			for (int y = 0; y < grid.getNumCellsY(); y++) {
+				grid.setEx(x, y, random.nextDouble() - 0.5);
+				grid.setEy(x, y, random.nextDouble() - 0.5);
+				grid.setBz(x, y, random.nextDouble() - 0.5);
+				grid.setBzo(x, y, random.nextDouble() - 0.5);
+			}
+		}
+		grid.fillGhostFields();
+		return grid;
+	}
+
+
+	/**
+	 * Particles which moved less than half a cell in each direction.
+	 */
+	private List<Particle> createParticles(Settings settings) {
+		Random random = new Random(7);
+		List<Particle> particles = new ArrayList<Particle>();
+		for (int i = 0; i < NUM_OF_PARTICLES; ++i) {
+			Particle p = new Particle();
+			p.setX(settings.getSimulationWidth() * random.nextDouble());
+			p.setY(settings.getSimulationHeight() * random.nextDouble());
+			p.setPrevX(p.getX() + random.nextDouble() - 0.5);
+			p.setPrevY(p.getY() + random.nextDouble() - 0.5);
+			p.setVx(random.nextDouble() - 0.5);
+			p.setVy(random.nextDouble() - 0.5);
+			p.setMass(1);
+			p.setCharge(random.nextDouble() - 0.5);
+			particles.add(p);
+		}
+		return particles;
+	}
+}
@@ -0,0 +1,140 @@
+package org.openpixi.pixi.physics.movement;
+
+import junit.framework.TestCase;
+import org.openpixi.pixi.parallel.particleaccess.SequentialParticleIterator;
+import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.ParticleStore;
+import org.openpixi.pixi.physics.Settings;
+import org.openpixi.pixi.physics.Simulation;
+import org.openpixi.pixi.physics.Species;
+import org.openpixi.pixi.physics.force.ConstantForce;
+import org.openpixi.pixi.physics.grid.ChargeConservingCIC;
+import org.openpixi.pixi.physics.grid.GridTestCommon;
+import org.openpixi.pixi.physics.movement.boundary.ParticleBoundaryType;
+import org.openpixi.pixi.physics.movement.boundary.SimpleParticleBoundaries;
+import org.openpixi.pixi.physics.solver.Boris;
+import org.openpixi.pixi.physics.util.DoubleBox;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks that a sub-cycled species moves as if pushed with the longer time step
+ * and deposits its current only in the steps of the push.
+ */
+public class SubCyclingTest extends TestCase {
+
+	private static final Species ELECTRON = new Species(1, -1, 0.1);
+	private static final Species ION = new Species(100, 1, 0.1);
+	private static final int ION_PUSH_INTERVAL = 4;
+	private static final double TIME_STEP = 0.1;
+	private static final double ACCURACY_LIMIT = 1e-12;
+
+
+	public void testParticleStore() {
+		List<Particle> particles = new ParticleStore(createParticles()).asList();
+		checkPushes(particles);
+	}
+
+
+	public void testParticleList() {
+		checkPushes(createParticles());
+	}
+
+
+	public void testCurrentOnlyInPushSteps() {
+		Settings settings = GridTestCommon.getCommonSettings();
+		settings.setInterpolator(new ChargeConservingCIC());
+		settings.setPushInterval(ION, 3);
+		for (Particle p: createParticles()) {
+			if (p.getMass() == ION.getMass()) {
+				settings.addParticle(p);
+			}
+		}
+		Simulation simulation = new Simulation(settings);
+
+		for (int step = 0; step < 6; ++step) {
+			simulation.step();
+			double jx = GridTestCommon.getJxSum(simulation.grid);
+			if (step % 3 == 0) {
+				assertTrue(jx != 0);
+			} else {
+				assertEquals(0.0, jx, 0.0);
+			}
+		}
+	}
+
+
+	private void checkPushes(List<Particle> particles) {
+		ConstantForce force = new ConstantForce();
+		force.ex = 0.5;
+		force.bz = 0.2;
+		ParticleMover mover = createMover();
+		Map<Species, Integer> intervals = new HashMap<Species, Integer>();
+		intervals.put(ION, ION_PUSH_INTERVAL);
+		mover.setSubCycling(new SubCycling(intervals));
+
+		List<Particle> expected = createParticles();
+		ParticleMover referenceMover = createMover();
+
+		for (int step = 0; step < 2 * ION_PUSH_INTERVAL; ++step) {
+			mover.push(particles, force, TIME_STEP);
+
+			for (Particle p: expected) {
+				if (p.getMass() != ION.getMass()) {
+					push(referenceMover, p, force, TIME_STEP);
+				} else if (step % ION_PUSH_INTERVAL == 0) {
+					push(referenceMover, p, force, ION_PUSH_INTERVAL * TIME_STEP);
+				}
+			}
+
+			for (int i = 0; i < particles.size(); ++i) {
+				Particle p = particles.get(i);
+				assertEquals(expected.get(i).getX(), p.getX(), ACCURACY_LIMIT);
+				assertEquals(expected.get(i).getY(), p.getY(), ACCURACY_LIMIT);
+				assertEquals(expected.get(i).getVx(), p.getVx(), ACCURACY_LIMIT);
+				if (p.getMass() == ION.getMass() && step % ION_PUSH_INTERVAL != 0) {
+					// Not moved => no current
+					assertEquals(p.getX(), p.getPrevX(), 0.0);
+					assertEquals(p.getY(), p.getPrevY(), 0.0);
+				}
+			}
+		}
+	}
+
+
+	private void push(ParticleMover mover, Particle p, ConstantForce force, double step) {
+		List<Particle> single = new ArrayList<Particle>();
+		single.add(p);
+		mover.push(single, force, step);
+	}
+
+
+	private ParticleMover createMover() {
+		return new ParticleMover(
+				new Boris(),
+				new SimpleParticleBoundaries(
+						new DoubleBox(0, 10, 0, 10), ParticleBoundaryType.Periodic),
+				new SequentialParticleIterator());
+	}
+
+
+	private List<Particle> createParticles() {
+		List<Particle> particles = new ArrayList<Particle>();
+		for (int i = 0; i < 10; ++i) {
+			Species species = (i % 3 == 0) ? ION : ELECTRON;
+			Particle p = new Particle();
+			p.setX(1 + 0.8 * i);
+			p.setY(2 + 0.5 * i);
+			p.setVx(0.3 - 0.05 * i);
+			p.setVy(0.1 * (i % 4));
+			p.setMass(species.getMass());
+			p.setCharge(species.getCharge());
+			p.setRadius(species.getRadius());
+			particles.add(p);
+		}
+		return particles;
+	}
+}
@@ -0,0 +1,260 @@
+package org.openpixi.pixi.physics.solver;
+
+import junit.framework.TestCase;
+import org.openpixi.pixi.parallel.particleaccess.SequentialParticleIterator;
+import org.openpixi.pixi.physics.Particle;
+import org.openpixi.pixi.physics.ParticleStore;
+import org.openpixi.pixi.physics.force.CombinedForce;
+import org.openpixi.pixi.physics.force.ConstantForce;
+import org.openpixi.pixi.physics.force.Force;
+import org.openpixi.pixi.physics.force.SimpleGridForce;
+import org.openpixi.pixi.physics.movement.ParticleMover;
+import org.openpixi.pixi.physics.movement.boundary.ParticleBoundaryType;
+import org.openpixi.pixi.physics.movement.boundary.SimpleParticleBoundaries;
+import org.openpixi.pixi.physics.solver.relativistic.BorisRelativistic;
+import org.openpixi.pixi.physics.solver.relativistic.LeapFrogRelativistic;
+import org.openpixi.pixi.physics.solver.relativistic.SemiImplicitEulerRelativistic;
+import org.openpixi.pixi.physics.util.DoubleBox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the range methods of the solvers with the methods for the individual particles.
+ * The range methods use the per species constants, the particle methods the inverse mass
+ * of each particle, so the results agree up to rounding.
+ */
+public class RangeSolverTest extends TestCase {
+
+	private static final int NUM_OF_PARTICLES = 20;
+	private static final int NUM_OF_STEPS = 10;
+	private static final double TIME_STEP = 0.1;
+	private static final double ACCURACY_LIMIT = 1e-12;
+
+
+	public void testBoris() {
+		compareWithStep(new Boris());
+	}
+
+	public void testBorisDamped() {
+		compareWithStep(new BorisDamped());
+	}
+
+	public void testEuler() {
+		compareWithStep(new Euler());
+	}
+
+	public void testEulerRichardson() {
+		compareWithStep(new EulerRichardson());
+	}
+
+	public void testBorisRelativistic() {
+		compareWithStep(new BorisRelativistic(10));
+	}
+
+	public void testLeapFrog() {
+		compareWithStep(new LeapFrog());
+	}
+
+	public void testLeapFrogDamped() {
+		compareWithStep(new LeapFrogDamped());
+	}
+
+	public void testLeapFrogHalfStep() {
+		compareWithStep(new LeapFrogHalfStep());
+	}
+
+	public void testLeapFrogRelativistic() {
+		compareWithStep(new LeapFrogRelativistic(10));
+	}
+
+	public void testSemiImplicitEuler() {
+		compareWithStep(new SemiImplicitEuler());
+	}
+
+	public void testSemiImplicitEulerRelativistic() {
+		compareWithStep(new SemiImplicitEulerRelativistic(10));
+	}
+
+
+	/**
+	 * The mover uses the range step for the particles of a store
+	 * and the particle step for other lists.
+	 */
+	public void testParticleMover() {
+		compareMoverWithStep(ParticleBoundaryType.Hardwall);
+	}
+
+	/**
+	 * The periodic boundary works directly with the arrays of the store.
+	 */
+	public void testParticleMoverPeriodic() {
+		compareMoverWithStep(ParticleBoundaryType.Periodic);
+	}
+
+
+	private void compareMoverWithStep(ParticleBoundaryType boundaryType) {
+		Force force = createForce();
+		List<Particle> particles = createParticles();
+		// Fast enough to cross the boundaries
+		for (Particle p: particles) {
+			p.setVx(20 * p.getVx());
+			p.setVy(20 * p.getVy());
+		}
+		ParticleStore store = new ParticleStore(particles);
+
+		ParticleMover mover = new ParticleMover(
+				new Boris(),
+				new SimpleParticleBoundaries(new DoubleBox(0, 10, 0, 10), boundaryType),
+				new SequentialParticleIterator());
+		for (int i = 0; i < NUM_OF_STEPS; ++i) {
+			mover.push(particles, force, TIME_STEP);
+			mover.push(store.asList(), force, TIME_STEP);
+		}
+
+		for (int i = 0; i < NUM_OF_PARTICLES; ++i) {
+			assertSameState(particles.get(i), store.get(i));
+			assertEquals(particles.get(i).getPrevX(), store.prevX[i], ACCURACY_LIMIT);
+		}
+	}
+
+
+	/**
+	 * Runs prepare, the steps and complete on ordinary particles, on a store with the range methods
+	 * and on the views of another store (whose particle methods use the range methods).
+	 */
+	private void compareWithStep(RangeSolver solver) {
+		Force force = createForce();
+		List<Particle> particles = createParticles();
+		ParticleStore store = new ParticleStore(particles);
+		ParticleStore viewStore = new ParticleStore(particles);
+		// Two ranges to check the range boundaries
+		int half = NUM_OF_PARTICLES / 2;
+
+		for (int i = 0; i < NUM_OF_PARTICLES; ++i) {
+			solver.prepare(particles.get(i), force, TIME_STEP);
+			solver.prepare(viewStore.get(i), force, TIME_STEP);
+		}
+		solver.prepareRange(store, 0, half, force, TIME_STEP);
+		solver.prepareRange(store, half, NUM_OF_PARTICLES, force, TIME_STEP);
+
+		for (int step = 0; step < NUM_OF_STEPS; ++step) {
+			for (int i = 0; i < NUM_OF_PARTICLES; ++i) {
+				solver.step(particles.get(i), force, TIME_STEP);
+				solver.step(viewStore.get(i), force, TIME_STEP);
+			}
+			solver.stepRange(store, 0, half, force, TIME_STEP);
+			solver.stepRange(store, half, NUM_OF_PARTICLES, force, TIME_STEP);
+		}
+
+		for (int i = 0; i < NUM_OF_PARTICLES; ++i) {
+			solver.complete(particles.get(i), force, TIME_STEP);
+			solver.complete(viewStore.get(i), force, TIME_STEP);
+		}
+		solver.completeRange(store, 0, half, force, TIME_STEP);
+		solver.completeRange(store, half, NUM_OF_PARTICLES, force, TIME_STEP);
+
+		for (int i = 0; i < NUM_OF_PARTICLES; ++i) {
+			assertSameState(particles.get(i), store.get(i));
+			assertSameState(particles.get(i), viewStore.get(i));
+		}
+	}
+
+
+	private void assertSameState(Particle expected, Particle actual) {
+		assertEquals(expected.getX(), actual.getX(), ACCURACY_LIMIT);
+		assertEquals(expected.getY(), actual.getY(), ACCURACY_LIMIT);
+		assertEquals(expected.getVx(), actual.getVx(), ACCURACY_LIMIT);
+		assertEquals(expected.getVy(), actual.getVy(), ACCURACY_LIMIT);
+		assertEquals(expected.getAx(), actual.getAx(), ACCURACY_LIMIT);
+		assertEquals(expected.getAy(), actual.getAy(), ACCURACY_LIMIT);
+	}
+
+
+	private Force createForce() {
+		ConstantForce constantForce = new ConstantForce();
+		constantForce.gx = 0.1;
+		constantForce.gy = -0.2;
+		constantForce.ex = 0.3;
+		constantForce.bz = 0.4;
+		constantForce.drag = 0.05;
+
+		CombinedForce force = new CombinedForce();
+		force.add(constantForce);
+		force.add(new SimpleGridForce());
+		force.add(new PositionDependentForce());
+		return force;
+	}
+
+
+	private List<Particle> createParticles() {
+		Random random = new Random(11);
+		List<Particle> particles = new ArrayList<Particle>();
+		for (int i = 0; i < NUM_OF_PARTICLES; ++i) {
+			Particle p = new Particle();
+			p.setX(10 * random.nextDouble());
+			p.setY(10 * random.nextDouble());
+			p.setVx(random.nextDouble() - 0.5);
+			p.setVy(random.nextDouble() - 0.5);
+			p.setAx(random.nextDouble());
+			p.setAy(random.nextDouble());
+			p.setMass(1 + random.nextDouble());
+			p.setCharge(random.nextDouble() - 0.5);
+			p.setRadius(0.1);
+			p.setEx(random.nextDouble());
+			p.setEy(random.nextDouble());
+			p.setBz(random.nextDouble());
+			particles.add(p);
+		}
+		return particles;
+	}
+
+
+	/**
+	 * Harmonic force towards the center of the area;
+	 * makes the results depend on when the force is evaluated.
+	 */
+	private static class PositionDependentForce implements Force {
+
+		public double getForceX(Particle p) {
+			return getPositionComponentofForceX(p);
+		}
+
+		public double getForceY(Particle p) {
+			return getPositionComponentofForceY(p);
+		}
+
+		public double getPositionComponentofForceX(Particle p) {
+			return 5 - p.getX();
+		}
+
+		public double getPositionComponentofForceY(Particle p) {
+			return 5 - p.getY();
+		}
+
+		public double getTangentVelocityComponentOfForceX(Particle p) {
+			return 0;
+		}
+
+		public double getTangentVelocityComponentOfForceY(Particle p) {
+			return 0;
+		}
+
+		public double getNormalVelocityComponentofForceX(Particle p) {
+			return 0;
+		}
+
+		public double getNormalVelocityComponentofForceY(Particle p) {
+			return 0;
+		}
+
+		public double getBz(Particle p) {
+			return 0;
+		}
+
+		public double getLinearDragCoefficient(Particle p) {
+			return 0;
+		}
+	}
+}
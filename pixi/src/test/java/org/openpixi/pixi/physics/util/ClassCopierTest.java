@@ -2,6 +2,8 @@ package org.openpixi.pixi.physics.util;
 
 import junit.framework.TestCase;
 import org.openpixi.pixi.physics.Settings;
+import org.openpixi.pixi.physics.Simulation;
+import org.openpixi.pixi.physics.grid.Grid;
 
 /**
  * Tests the class copier.
@@ -17,4 +19,26 @@ public class ClassCopierTest extends TestCase {
 		assertEquals(settings.getGridCellsX(), settings2.getGridCellsX());
 		assertEquals(settings.getInterpolator(), settings2.getInterpolator());
 	}
+
+
+	/**
+	 * The grid solver of the simulation is a copy (see Settings.getGridSolver()).
+	 * Its cell actions must work with the time step of the copy;
+	 * otherwise the magnetic field (zero after the initialization) never changes.
+	 */
+	public void testCopiedFieldSolverUpdatesFields() {
+		Settings settings = new Settings();
+		settings.setIterations(10);
+		Simulation simulation = new Simulation(settings);
+		simulation.run();
+
+		Grid grid = simulation.grid;
+		double maxBz = 0;
+		for (int x = 0; x < grid.getNumCellsX(); ++x) {
+			for (int y = 0; y < grid.getNumCellsY(); ++y) {
+				maxBz = Math.max(maxBz, Math.abs(grid.getBz(x, y)));
+			}
+		}
+		assertTrue(maxBz > 0);
+	}
 }